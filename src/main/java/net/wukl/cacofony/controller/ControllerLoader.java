@@ -14,8 +14,13 @@ import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,7 +30,9 @@ import java.util.stream.Collectors;
  * A loader for annotated controllers.
  * <p>
  * This class will automatically find a set of controllers and add each annotated route
- * to the router.
+ * to the router. Controllers are looked up in the {@link RouteIndex} generated at compile time,
+ * falling back to scanning the class path if a package has not been indexed or the index does not
+ * match the controllers' classes.
  *
  * @author Luc Everse
  */
@@ -52,6 +59,16 @@ public class ControllerLoader {
      */
     private final PathCompiler pathCompiler;
 
+    /**
+     * The class loader to load indexed controllers with.
+     */
+    private final ClassLoader classLoader;
+
+    /**
+     * The route index, loaded on first use.
+     */
+    private RouteIndex index;
+
     /**
      * Create a new controller loader.
      *
@@ -68,10 +85,20 @@ public class ControllerLoader {
         this.router = router;
         this.mimeParser = parser;
         this.pathCompiler = pathCompiler;
+
+        final ClassLoader context = Thread.currentThread().getContextClassLoader();
+        if (context != null) {
+            this.classLoader = context;
+        } else {
+            this.classLoader = ControllerLoader.class.getClassLoader();
+        }
     }
 
     /**
-     * Load all known controllers through reflection.
+     * Load all known controllers.
+     * <p>
+     * If the route index covers the package, the controllers are taken from the index. Otherwise
+     * the class path is scanned for controllers.
      *
      * @param prefix the path prefix the controllers fall under
      * @param pack   the package to inspect for controllers
@@ -79,6 +106,31 @@ public class ControllerLoader {
     public void loadAll(final String prefix, final String pack) {
         logger.debug("Loading all controllers in {} under prefix \"{}\"", pack, prefix);
 
+        final Map<Class<? extends Controller>, List<java.lang.reflect.Method>> indexed =
+                this.resolveIndexed(pack);
+        if (indexed != null) {
+            indexed.forEach((type, actions) -> {
+                final Controller controller = this.dependencyResolver.get(type);
+                for (final java.lang.reflect.Method method : actions) {
+                    this.mapAll(prefix, controller, method);
+                }
+                logger.debug("Loaded indexed controller {}", type.getCanonicalName());
+            });
+            return;
+        }
+
+        this.scan(prefix, pack);
+    }
+
+    /**
+     * Load all controllers in a package by scanning the class path.
+     *
+     * @param prefix the path prefix the controllers fall under
+     * @param pack   the package to inspect for controllers
+     */
+    private void scan(final String prefix, final String pack) {
+        logger.debug("Scanning the class path for controllers in {}", pack);
+
         Reflections reflections = new Reflections(pack);
         Set<Class<? extends Controller>> controllers = reflections.getSubTypesOf(Controller.class);
 
@@ -99,10 +151,109 @@ public class ControllerLoader {
         final Controller controller = this.dependencyResolver.get(type);
 
         for (final java.lang.reflect.Method method : type.getMethods()) {
-            for (Route annotation : method.getAnnotationsByType(Route.class)) {
-                this.mapSingle(prefix, controller, method, annotation);
+            this.mapAll(prefix, controller, method);
+        }
+    }
+
+    /**
+     * Resolves the indexed controllers in a package and their actions.
+     * <p>
+     * Nothing is resolved if the package is not indexed or the index is out of date, in which
+     * case the caller should scan the class path instead. The index is out of date if it lists a
+     * type or action that does not exist, or if the routed actions of an indexed controller differ
+     * from the ones listed.
+     *
+     * @param pack the package to resolve the controllers of
+     *
+     * @return the controllers and their actions, or {@code null} if the index can't be used
+     */
+    private Map<Class<? extends Controller>, List<java.lang.reflect.Method>> resolveIndexed(
+            final String pack
+    ) {
+        final RouteIndex routeIndex = this.getIndex();
+        final List<String> names = routeIndex.getControllers(pack);
+        if (names.isEmpty()) {
+            return null;
+        }
+
+        final Map<Class<? extends Controller>, List<java.lang.reflect.Method>> controllers =
+                new LinkedHashMap<>();
+        try {
+            for (final String name : names) {
+                final Class<?> type = Class.forName(name, true, this.classLoader);
+                if (!Controller.class.isAssignableFrom(type)) {
+                    logger.warn("Indexed type {} is not a controller", name);
+                    return null;
+                }
+
+                final List<java.lang.reflect.Method> actions = new ArrayList<>();
+                for (final RouteIndex.Action action : routeIndex.getActions(name)) {
+                    actions.add(action.resolve(type, this.classLoader));
+                }
+
+                if (!getRoutedActions(type).equals(new HashSet<>(actions))) {
+                    logger.warn("The route index is out of date for controller {}", name);
+                    return null;
+                }
+
+                controllers.put(type.asSubclass(Controller.class), actions);
+            }
+        } catch (final ReflectiveOperationException | LinkageError ex) {
+            logger.warn("The route index is out of date for package {}: {}", pack, ex.toString());
+            return null;
+        }
+
+        return controllers;
+    }
+
+    /**
+     * Returns the public actions of a controller carrying at least one route.
+     *
+     * @param type the controller type
+     *
+     * @return the routed actions
+     */
+    private static Set<java.lang.reflect.Method> getRoutedActions(final Class<?> type) {
+        final Set<java.lang.reflect.Method> actions = new HashSet<>();
+        for (final java.lang.reflect.Method method : type.getMethods()) {
+            if (!method.isBridge() && method.getAnnotationsByType(Route.class).length > 0) {
+                actions.add(method);
+            }
+        }
+
+        return actions;
+    }
+
+    /**
+     * Returns the route index, loading it if necessary.
+     *
+     * @return the route index
+     */
+    private synchronized RouteIndex getIndex() {
+        if (this.index == null) {
+            try {
+                this.index = RouteIndex.load(this.classLoader);
+            } catch (final IOException ex) {
+                throw new UncheckedIOException("Unable to read the route index", ex);
             }
         }
+
+        return this.index;
+    }
+
+    /**
+     * Load all routes of a single action.
+     *
+     * @param prefix     the path prefix the controllers fall under
+     * @param controller the controller instance
+     * @param method     the action itself
+     */
+    private void mapAll(final String prefix,
+                        final Controller controller,
+                        final java.lang.reflect.Method method) {
+        for (final Route annotation : method.getAnnotationsByType(Route.class)) {
+            this.mapSingle(prefix, controller, method, annotation);
+        }
     }
 
     /**
@@ -146,7 +297,9 @@ public class ControllerLoader {
             name = controllerName + ":/" + route.path();
         }
 
-        final RoutingEntry entry = new RoutingEntry(name, path, controller, method, methods, types);
+        final RoutingEntry entry = new RoutingEntry(
+                name, path, controller, method, methods, types, List.of(route.push())
+        );
 
         this.router.addRoute(entry);
     }
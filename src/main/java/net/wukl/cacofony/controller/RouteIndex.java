@@ -0,0 +1,272 @@
+package net.wukl.cacofony.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An index of controllers and their routed actions, generated at compile time.
+ * <p>
+ * The index is written by the {@link RouteIndexProcessor} and allows the {@link ControllerLoader}
+ * to find controllers without scanning the class path. Each line of the index describes a single
+ * action as the controller's binary name, the action's name and the binary names of its
+ * parameter types, separated by spaces. Empty lines and lines starting with {@code #} are
+ * ignored. Actions listed more than once, for example because a class path entry is present twice,
+ * are indexed only once.
+ *
+ * @author Luc Everse
+ */
+public class RouteIndex {
+    /**
+     * The location of the index within a class path entry.
+     */
+    public static final String RESOURCE = "META-INF/cacofony/routes.idx";
+
+    /**
+     * The suffix marking an array type.
+     */
+    private static final String ARRAY_SUFFIX = "[]";
+
+    /**
+     * The primitive types by name.
+     */
+    private static final Map<String, Class<?>> PRIMITIVES = Map.of(
+            "boolean", boolean.class,
+            "byte", byte.class,
+            "char", char.class,
+            "short", short.class,
+            "int", int.class,
+            "long", long.class,
+            "float", float.class,
+            "double", double.class
+    );
+
+    /**
+     * The indexed actions by controller binary name.
+     */
+    private final Map<String, Set<Action>> controllers = new LinkedHashMap<>();
+
+    /**
+     * Loads and merges every route index visible to a class loader.
+     *
+     * @param loader the class loader to find the indices with
+     *
+     * @return the merged index, which is empty if no index could be found
+     *
+     * @throws IOException if an index could not be read
+     */
+    public static RouteIndex load(final ClassLoader loader) throws IOException {
+        final RouteIndex index = new RouteIndex();
+
+        final Enumeration<URL> resources = loader.getResources(RESOURCE);
+        while (resources.hasMoreElements()) {
+            try (InputStream in = resources.nextElement().openStream()) {
+                index.read(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads index lines into this index.
+     *
+     * @param reader the reader supplying the index lines
+     *
+     * @throws IOException if the reader throws an exception
+     */
+    public void read(final Reader reader) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            final String[] parts = trimmed.split(" +");
+            if (parts.length < 2) {
+                throw new IOException("Malformed route index line: " + line);
+            }
+
+            final List<String> parameters = Arrays.asList(parts).subList(2, parts.length);
+            this.controllers.computeIfAbsent(parts[0], k -> new LinkedHashSet<>())
+                    .add(new Action(parts[1], List.copyOf(parameters)));
+        }
+    }
+
+    /**
+     * Checks whether the index contains no controllers at all.
+     *
+     * @return {@code true} if the index is empty, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return this.controllers.isEmpty();
+    }
+
+    /**
+     * Returns the binary names of all indexed controllers within a package or its subpackages.
+     *
+     * @param pack the name of the package
+     *
+     * @return the names of the controllers in the package
+     */
+    public List<String> getControllers(final String pack) {
+        final String prefix = pack + ".";
+
+        final List<String> names = new ArrayList<>();
+        for (final String name : this.controllers.keySet()) {
+            if (pack.isEmpty() || name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the indexed actions of a controller.
+     *
+     * @param controller the binary name of the controller
+     *
+     * @return the controller's actions
+     */
+    public List<Action> getActions(final String controller) {
+        return List.copyOf(this.controllers.getOrDefault(controller, Collections.emptySet()));
+    }
+
+    /**
+     * Resolves a type by the name used in the index.
+     *
+     * @param name   the binary name of the type, suffixed by {@code []} for each array dimension
+     * @param loader the class loader to load the type with
+     *
+     * @return the type
+     *
+     * @throws ClassNotFoundException if the type does not exist
+     */
+    static Class<?> resolveType(final String name, final ClassLoader loader)
+            throws ClassNotFoundException {
+        if (name.endsWith(ARRAY_SUFFIX)) {
+            final String component = name.substring(0, name.length() - ARRAY_SUFFIX.length());
+            return Array.newInstance(resolveType(component, loader), 0).getClass();
+        }
+
+        final Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+
+        return Class.forName(name, false, loader);
+    }
+
+    /**
+     * An indexed action.
+     */
+    public static final class Action {
+        /**
+         * The name of the action method.
+         */
+        private final String name;
+
+        /**
+         * The names of the action's parameter types.
+         */
+        private final List<String> parameterTypes;
+
+        /**
+         * Creates a new indexed action.
+         *
+         * @param name           the name of the action method
+         * @param parameterTypes the names of the action's parameter types
+         */
+        public Action(final String name, final List<String> parameterTypes) {
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * Returns the name of the action method.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Returns the names of the action's parameter types.
+         *
+         * @return the parameter type names
+         */
+        public List<String> getParameterTypes() {
+            return this.parameterTypes;
+        }
+
+        /**
+         * Resolves the action method on its controller.
+         *
+         * @param controller the controller type
+         * @param loader     the class loader to load the parameter types with
+         *
+         * @return the action method
+         *
+         * @throws ReflectiveOperationException if the method or a parameter type does not exist
+         */
+        public java.lang.reflect.Method resolve(final Class<?> controller,
+                                                final ClassLoader loader)
+                throws ReflectiveOperationException {
+            final Class<?>[] types = new Class<?>[this.parameterTypes.size()];
+            for (int i = 0; i < types.length; ++i) {
+                types[i] = resolveType(this.parameterTypes.get(i), loader);
+            }
+
+            return controller.getMethod(this.name, types);
+        }
+
+        /**
+         * Checks whether this action is equal to another object.
+         *
+         * @param obj the other object
+         *
+         * @return {@code true} if the other object is an equal action, {@code false} otherwise
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Action)) {
+                return false;
+            }
+
+            final Action other = (Action) obj;
+
+            return Objects.equals(this.name, other.name)
+                && Objects.equals(this.parameterTypes, other.parameterTypes);
+        }
+
+        /**
+         * Calculate the object's hash code.
+         *
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.parameterTypes);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package net.wukl.cacofony.controller;
+
+import net.wukl.cacofony.route.Route;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor generating the {@link RouteIndex} at compile time.
+ * <p>
+ * Every concrete controller compiled in the same compilation is indexed together with each public
+ * action carrying a {@link Route}, including actions inherited from other controllers.
+ * <p>
+ * An index left in the output by an earlier compilation is merged rather than overwritten, so
+ * controllers that were not recompiled, as happens during incremental compilation, keep their
+ * entries. Entries of recompiled types are replaced by what this compilation found.
+ *
+ * @author Luc Everse
+ */
+@SupportedAnnotationTypes("*")
+public class RouteIndexProcessor extends AbstractProcessor {
+    /**
+     * The index lines collected so far, sorted to keep the output reproducible.
+     */
+    private final Set<String> lines = new TreeSet<>();
+
+    /**
+     * The binary names of all types seen in this compilation.
+     */
+    private final Set<String> compiled = new HashSet<>();
+
+    /**
+     * Returns the latest source version supported by the compiler.
+     *
+     * @return the latest source version
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Collects the controllers of a round and writes the index once processing is over.
+     *
+     * @param annotations the annotations requested to be processed
+     * @param round       the current round
+     *
+     * @return {@code false} to leave the annotations unclaimed
+     */
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations,
+                           final RoundEnvironment round) {
+        if (round.processingOver()) {
+            this.write();
+            return false;
+        }
+
+        final TypeElement controller = this.processingEnv.getElementUtils()
+                .getTypeElement(Controller.class.getCanonicalName());
+        if (controller == null) {
+            return false;
+        }
+
+        for (final TypeElement type : ElementFilter.typesIn(round.getRootElements())) {
+            this.collect(type, controller.asType());
+        }
+
+        return false;
+    }
+
+    /**
+     * Collects the actions of a type and its nested types if they are concrete controllers.
+     *
+     * @param type       the type to inspect
+     * @param controller the controller type
+     */
+    private void collect(final TypeElement type, final TypeMirror controller) {
+        for (final TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            this.collect(nested, controller);
+        }
+
+        final String name = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+        this.compiled.add(name);
+
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || !this.processingEnv.getTypeUtils().isAssignable(type.asType(), controller)) {
+            return;
+        }
+
+        final var members = this.processingEnv.getElementUtils().getAllMembers(type);
+        for (final ExecutableElement method : ElementFilter.methodsIn(members)) {
+            if (!method.getModifiers().contains(Modifier.PUBLIC)
+                    || method.getAnnotationsByType(Route.class).length == 0) {
+                continue;
+            }
+
+            final StringBuilder line = new StringBuilder(name)
+                    .append(' ')
+                    .append(method.getSimpleName());
+            for (final VariableElement parameter : method.getParameters()) {
+                line.append(' ').append(this.getTypeName(parameter.asType()));
+            }
+
+            this.lines.add(line.toString());
+        }
+    }
+
+    /**
+     * Returns the name of a type as used in the index.
+     *
+     * @param type the type
+     *
+     * @return the type's name
+     */
+    private String getTypeName(final TypeMirror type) {
+        final TypeMirror erased = this.processingEnv.getTypeUtils().erasure(type);
+
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return this.getTypeName(((ArrayType) erased).getComponentType()) + "[]";
+        }
+
+        if (erased.getKind().isPrimitive()) {
+            return erased.getKind().name().toLowerCase(Locale.ROOT);
+        }
+
+        final Element element = ((DeclaredType) erased).asElement();
+        return this.processingEnv.getElementUtils().getBinaryName((TypeElement) element)
+                .toString();
+    }
+
+    /**
+     * Reads the index lines an earlier compilation left in the output.
+     *
+     * Lines describing types seen in this compilation are left out, as they are outdated.
+     *
+     * @return the lines still describing types that were not recompiled, or {@code null} if
+     *         there is no earlier index
+     */
+    private List<String> readPrevious() {
+        final List<String> previous = new ArrayList<>();
+        try {
+            final FileObject file = this.processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", RouteIndex.RESOURCE);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    final String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("#")
+                            && !this.compiled.contains(trimmed.split(" +")[0])) {
+                        previous.add(trimmed);
+                    }
+                }
+            }
+        } catch (final FileNotFoundException | NoSuchFileException ex) {
+            return null;
+        } catch (final IOException ex) {
+            this.processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.WARNING,
+                    "Unable to read the previous route index: " + ex.getMessage()
+            );
+            return null;
+        }
+
+        return previous;
+    }
+
+    /**
+     * Writes the collected index lines merged with the earlier index, if there is anything to
+     * write.
+     */
+    private void write() {
+        final List<String> previous = this.readPrevious();
+        if (previous == null && this.lines.isEmpty()) {
+            return;
+        }
+
+        final Set<String> merged = new TreeSet<>(this.lines);
+        if (previous != null) {
+            merged.addAll(previous);
+        }
+
+        try {
+            final FileObject file = this.processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", RouteIndex.RESOURCE);
+            try (Writer out = new OutputStreamWriter(file.openOutputStream(),
+                                                     StandardCharsets.UTF_8)) {
+                out.write("# Generated by " + this.getClass().getName() + "\n");
+                for (final String line : merged) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+        } catch (final IOException ex) {
+            this.processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "Unable to write the route index: " + ex.getMessage()
+            );
+        }
+    }
+}
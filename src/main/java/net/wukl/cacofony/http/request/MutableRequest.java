@@ -3,11 +3,10 @@ package net.wukl.cacofony.http.request;
 import net.wukl.cacofony.http.cookie.Cookie;
 import net.wukl.cacofony.http.exception.BadRequestException;
 import net.wukl.cacofony.mime.MimeType;
+import net.wukl.cacofony.util.PercentDecoder;
 
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.InetAddress;
-import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -116,6 +115,11 @@ public class MutableRequest extends Request {
      */
     private InetAddress remote;
 
+    /**
+     * The channel to push resources to the client with.
+     */
+    private ServerPush serverPush = ServerPush.UNSUPPORTED;
+
     /**
      * Creates a new request.
      *
@@ -210,10 +214,10 @@ public class MutableRequest extends Request {
      */
     public void setPath(final String path, final String queryString) {
         this.path = path;
-        this.unescapedPath = this.decodeUriComponent(path);
+        this.unescapedPath = PercentDecoder.decode(path, PercentDecoder.Mode.PATH);
 
         this.queryString = queryString;
-        this.unescapedQueryString = this.decodeUriComponent(queryString);
+        this.unescapedQueryString = PercentDecoder.decode(queryString, PercentDecoder.Mode.FORM);
     }
 
     /**
@@ -536,18 +540,19 @@ public class MutableRequest extends Request {
     }
 
     /**
-     * Decodes a URI part from the RFC encoding.
-     *
-     * @param str the string to decode
+     * {@inheritDoc}
+     */
+    @Override
+    public ServerPush getServerPush() {
+        return this.serverPush;
+    }
+
+    /**
+     * Sets the channel to push resources to the client with.
      *
-     * @return a decoded string
-     */
-    private String decodeUriComponent(final String str) {
-        try {
-            return URLDecoder.decode(str, "UTF-8");
-        } catch (final UnsupportedEncodingException ex) {
-            // Not gonna happen.
-            throw new RuntimeException(ex);
-        }
+     * @param serverPush the push channel
+     */
+    public void setServerPush(final ServerPush serverPush) {
+        this.serverPush = serverPush;
     }
 }
@@ -1,7 +1,7 @@
 package net.wukl.cacofony.http.request;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import net.wukl.cacofony.util.PercentDecoder;
+
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -69,7 +69,7 @@ public class QueryStringParser {
      * @return a URL-decoded substring of {@code str}
      */
     private String decodeSubstring(final String str, final int start, final int end) {
-        return this.decodeUriComponent(str.substring(start, end));
+        return PercentDecoder.decode(str, start, end, PercentDecoder.Mode.FORM);
     }
 
     /**
@@ -81,22 +81,6 @@ public class QueryStringParser {
      * @return a URL-decoded substring of {@code str}
      */
     private String decodeSubstring(final String str, final int start) {
-        return this.decodeUriComponent(str.substring(start));
-    }
-
-    /**
-     * Decodes a URI part from the RFC encoding.
-     *
-     * @param str the string to decode
-     *
-     * @return a decoded string
-     */
-    private String decodeUriComponent(final String str) {
-        try {
-            return URLDecoder.decode(str, "UTF-8");
-        } catch (final UnsupportedEncodingException ex) {
-            // Not gonna happen.
-            throw new RuntimeException(ex);
-        }
+        return PercentDecoder.decode(str, start, str.length(), PercentDecoder.Mode.FORM);
     }
 }
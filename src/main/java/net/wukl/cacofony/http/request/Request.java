@@ -2,6 +2,7 @@ package net.wukl.cacofony.http.request;
 
 import net.wukl.cacofony.http.cookie.Cookie;
 import net.wukl.cacofony.http.exception.HttpException;
+import net.wukl.cacofony.http.response.Response;
 import net.wukl.cacofony.http.response.ResponseCode;
 import net.wukl.cacofony.mime.MimeType;
 
@@ -395,6 +396,40 @@ public abstract class Request {
      */
     public abstract InetAddress getRemote();
 
+    /**
+     * Returns the channel to push resources to the client with.
+     *
+     * @return the push channel, which refuses every push if the connection does not support it
+     */
+    public abstract ServerPush getServerPush();
+
+    /**
+     * Pushes a resource served by the local router to the client.
+     *
+     * @param path the absolute path and query of the resource
+     *
+     * @return {@code true} if the resource was promised, {@code false} otherwise
+     *
+     * @see ServerPush#push(String, Response)
+     */
+    public boolean push(final String path) {
+        return this.getServerPush().push(path, null);
+    }
+
+    /**
+     * Pushes a pre-rendered response to the client.
+     *
+     * @param path the absolute path and query the response is promised for
+     * @param response the response
+     *
+     * @return {@code true} if the resource was promised, {@code false} otherwise
+     *
+     * @see ServerPush#push(String, Response)
+     */
+    public boolean push(final String path, final Response response) {
+        return this.getServerPush().push(path, response);
+    }
+
     /**
      * Reads the full request body into a string.
      *
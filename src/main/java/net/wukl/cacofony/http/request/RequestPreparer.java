@@ -5,6 +5,7 @@ import net.wukl.cacofony.route.RoutingEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.regex.Matcher;
 
@@ -52,7 +53,6 @@ public class RequestPreparer {
                         final Matcher pathMatcher) {
         // Parse the path parameters.
         final Map<String, String> params = entry.getPath().parseParameters(pathMatcher);
-        request.setPathParameters(params);
 
         // Parse the query string.
         String path = target;
@@ -70,6 +70,37 @@ public class RequestPreparer {
             queryString = "";
         }
 
+        this.prepare(request, path, queryString, params);
+    }
+
+    /**
+     * Prepares a request that matched a static route.
+     * <p>
+     * Static routes have no path parameters, so no matcher is needed.
+     *
+     * @param request     the request to prepare
+     * @param path        the path part of the target URL
+     * @param queryString the query string, including the leading question mark
+     */
+    public void prepare(final MutableRequest request,
+                        final String path,
+                        final String queryString) {
+        this.prepare(request, path, queryString, Collections.emptyMap());
+    }
+
+    /**
+     * Prepares a request after its path has been matched.
+     *
+     * @param request        the request to prepare
+     * @param path           the path part of the target URL
+     * @param queryString    the query string, including the leading question mark
+     * @param pathParameters the path parameters
+     */
+    private void prepare(final MutableRequest request,
+                         final String path,
+                         final String queryString,
+                         final Map<String, String> pathParameters) {
+        request.setPathParameters(pathParameters);
         request.setPath(path, queryString);
 
         final Map<String, String> queryParams = this.queryStringParser.parse(queryString);
@@ -0,0 +1,50 @@
+package net.wukl.cacofony.http.request;
+
+import net.wukl.cacofony.http.response.Response;
+
+/**
+ * A way to push resources to the client that sent a request.
+ * <p>
+ * Pushing is only possible over HTTP/2, and only while the client allows it. A pushed resource
+ * is requested with {@code GET} on the same authority and scheme as the request it accompanies.
+ *
+ * @author Luc Everse
+ */
+public interface ServerPush {
+    /**
+     * The push channel of requests that cannot push anything.
+     */
+    ServerPush UNSUPPORTED = new ServerPush() {
+        @Override
+        public boolean push(final String path, final Response response) {
+            return false;
+        }
+
+        @Override
+        public boolean isAutomatic() {
+            return false;
+        }
+    };
+
+    /**
+     * Promises a resource to the client and starts sending it.
+     *
+     * The resource is not pushed if the client has disabled pushes, if too many pushes are
+     * already in progress or if the same resource has already been pushed on the connection.
+     *
+     * @param path the absolute path and query of the resource
+     * @param response the response to push, or {@code null} to generate it by routing a
+     *                 {@code GET} request for the path
+     *
+     * @return {@code true} if the resource was promised, {@code false} otherwise
+     */
+    boolean push(String path, Response response);
+
+    /**
+     * Returns whether the server pushes resources it knows a response needs by itself.
+     *
+     * @return {@code true} if declared and preloaded resources are pushed automatically,
+     *         {@code false} otherwise
+     */
+    boolean isAutomatic();
+}
@@ -0,0 +1,187 @@
+package net.wukl.cacofony.http2;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Limits how many tasks of a single connection run on the shared thread pool at once.
+ * <p>
+ * Tasks beyond the quota wait in the connection's own queue. Each time one of its tasks finishes,
+ * the next one is handed to the pool, behind whatever other connections have submitted in the
+ * meantime. A connection with many slow streams thus occupies no more than its quota of threads,
+ * while the requests of other connections keep getting their turn.
+ * <p>
+ * Queued tasks start in the order they were submitted. Tasks that are cancelled while queued
+ * never take up a thread.
+ */
+public class DispatchQueue {
+    /**
+     * The thread pool running the tasks.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of tasks running at once.
+     */
+    private final int quota;
+
+    /**
+     * The tasks waiting for a running task to finish.
+     */
+    private final Deque<FutureTask<?>> pending = new ArrayDeque<>();
+
+    /**
+     * The number of tasks handed to the thread pool that have not finished yet.
+     */
+    private int running = 0;
+
+    /**
+     * Whether the queue accepts no more tasks.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a new dispatch queue.
+     *
+     * @param executor the thread pool running the tasks
+     * @param quota the maximum number of tasks running at once, at least {@code 1}
+     */
+    public DispatchQueue(final Executor executor, final int quota) {
+        if (quota < 1) {
+            throw new IllegalArgumentException("Quota " + quota + " is not positive");
+        }
+
+        this.executor = executor;
+        this.quota = quota;
+    }
+
+    /**
+     * Submits a task, running it as soon as the quota allows.
+     *
+     * @param task the task
+     *
+     * @return the future representing the task, which may be cancelled while it is queued
+     */
+    public Future<?> submit(final Runnable task) {
+        final var future = new FutureTask<Void>(task, null);
+        synchronized (this) {
+            if (this.closed) {
+                future.cancel(false);
+                return future;
+            }
+
+            if (this.running >= this.quota) {
+                this.pending.add(future);
+                return future;
+            }
+
+            this.running += 1;
+        }
+
+        try {
+            this.start(future);
+        } catch (final RejectedExecutionException ex) {
+            synchronized (this) {
+                this.running -= 1;
+            }
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * Cancels all queued tasks and rejects any further ones.
+     *
+     * Tasks that are already running are left alone.
+     */
+    public void close() {
+        synchronized (this) {
+            this.closed = true;
+            for (final var future : this.pending) {
+                future.cancel(false);
+            }
+            this.pending.clear();
+        }
+    }
+
+    /**
+     * Returns the number of tasks that are running or about to run.
+     *
+     * @return the number of tasks
+     */
+    public synchronized int getRunningCount() {
+        return this.running;
+    }
+
+    /**
+     * Returns the number of tasks waiting for their turn.
+     *
+     * @return the number of tasks
+     */
+    public synchronized int getPendingCount() {
+        return this.pending.size();
+    }
+
+    /**
+     * Hands a task to the thread pool.
+     *
+     * @param future the task
+     *
+     * @throws RejectedExecutionException if the pool does not accept the task
+     */
+    private void start(final FutureTask<?> future) {
+        this.executor.execute(() -> {
+            try {
+                future.run();
+            } finally {
+                this.finished();
+            }
+        });
+    }
+
+    /**
+     * Starts the next queued task after a running one has finished.
+     *
+     * The finished task's slot passes to the next task. If the pool does not accept that task,
+     * it is cancelled, as it can never run, and the slot passes on to the task after it.
+     */
+    private void finished() {
+        while (true) {
+            final FutureTask<?> next;
+            synchronized (this) {
+                next = this.pollPending();
+                if (next == null) {
+                    this.running -= 1;
+                    return;
+                }
+            }
+
+            try {
+                this.start(next);
+                return;
+            } catch (final RejectedExecutionException ex) {
+                next.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Takes the first queued task that has not been cancelled.
+     *
+     * The caller must hold the queue's lock.
+     *
+     * @return the task or {@code null} if there is none
+     */
+    private FutureTask<?> pollPending() {
+        var next = this.pending.poll();
+        while (next != null && next.isCancelled()) {
+            next = this.pending.poll();
+        }
+
+        return next;
+    }
+}
@@ -0,0 +1,133 @@
+package net.wukl.cacofony.http2;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the HTTP/2 connections of the server, so they can be drained together.
+ * <p>
+ * A connection is registered once its handshake has completed and unregistered once it has been
+ * closed.
+ */
+public class Http2ConnectionRegistry {
+    /**
+     * The connections that are open.
+     */
+    private final Set<Http2Protocol> connections = new HashSet<>();
+
+    /**
+     * The number of calls to {@link #drain(long)} that are waiting for the connections to close.
+     */
+    private int drainers = 0;
+
+    /**
+     * Registers an open connection.
+     * <p>
+     * If the registry is draining its connections, the connection is drained right away.
+     *
+     * @param protocol the protocol instance handling the connection
+     */
+    public void add(final Http2Protocol protocol) {
+        final boolean draining;
+        synchronized (this) {
+            this.connections.add(protocol);
+            draining = this.drainers > 0;
+        }
+
+        if (draining) {
+            protocol.drain();
+        }
+    }
+
+    /**
+     * Unregisters a connection that has been closed.
+     *
+     * @param protocol the protocol instance that handled the connection
+     */
+    public synchronized void remove(final Http2Protocol protocol) {
+        this.connections.remove(protocol);
+        this.notifyAll();
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return the number of connections
+     */
+    public synchronized int getConnectionCount() {
+        return this.connections.size();
+    }
+
+    /**
+     * Drains all open connections and waits for them to close.
+     * <p>
+     * Connections completing their handshake while this waits are drained as well.
+     *
+     * @param timeout the maximum number of milliseconds to wait
+     *
+     * @return {@code true} if all connections have closed, {@code false} if the time is up
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     *
+     * @see Http2Protocol#drain()
+     */
+    public boolean drain(final long timeout) throws InterruptedException {
+        final List<Http2Protocol> open;
+        synchronized (this) {
+            this.drainers += 1;
+            open = new ArrayList<>(this.connections);
+        }
+
+        try {
+            for (final var protocol : open) {
+                protocol.drain();
+            }
+
+            return this.awaitClosed(timeout);
+        } finally {
+            synchronized (this) {
+                this.drainers -= 1;
+            }
+        }
+    }
+
+    /**
+     * Traps all open connections, closing them without waiting for their streams.
+     */
+    public void trap() {
+        final List<Http2Protocol> open;
+        synchronized (this) {
+            open = new ArrayList<>(this.connections);
+        }
+
+        for (final var protocol : open) {
+            protocol.trap();
+        }
+    }
+
+    /**
+     * Waits for all connections to close.
+     *
+     * @param timeout the maximum number of milliseconds to wait
+     *
+     * @return {@code true} if all connections have closed, {@code false} if the time is up
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private synchronized boolean awaitClosed(final long timeout) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!this.connections.isEmpty()) {
+            final var left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package net.wukl.cacofony.http2;
+
+/**
+ * An error indicating a violation of the flow-control rules.
+ */
+public class Http2FlowControlError extends Http2ConnectionError {
+    /**
+     * Creates a new flow-control error.
+     */
+    public Http2FlowControlError() {
+        super();
+    }
+
+    /**
+     * Creates a new flow-control error.
+     *
+     * @param message the detail message explaining what caused the exception
+     */
+    public Http2FlowControlError(final String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new flow-control error.
+     *
+     * @param cause the exception that caused this exception
+     */
+    public Http2FlowControlError(final Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Creates a new flow-control error.
+     *
+     * @param message the detail message explaining what caused the exception
+     * @param cause   the exception that caused this exception
+     */
+    public Http2FlowControlError(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
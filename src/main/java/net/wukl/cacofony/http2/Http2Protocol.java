@@ -1,45 +1,57 @@
 package net.wukl.cacofony.http2;
 
 import net.wukl.cacofony.http.request.Header;
+import net.wukl.cacofony.http.response.Response;
+import net.wukl.cacofony.http.response.ResponseCode;
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
 import net.wukl.cacofony.http2.frame.ContinuationFrame;
 import net.wukl.cacofony.http2.frame.DataFrame;
 import net.wukl.cacofony.http2.frame.Frame;
 import net.wukl.cacofony.http2.frame.FrameFlag;
+import net.wukl.cacofony.http2.frame.FrameInputBuffer;
+import net.wukl.cacofony.http2.frame.FrameOutputBuffer;
 import net.wukl.cacofony.http2.frame.FrameReader;
 import net.wukl.cacofony.http2.frame.FrameType;
 import net.wukl.cacofony.http2.frame.FrameWriter;
 import net.wukl.cacofony.http2.frame.GoAwayFrame;
 import net.wukl.cacofony.http2.frame.HeadersFrame;
 import net.wukl.cacofony.http2.frame.PingFrame;
+import net.wukl.cacofony.http2.frame.PriorityUpdateFrame;
 import net.wukl.cacofony.http2.frame.PushPromiseFrame;
 import net.wukl.cacofony.http2.frame.RstStreamFrame;
 import net.wukl.cacofony.http2.frame.SettingsFrame;
 import net.wukl.cacofony.http2.frame.WindowUpdateFrame;
 import net.wukl.cacofony.http2.hpack.Hpack;
-import net.wukl.cacofony.http2.hpack.huffman.Huffman;
+import net.wukl.cacofony.http2.hpack.MalformedHeaderException;
 import net.wukl.cacofony.http2.settings.Setting;
 import net.wukl.cacofony.http2.settings.SettingIdentifier;
 import net.wukl.cacofony.http2.stream.Stream;
+import net.wukl.cacofony.http2.stream.StreamRegistry;
+import net.wukl.cacofony.http2.stream.StreamState;
 import net.wukl.cacofony.server.Connection;
 import net.wukl.cacofony.server.ServerSettings;
 import net.wukl.cacofony.server.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.PushbackInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 /**
  * The HTTP/2 protocol.
@@ -47,11 +59,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class Http2Protocol implements Protocol {
     private static final Logger logger = LoggerFactory.getLogger(Http2Protocol.class);
 
-    /**
-     * The maximum amount of bytes to send in a single HEADERS frame.
-     */
-    private static final int MAX_HEADERS_FRAME_BYTES = 4096 - 9;
-
     /**
      * The byte sequence the client should send to establish an HTTP/2 connection.
      */
@@ -62,17 +69,58 @@ public class Http2Protocol implements Protocol {
             (byte) 0x53, (byte) 0x4d, (byte) 0x0d, (byte) 0x0a, (byte) 0x0d, (byte) 0x0a,
     };
 
+    /**
+     * The number of octets in the client connection preface.
+     */
+    public static final int CLIENT_PREFACE_LENGTH = CLIENT_PREFACE.length;
+
+    /**
+     * The identifier of the stream carrying the request that upgraded a cleartext connection.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.2">RFC 7540 Section 3.2</a>
+     */
+    private static final int UPGRADE_STREAM_ID = 1;
+
+    /**
+     * The name of the request header carrying the extensible priority of the response.
+     *
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-5">RFC 9218 Section 5</a>
+     */
+    private static final String PRIORITY_HEADER = "priority";
+
     /**
      * The initial maximum size of frames sent by the server.
      *
      * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.2">RFC 7540 Section 6.5.2</a>
      */
-    private static final long INITIAL_MAX_FRAME_SIZE = 4096;
+    private static final long INITIAL_MAX_FRAME_SIZE = 16384;
+
+    /**
+     * The largest maximum frame size an endpoint may advertise.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.2">RFC 7540 Section 6.5.2</a>
+     */
+    private static final long MAX_MAX_FRAME_SIZE = 16777215;
+
+    /**
+     * The initial size of the HPACK dynamic tables.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.2">RFC 7540 Section 6.5.2</a>
+     */
+    private static final int INITIAL_HEADER_TABLE_SIZE = 4096;
+
+    /**
+     * The number of octets each header field adds to the size of a header list on top of its
+     * name and value.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.2">RFC 7540 Section 6.5.2</a>
+     */
+    private static final int HEADER_FIELD_OVERHEAD = 32;
 
     /**
      * The initial window size for connections and streams.
      *
-     * @see <a href="https://tools.ietf.org/html/rfc7540#section-5.2.1">RFC 7540 Section 5.2.1</a>
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.9.2">RFC 7540 Section 6.9.2</a>
      */
     private static final int INITIAL_WINDOW_SIZE = 65535;
 
@@ -83,10 +131,15 @@ public class Http2Protocol implements Protocol {
      */
     private static final long DEFAULT_INITIAL_WINDOW_SIZE = 65535;
 
+    /**
+     * The number of milliseconds between checks whether a draining connection can be closed.
+     */
+    private static final long DRAIN_POLL_INTERVAL = 100;
+
     /**
      * The HPACK codec to use.
      */
-    private final Hpack hpack = new Hpack(new Huffman());
+    private final Hpack hpack;
 
     /**
      * The HPACK lock for concurrent encoding.
@@ -113,6 +166,16 @@ public class Http2Protocol implements Protocol {
      */
     private final ExecutorService executor;
 
+    /**
+     * The scheduler running the task that writes the connection's frames.
+     */
+    private final Http2TaskScheduler taskScheduler;
+
+    /**
+     * The registry of the server's open HTTP/2 connections.
+     */
+    private final Http2ConnectionRegistry connections;
+
     /**
      * Global server settings.
      */
@@ -124,9 +187,20 @@ public class Http2Protocol implements Protocol {
     private final Connection conn;
 
     /**
-     * The streams active on the connection.
+     * The streams on the connection that are not closed yet.
+     */
+    private final StreamRegistry streams = new StreamRegistry();
+
+    /**
+     * The stream whose header block is being continued, if any.
+     */
+    private Stream continuedStream = null;
+
+    /**
+     * The number of octets received so far for the header block being read, including the
+     * headers of the frames carrying it.
      */
-    private final Map<Integer, Stream> streams = new HashMap<>();
+    private long headerBlockSize = 0;
 
     /**
      * The maximum size of a frame the client is willing to accept.
@@ -139,19 +213,74 @@ public class Http2Protocol implements Protocol {
     private long initialRemoteWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
 
     /**
-     * The identifier of the last stream the server successfully processed.
+     * The receive window size the server currently advertises for each stream.
+     *
+     * This starts at the configured size and grows as the connection's bandwidth-delay product
+     * requires.
+     */
+    private volatile int initialLocalWindowSize;
+
+    /**
+     * The PING frames the server has sent.
+     */
+    private final PingTracker pings = new PingTracker();
+
+    /**
+     * The size of the largest header list the client is willing to accept.
+     */
+    private long maxRemoteHeaderListSize = Long.MAX_VALUE;
+
+    /**
+     * Whether the client accepts pushed streams.
+     */
+    private volatile boolean remotePushEnabled = true;
+
+    /**
+     * The maximum number of streams the client allows the server to open at once.
+     */
+    private volatile long maxRemoteConcurrentStreams = Long.MAX_VALUE;
+
+    /**
+     * The lock ordering the promises of pushed streams.
+     *
+     * Promised stream identifiers must increase in the order the promises are sent.
+     */
+    private final Object pushLock = new Object();
+
+    /**
+     * The identifier of the next pushed stream.
      */
-    private AtomicInteger lastHandledStream = new AtomicInteger(0);
+    private int nextPushedStreamId = 2;
+
+    /**
+     * The resources that have been pushed on the connection, by authority and path.
+     */
+    private final Set<String> pushedResources = new HashSet<>();
 
     /**
      * The flow control window applying to the full connection.
      */
-    private final Window globalWindow = new Window(INITIAL_WINDOW_SIZE, INITIAL_WINDOW_SIZE);
+    private final Window globalWindow;
+
+    /**
+     * The scheduler deciding which frame to send next.
+     */
+    private final OutboundScheduler outbound;
+
+    /**
+     * The buffer collecting frames on their way to the client.
+     */
+    private final FrameOutputBuffer out;
+
+    /**
+     * The task writing frames, once the handshake has been done.
+     */
+    private volatile Http2TaskScheduler.Registration writer = null;
 
     /**
-     * The queue of outbound frames.
+     * The queue limiting how many requests of the connection are handled at once.
      */
-    private final BlockingDeque<Frame> outboundQueue = new LinkedBlockingDeque<>(4096);
+    private final DispatchQueue dispatchQueue;
 
     /**
      * Specialized frame handlers.
@@ -163,13 +292,60 @@ public class Http2Protocol implements Protocol {
      */
     private volatile boolean running = true;
 
+    /**
+     * The time the protocol was created, as returned by {@link System#nanoTime()}.
+     */
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * The number of requests the client has opened a stream for.
+     *
+     * Only the thread reading frames uses the count.
+     */
+    private int requestCount = 0;
+
+    /**
+     * The lock ordering the transitions between the phases of draining the connection.
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * How far draining the connection has progressed.
+     *
+     * The phase is changed only after the fields belonging to it have been set.
+     */
+    private volatile DrainPhase drainPhase = DrainPhase.NONE;
+
+    /**
+     * The time the first GOAWAY frame was enqueued.
+     */
+    private long drainAnnouncedAt;
+
+    /**
+     * The sequence number of the first PING enqueued after the first GOAWAY frame.
+     */
+    private long drainPing;
+
+    /**
+     * The time after which the streams of the draining connection are abandoned.
+     */
+    private long drainDeadline;
+
+    /**
+     * The headers of the HTTP/1.1 request that upgraded the connection, if any.
+     */
+    private List<Header> upgradeHeaders = null;
+
     /**
      * Creates a new HTTP/2 protocol instance.
      * @param frameReader the frame reader to use
      * @param frameWriter the frame writer to use
      * @param requestHandler the request handler to use
      * @param executor the executor service to run threads in
+     * @param taskScheduler the scheduler running the task that writes frames
+     * @param connections the registry of the server's open HTTP/2 connections
      * @param serverSettings global server settings
+     * @param hpack the HPACK codec to use
      * @param conn the connection with the client
      */
     public Http2Protocol(
@@ -177,15 +353,40 @@ public class Http2Protocol implements Protocol {
             final FrameWriter frameWriter,
             final Http2RequestHandler requestHandler,
             final ExecutorService executor,
+            final Http2TaskScheduler taskScheduler,
+            final Http2ConnectionRegistry connections,
             final ServerSettings serverSettings,
+            final Hpack hpack,
             final Connection conn
     ) {
         this.frameReader = frameReader;
         this.frameWriter = frameWriter;
         this.requestHandler = requestHandler;
         this.executor = executor;
+        this.taskScheduler = taskScheduler;
+        this.connections = connections;
         this.serverSettings = serverSettings;
+        this.hpack = hpack;
         this.conn = conn;
+        // Until the client acknowledges the server's settings, it may send as much as the initial
+        // window allows on every stream, so a smaller window would turn that into an error.
+        this.initialLocalWindowSize =
+                Math.max(INITIAL_WINDOW_SIZE, serverSettings.getInitialWindowSize());
+
+        this.globalWindow = new Window(
+                Math.max(INITIAL_WINDOW_SIZE, serverSettings.getConnectionWindowSize()),
+                INITIAL_WINDOW_SIZE
+        );
+        this.out = new FrameOutputBuffer(conn.getOut());
+        this.outbound = new OutboundScheduler(
+                this.globalWindow, (int) INITIAL_MAX_FRAME_SIZE, this::wakeWriter,
+                serverSettings.getPaddingPolicy()
+        );
+        this.dispatchQueue = new DispatchQueue(executor, serverSettings.getMaxInFlightRequests());
+
+        if (serverSettings.getHeaderTableSize() < INITIAL_HEADER_TABLE_SIZE) {
+            hpack.updateMaximumEncodingSize(serverSettings.getHeaderTableSize(), true);
+        }
 
         for (int i = 0; i < (1 << Byte.SIZE); ++i) {
             final var index = i;
@@ -204,6 +405,7 @@ public class Http2Protocol implements Protocol {
         this.addHandler(FrameType.RST_STREAM, this::handleRstStream);
         this.addHandler(FrameType.PING, this::handlePing);
         this.addHandler(FrameType.PUSH_PROMISE, this::handlePushPromise);
+        this.addHandler(FrameType.PRIORITY_UPDATE, this::handlePriorityUpdate);
     }
 
     /**
@@ -230,6 +432,11 @@ public class Http2Protocol implements Protocol {
      * Handles an active connection.
      * <p>
      * The protocol should stay active until the connection can be closed.
+     * <p>
+     * Frames are read and handled on the calling thread, which blocks on the socket for as long
+     * as the connection is open. Only writing frames and the periodic checks run as a task on the
+     * {@link Http2TaskScheduler}, so a connection occupies a single thread rather than one for
+     * each direction.
      *
      * @return the next protocol to use for the connection
      *
@@ -237,38 +444,56 @@ public class Http2Protocol implements Protocol {
      */
     @Override
     public Protocol handle() throws Throwable {
-        final var extraFrames = this.handshake();
+        final var in = new FrameInputBuffer(this.conn.getIn());
+        final var extraFrames = this.handshake(in);
+
+        // The client may already refer to the upgraded stream in the frames following its
+        // preface, so it must exist before they are handled.
+        final var upgradedStream = this.openUpgradedStream();
         for (final var frame : extraFrames) {
             this.handleFrame(frame);
         }
 
-        final var writerFuture = this.executor.submit(() -> {
-            while (this.running) {
-                try {
-                    this.writeFrame(this.outboundQueue.take());
-                } catch (final InterruptedException ex) {
-                    // Ignore, check the running state again.
-                } catch (final IOException ex) {
-                    logger.error("I/O exception while writing a frame:", ex);
-                    this.trap();
-                } catch (final Throwable t) {
-                    this.trap(t);
-                }
-            }
-        });
+        // The client has acknowledged the server's settings, so it may use a different table size
+        // from now on.
+        this.hpack.updateMaximumDecodingSize(this.serverSettings.getHeaderTableSize(), false);
+
+        if (upgradedStream != null) {
+            this.dispatchRequest(upgradedStream, this.upgradeHeaders);
+        }
+
+        // From now on, a task writes the frames the outbound scheduler has to offer whenever
+        // there are any.
+        final var writer = this.taskScheduler.register(
+                this::writePending, this.serverSettings.getPingTimeout(), this::writeStalled
+        );
+        this.writer = writer;
+        writer.wake();
+        this.connections.add(this);
 
-        final var in = this.conn.getIn();
         while (this.running) {
             try {
-                this.handleFrame(this.frameReader.read(in));
+                this.handleFrame(
+                        this.frameReader.read(in, this.serverSettings.getMaxFrameSize())
+                );
             } catch (final EOFException ex) {
                 this.running = false;
             } catch (final Throwable t) {
-                this.trap(t);
+                // Reading fails once the connection has been closed on purpose.
+                if (this.running) {
+                    this.trap(t);
+                }
             }
         }
 
-        writerFuture.cancel(true);
+        for (final var stream : this.streams.removeAll()) {
+            stream.getRequestBody().abort(new EOFException("Connection closed"));
+        }
+
+        this.dispatchQueue.close();
+        this.outbound.close();
+        writer.cancel();
+        this.connections.remove(this);
         return null;
     }
 
@@ -280,47 +505,148 @@ public class Http2Protocol implements Protocol {
      * @throws Throwable if any error occurs
      */
     private void handleFrame(final Frame frame) throws Throwable {
-        this.frameHandlers[frame.getType().getValue()].handle(frame);
+        try {
+            if (this.continuedStream != null && frame.getType() != FrameType.CONTINUATION) {
+                throw new Http2ProtocolError(
+                        "Header block on stream " + this.continuedStream.getId() + " interrupted"
+                );
+            }
+
+            this.frameHandlers[frame.getType().getValue()].handle(frame);
+        } finally {
+            frame.release();
+        }
     }
 
     /**
      * Processes a DATA frame.
      *
-     * @param frame the frame
+     * The payload is queued on the stream's request body without blocking. The receive windows
+     * bound how much data the client may send before the application has read it, so data
+     * beyond them is a flow-control error.
      *
-     * @throws IOException if the payload cannot be forwarded to the running request
+     * @param frame the frame
      *
-     * @throws Throwable if any error occurs
+     * @throws Http2FlowControlError if the frame exceeds a receive window
      */
-    private void handleData(final Frame frame) throws Throwable {
+    private void handleData(final Frame frame) {
         assert frame instanceof DataFrame : "Non-DATA frame passed to handleData";
 
         final var streamId = frame.getStreamId();
+        final var data = (DataFrame) frame;
+        final var flowControlled = data.getFlowControlledLength();
+        if (!this.globalWindow.shrinkLocal(flowControlled)) {
+            throw new Http2FlowControlError("DATA frame exceeds the connection receive window");
+        }
+        this.pings.received(flowControlled);
+        this.probeBandwidth();
+
         final var stream = this.streams.get(streamId);
-        if (stream == null) {
-            throw new Http2ProtocolError("Unknown or closed stream identifier " + streamId);
+        if (stream == null || !stream.isRemoteOpen()) {
+            this.discardData(streamId, stream, flowControlled);
+            return;
         }
 
-        final var bytes = ((DataFrame) frame).getBytes();
-        final var out = stream.getRequestPipe().getOut();
-        out.write(bytes);
+        if (!stream.getWindow().shrinkLocal(flowControlled)) {
+            throw new Http2FlowControlError(
+                    "DATA frame exceeds the receive window of stream " + streamId
+            );
+        }
 
-        stream.addBytesReceived(bytes.length);
+        final var length = data.getPayloadLength();
+        final var body = stream.getRequestBody();
+        body.offer(data);
+        stream.addBytesReceived(length);
 
-        if (frame.getFlags().contains(FrameFlag.END_STREAM) || stream.hasReceivedAllBytes()) {
-            out.close();
-            this.streams.remove(streamId);
+        // Padding is never read by the application, so it is consumed right away.
+        if (flowControlled > length) {
+            this.handleConsumed(stream, flowControlled - length);
         }
 
-        this.enqueueOutbound(
-                new WindowUpdateFrame(0, frame.getPayloadLength()),
-                new WindowUpdateFrame(streamId, frame.getPayloadLength())
-        );
+        if (frame.getFlags().contains(FrameFlag.END_STREAM)) {
+            body.finish();
+            if (stream.closeRemote()) {
+                this.streams.remove(streamId);
+            }
+        } else if (stream.hasReceivedAllBytes()) {
+            body.finish();
+        }
+    }
+
+    /**
+     * Discards DATA sent on a stream the client may not send data on.
+     *
+     * The client may not have learned that the stream was closed or refused yet, so the data is
+     * ignored after giving its credit back to the connection. Data on a stream the client has
+     * ended itself is a stream error.
+     *
+     * @param streamId the identifier of the stream
+     * @param stream the stream, or {@code null} if it is closed
+     * @param flowControlled the flow-controlled length of the data
+     */
+    private void discardData(final int streamId, final Stream stream, final int flowControlled) {
+        if (this.streams.getState(streamId) == StreamState.IDLE) {
+            throw new Http2ProtocolError("DATA frame on idle stream " + streamId);
+        }
+
+        final var increment = this.globalWindow.topOffLocal(flowControlled);
+        if (increment > 0) {
+            this.enqueueOutbound(new WindowUpdateFrame(0, increment));
+        }
+
+        if (stream != null) {
+            this.resetStream(stream, ErrorCode.STREAM_CLOSED);
+        }
+    }
+
+    /**
+     * Resets a stream on the server's initiative.
+     *
+     * @param stream the stream
+     * @param errorCode the reason for resetting the stream
+     */
+    private void resetStream(final Stream stream, final ErrorCode errorCode) {
+        final var id = stream.getId();
+        logger.debug("Resetting stream {}: {}", id, errorCode);
+
+        this.streams.remove(id);
+        this.outbound.cancel(id);
+        stream.close();
+        this.enqueueOutbound(new RstStreamFrame(id, errorCode));
+    }
+
+    /**
+     * Opens the receive windows up again after the application has consumed request data.
+     *
+     * This is called by the thread reading the request body. Consumption is only announced once
+     * enough has accumulated, and the stream's window is only updated as long as the client may
+     * still send data on it.
+     *
+     * @param stream the stream the data was received on
+     * @param bytes the number of octets consumed
+     */
+    private void handleConsumed(final Stream stream, final int bytes) {
+        final var connectionIncrement = this.globalWindow.topOffLocal(bytes);
+        if (connectionIncrement > 0) {
+            this.enqueueOutbound(new WindowUpdateFrame(0, connectionIncrement));
+        }
+
+        if (!stream.getRequestBody().isRemoteOpen()) {
+            return;
+        }
+
+        final var streamIncrement = stream.getWindow().topOffLocal(bytes);
+        if (streamIncrement > 0) {
+            this.enqueueOutbound(new WindowUpdateFrame(stream.getId(), streamIncrement));
+        }
     }
 
     /**
      * Processes a HEADERS frame.
      *
+     * A stream beyond the advertised maximum of concurrent streams is refused. Its header block
+     * is still decoded once complete, as it affects the state of the connection's HPACK decoder.
+     *
      * @param frame the frame
      */
     private void handleHeaders(final Frame frame) {
@@ -328,15 +654,30 @@ public class Http2Protocol implements Protocol {
         final var headersFrame = (HeadersFrame) frame;
 
         final var streamId = frame.getStreamId();
-        if (this.streams.containsKey(streamId)) {
-            throw new Http2ProtocolError("Stream identifier " + streamId + " is already in use");
+        if (streamId % 2 == 0) {
+            throw new Http2ProtocolError("Clients cannot open stream " + streamId);
+        }
+        if (this.streams.getState(streamId) != StreamState.IDLE) {
+            throw new Http2ProtocolError("Stream identifier " + streamId + " has been used");
         }
 
         final var stream = new Stream(
-                streamId, (int) this.initialRemoteWindowSize, INITIAL_WINDOW_SIZE
+                streamId,
+                this.initialLocalWindowSize,
+                (int) this.initialRemoteWindowSize,
+                this::handleConsumed
         );
-        stream.addHeaderBytes(headersFrame.getHeaderBlock());
-        this.streams.put(streamId, stream);
+        this.headerBlockSize = 0;
+        this.addHeaderFragment(stream, headersFrame.getHeaderBlock());
+        if (this.streams.add(stream, this.serverSettings.getMaxConcurrentStreams())) {
+            this.outbound.open(streamId, stream.getWindow());
+            this.countRequest();
+
+            if (frame.getFlags().contains(FrameFlag.END_STREAM)) {
+                stream.getRequestBody().finish();
+                stream.closeRemote();
+            }
+        }
 
         final var priority = headersFrame.getPriorityFrame();
         if (priority != null) {
@@ -345,12 +686,17 @@ public class Http2Protocol implements Protocol {
 
         if (frame.getFlags().contains(FrameFlag.END_HEADERS)) {
             this.handleRequest(stream);
+        } else {
+            this.continuedStream = stream;
         }
     }
 
     /**
      * Handles a PRIORITY frame.
      *
+     * The server advertises that it does not use the RFC 7540 priority scheme, so these are
+     * ignored in favour of extensible priorities.
+     *
      * @param frame the frame
      */
     private void handlePriority(final Frame frame) {
@@ -358,51 +704,154 @@ public class Http2Protocol implements Protocol {
     }
 
     /**
-     * Handles an RST_STREAM frame.
+     * Handles a PRIORITY_UPDATE frame.
      *
      * @param frame the frame
+     */
+    private void handlePriorityUpdate(final Frame frame) {
+        assert frame instanceof PriorityUpdateFrame
+                : "Non-PRIORITY_UPDATE frame passed to handlePriorityUpdate";
+        final var update = (PriorityUpdateFrame) frame;
+
+        final var streamId = update.getPrioritizedStreamId();
+        if (streamId == 0 || streamId % 2 == 0) {
+            throw new Http2ProtocolError("PRIORITY_UPDATE for invalid stream " + streamId);
+        }
+
+        this.outbound.prioritize(streamId, Priority.parse(update.getFieldValue()));
+    }
+
+    /**
+     * Handles an RST_STREAM frame.
      *
-     * @throws IOException if an I/O error occurs
+     * @param frame the frame
      */
-    private void handleRstStream(final Frame frame) throws IOException {
+    private void handleRstStream(final Frame frame) {
         assert frame instanceof RstStreamFrame : "Non-RST_STREAM frame passed to handleRstStream";
 
         final var id = frame.getStreamId();
+        if (this.streams.getState(id) == StreamState.IDLE) {
+            throw new Http2ProtocolError("RST_STREAM frame on idle stream " + id);
+        }
+
         final var rst = (RstStreamFrame) frame;
         logger.debug("Client closed stream {}: {}", id, rst.getErrorCode());
 
-        final var stream = this.streams.get(id);
-        this.streams.remove(id);
+        final var stream = this.streams.remove(id);
+        this.outbound.cancel(id);
 
-        stream.close();
+        if (stream != null) {
+            stream.close();
+        }
     }
 
     /**
      * Processes a SETTINGS frame.
      *
+     * Settings sent by the client are acknowledged once they have been applied.
+     *
      * @param frame the frame
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.3">RFC 7540 Section 6.5.3</a>
      */
     private void handleSettings(final Frame frame) {
         assert frame instanceof SettingsFrame : "Non-SETTINGS frame passed to handleSettings";
+        final var settings = (SettingsFrame) frame;
 
-        for (final var setting : ((SettingsFrame) frame).getSettings()) {
-            switch (setting.getIdentifier()) {
-                case HEADER_TABLE_SIZE:
-                    this.hpack.updateMaximumEncodingSize((int) setting.getValue(), true);
-                    break;
-                case INITIAL_WINDOW_SIZE:
-                    this.initialRemoteWindowSize = setting.getValue();
-                    break;
-                case MAX_FRAME_SIZE:
-                    this.maxFrameSize = setting.getValue();
-                    break;
-                default:
-                    logger.warn("Ignoring setting {} with value {}",
-                        setting.getIdentifier(), setting.getValue()
-                    );
-                    break;
-            }
+        if (settings.isAcknowledgement()) {
+            return;
+        }
+
+        this.applySettings(settings);
+        this.enqueueOutbound(SettingsFrame.ACK);
+    }
+
+    /**
+     * Applies the settings in a SETTINGS frame.
+     *
+     * @param frame the frame
+     */
+    private void applySettings(final SettingsFrame frame) {
+        for (final var setting : frame.getSettings()) {
+            this.applySetting(setting);
+        }
+    }
+
+    /**
+     * Applies a single setting sent by the client.
+     *
+     * @param setting the setting
+     */
+    private void applySetting(final Setting setting) {
+        switch (setting.getIdentifier()) {
+            case HEADER_TABLE_SIZE:
+                this.hpack.updateMaximumEncodingSize(
+                        (int) Math.min(
+                                setting.getValue(), this.serverSettings.getHeaderTableSize()
+                        ),
+                        true
+                );
+                break;
+            case ENABLE_PUSH:
+                if (setting.getValue() > 1) {
+                    throw new Http2ProtocolError("Invalid push setting " + setting.getValue());
+                }
+
+                this.remotePushEnabled = setting.getValue() == 1;
+                break;
+            case MAX_CONCURRENT_STREAMS:
+                this.maxRemoteConcurrentStreams = setting.getValue();
+                break;
+            case INITIAL_WINDOW_SIZE:
+                this.applyInitialWindowSize(setting.getValue());
+                break;
+            case MAX_FRAME_SIZE:
+                this.applyMaxFrameSize(setting.getValue());
+                break;
+            case MAX_HEADER_LIST_SIZE:
+                this.maxRemoteHeaderListSize = setting.getValue();
+                break;
+            case NO_RFC7540_PRIORITIES:
+                // Only extensible priorities are used in either case.
+                break;
+            default:
+                logger.warn("Ignoring setting {} with value {}",
+                    setting.getIdentifier(), setting.getValue()
+                );
+                break;
+        }
+    }
+
+    /**
+     * Applies a new initial window size for the streams the server sends on.
+     *
+     * @param size the window size
+     *
+     * @throws Http2FlowControlError if the size is too large
+     */
+    private void applyInitialWindowSize(final long size) {
+        if (size > Window.MAX_SIZE) {
+            throw new Http2FlowControlError("Initial window size exceeds maximum");
+        }
+
+        this.outbound.adjustInitialWindow(size - this.initialRemoteWindowSize);
+        this.initialRemoteWindowSize = size;
+    }
+
+    /**
+     * Applies a new maximum size for the frames the server sends.
+     *
+     * @param size the maximum frame size
+     *
+     * @throws Http2ProtocolError if the size is out of range
+     */
+    private void applyMaxFrameSize(final long size) {
+        if (size < INITIAL_MAX_FRAME_SIZE || size > MAX_MAX_FRAME_SIZE) {
+            throw new Http2ProtocolError("Invalid maximum frame size");
         }
+
+        this.maxFrameSize = size;
+        this.outbound.setMaxFrameSize((int) this.maxFrameSize);
     }
 
     /**
@@ -423,15 +872,12 @@ public class Http2Protocol implements Protocol {
      * Processes a PING frame.
      *
      * @param frame the frame
-     *
-     * @throws InterruptedException if the outbound queue was full and the thread was
-     *      interrupted while waiting for space in the queue
      */
-    private void handlePing(final Frame frame) throws InterruptedException {
+    private void handlePing(final Frame frame) {
         assert frame instanceof PingFrame : "Non-PING frame passed to handlePing";
 
         if (frame.getFlags().contains(FrameFlag.ACK)) {
-            logger.debug("Received PING acknowledgement");
+            this.handlePingAck(((PingFrame) frame).getPayload());
             return;
         }
 
@@ -441,48 +887,206 @@ public class Http2Protocol implements Protocol {
     }
 
     /**
-     * Handles a GOAWAY frame.
+     * Processes the acknowledgement of a PING the server sent.
      *
-     * @param frame the frame
+     * If the client sent at least two thirds of the stream window's worth of data while the PING
+     * was underway, the window rather than the network limits how fast the client can upload.
+     * The receive windows are then doubled relative to the data received, up to the configured
+     * maximum, the same way gRPC sizes its windows from BDP pings.
      *
-     * @throws IOException if an I/O error occurs while closing the connection
+     * @param payload the payload of the acknowledgement
      */
-    private void handleGoAway(final Frame frame) throws IOException {
-        assert frame instanceof GoAwayFrame : "Non-GOAWAY frame passed to handleGoAway";
-
-        final var goaway = (GoAwayFrame) frame;
-        final var errorCode = goaway.getErrorCode();
-        if (errorCode != ErrorCode.NO_ERROR) {
-            logger.error("Client closed connection with an error: {}", errorCode);
+    private void handlePingAck(final byte[] payload) {
+        final var received = this.pings.acknowledge(payload, System.nanoTime());
+        if (received < 0) {
+            logger.debug("Ignoring unsolicited PING acknowledgement");
+            return;
+        }
 
-            final var debug = goaway.getDebugData();
-            if (debug.length > 0) {
-                logger.debug("Debug data: {}", new String(debug, StandardCharsets.UTF_8));
-            }
+        logger.debug("Round-trip time to {} is {} µs",
+                this.conn.getAddress(), this.pings.getRoundTripTime() / 1000
+        );
+        if (this.drainPhase == DrainPhase.ANNOUNCED) {
+            this.continueDrain();
         }
 
-        this.conn.getIn().close();
+        final var current = this.initialLocalWindowSize;
+        final var max = this.serverSettings.getMaxWindowSize();
+        if (current < max && received * 3 >= current * 2L) {
+            this.growReceiveWindows((int) Math.min(max, received * 2));
+        }
     }
 
     /**
-     * Processes an incoming WINDOW_UPDATE frame.
-     *
-     * @param frame the frame
+     * Counts a request the client opened a stream for, draining the connection once it has
+     * carried as many as it may.
      */
-    private void handleWindowUpdate(final Frame frame) {
+    private void countRequest() {
+        final var max = this.serverSettings.getMaxConnectionRequests();
+        this.requestCount += 1;
+        if (max > 0 && this.requestCount >= max) {
+            logger.debug("Connection to {} reached its request limit", this.conn.getAddress());
+            this.drain();
+        }
+    }
+
+    /**
+     * Starts draining the connection, unless it is draining already.
+     * <p>
+     * The server first sends a GOAWAY frame naming the highest possible stream identifier, so
+     * the client stops opening streams without any of the streams it is opening right now being
+     * lost. Once a PING sent after that frame has been acknowledged, every stream the client
+     * opened before learning of the GOAWAY has arrived. A second GOAWAY frame then names the last
+     * stream the server processes, and any later stream is refused. The remaining streams may
+     * finish until the drain timeout passes, after which the connection is closed.
+     * <p>
+     * The client is given the ping timeout to acknowledge the PING. If it does not, the second
+     * GOAWAY frame is sent regardless.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.8">RFC 7540 Section 6.8</a>
+     */
+    public void drain() {
+        synchronized (this.drainLock) {
+            if (this.drainPhase != DrainPhase.NONE) {
+                return;
+            }
+
+            logger.debug("Draining connection to {}", this.conn.getAddress());
+            this.enqueueOutbound(
+                    new GoAwayFrame(Integer.MAX_VALUE, ErrorCode.NO_ERROR, new byte[0])
+            );
+
+            final var now = System.nanoTime();
+            this.drainAnnouncedAt = now;
+            this.drainPing = this.pings.getSentCount();
+            this.drainPhase = DrainPhase.ANNOUNCED;
+
+            final var ping = this.pings.start(now);
+            if (ping != null) {
+                this.enqueueOutbound(ping);
+            }
+        }
+    }
+
+    /**
+     * Moves on to the second GOAWAY frame if the PING sent after the first one has been
+     * acknowledged, or sends that PING if only an earlier one was outstanding.
+     */
+    private void continueDrain() {
+        if (this.pings.isAcknowledged(this.drainPing)) {
+            this.finishDrain();
+            return;
+        }
+
+        final var ping = this.pings.start(System.nanoTime());
+        if (ping != null) {
+            this.enqueueOutbound(ping);
+        }
+    }
+
+    /**
+     * Sends the GOAWAY frame naming the last stream the server processes, and stops accepting
+     * streams from the client.
+     */
+    private void finishDrain() {
+        synchronized (this.drainLock) {
+            if (this.drainPhase != DrainPhase.ANNOUNCED) {
+                return;
+            }
+
+            final var lastStreamId = this.streams.refuseClientStreams();
+            this.enqueueOutbound(new GoAwayFrame(lastStreamId, ErrorCode.NO_ERROR, new byte[0]));
+            logger.debug("Closing connection to {} after stream {}",
+                    this.conn.getAddress(), lastStreamId
+            );
+
+            this.drainDeadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(this.serverSettings.getDrainTimeout());
+            this.drainPhase = DrainPhase.CLOSING;
+        }
+    }
+
+    /**
+     * Sends a PING to sample the bandwidth-delay product while data is coming in.
+     *
+     * Nothing is sent if a PING is outstanding already or if the receive windows are as large as
+     * they may become.
+     */
+    private void probeBandwidth() {
+        if (this.initialLocalWindowSize >= this.serverSettings.getMaxWindowSize()
+                || this.pings.isOutstanding()) {
+            return;
+        }
+
+        final var ping = this.pings.start(System.nanoTime());
+        if (ping != null) {
+            this.enqueueOutbound(ping);
+        }
+    }
+
+    /**
+     * Grows the receive windows of the connection and its streams.
+     *
+     * The new stream window is announced as the initial window size, which the client applies
+     * to all of its streams, including those that are already open. The connection window grows
+     * along if it is smaller.
+     *
+     * @param size the new receive window size
+     */
+    private void growReceiveWindows(final int size) {
+        logger.debug("Growing receive windows of {} to {} octets", this.conn.getAddress(), size);
+
+        final var delta = size - this.initialLocalWindowSize;
+        this.initialLocalWindowSize = size;
+        this.enqueueOutbound(new SettingsFrame(List.of(
+                new Setting(SettingIdentifier.INITIAL_WINDOW_SIZE, size)
+        )));
+        this.streams.forEach(stream -> {
+            final var window = stream.getWindow();
+            window.growLocal(window.getLocalSize() + delta);
+        });
+
+        if (size > this.globalWindow.getLocalSize()) {
+            this.enqueueOutbound(new WindowUpdateFrame(0, this.globalWindow.growLocal(size)));
+        }
+    }
+
+    /**
+     * Handles a GOAWAY frame.
+     *
+     * @param frame the frame
+     *
+     * @throws IOException if an I/O error occurs while closing the connection
+     */
+    private void handleGoAway(final Frame frame) throws IOException {
+        assert frame instanceof GoAwayFrame : "Non-GOAWAY frame passed to handleGoAway";
+
+        final var goaway = (GoAwayFrame) frame;
+        final var errorCode = goaway.getErrorCode();
+        if (errorCode != ErrorCode.NO_ERROR) {
+            logger.error("Client closed connection with an error: {}", errorCode);
+
+            final var debug = goaway.getDebugData();
+            if (debug.length > 0) {
+                logger.debug("Debug data: {}", new String(debug, StandardCharsets.UTF_8));
+            }
+        }
+
+        this.conn.getIn().close();
+    }
+
+    /**
+     * Processes an incoming WINDOW_UPDATE frame.
+     *
+     * @param frame the frame
+     */
+    private void handleWindowUpdate(final Frame frame) {
         assert frame instanceof WindowUpdateFrame
                 : "Non-WINDOW_UPDATE frame passed to handleWindowUpdate";
 
         final var update = (WindowUpdateFrame) frame;
 
-        if (frame.getStreamId() == 0) {
-            this.globalWindow.topOffRemote((int) update.getIncrement());
-        } else {
-            final var stream = this.streams.get(frame.getStreamId());
-            if (stream != null) {
-                stream.getWindow().topOffRemote((int) update.getIncrement());
-            }
-        }
+        this.outbound.windowUpdate(frame.getStreamId(), update.getIncrement());
     }
 
     /**
@@ -494,26 +1098,124 @@ public class Http2Protocol implements Protocol {
         assert frame instanceof ContinuationFrame
             : "Non-CONTINUATION frame passed to handleContinuation";
 
-        final var stream = this.streams.get(frame.getStreamId());
-        if (stream == null) {
-            throw new Http2ProtocolError("No stream with identifier " + frame.getStreamId());
+        final var stream = this.continuedStream;
+        if (stream == null || stream.getId() != frame.getStreamId()) {
+            throw new Http2ProtocolError(
+                    "Unexpected CONTINUATION frame on stream " + frame.getStreamId()
+            );
         }
 
-        stream.addHeaderBytes(((ContinuationFrame) frame).getBytes());
+        this.addHeaderFragment(stream, ((ContinuationFrame) frame).getBytes());
 
         if (frame.getFlags().contains(FrameFlag.END_HEADERS)) {
+            this.continuedStream = null;
             this.handleRequest(stream);
         }
     }
 
+    /**
+     * Adds a fragment to the header block of a stream.
+     *
+     * Since the whole block is buffered until it has been received, its size is limited. A
+     * sensible encoder never makes a header list larger on the wire than its size as counted for
+     * the maximum header list size, so any block beyond that limit is rejected outright. Frame
+     * headers are counted as well, so a flood of empty CONTINUATION frames is caught too.
+     *
+     * @param stream the stream whose header block is being received
+     * @param fragment the fragment
+     *
+     * @throws Http2ConnectionError if the header block grows too large
+     */
+    private void addHeaderFragment(final Stream stream, final byte[] fragment) {
+        this.headerBlockSize += FrameOutputBuffer.HEADER_LENGTH + fragment.length;
+        if (this.headerBlockSize > this.serverSettings.getMaxHeaderListSize()) {
+            throw new Http2ConnectionError(
+                    "Header block on stream " + stream.getId() + " is too large"
+            );
+        }
+
+        stream.addHeaderBytes(fragment);
+    }
+
     /**
      * Hands over a complete request to the request handler.
      *
+     * Requests on refused streams are dropped once their headers have been decoded. The decoder
+     * stops collecting header fields once the list grows beyond the maximum header list size.
+     * Malformed requests are rejected by resetting their stream.
+     *
      * @param stream the stream the request is on
      */
     private void handleRequest(final Stream stream) {
-        final var headers = this.hpack.decompress(stream.getHeaderBytes());
+        final var id = stream.getId();
+        final List<Header> headers;
+        try {
+            headers = this.hpack.decompress(
+                    stream.getHeaderBlock(), this.serverSettings.getMaxHeaderListSize()
+            );
+        } catch (final MalformedHeaderException ex) {
+            logger.debug("Malformed request on stream {}: {}", id, ex.getMessage());
+            this.resetStream(stream, ErrorCode.PROTOCOL_ERROR);
+            return;
+        }
+
+        if (this.streams.get(id) != stream) {
+            logger.debug("Refusing stream {}", id);
+            this.enqueueOutbound(new RstStreamFrame(id, ErrorCode.REFUSED_STREAM));
+            return;
+        }
+
+        if (headers == null) {
+            this.rejectOversizedHeaders(stream);
+            return;
+        }
+
+        this.dispatchRequest(stream, headers);
+    }
+
+    /**
+     * Answers a request whose header list is too large.
+     *
+     * @param stream the stream the request is on
+     */
+    private void rejectOversizedHeaders(final Stream stream) {
+        logger.debug("Rejecting oversized header list on stream {}", stream.getId());
+
+        // Any request data is discarded until the client ends the stream.
+        stream.getRequestBody().close();
+        this.sendHeaders(stream.getId(), List.of(new Header(
+                ":status",
+                String.valueOf(ResponseCode.REQUEST_HEADER_FIELDS_TOO_LARGE.getCode())
+        )), true);
+        this.outbound.cancel(stream.getId());
+    }
+
+    /**
+     * Hands over a request with decoded headers to the request handler.
+     *
+     * @param stream the stream the request is on
+     * @param headers the request's header list
+     */
+    private void dispatchRequest(final Stream stream, final List<Header> headers) {
         stream.setHeaders(headers);
+
+        if (getHeaderListSize(headers) > this.serverSettings.getMaxHeaderListSize()) {
+            this.rejectOversizedHeaders(stream);
+            return;
+        }
+
+        final var priority = new StringBuilder();
+        for (final var header : headers) {
+            if (PRIORITY_HEADER.equals(header.getKey())) {
+                for (final var value : header.getValues()) {
+                    priority.append(value).append(',');
+                }
+            }
+        }
+        if (priority.length() > 0) {
+            this.outbound.prioritize(stream.getId(), Priority.parse(priority.toString()));
+        }
+
         stream.associateFuture(this.requestHandler.handleRequest(this, this.conn, stream));
     }
 
@@ -542,19 +1244,14 @@ public class Http2Protocol implements Protocol {
     /**
      * Enqueues frames for transmission.
      *
-     * The frames are sent in the order as supplied, with no other frames in between.
+     * The frames are sent in the order as supplied, with no other frames in between. DATA frames
+     * should be sent using {@link #sendData(int, PooledBuffer, boolean)} instead, so they
+     * respect flow control.
      *
      * @param frames the frames to send
-     *
-     * @throws InterruptedException
-     *      if the queue was full and the thread was interrupted while waiting
      */
-    public void enqueueOutbound(final Frame... frames) throws InterruptedException {
-        synchronized (this.outboundQueue) {
-            for (final var frame : frames) {
-                this.outboundQueue.put(frame);
-            }
-        }
+    public void enqueueOutbound(final Frame... frames) {
+        this.outbound.enqueue(frames);
     }
 
     /**
@@ -563,15 +1260,34 @@ public class Http2Protocol implements Protocol {
      * The frames are sent in the order as supplied, but possibly with other frames in between.
      *
      * @param frames the frames to send
-     *
-     * @throws InterruptedException
-     *      if the queue was full and the thread was interrupted while waiting
      */
-    public void enqueueOutboundLowPriority(final Frame... frames) throws InterruptedException {
+    public void enqueueOutboundLowPriority(final Frame... frames) {
         for (final var frame : frames) {
-            synchronized (this.outboundQueue) {
-                this.outboundQueue.put(frame);
-            }
+            this.outbound.enqueue(frame);
+        }
+    }
+
+    /**
+     * Sends response data on a stream.
+     *
+     * The data is sent as soon as flow control and the priorities of other streams allow. If the
+     * stream already has a lot of data waiting, this function blocks until part of it has been
+     * sent.
+     *
+     * @param streamId the identifier of the stream
+     * @param data the buffer containing the data, of which the protocol takes over the reference,
+     *             or {@code null} if there is no data
+     * @param endStream whether this is the last data on the stream
+     *
+     * @throws IOException if the stream has been closed or reset
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void sendData(final int streamId, final PooledBuffer data, final boolean endStream)
+            throws IOException, InterruptedException {
+        this.outbound.submit(streamId, data, endStream);
+
+        if (endStream) {
+            this.closeLocal(streamId);
         }
     }
 
@@ -583,78 +1299,399 @@ public class Http2Protocol implements Protocol {
      *
      * @param streamId the identifier of the stream the headers are for
      * @param headers the headers to send
+     */
+    public void sendHeaders(final int streamId, final List<Header> headers) {
+        this.sendHeaders(streamId, headers, false);
+    }
+
+    /**
+     * Sends the list of response headers to the client, possibly ending the stream.
+     *
+     * The header block is split into frames no larger than the client's maximum frame size.
+     *
+     * @param streamId the identifier of the stream the headers are for
+     * @param headers the headers to send
+     * @param endStream whether the headers are the entire response
+     */
+    public void sendHeaders(final int streamId, final List<Header> headers,
+                            final boolean endStream) {
+        if (getHeaderListSize(headers) > this.maxRemoteHeaderListSize) {
+            logger.warn("Response headers on stream {} exceed the client's limit of {} octets",
+                    streamId, this.maxRemoteHeaderListSize
+            );
+        }
+
+        final var headersFlags = EnumSet.noneOf(FrameFlag.class);
+        if (endStream) {
+            headersFlags.add(FrameFlag.END_STREAM);
+        }
+
+        synchronized (this.hpackLock) {
+            final var block = this.hpack.compress(headers);
+            this.enqueueOutbound(this.splitHeaderBlock(
+                    streamId, block, this.getMaxFrameSize(), (fragment, last) -> {
+                        final var flags = EnumSet.copyOf(headersFlags);
+                        if (last) {
+                            flags.add(FrameFlag.END_HEADERS);
+                        }
+                        return new HeadersFrame(flags, streamId, fragment, null);
+                    }
+            ));
+        }
+
+        if (endStream) {
+            this.closeLocal(streamId);
+        } else if (streamId % 2 == 0) {
+            this.activatePushed(streamId);
+        }
+    }
+
+    /**
+     * Ends the server's side of a stream after the last of its response has been submitted.
+     *
+     * The stream no longer counts towards the concurrency limits once the client has ended its
+     * side as well.
+     *
+     * @param streamId the identifier of the stream
+     */
+    private void closeLocal(final int streamId) {
+        final var stream = this.streams.get(streamId);
+        if (stream != null && stream.closeLocal()) {
+            this.streams.remove(streamId);
+        }
+    }
+
+    /**
+     * Marks a pushed stream as no longer reserved after its response headers have been submitted.
+     *
+     * @param streamId the identifier of the pushed stream
+     */
+    private void activatePushed(final int streamId) {
+        final var stream = this.streams.get(streamId);
+        if (stream != null) {
+            stream.activate();
+        }
+    }
+
+    /**
+     * Sends a PUSH_PROMISE for a pushed stream to the client.
      *
-     * @throws InterruptedException
-     *      if the outbound queue was full and the thread was interrupted while waiting
+     * @param streamId the identifier of the stream the push is associated with
+     * @param promisedStreamId the identifier of the pushed stream
+     * @param headers the header list of the request the server pretends the client sent
      */
-    public void sendHeaders(
-            final int streamId, final List<Header> headers
-    ) throws InterruptedException {
+    private void sendPushPromise(final int streamId, final int promisedStreamId,
+                                 final List<Header> headers) {
         synchronized (this.hpackLock) {
-            synchronized (this.outboundQueue) {
-                final var bytes = this.hpack.compress(headers);
-                final var numFrames = (bytes.length - 1) / MAX_HEADERS_FRAME_BYTES + 1;
-
-                if (numFrames == 1) {
-                    final var frame = new HeadersFrame(
-                            Set.of(FrameFlag.END_HEADERS),
-                            streamId,
-                            bytes,
-                            null
-                    );
-
-                    this.enqueueOutbound(frame);
-                    return;
-                }
+            final var block = this.hpack.compress(headers);
+            this.enqueueOutbound(this.splitHeaderBlock(
+                    streamId, block, this.getMaxFrameSize() - Integer.BYTES,
+                    (fragment, last) -> new PushPromiseFrame(
+                            streamId, last, promisedStreamId, fragment
+                    )
+            ));
+        }
+    }
 
-                final var headerFrames = new Frame[numFrames];
-                headerFrames[0] = new HeadersFrame(
-                        Collections.emptySet(),
-                        streamId,
-                        Arrays.copyOf(bytes, MAX_HEADERS_FRAME_BYTES),
-                        null
-                );
+    /**
+     * Splits a header block into a leading frame followed by as many CONTINUATION frames as the
+     * client's maximum frame size requires.
+     *
+     * @param streamId the identifier of the stream the block is sent on
+     * @param block the encoded header block
+     * @param firstCapacity the number of octets of the block the leading frame can carry
+     * @param leader the function creating the leading frame from its fragment and whether the
+     *               fragment ends the block
+     *
+     * @return the frames
+     */
+    private Frame[] splitHeaderBlock(final int streamId, final byte[] block,
+                                     final int firstCapacity,
+                                     final BiFunction<byte[], Boolean, Frame> leader) {
+        final var maxFrameSize = this.getMaxFrameSize();
+        final var firstLength = Math.min(block.length, firstCapacity);
+        final var numContinuations = (block.length - firstLength + maxFrameSize - 1) / maxFrameSize;
+
+        final var frames = new Frame[1 + numContinuations];
+        frames[0] = leader.apply(Arrays.copyOf(block, firstLength), numContinuations == 0);
+
+        var offset = firstLength;
+        for (int i = 1; i < frames.length; ++i) {
+            final var end = Math.min(block.length, offset + maxFrameSize);
+            frames[i] = new ContinuationFrame(
+                    streamId, i + 1 == frames.length, Arrays.copyOfRange(block, offset, end)
+            );
+            offset = end;
+        }
 
-                int bytesProcessed = MAX_HEADERS_FRAME_BYTES;
-                for (int i = 1; i < headerFrames.length; ++i) {
-                    int bytesToSend = Math.min(
-                            bytes.length - bytesProcessed, MAX_HEADERS_FRAME_BYTES
-                    );
-
-                    final var payload = Arrays.copyOfRange(
-                            bytes, bytesProcessed, bytesProcessed + bytesToSend
-                    );
-                    headerFrames[i] = new ContinuationFrame(
-                            streamId, i + 1 == numFrames, payload
-                    );
-                    bytesProcessed += bytesToSend;
-                }
+        return frames;
+    }
+
+    /**
+     * Computes the size of a header list as defined for SETTINGS_MAX_HEADER_LIST_SIZE.
+     *
+     * @param headers the header list
+     *
+     * @return the size in octets
+     */
+    private static long getHeaderListSize(final List<Header> headers) {
+        long size = 0;
+        for (final var header : headers) {
+            for (final var value : header.getValues()) {
+                size += header.getKey().length() + value.length() + HEADER_FIELD_OVERHEAD;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Wakes the task writing frames, if it has been registered yet.
+     */
+    private void wakeWriter() {
+        final var writer = this.writer;
+        if (writer != null) {
+            writer.wake();
+        }
+    }
 
-                this.enqueueOutbound(headerFrames);
+    /**
+     * Writes the frames that are ready to be sent and performs the periodic checks on the
+     * connection.
+     *
+     * This runs on the thread pool whenever the outbound scheduler may have frames to send or a
+     * check is due, and asks to be woken again for the next check.
+     */
+    private void writePending() {
+        if (!this.running) {
+            return;
+        }
+
+        try {
+            this.writeBatch();
+
+            final var delay = this.checkConnection();
+            if (delay > 0) {
+                this.writer.wakeAfter(delay);
             }
+        } catch (final IOException ex) {
+            logger.error("I/O exception while writing a frame:", ex);
+            this.trap();
+        } catch (final RuntimeException ex) {
+            this.trap(ex);
         }
     }
 
     /**
-     * Writes a frame to the output stream of the connection.
+     * Writes all frames that are ready to be sent.
      *
-     * @param frame the frame to write
+     * The frames are collected in the output buffer, which is flushed once the scheduler has no
+     * more frames to offer.
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeFrame(final Frame frame) throws IOException {
-        this.frameWriter.write(frame, this.conn.getOut());
+    private void writeBatch() throws IOException {
+        var frame = this.outbound.poll();
+        if (frame == null) {
+            return;
+        }
+
+        do {
+            try {
+                this.frameWriter.write(frame, this.out, this.getMaxFrameSize());
+            } finally {
+                frame.release();
+            }
+            frame = this.outbound.poll();
+        } while (frame != null);
+
+        this.out.flush();
+    }
+
+    /**
+     * Closes the connection after writing to the client has taken longer than the ping timeout.
+     *
+     * The client has stopped reading, so the write would otherwise hold its thread until TCP gives
+     * up. Closing the connection makes the write fail. This may block as well, so it is left to
+     * the executor.
+     */
+    private void writeStalled() {
+        logger.warn("Closing connection to {}: writing stalled", this.conn.getAddress());
+        try {
+            this.executor.execute(this::trap);
+        } catch (final RejectedExecutionException ex) {
+            logger.warn("Could not close stalled connection to {}", this.conn.getAddress());
+        }
+    }
+
+    /**
+     * Performs the periodic checks on the connection.
+     *
+     * @return the number of milliseconds until the next check, or {@code 0} if no check is due
+     *         or the connection has been trapped
+     */
+    private long checkConnection() {
+        final var now = System.nanoTime();
+        final var keepAlive = this.keepAlive(now);
+        if (!this.running) {
+            return 0;
+        }
+
+        final var drain = this.checkDrain(now);
+        if (keepAlive == 0 || (drain != 0 && drain < keepAlive)) {
+            return drain;
+        }
+
+        return keepAlive;
+    }
+
+    /**
+     * Advances draining the connection as time passes.
+     *
+     * @param now the current time
+     *
+     * @return the number of milliseconds until the next check, or {@code 0} if none is due
+     */
+    private long checkDrain(final long now) {
+        switch (this.drainPhase) {
+            case NONE:
+                return this.checkAge(now);
+            case ANNOUNCED:
+                return this.checkAnnouncedDrain(now);
+            default:
+                return this.checkClosingDrain(now);
+        }
+    }
+
+    /**
+     * Starts draining the connection once it has been open for as long as it may.
+     *
+     * @param now the current time
+     *
+     * @return the number of milliseconds until the next check, or {@code 0} if none is due
+     */
+    private long checkAge(final long now) {
+        final var maxAge =
+                TimeUnit.MILLISECONDS.toNanos(this.serverSettings.getMaxConnectionAge());
+        if (maxAge <= 0) {
+            return 0;
+        }
+
+        final var age = now - this.startedAt;
+        if (age < maxAge) {
+            return TimeUnit.NANOSECONDS.toMillis(maxAge - age) + 1;
+        }
+
+        logger.debug("Connection to {} reached its maximum age", this.conn.getAddress());
+        this.drain();
+        return this.checkAnnouncedDrain(now);
+    }
+
+    /**
+     * Sends the second GOAWAY frame if the client has not acknowledged the PING after the first
+     * one in time.
+     *
+     * @param now the current time
+     *
+     * @return the number of milliseconds until the next check
+     */
+    private long checkAnnouncedDrain(final long now) {
+        final var timeout = TimeUnit.MILLISECONDS.toNanos(this.serverSettings.getPingTimeout());
+        final long since;
+        synchronized (this.drainLock) {
+            since = now - this.drainAnnouncedAt;
+        }
+        if (since < timeout) {
+            return TimeUnit.NANOSECONDS.toMillis(timeout - since) + 1;
+        }
+
+        this.finishDrain();
+        return this.checkClosingDrain(now);
+    }
+
+    /**
+     * Closes the draining connection once all of its streams have finished and their frames have
+     * been written, or once the drain timeout has passed.
+     *
+     * @param now the current time
+     *
+     * @return the number of milliseconds until the next check, or {@code 0} if the connection
+     *         has been trapped
+     */
+    private long checkClosingDrain(final long now) {
+        final long deadline;
+        synchronized (this.drainLock) {
+            deadline = this.drainDeadline;
+        }
+
+        if (now - deadline >= 0) {
+            logger.debug("Abandoning the streams of drained connection to {}",
+                    this.conn.getAddress()
+            );
+        } else if (!this.streams.isEmpty() || !this.outbound.isIdle()) {
+            return DRAIN_POLL_INTERVAL;
+        }
+
+        this.trap();
+        return 0;
+    }
+
+    /**
+     * Checks on the connection with PING frames, unless the checks are disabled.
+     *
+     * A PING is sent right after the handshake and then whenever the ping interval has passed
+     * since the last one. A client that leaves a PING unacknowledged for longer than the ping
+     * timeout is considered gone, and the connection is trapped. This catches dead peers on
+     * connections that would otherwise wait for their next frame indefinitely.
+     *
+     * @param now the current time
+     *
+     * @return the number of milliseconds until the next check, or {@code 0} if the checks are
+     *         disabled or the connection has been trapped
+     */
+    private long keepAlive(final long now) {
+        final var interval = TimeUnit.MILLISECONDS.toNanos(this.serverSettings.getPingInterval());
+        if (interval <= 0) {
+            return 0;
+        }
+
+        final var timeout = TimeUnit.MILLISECONDS.toNanos(this.serverSettings.getPingTimeout());
+        final var since = this.pings.getSinceSent(now);
+
+        final long delay;
+        if (this.pings.isOutstanding()) {
+            if (since >= timeout) {
+                logger.warn("Closing connection to {}: PING not acknowledged in time",
+                        this.conn.getAddress()
+                );
+                this.trap();
+                return 0;
+            }
+            delay = timeout - since;
+        } else if (since >= interval) {
+            final var ping = this.pings.start(now);
+            if (ping != null) {
+                this.enqueueOutbound(ping);
+            }
+            delay = timeout;
+        } else {
+            delay = interval - since;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(delay) + 1;
     }
 
     /**
      * Performs the initial HTTP/2 handshake.
      *
+     * @param in the buffer to read the client's frames from
+     *
      * @return any extra non-SETTINGS frames received while performing the handshake
      *
      * @throws IOException if an I/O error occurs
      * @throws Http2ProtocolError if the handshake fails
      */
-    private List<Frame> handshake() throws IOException {
+    private List<Frame> handshake(final FrameInputBuffer in) throws IOException {
         final var extraFrames = new ArrayList<Frame>();
 
         // Start by writing the server's settings.
@@ -662,18 +1699,42 @@ public class Http2Protocol implements Protocol {
                 new Setting(
                         SettingIdentifier.MAX_CONCURRENT_STREAMS,
                         this.serverSettings.getMaxConcurrentStreams()
-                )
+                ),
+                new Setting(
+                        SettingIdentifier.INITIAL_WINDOW_SIZE, this.initialLocalWindowSize
+                ),
+                new Setting(
+                        SettingIdentifier.MAX_FRAME_SIZE, this.serverSettings.getMaxFrameSize()
+                ),
+                new Setting(
+                        SettingIdentifier.HEADER_TABLE_SIZE,
+                        this.serverSettings.getHeaderTableSize()
+                ),
+                new Setting(
+                        SettingIdentifier.MAX_HEADER_LIST_SIZE,
+                        this.serverSettings.getMaxHeaderListSize()
+                ),
+                new Setting(SettingIdentifier.NO_RFC7540_PRIORITIES, 1)
         ));
         this.frameWriter.write(initSettings, this.conn.getOut());
 
+        // The connection window can only be enlarged by announcing the difference.
+        final var connectionWindowGrowth =
+                this.serverSettings.getConnectionWindowSize() - INITIAL_WINDOW_SIZE;
+        if (connectionWindowGrowth > 0) {
+            this.frameWriter.write(
+                    new WindowUpdateFrame(0, connectionWindowGrowth), this.conn.getOut()
+            );
+        }
+
         // Then wait for the client's preface and settings
-        final var in = this.conn.getIn();
-        final var clientPreface = in.readNBytes(CLIENT_PREFACE.length);
+        final var clientPreface = in.readBytes(CLIENT_PREFACE.length);
         if (!Arrays.equals(clientPreface, CLIENT_PREFACE)) {
             throw new Http2ProtocolError("The client did not send a proper connection prefix");
         }
 
-        final var clientSettings = this.frameReader.read(in);
+        final var maxFrameSize = this.serverSettings.getMaxFrameSize();
+        final var clientSettings = this.frameReader.read(in, maxFrameSize);
         if (clientSettings.getType() != FrameType.SETTINGS) {
             throw new Http2ProtocolError("First frame sent by client is not a settings frame "
                     + "(but " + clientSettings.getType().toString() + " instead)"
@@ -683,7 +1744,7 @@ public class Http2Protocol implements Protocol {
 
         // Finally, await the settings acknowledgement from the client
         while (true) {
-            final var frame = this.frameReader.read(in);
+            final var frame = this.frameReader.read(in, maxFrameSize);
             if (frame.getType() == FrameType.SETTINGS) {
                 final var settingsFrame = (SettingsFrame) frame;
                 if (settingsFrame.isAcknowledgement()) {
@@ -697,6 +1758,201 @@ public class Http2Protocol implements Protocol {
         return extraFrames;
     }
 
+    /**
+     * Takes over a connection that a client upgraded from HTTP/1.1 with {@code Upgrade: h2c}.
+     *
+     * The settings the client sent in its {@code HTTP2-Settings} header are applied as if they
+     * were sent in a SETTINGS frame, and the request that carried the upgrade is answered on
+     * stream 1 once the connection preface has been exchanged. This must be called before the
+     * protocol starts handling the connection; the request must not have a body.
+     *
+     * @param encodedSettings the value of the {@code HTTP2-Settings} header
+     * @param requestHeaders the upgrading request as an HTTP/2 header list
+     *
+     * @throws Http2ConnectionError if the settings are malformed or invalid
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.2">RFC 7540 Section 3.2</a>
+     */
+    public void acceptUpgrade(final String encodedSettings, final List<Header> requestHeaders) {
+        final byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(encodedSettings.trim());
+        } catch (final IllegalArgumentException ex) {
+            throw new Http2ProtocolError("The HTTP2-Settings header is not valid base64url");
+        }
+
+        final var frame = new ByteArrayOutputStream();
+        try (var out = new FrameOutputBuffer(frame)) {
+            out.writeHeader(payload.length, FrameType.SETTINGS.getValue(), (byte) 0, 0);
+            out.write(payload);
+            out.flush();
+            // The 101 response acknowledges these settings implicitly.
+            this.applySettings((SettingsFrame) this.frameReader.read(
+                    new FrameInputBuffer(new ByteArrayInputStream(frame.toByteArray())),
+                    payload.length
+            ));
+        } catch (final IOException ex) {
+            throw new Http2ProtocolError("The HTTP2-Settings header is truncated");
+        }
+
+        this.upgradeHeaders = requestHeaders;
+    }
+
+    /**
+     * Opens the stream answering the request that upgraded the connection, if there was one.
+     *
+     * The client has sent the request in full, so the stream is half-closed on its side.
+     *
+     * @return the stream or {@code null} if the connection was not upgraded
+     */
+    private Stream openUpgradedStream() {
+        if (this.upgradeHeaders == null) {
+            return null;
+        }
+
+        final var stream = new Stream(
+                UPGRADE_STREAM_ID,
+                this.initialLocalWindowSize,
+                (int) this.initialRemoteWindowSize,
+                this::handleConsumed
+        );
+        stream.getRequestBody().finish();
+        stream.closeRemote();
+        this.streams.add(stream, Long.MAX_VALUE);
+        this.outbound.open(UPGRADE_STREAM_ID, stream.getWindow());
+        return stream;
+    }
+
+    /**
+     * Checks whether a cleartext connection starts with the HTTP/2 client connection preface.
+     *
+     * Only as many octets are read as are needed to decide, and all of them are pushed back into
+     * the stream afterwards, so the connection can be handed to either protocol. The stream must
+     * be able to push back at least {@link #CLIENT_PREFACE_LENGTH} octets.
+     *
+     * @param in the stream from the client
+     *
+     * @return {@code true} if the client sent the preface, otherwise {@code false}
+     *
+     * @throws IOException if an I/O error occurs
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.4">RFC 7540 Section 3.4</a>
+     */
+    public static boolean startsWithPreface(final PushbackInputStream in) throws IOException {
+        final var received = new byte[CLIENT_PREFACE.length];
+        var count = 0;
+        var matches = true;
+        while (matches && count < received.length) {
+            final var read = in.read(received, count, received.length - count);
+            if (read < 0) {
+                break;
+            }
+
+            for (int i = count; i < count + read; ++i) {
+                matches &= received[i] == CLIENT_PREFACE[i];
+            }
+            count += read;
+        }
+
+        in.unread(received, 0, count);
+        return matches && count == received.length;
+    }
+
+    /**
+     * Promises a resource on behalf of a client's request and starts generating its response.
+     *
+     * Nothing is pushed if the client has disabled pushes, if the request was itself pushed, if
+     * as many pushed streams as the server and the client allow are already active, or if the
+     * same resource has already been pushed on the connection.
+     *
+     * @param associated the stream of the request the resource accompanies
+     * @param promise the header list of the {@code GET} request the resource answers, which must
+     *                include the {@code :authority} and {@code :path} pseudo-header fields
+     * @param response the response to push, or {@code null} to route the promised request
+     *
+     * @return {@code true} if the resource was promised, {@code false} otherwise
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-8.2">RFC 7540 Section 8.2</a>
+     */
+    public boolean push(final Stream associated, final List<Header> promise,
+                        final Response response) {
+        if (!this.running || !this.remotePushEnabled || associated.getId() % 2 == 0) {
+            return false;
+        }
+
+        final Stream pushed;
+        synchronized (this.pushLock) {
+            final var resource = getPushedResource(promise);
+            if (this.nextPushedStreamId <= 0 || this.pushedResources.contains(resource)) {
+                return false;
+            }
+
+            pushed = new Stream(
+                    this.nextPushedStreamId,
+                    this.initialLocalWindowSize,
+                    (int) this.initialRemoteWindowSize,
+                    this::handleConsumed
+            );
+            final var limit = Math.min(
+                    this.serverSettings.getMaxConcurrentPushes(), this.maxRemoteConcurrentStreams
+            );
+            if (!this.streams.add(pushed, limit)) {
+                return false;
+            }
+
+            this.nextPushedStreamId += 2;
+            this.pushedResources.add(resource);
+
+            pushed.reserve();
+            pushed.getRequestBody().finish();
+            pushed.setHeaders(promise);
+            this.outbound.open(pushed.getId(), pushed.getWindow());
+            this.sendPushPromise(associated.getId(), pushed.getId(), promise);
+        }
+
+        pushed.associateFuture(this.requestHandler.handlePush(this, this.conn, pushed, response));
+        return true;
+    }
+
+    /**
+     * Identifies the resource a push promise is for.
+     *
+     * @param promise the header list of the promised request
+     *
+     * @return the authority and path of the resource
+     */
+    private static String getPushedResource(final List<Header> promise) {
+        final var resource = new StringBuilder();
+        for (final var header : promise) {
+            if (":authority".equals(header.getKey()) || ":path".equals(header.getKey())) {
+                resource.append(header.getFirstValue());
+            }
+        }
+
+        return resource.toString();
+    }
+
+    /**
+     * Runs a task handling a request on the connection, as soon as the connection's quota of
+     * in-flight requests allows.
+     *
+     * @param task the task
+     *
+     * @return the future representing the task
+     */
+    public Future<?> dispatch(final Runnable task) {
+        return this.dispatchQueue.submit(task);
+    }
+
+    /**
+     * Returns the smoothed round-trip time measured with PING frames.
+     *
+     * @return the round-trip time in nanoseconds, or {@code -1} if it has not been measured yet
+     */
+    public long getRoundTripTime() {
+        return this.pings.getRoundTripTime();
+    }
+
     /**
      * Returns the maximum size of the payload for any frame.
      *
@@ -707,12 +1963,24 @@ public class Http2Protocol implements Protocol {
     }
 
     /**
-     * Updates the identifier of the last successfully completed stream.
-     *
-     * @param streamId the identifier
+     * A phase of draining a connection.
      */
-    public void updateLastHandledStream(final int streamId) {
-        this.lastHandledStream.updateAndGet(o -> Math.max(o, streamId));
+    private enum DrainPhase {
+        /**
+         * The connection is not draining.
+         */
+        NONE,
+
+        /**
+         * The first GOAWAY frame has been sent, and the server waits for the PING after it to be
+         * acknowledged.
+         */
+        ANNOUNCED,
+
+        /**
+         * The final GOAWAY frame has been sent, and the server waits for the remaining streams.
+         */
+        CLOSING
     }
 
     /**
@@ -2,6 +2,10 @@ package net.wukl.cacofony.http2;
 
 import net.wukl.cacofony.http2.frame.FrameReader;
 import net.wukl.cacofony.http2.frame.FrameWriter;
+import net.wukl.cacofony.http2.hpack.Hpack;
+import net.wukl.cacofony.http2.hpack.HpackEncoderMetrics;
+import net.wukl.cacofony.http2.hpack.HpackEncodingPolicy;
+import net.wukl.cacofony.http2.hpack.huffman.Huffman;
 import net.wukl.cacofony.server.Connection;
 import net.wukl.cacofony.server.ServerSettings;
 import net.wukl.cacofony.server.protocol.ProtocolFactory;
@@ -32,31 +36,72 @@ public class Http2ProtocolFactory implements ProtocolFactory<Http2Protocol> {
      */
     private final ExecutorService executor;
 
+    /**
+     * The scheduler running the tasks of all protocol instances.
+     */
+    private final Http2TaskScheduler taskScheduler;
+
+    /**
+     * The registry of the open connections of all protocol instances.
+     */
+    private final Http2ConnectionRegistry connections;
+
     /**
      * The server settings used by protocol instances.
      */
     private final ServerSettings serverSettings;
 
+    /**
+     * The policy deciding how protocol instances encode header fields.
+     */
+    private final HpackEncodingPolicy hpackPolicy;
+
+    /**
+     * The metrics shared by the header encoders of all protocol instances.
+     */
+    private final HpackEncoderMetrics hpackMetrics;
+
     /**
      * Creates a new HTTP/2 protocol factory.
      * @param frameReader the frame reader used by protocol instances
      * @param frameWriter the frame writer used by protocol instances
      * @param requestHandler the request handler to use
      * @param executor the thread pool to use
+     * @param taskScheduler the scheduler running the tasks of all protocol instances
+     * @param connections the registry of the open connections of all protocol instances
      * @param serverSettings the server settings used by protocol instances
+     * @param hpackPolicy the policy deciding how protocol instances encode header fields
+     * @param hpackMetrics the metrics shared by the header encoders of all protocol instances
      */
     public Http2ProtocolFactory(
             final FrameReader frameReader,
             final FrameWriter frameWriter,
             final Http2RequestHandler requestHandler,
             final ExecutorService executor,
-            final ServerSettings serverSettings
+            final Http2TaskScheduler taskScheduler,
+            final Http2ConnectionRegistry connections,
+            final ServerSettings serverSettings,
+            final HpackEncodingPolicy hpackPolicy,
+            final HpackEncoderMetrics hpackMetrics
     ) {
         this.frameReader = frameReader;
         this.frameWriter = frameWriter;
         this.requestHandler = requestHandler;
         this.executor = executor;
+        this.taskScheduler = taskScheduler;
+        this.connections = connections;
         this.serverSettings = serverSettings;
+        this.hpackPolicy = hpackPolicy;
+        this.hpackMetrics = hpackMetrics;
+    }
+
+    /**
+     * Returns the metrics shared by the header encoders of all protocol instances.
+     *
+     * @return the metrics
+     */
+    public HpackEncoderMetrics getHpackMetrics() {
+        return this.hpackMetrics;
     }
 
     /**
@@ -75,7 +120,10 @@ public class Http2ProtocolFactory implements ProtocolFactory<Http2Protocol> {
                 this.frameWriter,
                 this.requestHandler,
                 this.executor,
+                this.taskScheduler,
+                this.connections,
                 this.serverSettings,
+                new Hpack(new Huffman(), this.hpackPolicy, this.hpackMetrics),
                 conn
         );
     }
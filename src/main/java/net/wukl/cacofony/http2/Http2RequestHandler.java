@@ -4,14 +4,15 @@ import net.wukl.cacofony.http.exception.SilentException;
 import net.wukl.cacofony.http.request.Header;
 import net.wukl.cacofony.http.request.Method;
 import net.wukl.cacofony.http.request.MutableRequest;
+import net.wukl.cacofony.http.response.Response;
 import net.wukl.cacofony.http2.stream.Stream;
 import net.wukl.cacofony.server.Connection;
+import net.wukl.cacofony.server.ServerSettings;
 import net.wukl.cacofony.server.host.HostMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 /**
@@ -26,36 +27,37 @@ public class Http2RequestHandler {
     private final HostMap hosts;
 
     /**
-     * The thread pool to schedule requests on.
+     * The HTTP/2 response writer.
      */
-    private final ExecutorService executor;
+    private final Http2ResponseWriter writer;
 
     /**
-     * The HTTP/2 response writer.
+     * The server settings.
      */
-    private final Http2ResponseWriter writer;
+    private final ServerSettings settings;
 
     /**
      * Creates a new HTTP/2 request handler.
      *
      * @param hosts the hosts the server is authoritative for
-     * @param executor the thread pool to schedule requests on
      * @param writer the HTTP/2 response writer
+     * @param settings the server settings
      */
     public Http2RequestHandler(
             final HostMap hosts,
-            final ExecutorService executor,
-            final Http2ResponseWriter writer
+            final Http2ResponseWriter writer,
+            final ServerSettings settings
     ) {
         this.hosts = hosts;
-        this.executor = executor;
         this.writer = writer;
+        this.settings = settings;
     }
 
     /**
      * Handles a request.
      *
-     * The requests are run in a separate thread, run in the {@link #executor},
+     * The request is run on the thread pool once the connection's quota of in-flight requests
+     * allows.
      *
      * @param protocol the protocol instance the request was sent on
      * @param conn the connection the protocol instance is associated with
@@ -66,50 +68,105 @@ public class Http2RequestHandler {
     public Future<?> handleRequest(
             final Http2Protocol protocol, final Connection conn, final Stream stream
     ) {
-        return this.executor.submit(() -> {
-            try {
-                final var headers = new HashMap<String, Header>();
-                stream.getHeaders().forEach(h -> headers.put(h.getKey(), h));
-
-                final var request = new MutableRequest(
-                        Method.get(headers.get(":method").getFirstValue()),
-                        headers.get(":path").getFirstValue(),
-                        2, 0
-                );
-                request.setScheme(headers.get(":scheme").getFirstValue());
-                request.adoptHeaders(stream.getHeaders());
-                request.setRemote(conn.getAddress());
-                request.setBody(stream.getRequestPipe().getIn());
-
-                final var contentLengthStr = request.getHeader("Content-Length");
-                if (contentLengthStr != null) {
-                    final var contentLength = Long.parseLong(contentLengthStr);
-                    stream.setContentLength(contentLength);
-                    if (contentLength == 0) {
-                        stream.getRequestPipe().getOut().close();
-                    }
-                }
-
-                final var host = this.hosts.get(request.getHost());
-                final var response = host.handle(request);
-
-                logger.info("{} \"{} {} HTTP/2\" {} {}",
-                        conn.getAddress(),
-                        request.getMethod(),
-                        request.getRawPath(),
-                        response.getStatus().getCode(),
-                        response.getContentLength()
-                );
-
-                protocol.updateLastHandledStream(stream.getId());
-
-                this.writer.write(protocol, stream, response);
-            } catch (final SilentException ex) {
-                logger.warn("Server closed connection: {}", ex.getMessage());
-                protocol.trap();
-            } catch (final Throwable t) {
-                protocol.trap(t);
+        return protocol.dispatch(() -> this.serve(protocol, conn, stream, null));
+    }
+
+    /**
+     * Handles the promised request of a pushed stream.
+     *
+     * Pushes count towards the connection's quota of in-flight requests like any other request.
+     *
+     * @param protocol the protocol instance the stream was pushed on
+     * @param conn the connection the protocol instance is associated with
+     * @param stream the pushed stream, carrying the promised request's headers
+     * @param response the response to push, or {@code null} to route the promised request
+     *
+     * @return the future representing the submitted push
+     */
+    public Future<?> handlePush(
+            final Http2Protocol protocol, final Connection conn, final Stream stream,
+            final Response response
+    ) {
+        return protocol.dispatch(() -> this.serve(protocol, conn, stream, response));
+    }
+
+    /**
+     * Generates and writes the response to a request.
+     *
+     * @param protocol the protocol instance the request was sent on
+     * @param conn the connection the protocol instance is associated with
+     * @param stream the stream the request was sent on
+     * @param prepared the pre-rendered response, or {@code null} to route the request
+     */
+    private void serve(
+            final Http2Protocol protocol, final Connection conn, final Stream stream,
+            final Response prepared
+    ) {
+        try {
+            final var serverPush = new Http2ServerPush(
+                    protocol, stream, this.settings.isAutoPushEnabled()
+            );
+            final var request = this.buildRequest(conn, stream);
+            request.setServerPush(serverPush);
+
+            final var host = this.hosts.get(request.getHost());
+            final Response response;
+            if (prepared == null) {
+                response = host.handle(request);
+            } else {
+                response = prepared;
+                host.getResponsePreparer().prepare(request, response);
             }
-        });
+
+            logger.info("{} \"{} {} HTTP/2\" {} {}",
+                    conn.getAddress(),
+                    request.getMethod(),
+                    request.getRawPath(),
+                    response.getStatus().getCode(),
+                    response.getContentLength()
+            );
+
+            serverPush.pushPreloads(response);
+            this.writer.write(protocol, stream, response);
+        } catch (final SilentException ex) {
+            logger.warn("Server closed connection: {}", ex.getMessage());
+            protocol.trap();
+        } catch (final Throwable t) {
+            protocol.trap(t);
+        }
+    }
+
+    /**
+     * Builds the request sent on a stream.
+     *
+     * @param conn the connection the stream is on
+     * @param stream the stream
+     *
+     * @return the request
+     */
+    private MutableRequest buildRequest(final Connection conn, final Stream stream) {
+        final var headers = new HashMap<String, Header>();
+        stream.getHeaders().forEach(h -> headers.put(h.getKey(), h));
+
+        final var request = new MutableRequest(
+                Method.get(headers.get(":method").getFirstValue()),
+                headers.get(":path").getFirstValue(),
+                2, 0
+        );
+        request.setScheme(headers.get(":scheme").getFirstValue());
+        request.adoptHeaders(stream.getHeaders());
+        request.setRemote(conn.getAddress());
+        request.setBody(stream.getRequestBody());
+
+        final var contentLengthStr = request.getHeader("Content-Length");
+        if (contentLengthStr != null) {
+            final var contentLength = Long.parseLong(contentLengthStr);
+            stream.setContentLength(contentLength);
+            if (contentLength == 0) {
+                stream.getRequestBody().finish();
+            }
+        }
+
+        return request;
     }
 }
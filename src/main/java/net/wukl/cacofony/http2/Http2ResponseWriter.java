@@ -2,17 +2,12 @@ package net.wukl.cacofony.http2;
 
 import net.wukl.cacofony.http.request.Header;
 import net.wukl.cacofony.http.response.Response;
-import net.wukl.cacofony.http2.frame.DataFrame;
-import net.wukl.cacofony.http2.frame.Frame;
-import net.wukl.cacofony.http2.frame.FrameFlag;
+import net.wukl.cacofony.http2.buffer.BufferPool;
 import net.wukl.cacofony.http2.stream.Stream;
-import net.wukl.cacofony.util.CheckedExceptionTunnel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.stream.Collectors;
 
 /**
@@ -22,9 +17,18 @@ public class Http2ResponseWriter {
     private static final Logger logger = LoggerFactory.getLogger(Http2ResponseWriter.class);
 
     /**
-     * An array containing nothing.
+     * The pool providing the buffers response bodies are collected in.
      */
-    private static final byte[] EMPTY_ARRAY = new byte[0];
+    private final BufferPool bufferPool;
+
+    /**
+     * Creates a new HTTP/2 response writer.
+     *
+     * @param bufferPool the pool providing the buffers response bodies are collected in
+     */
+    public Http2ResponseWriter(final BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
 
     /**
      * Writes the response of an HTTP/2 request to the client.
@@ -40,67 +44,7 @@ public class Http2ResponseWriter {
     ) throws Exception {
         this.writeHeaders(protocol, stream, response);
 
-        final var streamId = stream.getId();
-        final var bodyStream = new OutputStream() {
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public void write(final int i) {
-                this.write(new byte[] {(byte) i}, 0, 1);
-            }
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public void write(final byte[] b, final int off, final int len) {
-                int written = 0;
-                while (written < len) {
-                    final var remainder = len - written;
-                    final var payloadLength = Math.min(remainder, protocol.getMaxFrameSize());
-                    final var payload = new byte[payloadLength];
-                    System.arraycopy(b, off + written, payload, 0, payloadLength);
-
-                    final var frame = new DataFrame(streamId, Collections.emptySet(), payload);
-                    this.sendFrame(frame);
-
-                    written += payloadLength;
-                }
-            }
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public void close() {
-                this.sendFrame(new DataFrame(
-                        streamId, Collections.singleton(FrameFlag.END_STREAM), EMPTY_ARRAY
-                ));
-            }
-
-            /**
-             * {@inheritDoc}
-             */
-            @Override
-            public String toString() {
-                return "HTTP/2 OutputStream writing response body to stream " + streamId;
-            }
-
-            /**
-             * Sends any frame to the outbound queue of the connection.
-             *
-             * @param frame the frame
-             */
-            private void sendFrame(final Frame frame) {
-                try {
-                    protocol.enqueueOutbound(frame);
-                } catch (final InterruptedException ex) {
-                    throw new CheckedExceptionTunnel(ex);
-                }
-            }
-        };
-
+        final var bodyStream = new ResponseBodyStream(protocol, stream.getId(), this.bufferPool);
         response.write(bodyStream);
         bodyStream.close();
     }
@@ -111,14 +55,10 @@ public class Http2ResponseWriter {
      * @param protocol the protocol instance serving the connection
      * @param stream the stream the request was on
      * @param response the response the software generated
-     *
-     * @throws InterruptedException
-     *      if the outbound queue was full and the thread was interrupted while waiting for room
-     *      in the queue
      */
     private void writeHeaders(
             final Http2Protocol protocol, final Stream stream, final Response response
-    ) throws InterruptedException {
+    ) {
         final var headers = new ArrayList<Header>();
         headers.add(new Header(":status", String.valueOf(response.getStatus().getCode())));
 
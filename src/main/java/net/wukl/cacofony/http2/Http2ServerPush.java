@@ -0,0 +1,181 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http.request.Header;
+import net.wukl.cacofony.http.request.ServerPush;
+import net.wukl.cacofony.http.response.Response;
+import net.wukl.cacofony.http2.stream.Stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Pushes resources along with the response to a request on an HTTP/2 stream.
+ *
+ * A promised request copies the scheme and authority of the request it accompanies, as well as
+ * the request headers that influence how the response is encoded.
+ */
+public class Http2ServerPush implements ServerPush {
+    /**
+     * The request headers that are copied into promised requests.
+     */
+    private static final Set<String> COPIED_HEADERS = Set.of("accept-encoding", "accept-language");
+
+    /**
+     * The pattern matching a single link in a {@code Link} header, capturing its target and its
+     * parameters.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc8288#section-3">RFC 8288 Section 3</a>
+     */
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>([^,<]*)");
+
+    /**
+     * The pattern matching the relation types of a link.
+     */
+    private static final Pattern REL_PATTERN =
+            Pattern.compile(";\\s*rel\\s*=\\s*(?:\"([^\"]*)\"|([^;\\s]*))", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The pattern matching the parameter asking servers not to push a preloaded link.
+     */
+    private static final Pattern NOPUSH_PATTERN =
+            Pattern.compile(";\\s*nopush\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The protocol instance serving the connection.
+     */
+    private final Http2Protocol protocol;
+
+    /**
+     * The stream of the request the pushed resources accompany.
+     */
+    private final Stream stream;
+
+    /**
+     * Whether declared and preloaded resources are pushed automatically.
+     */
+    private final boolean automatic;
+
+    /**
+     * Creates a new push channel for a request.
+     *
+     * @param protocol the protocol instance serving the connection
+     * @param stream the stream of the request the pushed resources accompany
+     * @param automatic whether declared and preloaded resources are pushed automatically
+     */
+    public Http2ServerPush(
+            final Http2Protocol protocol, final Stream stream, final boolean automatic
+    ) {
+        this.protocol = protocol;
+        this.stream = stream;
+        this.automatic = automatic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean push(final String path, final Response response) {
+        // Only resources on the same origin can be promised.
+        if (!path.startsWith("/") || path.startsWith("//")) {
+            return false;
+        }
+
+        final var promise = new ArrayList<Header>();
+        promise.add(new Header(":method", "GET"));
+        for (final var header : this.stream.getHeaders()) {
+            final var key = header.getKey();
+            if (":scheme".equals(key) || COPIED_HEADERS.contains(key)) {
+                promise.add(header);
+            } else if (":authority".equals(key) || "host".equals(key)) {
+                promise.add(new Header(":authority", header.getValues()));
+            }
+        }
+        promise.add(new Header(":path", path));
+
+        return this.protocol.push(this.stream, promise, response);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAutomatic() {
+        return this.automatic;
+    }
+
+    /**
+     * Pushes the same-origin resources a response asks the client to preload.
+     *
+     * Nothing is pushed unless the channel pushes automatically.
+     *
+     * @param response the response
+     *
+     * @see <a href="https://www.w3.org/TR/preload/#server-push-http-2">Preload, Server Push</a>
+     */
+    public void pushPreloads(final Response response) {
+        if (!this.automatic) {
+            return;
+        }
+
+        for (final Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+            if ("link".equalsIgnoreCase(header.getKey())) {
+                for (final var path : getPreloadTargets(header.getValue())) {
+                    this.push(path, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the targets of the links with the {@code preload} relation that may be pushed.
+     *
+     * @param values the values of the {@code Link} headers
+     *
+     * @return the link targets, in order
+     */
+    static List<String> getPreloadTargets(final List<String> values) {
+        final var targets = new ArrayList<String>();
+        for (final var value : values) {
+            final var link = LINK_PATTERN.matcher(value);
+            while (link.find()) {
+                final var params = link.group(2);
+                if (isPreload(params) && !NOPUSH_PATTERN.matcher(params).find()) {
+                    targets.add(link.group(1).trim());
+                }
+            }
+        }
+
+        return targets;
+    }
+
+    /**
+     * Checks whether the parameters of a link include the {@code preload} relation.
+     *
+     * @param params the link parameters
+     *
+     * @return {@code true} if the link is to be preloaded, otherwise {@code false}
+     */
+    private static boolean isPreload(final String params) {
+        final var rel = REL_PATTERN.matcher(params);
+        if (!rel.find()) {
+            return false;
+        }
+
+        var types = rel.group(1);
+        if (types == null) {
+            types = rel.group(2);
+        }
+
+        for (final var type : types.trim().split("\\s+")) {
+            if ("preload".equals(type.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,353 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacodi.Manual;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the tasks of HTTP/2 connections whenever the connections wake them.
+ * <p>
+ * Each connection registers a task, which runs on the server's thread pool only while the
+ * connection has work for it. A task never runs on two threads at once, and a wake-up arriving
+ * while it runs makes it run once more afterwards, so no wake-up is lost. Tasks may also ask to be
+ * woken after a delay, which a single timer thread takes care of. A connection with nothing to
+ * do thus holds no thread for the task at all.
+ * <p>
+ * Only the writing side of a connection runs here. Reading frames still blocks the thread the
+ * listener handed the connection to, for as long as the connection is open.
+ * <p>
+ * The sockets of the connections block, so a task writing to a client that stops reading holds
+ * its thread until the write fails. The pool grows as needed, so this only holds up the
+ * connection itself. The timer watches the running tasks and reports any that run longer than
+ * their stall timeout, so their connection can be closed.
+ */
+public class Http2TaskScheduler implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(Http2TaskScheduler.class);
+
+    /**
+     * The number of milliseconds between checks for stalled tasks.
+     */
+    private static final long STALL_CHECK_INTERVAL = 1000;
+
+    /**
+     * The thread pool running the tasks.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The thread waking tasks after a delay and watching for stalled ones.
+     */
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The tasks registered with the scheduler.
+     */
+    private final Set<Registration> registrations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a new task scheduler.
+     *
+     * @param executor the thread pool running the tasks
+     */
+    public Http2TaskScheduler(final ExecutorService executor) {
+        this(executor, Executors.newSingleThreadScheduledExecutor(task -> {
+            final var thread = new Thread(task, "http2-timer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Creates a new task scheduler using a given timer.
+     *
+     * @param executor the thread pool running the tasks
+     * @param timer the thread waking tasks after a delay and watching for stalled ones
+     */
+    @Manual
+    Http2TaskScheduler(final ExecutorService executor, final ScheduledExecutorService timer) {
+        this.executor = executor;
+        this.timer = timer;
+
+        timer.scheduleWithFixedDelay(
+                this::checkStalls, STALL_CHECK_INTERVAL, STALL_CHECK_INTERVAL,
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Registers a task with the scheduler.
+     *
+     * The task does not run until it is woken.
+     *
+     * @param task the task
+     * @param stallTimeout the number of milliseconds a single run of the task may take before it
+     *                     is considered stalled
+     * @param stallListener the listener notified on the timer thread once a run of the task has
+     *                      stalled, which must not block
+     *
+     * @return the registration, through which the task is woken
+     */
+    public Registration register(final Runnable task, final long stallTimeout,
+                                 final Runnable stallListener) {
+        final var registration = new Registration(
+                task, TimeUnit.MILLISECONDS.toNanos(stallTimeout), stallListener
+        );
+        this.registrations.add(registration);
+        return registration;
+    }
+
+    /**
+     * Returns the number of tasks registered with the scheduler.
+     *
+     * @return the number of tasks
+     */
+    public int getRegistrationCount() {
+        return this.registrations.size();
+    }
+
+    /**
+     * Stops the scheduler.
+     *
+     * Runs that are underway are allowed to finish, but no task is woken afterwards. The thread
+     * pool is left alone, as it belongs to the server.
+     */
+    @Override
+    public void close() {
+        this.timer.shutdownNow();
+        for (final var registration : this.registrations) {
+            registration.cancel();
+        }
+    }
+
+    /**
+     * Reports the tasks whose current run has taken longer than their stall timeout.
+     */
+    private void checkStalls() {
+        final var now = System.nanoTime();
+        for (final var registration : this.registrations) {
+            try {
+                registration.checkStall(now);
+            } catch (final RuntimeException ex) {
+                logger.error("Exception while reporting a stalled task:", ex);
+            }
+        }
+    }
+
+    /**
+     * The state of a registered task.
+     */
+    private enum RunState {
+        /**
+         * The task waits to be woken.
+         */
+        IDLE,
+
+        /**
+         * The task has been handed to the thread pool.
+         */
+        SCHEDULED,
+
+        /**
+         * The task is running.
+         */
+        RUNNING,
+
+        /**
+         * The task is running and was woken again in the meantime.
+         */
+        RERUN,
+
+        /**
+         * The task has been cancelled.
+         */
+        CANCELLED
+    }
+
+    /**
+     * A task registered with the scheduler.
+     */
+    public final class Registration {
+        /**
+         * The task.
+         */
+        private final Runnable task;
+
+        /**
+         * The number of nanoseconds a single run may take before it is considered stalled.
+         */
+        private final long stallTimeout;
+
+        /**
+         * The listener notified once a run has stalled.
+         */
+        private final Runnable stallListener;
+
+        /**
+         * The state of the task.
+         */
+        private final AtomicReference<RunState> state = new AtomicReference<>(RunState.IDLE);
+
+        /**
+         * The time the current run started.
+         */
+        private volatile long runStartedAt;
+
+        /**
+         * Whether the current run has been reported as stalled.
+         */
+        private volatile boolean stallReported = false;
+
+        /**
+         * The pending delayed wake-up, if any.
+         */
+        private ScheduledFuture<?> alarm = null;
+
+        /**
+         * Creates a new registration.
+         *
+         * @param task the task
+         * @param stallTimeout the number of nanoseconds a single run may take
+         * @param stallListener the listener notified once a run has stalled
+         */
+        private Registration(final Runnable task, final long stallTimeout,
+                             final Runnable stallListener) {
+            this.task = task;
+            this.stallTimeout = stallTimeout;
+            this.stallListener = stallListener;
+        }
+
+        /**
+         * Makes the task run as soon as possible.
+         *
+         * If the task is running, it runs once more afterwards.
+         */
+        public void wake() {
+            while (true) {
+                final var current = this.state.get();
+                if (current == RunState.IDLE) {
+                    if (this.state.compareAndSet(RunState.IDLE, RunState.SCHEDULED)) {
+                        this.submit();
+                        return;
+                    }
+                } else if (current == RunState.RUNNING) {
+                    if (this.state.compareAndSet(RunState.RUNNING, RunState.RERUN)) {
+                        return;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Makes the task run after a delay, replacing any delayed wake-up requested before.
+         *
+         * @param delay the delay in milliseconds
+         */
+        public synchronized void wakeAfter(final long delay) {
+            if (this.alarm != null) {
+                this.alarm.cancel(false);
+            }
+            if (this.state.get() == RunState.CANCELLED) {
+                return;
+            }
+
+            try {
+                this.alarm = Http2TaskScheduler.this.timer.schedule(
+                        this::wake, delay, TimeUnit.MILLISECONDS
+                );
+            } catch (final RejectedExecutionException ex) {
+                // The scheduler has been closed.
+                this.alarm = null;
+            }
+        }
+
+        /**
+         * Unregisters the task.
+         *
+         * A run that is underway is allowed to finish, but the task does not run again.
+         */
+        public void cancel() {
+            this.state.set(RunState.CANCELLED);
+            synchronized (this) {
+                if (this.alarm != null) {
+                    this.alarm.cancel(false);
+                    this.alarm = null;
+                }
+            }
+
+            Http2TaskScheduler.this.registrations.remove(this);
+        }
+
+        /**
+         * Hands the task to the thread pool.
+         */
+        private void submit() {
+            try {
+                Http2TaskScheduler.this.executor.execute(this::run);
+            } catch (final RejectedExecutionException ex) {
+                // The pool has been shut down, so the task can never run again.
+                this.cancel();
+            }
+        }
+
+        /**
+         * Runs the task until no more wake-ups arrive while it is running.
+         */
+        private void run() {
+            // The start is recorded before the state changes, so the timer never measures a run
+            // from an old start.
+            this.startRun();
+            if (!this.state.compareAndSet(RunState.SCHEDULED, RunState.RUNNING)) {
+                return;
+            }
+
+            do {
+                try {
+                    this.task.run();
+                } catch (final RuntimeException ex) {
+                    logger.error("Unhandled exception in connection task:", ex);
+                }
+                this.startRun();
+            } while (!this.state.compareAndSet(RunState.RUNNING, RunState.IDLE)
+                    && this.state.compareAndSet(RunState.RERUN, RunState.RUNNING));
+        }
+
+        /**
+         * Records that a new run is about to start.
+         */
+        private void startRun() {
+            this.runStartedAt = System.nanoTime();
+            this.stallReported = false;
+        }
+
+        /**
+         * Notifies the stall listener if the current run has taken too long.
+         *
+         * A run is reported only once.
+         *
+         * @param now the current time
+         */
+        private void checkStall(final long now) {
+            final var current = this.state.get();
+            if (current != RunState.RUNNING && current != RunState.RERUN) {
+                return;
+            }
+
+            if (!this.stallReported && now - this.runStartedAt > this.stallTimeout) {
+                this.stallReported = true;
+                this.stallListener.run();
+            }
+        }
+    }
+}
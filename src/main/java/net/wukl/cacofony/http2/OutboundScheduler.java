@@ -0,0 +1,783 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
+import net.wukl.cacofony.http2.frame.DataFrame;
+import net.wukl.cacofony.http2.frame.Frame;
+import net.wukl.cacofony.http2.frame.FrameFlag;
+import net.wukl.cacofony.http2.frame.NoPadding;
+import net.wukl.cacofony.http2.frame.PaddingPolicy;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which frame the connection writes next.
+ * <p>
+ * Control frames, including HEADERS and CONTINUATION frames, are sent in the order they were
+ * enqueued and always before any DATA. Response bodies are buffered per stream and only cut into
+ * DATA frames once both the connection and the stream have flow-control credit for them. The
+ * frames reference slices of the submitted buffers, so body data is not copied again. Any padding
+ * is decided as a frame is cut, so it is paid for with flow-control credit like the data. A
+ * stream whose window is exhausted is parked until the peer sends a WINDOW_UPDATE for it, so it
+ * never holds up other streams or the connection writer.
+ * <p>
+ * The writer either waits for frames using {@link #next()}, or is woken by a listener whenever
+ * frames may have become ready and takes them using {@link #poll()}.
+ * <p>
+ * Ready streams are served by their extensible priority: streams of a more urgent level always go
+ * before less urgent ones. Within a level, non-incremental streams are sent one after the other in
+ * the order of their identifiers, after which the incremental streams take turns sending a single
+ * frame each.
+ * <p>
+ * Threads producing response bodies block only when their own stream has too much data buffered.
+ */
+public class OutboundScheduler {
+    /**
+     * The number of octets a stream may have buffered before its producer has to wait.
+     */
+    private static final int MAX_BUFFERED_PER_STREAM = 64 * 1024;
+
+    /**
+     * An array containing nothing.
+     */
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    /**
+     * The control frames waiting to be sent.
+     */
+    private final Deque<Frame> controlFrames = new ArrayDeque<>();
+
+    /**
+     * The streams that may still send data by identifier.
+     */
+    private final Map<Integer, StreamOutput> streams = new HashMap<>();
+
+    /**
+     * The streams that have data to send and credit to send it with, by urgency.
+     */
+    private final UrgencyLevel[] levels = new UrgencyLevel[Priority.MAX_URGENCY + 1];
+
+    /**
+     * The flow-control window of the connection.
+     */
+    private final Window connectionWindow;
+
+    /**
+     * The maximum size of a frame payload.
+     */
+    private int maxFrameSize;
+
+    /**
+     * The listener notified whenever frames may have become ready to send.
+     */
+    private final Runnable readyListener;
+
+    /**
+     * The policy deciding how much padding to add to DATA frames.
+     */
+    private final PaddingPolicy padding;
+
+    /**
+     * Whether the scheduler has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a new outbound scheduler for a writer waiting on {@link #next()}.
+     *
+     * @param connectionWindow the flow-control window of the connection
+     * @param maxFrameSize the maximum size of a frame payload
+     */
+    public OutboundScheduler(final Window connectionWindow, final int maxFrameSize) {
+        this(connectionWindow, maxFrameSize, () -> { });
+    }
+
+    /**
+     * Creates a new outbound scheduler notifying a listener when there may be frames to send.
+     *
+     * The listener is called while the scheduler is locked, so it must not block.
+     *
+     * @param connectionWindow the flow-control window of the connection
+     * @param maxFrameSize the maximum size of a frame payload
+     * @param readyListener the listener notified whenever frames may have become ready to send
+     */
+    public OutboundScheduler(final Window connectionWindow, final int maxFrameSize,
+                             final Runnable readyListener) {
+        this(connectionWindow, maxFrameSize, readyListener, new NoPadding());
+    }
+
+    /**
+     * Creates a new outbound scheduler padding DATA frames.
+     *
+     * The listener is called while the scheduler is locked, so it must not block.
+     *
+     * @param connectionWindow the flow-control window of the connection
+     * @param maxFrameSize the maximum size of a frame payload
+     * @param readyListener the listener notified whenever frames may have become ready to send
+     * @param padding the policy deciding how much padding to add to DATA frames
+     */
+    public OutboundScheduler(final Window connectionWindow, final int maxFrameSize,
+                             final Runnable readyListener, final PaddingPolicy padding) {
+        this.connectionWindow = connectionWindow;
+        this.maxFrameSize = maxFrameSize;
+        this.readyListener = readyListener;
+        this.padding = padding;
+
+        for (int i = 0; i < this.levels.length; ++i) {
+            this.levels[i] = new UrgencyLevel();
+        }
+    }
+
+    /**
+     * Enqueues control frames.
+     *
+     * The frames are sent in the order as supplied, with no other frames in between.
+     *
+     * @param frames the frames to send
+     */
+    public synchronized void enqueue(final Frame... frames) {
+        Collections.addAll(this.controlFrames, frames);
+        this.ready();
+    }
+
+    /**
+     * Opens a stream for sending data.
+     *
+     * @param streamId the identifier of the stream
+     * @param window the flow-control window of the stream
+     */
+    public synchronized void open(final int streamId, final Window window) {
+        this.streams.put(streamId, new StreamOutput(streamId, window));
+    }
+
+    /**
+     * Changes the priority of a stream.
+     *
+     * Streams start out with the {@linkplain Priority#DEFAULT default priority}. Changing the
+     * priority of a stream that is not open has no effect.
+     *
+     * @param streamId the identifier of the stream
+     * @param priority the new priority
+     */
+    public synchronized void prioritize(final int streamId, final Priority priority) {
+        final var out = this.streams.get(streamId);
+        if (out == null || out.priority.equals(priority)) {
+            return;
+        }
+
+        if (out.queued) {
+            this.levelOf(out).remove(out);
+            out.priority = priority;
+            this.levelOf(out).add(out);
+        } else {
+            out.priority = priority;
+        }
+    }
+
+    /**
+     * Submits data to send on a stream.
+     *
+     * The data is copied, so the caller may reuse the array as soon as this function returns.
+     * If the stream already has a lot of data buffered, this function waits until part of it has
+     * been sent.
+     *
+     * @param streamId the identifier of the stream
+     * @param bytes the array containing the data
+     * @param offset the position of the data within the array
+     * @param length the length of the data
+     * @param endStream whether this is the last data on the stream
+     *
+     * @throws IOException if the stream has been closed or reset
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public void submit(
+            final int streamId,
+            final byte[] bytes,
+            final int offset,
+            final int length,
+            final boolean endStream
+    ) throws IOException, InterruptedException {
+        this.submit(streamId, PooledBuffer.copyOf(bytes, offset, length), endStream);
+    }
+
+    /**
+     * Submits data to send on a stream.
+     *
+     * The scheduler takes over the caller's reference to the buffer, even if submitting fails. The
+     * DATA frames cut from it reference slices of the buffer rather than copies. If the stream
+     * already has a lot of data buffered, this function waits until part of it has been sent.
+     *
+     * @param streamId the identifier of the stream
+     * @param data the buffer containing the data, or {@code null} if there is no data
+     * @param endStream whether this is the last data on the stream
+     *
+     * @throws IOException if the stream has been closed or reset
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized void submit(
+            final int streamId, final PooledBuffer data, final boolean endStream
+    ) throws IOException, InterruptedException {
+        var submitted = false;
+        try {
+            this.append(streamId, data, endStream);
+            submitted = true;
+        } finally {
+            if (!submitted && data != null) {
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Appends data to the buffered data of a stream.
+     *
+     * @param streamId the identifier of the stream
+     * @param data the buffer containing the data, or {@code null} if there is no data
+     * @param endStream whether this is the last data on the stream
+     *
+     * @throws IOException if the stream has been closed or reset
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    private void append(final int streamId, final PooledBuffer data, final boolean endStream)
+            throws IOException, InterruptedException {
+        final var out = this.streams.get(streamId);
+        if (out == null || out.endStream) {
+            throw new IOException("Stream " + streamId + " is closed");
+        }
+
+        while (out.buffered >= MAX_BUFFERED_PER_STREAM && !out.cancelled) {
+            this.wait();
+        }
+
+        if (out.cancelled) {
+            throw new IOException("Stream " + streamId + " has been reset");
+        }
+
+        if (data != null && data.length() > 0) {
+            out.chunks.add(data);
+            out.buffered += data.length();
+        } else if (data != null) {
+            data.release();
+        }
+        out.endStream = endStream;
+
+        this.schedule(out);
+        this.ready();
+    }
+
+    /**
+     * Returns the next frame to write, waiting until there is one.
+     *
+     * @return the frame, or {@code null} if the scheduler has been closed
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized Frame next() throws InterruptedException {
+        while (true) {
+            final var frame = this.poll();
+            if (frame != null || this.closed) {
+                return frame;
+            }
+
+            this.wait();
+        }
+    }
+
+    /**
+     * Returns the next frame to write, waiting a limited time until there is one.
+     *
+     * @param timeout the maximum number of milliseconds to wait, or {@code 0} to wait as long as
+     *                it takes
+     *
+     * @return the frame, or {@code null} if the scheduler has been closed or the time is up
+     *
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public synchronized Frame next(final long timeout) throws InterruptedException {
+        if (timeout <= 0) {
+            return this.next();
+        }
+
+        final var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            final var frame = this.poll();
+            final var left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (frame != null || this.closed || left <= 0) {
+                return frame;
+            }
+
+            this.wait(left);
+        }
+    }
+
+    /**
+     * Checks whether the scheduler has been closed.
+     *
+     * @return {@code true} if the scheduler is closed, {@code false} otherwise
+     */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Checks whether nothing is waiting to be sent, not even data held back by flow control.
+     *
+     * @return {@code true} if the scheduler is idle, {@code false} otherwise
+     */
+    public synchronized boolean isIdle() {
+        if (!this.controlFrames.isEmpty()) {
+            return false;
+        }
+
+        for (final var out : this.streams.values()) {
+            if (out.hasPending()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the next frame to write if there is one, without waiting.
+     *
+     * @return the frame, or {@code null} if there is nothing to write right now
+     */
+    public synchronized Frame poll() {
+        if (!this.controlFrames.isEmpty()) {
+            return this.controlFrames.poll();
+        }
+
+        if (this.closed) {
+            return null;
+        }
+
+        return this.nextData();
+    }
+
+    /**
+     * Cuts the next DATA frame from the most urgent ready stream that has credit for it.
+     *
+     * @return the frame, or {@code null} if no stream can send anything
+     */
+    private Frame nextData() {
+        for (final var level : this.levels) {
+            var frame = this.nextSequentialData(level);
+            if (frame == null) {
+                frame = this.nextIncrementalData(level);
+            }
+
+            if (frame != null) {
+                // Producers may be waiting for their buffers to drain.
+                this.notifyAll();
+                return frame;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cuts the next DATA frame from the non-incremental stream with the lowest identifier that
+     * has credit for it.
+     *
+     * @param level the urgency level to take the stream from
+     *
+     * @return the frame, or {@code null} if none of the streams can send anything
+     */
+    private Frame nextSequentialData(final UrgencyLevel level) {
+        final var it = level.sequential.iterator();
+        while (it.hasNext()) {
+            final var out = it.next();
+            final var frame = out.nextFrame(this.connectionWindow, this.maxFrameSize, this.padding);
+
+            if (frame != null) {
+                if (!out.hasPending()) {
+                    it.remove();
+                    this.unqueue(out);
+                }
+                return frame;
+            }
+
+            if (out.window.getRemote() <= 0) {
+                // Parked until the peer opens the stream's window.
+                it.remove();
+                out.queued = false;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Cuts the next DATA frame from the incremental stream whose turn it is.
+     *
+     * @param level the urgency level to take the stream from
+     *
+     * @return the frame, or {@code null} if none of the streams can send anything
+     */
+    private Frame nextIncrementalData(final UrgencyLevel level) {
+        for (int i = level.incremental.size(); i > 0; --i) {
+            final var out = level.incremental.poll();
+            final var frame = out.nextFrame(this.connectionWindow, this.maxFrameSize, this.padding);
+
+            if (frame != null) {
+                if (out.hasPending()) {
+                    level.incremental.add(out);
+                } else {
+                    this.unqueue(out);
+                }
+                return frame;
+            }
+
+            if (out.window.getRemote() <= 0) {
+                // Parked until the peer opens the stream's window.
+                out.queued = false;
+            } else {
+                // Only the connection window is exhausted.
+                level.incremental.add(out);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Marks a stream as no longer queued after its last pending frame has been cut.
+     *
+     * @param out the stream
+     */
+    private void unqueue(final StreamOutput out) {
+        out.queued = false;
+
+        if (out.finished) {
+            this.streams.remove(out.streamId);
+        }
+    }
+
+    /**
+     * Applies a WINDOW_UPDATE sent by the peer.
+     *
+     * @param streamId the identifier of the stream, or 0 for the connection
+     * @param increment the number of octets the window grows by
+     *
+     * @throws Http2FlowControlError if the window grows beyond its maximum size
+     */
+    public synchronized void windowUpdate(final int streamId, final long increment) {
+        if (streamId == 0) {
+            this.connectionWindow.topOffRemote(increment);
+        } else {
+            final var out = this.streams.get(streamId);
+            if (out == null) {
+                return;
+            }
+
+            out.window.topOffRemote(increment);
+            this.schedule(out);
+        }
+
+        this.ready();
+    }
+
+    /**
+     * Adjusts the windows of all open streams after the peer changed the initial window size.
+     *
+     * @param delta the difference between the new and the old initial window size
+     *
+     * @throws Http2FlowControlError if a window grows beyond its maximum size
+     */
+    public synchronized void adjustInitialWindow(final long delta) {
+        for (final var out : this.streams.values()) {
+            out.window.adjustRemote(delta);
+            this.schedule(out);
+        }
+
+        this.ready();
+    }
+
+    /**
+     * Sets the maximum size of a frame payload.
+     *
+     * @param maxFrameSize the maximum size
+     */
+    public synchronized void setMaxFrameSize(final int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Discards all data pending on a stream, for example because the peer reset it.
+     *
+     * @param streamId the identifier of the stream
+     */
+    public synchronized void cancel(final int streamId) {
+        final var out = this.streams.remove(streamId);
+        if (out == null) {
+            return;
+        }
+
+        out.cancel();
+        if (out.queued) {
+            this.levelOf(out).remove(out);
+            out.queued = false;
+        }
+        this.notifyAll();
+    }
+
+    /**
+     * Closes the scheduler, discarding all pending data.
+     *
+     * Control frames already enqueued are still returned by {@link #next()}.
+     */
+    public synchronized void close() {
+        this.closed = true;
+
+        for (final var out : this.streams.values()) {
+            out.cancel();
+        }
+        this.streams.clear();
+        for (final var level : this.levels) {
+            level.sequential.clear();
+            level.incremental.clear();
+        }
+
+        this.notifyAll();
+    }
+
+    /**
+     * Wakes the writer after frames may have become ready to send.
+     */
+    private void ready() {
+        this.notifyAll();
+        this.readyListener.run();
+    }
+
+    /**
+     * Puts a stream in the ready queue if it has anything to send.
+     *
+     * @param out the stream
+     */
+    private void schedule(final StreamOutput out) {
+        if (!out.queued && out.hasPending()) {
+            out.queued = true;
+            this.levelOf(out).add(out);
+        }
+    }
+
+    /**
+     * Returns the urgency level a stream is queued in.
+     *
+     * @param out the stream
+     *
+     * @return the level
+     */
+    private UrgencyLevel levelOf(final StreamOutput out) {
+        return this.levels[out.priority.getUrgency()];
+    }
+
+    /**
+     * The ready streams of a single urgency level.
+     */
+    private static final class UrgencyLevel {
+        /**
+         * The non-incremental streams, ordered by identifier.
+         */
+        private final NavigableSet<StreamOutput> sequential =
+                new TreeSet<>((a, b) -> Integer.compare(a.streamId, b.streamId));
+
+        /**
+         * The incremental streams, in turn order.
+         */
+        private final Deque<StreamOutput> incremental = new ArrayDeque<>();
+
+        /**
+         * Adds a stream to the level.
+         *
+         * @param out the stream
+         */
+        private void add(final StreamOutput out) {
+            if (out.priority.isIncremental()) {
+                this.incremental.add(out);
+            } else {
+                this.sequential.add(out);
+            }
+        }
+
+        /**
+         * Removes a stream from the level.
+         *
+         * @param out the stream
+         */
+        private void remove(final StreamOutput out) {
+            if (out.priority.isIncremental()) {
+                this.incremental.remove(out);
+            } else {
+                this.sequential.remove(out);
+            }
+        }
+    }
+
+    /**
+     * The data waiting to be sent on a single stream.
+     */
+    private static final class StreamOutput {
+        /**
+         * The identifier of the stream.
+         */
+        private final int streamId;
+
+        /**
+         * The flow-control window of the stream.
+         */
+        private final Window window;
+
+        /**
+         * The priority of the stream.
+         */
+        private Priority priority = Priority.DEFAULT;
+
+        /**
+         * The chunks of data submitted but not sent yet.
+         */
+        private final Deque<PooledBuffer> chunks = new ArrayDeque<>();
+
+        /**
+         * The number of octets of the first chunk that have been sent already.
+         */
+        private int sent = 0;
+
+        /**
+         * The number of octets buffered.
+         */
+        private int buffered = 0;
+
+        /**
+         * Whether the last data has been submitted.
+         */
+        private boolean endStream = false;
+
+        /**
+         * Whether the frame ending the stream has been cut.
+         */
+        private boolean finished = false;
+
+        /**
+         * Whether the stream has been reset.
+         */
+        private boolean cancelled = false;
+
+        /**
+         * Whether the stream is in the ready queue.
+         */
+        private boolean queued = false;
+
+        /**
+         * Creates a new stream output.
+         *
+         * @param streamId the identifier of the stream
+         * @param window the flow-control window of the stream
+         */
+        private StreamOutput(final int streamId, final Window window) {
+            this.streamId = streamId;
+            this.window = window;
+        }
+
+        /**
+         * Checks whether the stream has a frame to send.
+         *
+         * @return {@code true} if there is data or an end of stream to send
+         */
+        private boolean hasPending() {
+            return !this.chunks.isEmpty() || (this.endStream && !this.finished);
+        }
+
+        /**
+         * Cuts the next DATA frame as far as the flow-control windows allow.
+         *
+         * The padding is decided here, as it counts against both windows just like the data. If
+         * the windows cannot cover the full frame, the padding is cut down before the data is.
+         *
+         * @param connectionWindow the flow-control window of the connection
+         * @param maxFrameSize the maximum size of a frame payload
+         * @param padding the policy deciding how much padding to add
+         *
+         * @return the frame, or {@code null} if either window is exhausted
+         *
+         * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.1">RFC 7540 Section 6.1</a>
+         */
+        private DataFrame nextFrame(final Window connectionWindow, final int maxFrameSize,
+                                    final PaddingPolicy padding) {
+            if (this.chunks.isEmpty()) {
+                if (!this.endStream || this.finished) {
+                    return null;
+                }
+
+                this.finished = true;
+                return new DataFrame(
+                        this.streamId, Collections.singleton(FrameFlag.END_STREAM), EMPTY_ARRAY
+                );
+            }
+
+            final var chunk = this.chunks.peek();
+            final var wantedData = Math.min(chunk.length() - this.sent, maxFrameSize);
+            final var wantedPadding = padding.getPadding(
+                    wantedData, Math.min(PaddingPolicy.MAX_PADDING, maxFrameSize - wantedData)
+            );
+            final var wanted = wantedData + wantedPadding;
+
+            final var streamCredit = this.window.acquireRemote(wanted);
+            if (streamCredit == 0) {
+                return null;
+            }
+
+            final var credit = connectionWindow.acquireRemote(streamCredit);
+            if (credit < streamCredit) {
+                this.window.topOffRemote(streamCredit - credit);
+            }
+            if (credit == 0) {
+                return null;
+            }
+
+            final var paddingLength = Math.min(wantedPadding, credit - 1);
+            final var length = credit - paddingLength;
+            final var offset = this.sent;
+            chunk.retain();
+
+            this.sent += length;
+            this.buffered -= length;
+            if (this.sent == chunk.length()) {
+                this.chunks.poll().release();
+                this.sent = 0;
+            }
+
+            final Set<FrameFlag> flags;
+            if (this.chunks.isEmpty() && this.endStream) {
+                this.finished = true;
+                flags = Collections.singleton(FrameFlag.END_STREAM);
+            } else {
+                flags = Collections.emptySet();
+            }
+
+            return new DataFrame(this.streamId, flags, chunk, offset, length, paddingLength);
+        }
+
+        /**
+         * Discards all pending data.
+         */
+        private void cancel() {
+            this.cancelled = true;
+            for (final var chunk : this.chunks) {
+                chunk.release();
+            }
+            this.chunks.clear();
+            this.buffered = 0;
+        }
+    }
+}
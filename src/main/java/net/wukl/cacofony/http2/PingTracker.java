@@ -0,0 +1,192 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http2.frame.PingFrame;
+
+/**
+ * Keeps track of the PING frames the server sends on a connection.
+ * <p>
+ * At most one PING is outstanding at a time. Its acknowledgement yields a sample of the
+ * connection's round-trip time, which is smoothed the way TCP smooths its own estimate. The
+ * amount of data received while the PING was underway approximates the bandwidth-delay product
+ * of the connection, at least while the client is limited by the receive window rather than by
+ * the network.
+ * <p>
+ * Times are given in nanoseconds from an arbitrary origin, as returned by
+ * {@link System#nanoTime()}. The tracker is used by the threads reading and writing frames, so
+ * all of its functions are synchronized.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc6298">RFC 6298</a>
+ */
+public class PingTracker {
+    /**
+     * The weight of a new sample in the smoothed round-trip time, as a power of two.
+     */
+    private static final int SMOOTHING_SHIFT = 3;
+
+    /**
+     * The payload of the next PING.
+     */
+    private long nextPayload = 0;
+
+    /**
+     * Whether a PING is waiting for its acknowledgement.
+     */
+    private boolean outstanding = false;
+
+    /**
+     * The payload of the last PING sent.
+     */
+    private long payload = 0;
+
+    /**
+     * The time the last PING was sent.
+     */
+    private long sentAt;
+
+    /**
+     * Whether any PING has been sent yet.
+     */
+    private boolean sentAny = false;
+
+    /**
+     * The number of octets received since the outstanding PING was sent.
+     */
+    private long received = 0;
+
+    /**
+     * The payload of the last PING acknowledged, or {@code -1} if there is none.
+     */
+    private long lastAcknowledged = -1;
+
+    /**
+     * The smoothed round-trip time in nanoseconds, or {@code -1} if there are no samples yet.
+     */
+    private long roundTripTime = -1;
+
+    /**
+     * Starts a new PING, unless one is outstanding already.
+     *
+     * @param now the current time
+     *
+     * @return the frame to send or {@code null} if a PING is outstanding
+     */
+    public synchronized PingFrame start(final long now) {
+        if (this.outstanding) {
+            return null;
+        }
+
+        this.outstanding = true;
+        this.sentAny = true;
+        this.payload = this.nextPayload++;
+        this.sentAt = now;
+        this.received = 0;
+
+        final var bytes = new byte[PingFrame.PAYLOAD_SIZE];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) (this.payload >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        }
+        return new PingFrame(false, bytes);
+    }
+
+    /**
+     * Processes a PING acknowledgement sent by the client.
+     *
+     * @param bytes the payload of the acknowledgement
+     * @param now the current time
+     *
+     * @return the number of octets received while the PING was underway, or {@code -1} if the
+     *         acknowledgement does not belong to the outstanding PING
+     */
+    public synchronized long acknowledge(final byte[] bytes, final long now) {
+        if (!this.outstanding || bytes.length != PingFrame.PAYLOAD_SIZE) {
+            return -1;
+        }
+
+        long value = 0;
+        for (final var b : bytes) {
+            value = (value << Byte.SIZE) | (b & 0xFF);
+        }
+        if (value != this.payload) {
+            return -1;
+        }
+
+        this.outstanding = false;
+        this.lastAcknowledged = value;
+        final var sample = now - this.sentAt;
+        if (this.roundTripTime < 0) {
+            this.roundTripTime = sample;
+        } else {
+            this.roundTripTime += (sample - this.roundTripTime) >> SMOOTHING_SHIFT;
+        }
+
+        return this.received;
+    }
+
+    /**
+     * Records data received from the client.
+     *
+     * @param bytes the number of octets received
+     */
+    public synchronized void received(final int bytes) {
+        if (this.outstanding) {
+            this.received += bytes;
+        }
+    }
+
+    /**
+     * Returns the number of PINGs started so far.
+     *
+     * PINGs carry their sequence number as payload, so this is also the payload of the next one.
+     *
+     * @return the number of PINGs
+     */
+    public synchronized long getSentCount() {
+        return this.nextPayload;
+    }
+
+    /**
+     * Checks whether a PING with a given sequence number or a later one has been acknowledged.
+     *
+     * @param sequence the sequence number, as returned by {@link #getSentCount()} before the PING
+     *                 was started
+     *
+     * @return {@code true} if such a PING has been acknowledged, {@code false} otherwise
+     */
+    public synchronized boolean isAcknowledged(final long sequence) {
+        return this.lastAcknowledged >= sequence;
+    }
+
+    /**
+     * Checks whether a PING is waiting for its acknowledgement.
+     *
+     * @return {@code true} if a PING is outstanding, {@code false} otherwise
+     */
+    public synchronized boolean isOutstanding() {
+        return this.outstanding;
+    }
+
+    /**
+     * Returns how long ago the last PING was sent.
+     *
+     * @param now the current time
+     *
+     * @return the elapsed time in nanoseconds, or {@link Long#MAX_VALUE} if none was sent yet
+     */
+    public synchronized long getSinceSent(final long now) {
+        if (!this.sentAny) {
+            return Long.MAX_VALUE;
+        }
+
+        return now - this.sentAt;
+    }
+
+    /**
+     * Returns the smoothed round-trip time of the connection.
+     *
+     * @return the round-trip time in nanoseconds, or {@code -1} if no PING has been
+     *         acknowledged yet
+     */
+    public synchronized long getRoundTripTime() {
+        return this.roundTripTime;
+    }
+}
@@ -0,0 +1,200 @@
+package net.wukl.cacofony.http2;
+
+/**
+ * The priority of a stream as signalled by an extensible priority field value.
+ * <p>
+ * The field value is a structured-field dictionary carried by the {@code priority} request header
+ * or a PRIORITY_UPDATE frame. Only the urgency ({@code u}) and incremental ({@code i}) parameters
+ * are understood; other parameters and malformed members are ignored.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-4">
+ *     RFC 9218 Section 4 (Priority Parameters)</a>
+ */
+public final class Priority {
+    /**
+     * The most urgent urgency level.
+     */
+    public static final int MIN_URGENCY = 0;
+
+    /**
+     * The least urgent urgency level.
+     */
+    public static final int MAX_URGENCY = 7;
+
+    /**
+     * The urgency of a stream that did not signal any.
+     */
+    public static final int DEFAULT_URGENCY = 3;
+
+    /**
+     * The priority of a stream that did not signal any.
+     */
+    public static final Priority DEFAULT = new Priority(DEFAULT_URGENCY, false);
+
+    /**
+     * The urgency level, where lower values are more urgent.
+     */
+    private final int urgency;
+
+    /**
+     * Whether the response may be processed incrementally.
+     */
+    private final boolean incremental;
+
+    /**
+     * Creates a new priority.
+     *
+     * @param urgency the urgency level within [0, 7], where lower values are more urgent
+     * @param incremental whether the response may be processed incrementally
+     *
+     * @throws IllegalArgumentException if the urgency is out of range
+     */
+    public Priority(final int urgency, final boolean incremental) {
+        if (urgency < MIN_URGENCY || urgency > MAX_URGENCY) {
+            throw new IllegalArgumentException("Urgency " + urgency + " is not within [0, 7]");
+        }
+
+        this.urgency = urgency;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Parses a priority field value.
+     *
+     * Parameters missing from the value take their default values.
+     *
+     * @param value the field value, may be {@code null}
+     *
+     * @return the priority
+     */
+    public static Priority parse(final String value) {
+        if (value == null) {
+            return DEFAULT;
+        }
+
+        var urgency = DEFAULT_URGENCY;
+        var incremental = false;
+
+        for (final var member : value.split(",")) {
+            final var trimmed = member.trim();
+            final var eq = trimmed.indexOf('=');
+
+            final String key;
+            final String param;
+            if (eq < 0) {
+                key = trimmed;
+                param = "?1";
+            } else {
+                key = trimmed.substring(0, eq).trim();
+                param = trimmed.substring(eq + 1).trim();
+            }
+
+            if ("u".equals(key)) {
+                urgency = parseUrgency(param, urgency);
+            } else if ("i".equals(key)) {
+                incremental = parseIncremental(param, incremental);
+            }
+        }
+
+        return new Priority(urgency, incremental);
+    }
+
+    /**
+     * Parses the value of an urgency parameter.
+     *
+     * @param param the parameter value
+     * @param fallback the urgency to use if the value is invalid
+     *
+     * @return the urgency
+     */
+    private static int parseUrgency(final String param, final int fallback) {
+        if (param.length() != 1) {
+            return fallback;
+        }
+
+        final var urgency = param.charAt(0) - '0';
+        if (urgency < MIN_URGENCY || urgency > MAX_URGENCY) {
+            return fallback;
+        }
+
+        return urgency;
+    }
+
+    /**
+     * Parses the value of an incremental parameter.
+     *
+     * @param param the parameter value
+     * @param fallback the value to use if the parameter is not a boolean
+     *
+     * @return whether the response may be processed incrementally
+     */
+    private static boolean parseIncremental(final String param, final boolean fallback) {
+        if ("?1".equals(param)) {
+            return true;
+        }
+        if ("?0".equals(param)) {
+            return false;
+        }
+
+        return fallback;
+    }
+
+    /**
+     * Returns the urgency level.
+     *
+     * @return the urgency, where lower values are more urgent
+     */
+    public int getUrgency() {
+        return this.urgency;
+    }
+
+    /**
+     * Checks whether the response may be processed incrementally.
+     *
+     * @return {@code true} if the response may be interleaved with others of the same urgency
+     */
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+
+    /**
+     * Checks whether this priority equals another object.
+     *
+     * @param other the other object
+     *
+     * @return {@code true} if the other object is an equal priority
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof Priority)) {
+            return false;
+        }
+
+        final var that = (Priority) other;
+        return this.urgency == that.urgency && this.incremental == that.incremental;
+    }
+
+    /**
+     * Returns the hash code of the priority.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return this.urgency * 2 + Boolean.hashCode(this.incremental);
+    }
+
+    /**
+     * Returns a field value representing the priority.
+     *
+     * @return the field value
+     */
+    @Override
+    public String toString() {
+        if (this.incremental) {
+            return "u=" + this.urgency + ", i";
+        }
+
+        return "u=" + this.urgency;
+    }
+}
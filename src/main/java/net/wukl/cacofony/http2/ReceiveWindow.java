@@ -0,0 +1,128 @@
+package net.wukl.cacofony.http2;
+
+/**
+ * The receiving side of a flow-control window.
+ * <p>
+ * The window tracks how many octets the peer may still send and how many the application has
+ * consumed without the peer having been told yet. Rather than announcing every consumed octet in
+ * a WINDOW_UPDATE of its own, consumption is accumulated until it crosses a threshold, which
+ * defaults to half the window. The peer is never blocked by the coalescing: as long as the
+ * application keeps up, at least the other half of the window remains open.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.9">RFC 7540 Section 6.9</a>
+ */
+public class ReceiveWindow {
+    /**
+     * The size of the window as advertised to the peer.
+     */
+    private int size;
+
+    /**
+     * The number of consumed octets from which on they are announced to the peer.
+     */
+    private int threshold;
+
+    /**
+     * The number of octets the peer may still send.
+     */
+    private long available;
+
+    /**
+     * The number of octets consumed but not announced to the peer yet.
+     */
+    private long pending = 0;
+
+    /**
+     * Creates a new receive window announcing consumption once half of it has been consumed.
+     *
+     * @param size the size of the window as advertised to the peer
+     */
+    public ReceiveWindow(final int size) {
+        this(size, size / 2);
+    }
+
+    /**
+     * Creates a new receive window.
+     *
+     * @param size the size of the window as advertised to the peer
+     * @param threshold the number of consumed octets from which on they are announced
+     */
+    public ReceiveWindow(final int size, final int threshold) {
+        this.size = size;
+        this.threshold = Math.max(1, threshold);
+        this.available = size;
+    }
+
+    /**
+     * Takes octets the peer has sent out of the window.
+     *
+     * @param bytes the number of octets received
+     *
+     * @return {@code true} if the octets fit in the window, {@code false} if the peer overran it
+     */
+    public synchronized boolean receive(final int bytes) {
+        if (bytes > this.available) {
+            return false;
+        }
+
+        this.available -= bytes;
+        return true;
+    }
+
+    /**
+     * Records octets the application has consumed.
+     *
+     * @param bytes the number of octets consumed
+     *
+     * @return the increment to announce to the peer in a WINDOW_UPDATE frame, or {@code 0} if
+     *         the consumption should not be announced yet
+     */
+    public synchronized int consume(final int bytes) {
+        this.pending += bytes;
+        if (this.pending < this.threshold) {
+            return 0;
+        }
+
+        final var increment = (int) this.pending;
+        this.available += increment;
+        this.pending = 0;
+        return increment;
+    }
+
+    /**
+     * Grows the window, letting the peer send the difference right away.
+     *
+     * The announcement threshold is reset to half the new size.
+     *
+     * @param size the new size of the window, which must not be smaller than the current one
+     *
+     * @return the difference between the new and the old size
+     */
+    public synchronized int grow(final int size) {
+        assert size >= this.size : "Receive windows only grow";
+
+        final var delta = size - this.size;
+        this.threshold = Math.max(1, size / 2);
+        this.size = size;
+        this.available += delta;
+        return delta;
+    }
+
+    /**
+     * Returns the size of the window as advertised to the peer.
+     *
+     * @return the size
+     */
+    public synchronized int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of octets the peer may still send.
+     *
+     * @return the number of octets
+     */
+    public synchronized long getAvailable() {
+        return this.available;
+    }
+}
@@ -0,0 +1,186 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
+import net.wukl.cacofony.util.CheckedExceptionTunnel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream writing a response body to an HTTP/2 stream.
+ * <p>
+ * Writes are collected in a pooled buffer until it holds a full frame, so small writes do not
+ * each end up in a DATA frame of their own. Full buffers are handed over to the protocol as they
+ * are, without copying them again.
+ */
+class ResponseBodyStream extends OutputStream {
+    /**
+     * The protocol instance serving the connection.
+     */
+    private final Http2Protocol protocol;
+
+    /**
+     * The identifier of the stream the body is sent on.
+     */
+    private final int streamId;
+
+    /**
+     * The pool providing the buffers.
+     */
+    private final BufferPool pool;
+
+    /**
+     * The buffer collecting the data not handed over yet, or {@code null} if there is none.
+     */
+    private PooledBuffer buffer = null;
+
+    /**
+     * Whether the stream has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Creates a new response body stream.
+     *
+     * @param protocol the protocol instance serving the connection
+     * @param streamId the identifier of the stream the body is sent on
+     * @param pool the pool providing the buffers
+     */
+    ResponseBodyStream(final Http2Protocol protocol, final int streamId, final BufferPool pool) {
+        this.protocol = protocol;
+        this.streamId = streamId;
+        this.pool = pool;
+    }
+
+    /**
+     * Writes a single octet.
+     *
+     * @param b the octet
+     *
+     * @throws IOException if the stream has been closed or reset
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        this.requireOpen();
+
+        final var buf = this.currentBuffer();
+        buf.write(b);
+        if (buf.length() >= this.getFrameLimit()) {
+            this.submit(false);
+        }
+    }
+
+    /**
+     * Writes a range of octets.
+     *
+     * @param b the array containing the octets
+     * @param off the position of the octets within the array
+     * @param len the number of octets
+     *
+     * @throws IOException if the stream has been closed or reset
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        this.requireOpen();
+
+        var done = 0;
+        while (done < len) {
+            final var buf = this.currentBuffer();
+            final var limit = this.getFrameLimit();
+
+            done += buf.write(b, off + done, Math.min(len - done, limit - buf.length()));
+            if (buf.length() >= limit) {
+                this.submit(false);
+            }
+        }
+    }
+
+    /**
+     * Hands the data written so far over to the protocol.
+     *
+     * @throws IOException if the stream has been reset
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!this.closed && this.buffer != null && this.buffer.length() > 0) {
+            this.submit(false);
+        }
+    }
+
+    /**
+     * Hands the remaining data over to the protocol and ends the stream.
+     *
+     * Closing the stream more than once has no effect.
+     *
+     * @throws IOException if the stream has been reset
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.submit(true);
+        }
+    }
+
+    /**
+     * Returns a description of the stream.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "HTTP/2 OutputStream writing response body to stream " + this.streamId;
+    }
+
+    /**
+     * Returns the buffer collecting data, taking one from the pool if there is none.
+     *
+     * @return the buffer
+     */
+    private PooledBuffer currentBuffer() {
+        if (this.buffer == null) {
+            this.buffer = this.pool.acquire();
+        }
+
+        return this.buffer;
+    }
+
+    /**
+     * Returns the number of octets to collect before handing a buffer over.
+     *
+     * @return the number of octets, which fits in a single frame
+     */
+    private int getFrameLimit() {
+        return Math.min(this.protocol.getMaxFrameSize(), this.pool.getBufferSize());
+    }
+
+    /**
+     * Hands the current buffer over to the protocol.
+     *
+     * @param endStream whether this is the last data on the stream
+     *
+     * @throws IOException if the stream has been closed or reset
+     */
+    private void submit(final boolean endStream) throws IOException {
+        final var data = this.buffer;
+        this.buffer = null;
+
+        try {
+            this.protocol.sendData(this.streamId, data, endStream);
+        } catch (final InterruptedException ex) {
+            throw new CheckedExceptionTunnel(ex);
+        }
+    }
+
+    /**
+     * Makes sure the stream has not been closed yet.
+     *
+     * @throws IOException if the stream has been closed
+     */
+    private void requireOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Response body stream is closed");
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package net.wukl.cacofony.http2;
 
-import java.util.concurrent.Semaphore;
-
 /**
  * A flow-control window.
  */
 public class Window {
+    /**
+     * The largest size a flow-control window may have.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.9.1">RFC 7540 Section 6.9.1</a>
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
     /**
      * The local window.
      */
-    private final Semaphore local;
+    private final ReceiveWindow local;
 
     /**
-     * The remote window.
+     * The remote window, which may become negative after the peer shrinks its initial size.
      */
-    private final Semaphore remote;
+    private long remote;
 
     /**
      * Creates a new, empty flow-control window.
@@ -30,8 +35,8 @@ public class Window {
      * @param remote the initial size of the remote window
      */
     public Window(final int local, final int remote) {
-        this.local = new Semaphore(local);
-        this.remote = new Semaphore(remote);
+        this.local = new ReceiveWindow(local);
+        this.remote = remote;
     }
 
     /**
@@ -42,44 +47,97 @@ public class Window {
      * @return whether shrinking succeeded or not
      */
     public boolean shrinkLocal(final int permits) {
-        return this.local.tryAcquire(permits);
+        return this.local.receive(permits);
+    }
+
+    /**
+     * Grows the local window.
+     *
+     * @param size the new size of the window, which must not be smaller than the current one
+     *
+     * @return the difference between the new and the old size, to announce to the peer
+     */
+    public int growLocal(final int size) {
+        return this.local.grow(size);
+    }
+
+    /**
+     * Returns the size of the local window as advertised to the peer.
+     *
+     * @return the size
+     */
+    public int getLocalSize() {
+        return this.local.getSize();
     }
 
     /**
      * Tries to shrink the remote window.
      *
-     * If the window is too small to fit the requested size, it is halved until a fitting amount is
-     * found. If the window is closed, {@code 0} is returned.
+     * If the window is too small to fit the requested size, it is shrunk by as much as it can.
+     * If the window is closed, {@code 0} is returned. This function never blocks.
      *
-     * @param permits the initial amount to shrink the window with
+     * @param permits the amount to shrink the window with
      *
      * @return the actual amount the window was shrunk with
      */
-    public int acquireRemote(final int permits) {
-        for (int p = permits; p > 0; p /= 2) {
-            if (this.remote.tryAcquire(p)) {
-                return p;
-            }
+    public synchronized int acquireRemote(final int permits) {
+        if (this.remote <= 0) {
+            return 0;
         }
 
-        return 0;
+        final var granted = (int) Math.min(permits, this.remote);
+        this.remote -= granted;
+
+        return granted;
     }
 
     /**
-     * Grows the local window.
+     * Grows the local window after the application consumed received data.
+     *
+     * Small amounts are accumulated until they are worth announcing to the peer.
+     *
+     * @param permits the number of octets consumed
      *
-     * @param permits the amount to grow the window with
+     * @return the increment to announce to the peer, or {@code 0} if there is nothing to announce
      */
-    public void topOffLocal(final int permits) {
-        this.local.release(permits);
+    public int topOffLocal(final int permits) {
+        return this.local.consume(permits);
     }
 
     /**
      * Grows the remote window.
      *
      * @param permits the amount the remote allows to let the window grow
+     *
+     * @throws Http2FlowControlError if the window would grow beyond its maximum size
+     */
+    public synchronized void topOffRemote(final long permits) {
+        this.adjustRemote(permits);
+    }
+
+    /**
+     * Grows or shrinks the remote window after the peer changed the initial window size.
+     *
+     * @param delta the difference between the new and the old initial window size
+     *
+     * @throws Http2FlowControlError if the window would grow beyond its maximum size
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.9.2">RFC 7540 Section 6.9.2</a>
+     */
+    public synchronized void adjustRemote(final long delta) {
+        if (this.remote + delta > MAX_SIZE) {
+            throw new Http2FlowControlError("Flow-control window exceeds " + MAX_SIZE);
+        }
+
+        this.remote += delta;
+    }
+
+    /**
+     * Returns the size of the remote window.
+     *
+     * @return the number of octets that may be sent, which is negative if the window is overdrawn
      */
-    public void topOffRemote(final int permits) {
-        this.remote.release(permits);
+    public synchronized long getRemote() {
+        return this.remote;
     }
 }
@@ -0,0 +1,146 @@
+package net.wukl.cacofony.http2.buffer;
+
+import net.wukl.cacodi.Manual;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of equally sized byte arrays shared by all connections.
+ * <p>
+ * Buffers are handed out with a single reference. Once every holder has released its reference,
+ * the array goes back to the pool to be handed out again. The pool only keeps a limited number of
+ * idle arrays; arrays released beyond that are left to the garbage collector.
+ */
+public class BufferPool {
+    /**
+     * The default size of the pooled arrays, which fits a frame of the default maximum size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    /**
+     * The default maximum number of idle arrays kept in the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 256;
+
+    /**
+     * The size of the pooled arrays.
+     */
+    private final int bufferSize;
+
+    /**
+     * The maximum number of idle arrays kept in the pool.
+     */
+    private final int maxIdle;
+
+    /**
+     * The idle arrays, most recently released first.
+     */
+    private final ConcurrentLinkedDeque<byte[]> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * The number of idle arrays.
+     */
+    private final AtomicInteger idleCount = new AtomicInteger(0);
+
+    /**
+     * The number of arrays the pool had to allocate.
+     */
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * Creates a new buffer pool with the default sizes.
+     */
+    public BufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates a new buffer pool.
+     *
+     * @param bufferSize the size of the pooled arrays
+     * @param maxIdle the maximum number of idle arrays kept in the pool
+     */
+    @Manual
+    public BufferPool(final int bufferSize, final int maxIdle) {
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Takes a buffer from the pool.
+     *
+     * @return an empty buffer of {@link #getBufferSize()} octets
+     */
+    public PooledBuffer acquire() {
+        var array = this.idle.pollFirst();
+        if (array == null) {
+            this.allocations.increment();
+            array = new byte[this.bufferSize];
+        } else {
+            this.idleCount.decrementAndGet();
+        }
+
+        return new PooledBuffer(this, array);
+    }
+
+    /**
+     * Takes a buffer of at least a certain capacity from the pool.
+     *
+     * If the requested capacity exceeds the size of the pooled arrays, a buffer that is not
+     * backed by the pool is returned instead.
+     *
+     * @param capacity the minimum capacity of the buffer
+     *
+     * @return an empty buffer
+     */
+    public PooledBuffer acquire(final int capacity) {
+        if (capacity > this.bufferSize) {
+            return new PooledBuffer(null, new byte[capacity]);
+        }
+
+        return this.acquire();
+    }
+
+    /**
+     * Returns an array to the pool after its last reference has been released.
+     *
+     * @param array the array
+     */
+    void recycle(final byte[] array) {
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            return;
+        }
+
+        this.idle.offerFirst(array);
+    }
+
+    /**
+     * Returns the size of the pooled arrays.
+     *
+     * @return the size in octets
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Returns the number of idle arrays in the pool.
+     *
+     * @return the number of arrays
+     */
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    /**
+     * Returns the number of arrays the pool had to allocate since it was created.
+     *
+     * @return the number of allocations
+     */
+    public long getAllocations() {
+        return this.allocations.sum();
+    }
+}
@@ -0,0 +1,167 @@
+package net.wukl.cacofony.http2.buffer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted byte array, usually borrowed from a {@link BufferPool}.
+ * <p>
+ * The buffer is filled by a single producer before being handed over to its consumers. Every
+ * consumer holding on to (a slice of) the buffer takes a reference with {@link #retain()} and
+ * gives it back with {@link #release()}. The array returns to the pool once the last reference has
+ * been released, after which the buffer must no longer be used.
+ */
+public final class PooledBuffer {
+    /**
+     * The pool the array belongs to, or {@code null} if it does not belong to any pool.
+     */
+    private final BufferPool pool;
+
+    /**
+     * The backing array.
+     */
+    private final byte[] array;
+
+    /**
+     * The number of octets written into the array.
+     */
+    private int length = 0;
+
+    /**
+     * The number of references held.
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Creates a new buffer holding a single reference.
+     *
+     * @param pool the pool the array belongs to, or {@code null} if it does not belong to any
+     * @param array the backing array
+     */
+    PooledBuffer(final BufferPool pool, final byte[] array) {
+        this.pool = pool;
+        this.array = array;
+    }
+
+    /**
+     * Creates a buffer that is not backed by any pool, containing a copy of a range of octets.
+     *
+     * @param bytes the array containing the octets
+     * @param offset the position of the octets within the array
+     * @param length the number of octets
+     *
+     * @return the buffer
+     */
+    public static PooledBuffer copyOf(final byte[] bytes, final int offset, final int length) {
+        final var buffer = new PooledBuffer(null, new byte[length]);
+        buffer.write(bytes, offset, length);
+
+        return buffer;
+    }
+
+    /**
+     * Returns the backing array.
+     *
+     * @return the array
+     */
+    public byte[] array() {
+        return this.array;
+    }
+
+    /**
+     * Returns the number of octets written into the buffer.
+     *
+     * @return the number of octets
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns the number of octets the buffer can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.array.length;
+    }
+
+    /**
+     * Returns the number of octets that can still be written into the buffer.
+     *
+     * @return the number of octets
+     */
+    public int remaining() {
+        return this.array.length - this.length;
+    }
+
+    /**
+     * Appends a single octet.
+     *
+     * @param b the octet
+     *
+     * @throws IndexOutOfBoundsException if the buffer is full
+     */
+    public void write(final int b) {
+        this.array[this.length++] = (byte) b;
+    }
+
+    /**
+     * Appends as many octets from a range as fit.
+     *
+     * @param bytes the array containing the octets
+     * @param offset the position of the octets within the array
+     * @param length the number of octets to append
+     *
+     * @return the number of octets appended
+     */
+    public int write(final byte[] bytes, final int offset, final int length) {
+        final var count = Math.min(length, this.remaining());
+        System.arraycopy(bytes, offset, this.array, this.length, count);
+        this.length += count;
+
+        return count;
+    }
+
+    /**
+     * Takes an additional reference to the buffer.
+     *
+     * @return the buffer
+     *
+     * @throws IllegalStateException if the buffer has already been released completely
+     */
+    public PooledBuffer retain() {
+        if (this.references.getAndIncrement() <= 0) {
+            this.references.decrementAndGet();
+            throw new IllegalStateException("Buffer has already been released");
+        }
+
+        return this;
+    }
+
+    /**
+     * Gives back a reference to the buffer.
+     *
+     * The array goes back to the pool once the last reference has been released.
+     *
+     * @throws IllegalStateException if the buffer has already been released completely
+     */
+    public void release() {
+        final var left = this.references.decrementAndGet();
+        if (left < 0) {
+            throw new IllegalStateException("Buffer has been released too often");
+        }
+
+        if (left == 0 && this.pool != null) {
+            this.pool.recycle(this.array);
+        }
+    }
+
+    /**
+     * Returns the number of references held.
+     *
+     * @return the reference count
+     */
+    public int getReferenceCount() {
+        return this.references.get();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Pooled buffers carrying HTTP/2 payloads.
+ */
+package net.wukl.cacofony.http2.buffer;
@@ -0,0 +1,61 @@
+package net.wukl.cacofony.http2.frame;
+
+/**
+ * A padding policy rounding every padded frame up to a multiple of a bucket size.
+ * <p>
+ * Unlike random padding, repeating the same response does not let an observer average the
+ * padding out: all payloads within a bucket look exactly alike.
+ */
+public class BucketPadding implements PaddingPolicy {
+    /**
+     * The size of a bucket in octets.
+     */
+    private final int bucketSize;
+
+    /**
+     * Creates a new bucket padding policy.
+     *
+     * @param bucketSize the size of a bucket in octets, within [1, 256]
+     *
+     * @throws IllegalArgumentException if the bucket size is out of range
+     */
+    public BucketPadding(final int bucketSize) {
+        if (bucketSize < 1 || bucketSize > MAX_PADDING) {
+            throw new IllegalArgumentException(
+                    "Bucket size " + bucketSize + " is not in [1, 256]"
+            );
+        }
+
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * Decides how many octets to pad a frame with.
+     *
+     * The padded payload, including the pad length octet, ends on the next bucket boundary. If
+     * the frame cannot take that much padding, it is padded as far as it can.
+     *
+     * @param payloadLength the length of the frame's payload without padding
+     * @param limit the largest amount of padding the frame can take
+     *
+     * @return the number of padding octets
+     */
+    @Override
+    public int getPadding(final int payloadLength, final int limit) {
+        final var minimum = payloadLength + 1;
+        final var buckets = (minimum + this.bucketSize - 1) / this.bucketSize;
+        final var padding = buckets * this.bucketSize - payloadLength;
+
+        return Math.max(0, Math.min(padding, limit));
+    }
+
+    /**
+     * Returns a description of the policy.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "bucket (" + this.bucketSize + " octets)";
+    }
+}
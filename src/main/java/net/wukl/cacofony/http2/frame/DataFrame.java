@@ -1,11 +1,17 @@
 package net.wukl.cacofony.http2.frame;
 
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
+
+import java.util.Arrays;
 import java.util.Set;
 
 /**
  * A DATA frame.
  *
  * This frame contains opaque connection data.
+ * <p>
+ * The payload is a slice of an array, which may belong to a pooled buffer. A frame referencing a
+ * pooled buffer holds a reference to it until {@link #release()} is called.
  *
  * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.1">RFC 7540 Section 6.1</a>
  */
@@ -21,9 +27,29 @@ public class DataFrame implements Frame {
     private final Set<FrameFlag> flags;
 
     /**
-     * The payload of the frame.
+     * The array containing the payload of the frame.
+     */
+    private final byte[] array;
+
+    /**
+     * The position of the payload within the array.
+     */
+    private final int offset;
+
+    /**
+     * The length of the payload.
+     */
+    private final int length;
+
+    /**
+     * The number of padding octets the frame carries, including the pad length field.
+     */
+    private final int paddingLength;
+
+    /**
+     * The pooled buffer the array belongs to, or {@code null} if the frame holds no reference.
      */
-    private final byte[] bytes;
+    private PooledBuffer buffer;
 
     /**
      * Creates a new DATA frame.
@@ -34,8 +60,65 @@ public class DataFrame implements Frame {
      */
     public DataFrame(final int streamId, final Set<FrameFlag> flags, final byte[] bytes) {
         this.streamId = streamId;
-        this.bytes = bytes;
         this.flags = flags;
+        this.array = bytes;
+        this.offset = 0;
+        this.length = bytes.length;
+        this.paddingLength = 0;
+        this.buffer = null;
+    }
+
+    /**
+     * Creates a new DATA frame carrying a slice of a pooled buffer.
+     *
+     * The frame takes over a reference to the buffer, which the caller should have retained for
+     * it.
+     *
+     * @param streamId the identifier of the stream the data is for
+     * @param flags any flags set for the frame
+     * @param buffer the buffer containing the payload
+     * @param offset the position of the payload within the buffer
+     * @param length the length of the payload
+     */
+    public DataFrame(
+            final int streamId,
+            final Set<FrameFlag> flags,
+            final PooledBuffer buffer,
+            final int offset,
+            final int length
+    ) {
+        this(streamId, flags, buffer, offset, length, 0);
+    }
+
+    /**
+     * Creates a new padded DATA frame carrying a slice of a pooled buffer.
+     *
+     * The frame takes over a reference to the buffer, which the caller should have retained for
+     * it.
+     *
+     * @param streamId the identifier of the stream the data is for
+     * @param flags any flags set for the frame
+     * @param buffer the buffer containing the payload
+     * @param offset the position of the payload within the buffer
+     * @param length the length of the payload
+     * @param paddingLength the number of padding octets the frame carries, including the pad
+     *                      length field
+     */
+    public DataFrame(
+            final int streamId,
+            final Set<FrameFlag> flags,
+            final PooledBuffer buffer,
+            final int offset,
+            final int length,
+            final int paddingLength
+    ) {
+        this.streamId = streamId;
+        this.flags = flags;
+        this.array = buffer.array();
+        this.offset = offset;
+        this.length = length;
+        this.paddingLength = paddingLength;
+        this.buffer = buffer;
     }
 
     /**
@@ -43,7 +126,30 @@ public class DataFrame implements Frame {
      */
     @Override
     public int getPayloadLength() {
-        return this.bytes.length;
+        return this.length;
+    }
+
+    /**
+     * Returns the number of padding octets the frame carries.
+     *
+     * @return the number of padding octets, including the pad length field, or {@code 0} if the
+     *         frame is not padded
+     */
+    public int getPaddingLength() {
+        return this.paddingLength;
+    }
+
+    /**
+     * Returns the number of octets the frame counts against the flow-control window.
+     *
+     * This is the entire payload on the wire, including any padding.
+     *
+     * @return the flow-controlled length
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.1">RFC 7540 Section 6.1</a>
+     */
+    public int getFlowControlledLength() {
+        return this.length + this.paddingLength;
     }
 
     /**
@@ -70,12 +176,68 @@ public class DataFrame implements Frame {
         return this.streamId;
     }
 
+    /**
+     * Gives back the frame's reference to its pooled buffer, if it has any.
+     *
+     * The payload must not be accessed afterwards.
+     */
+    @Override
+    public void release() {
+        if (this.buffer != null) {
+            this.buffer.release();
+            this.buffer = null;
+        }
+    }
+
+    /**
+     * Takes an additional reference to the frame's pooled buffer.
+     *
+     * This allows holding on to the payload after the frame itself has been released.
+     *
+     * @return the buffer, which the caller has to release, or {@code null} if the payload is not
+     *         pooled
+     */
+    public PooledBuffer retainBuffer() {
+        if (this.buffer == null) {
+            return null;
+        }
+
+        return this.buffer.retain();
+    }
+
+    /**
+     * Returns the array containing the payload.
+     *
+     * @return the array
+     *
+     * @see #getOffset()
+     * @see #getPayloadLength()
+     */
+    public byte[] getArray() {
+        return this.array;
+    }
+
+    /**
+     * Returns the position of the payload within the array.
+     *
+     * @return the offset
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
     /**
      * The payload of the frame.
      *
+     * If the payload is only a slice of its array, this returns a copy of the slice.
+     *
      * @return the payload bytes
      */
     public byte[] getBytes() {
-        return this.bytes;
+        if (this.offset == 0 && this.length == this.array.length) {
+            return this.array;
+        }
+
+        return Arrays.copyOfRange(this.array, this.offset, this.offset + this.length);
     }
 }
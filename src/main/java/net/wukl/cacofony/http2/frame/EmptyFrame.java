@@ -31,6 +31,11 @@ public class EmptyFrame implements Frame {
      */
     private final int streamId;
 
+    /**
+     * The number of padding octets surrounding the payload, including the pad length field.
+     */
+    private final int paddingLength;
+
     /**
      * Creates a new empty frame.
      *
@@ -41,11 +46,31 @@ public class EmptyFrame implements Frame {
      */
     public EmptyFrame(
             final int length, final FrameType type, final Set<FrameFlag> flags, final int streamId
+    ) {
+        this(length, type, flags, streamId, 0);
+    }
+
+    /**
+     * Creates a new empty frame for a padded payload.
+     *
+     * @param length the length of the (virtual) payload, excluding padding
+     * @param type the type of the frame
+     * @param flags the flags belonging to the frame
+     * @param streamId the stream id of the stream the frame belongs to
+     * @param paddingLength the number of padding octets, including the pad length field
+     */
+    public EmptyFrame(
+            final int length,
+            final FrameType type,
+            final Set<FrameFlag> flags,
+            final int streamId,
+            final int paddingLength
     ) {
         this.length = length;
         this.type = type;
         this.flags = flags;
         this.streamId = streamId;
+        this.paddingLength = paddingLength;
     }
 
     /**
@@ -90,4 +115,13 @@ public class EmptyFrame implements Frame {
     public int getStreamId() {
         return this.streamId;
     }
+
+    /**
+     * Returns the number of padding octets surrounding the payload.
+     *
+     * @return the padding length, including the pad length field
+     */
+    public int getPaddingLength() {
+        return this.paddingLength;
+    }
 }
@@ -33,4 +33,13 @@ public interface Frame {
      * @return the stream identifier
      */
     int getStreamId();
+
+    /**
+     * Gives back any pooled resources the frame holds.
+     *
+     * This is called once the frame has been written or processed; the payload of the frame must
+     * not be accessed afterwards. Frames holding no pooled resources need not do anything.
+     */
+    default void release() {
+    }
 }
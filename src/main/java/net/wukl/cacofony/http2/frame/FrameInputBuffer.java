@@ -0,0 +1,251 @@
+package net.wukl.cacofony.http2.frame;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads octets from the connection into a reusable buffer to parse frames from.
+ * <p>
+ * Every refill reads as much as the connection has available, so a burst of small frames is
+ * parsed from a single read rather than several reads per frame. Headers and fixed-size payloads
+ * are decoded straight from the buffer; only payloads that outlive the frame are copied out. A
+ * payload larger than the buffer is read directly into its destination once the buffered octets
+ * have been taken.
+ * <p>
+ * The buffer is not thread-safe; it should only be used by the thread reading frames.
+ */
+public class FrameInputBuffer {
+    /**
+     * The default capacity, fitting two frames of the smallest maximum frame size.
+     */
+    public static final int DEFAULT_CAPACITY = 2 * (16384 + FrameOutputBuffer.HEADER_LENGTH);
+
+    /**
+     * The stream providing the octets.
+     */
+    private final InputStream source;
+
+    /**
+     * The buffer.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The position of the next octet to read from the buffer.
+     */
+    private int position = 0;
+
+    /**
+     * The position after the last octet in the buffer.
+     */
+    private int limit = 0;
+
+    /**
+     * Creates a new frame input buffer with the default capacity.
+     *
+     * @param source the stream providing the octets
+     */
+    public FrameInputBuffer(final InputStream source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new frame input buffer.
+     *
+     * @param source the stream providing the octets
+     * @param capacity the size of the buffer, which must fit at least a frame header
+     */
+    public FrameInputBuffer(final InputStream source, final int capacity) {
+        if (capacity < FrameOutputBuffer.HEADER_LENGTH) {
+            throw new IllegalArgumentException("Buffer capacity " + capacity + " is too small");
+        }
+
+        this.source = source;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Reads an unsigned 8-bit integer.
+     *
+     * @return the integer
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public int readUnsignedByte() throws IOException {
+        this.require(1);
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Reads an unsigned 16-bit integer in network byte order.
+     *
+     * @return the integer
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public int readUnsignedShort() throws IOException {
+        this.require(Short.BYTES);
+
+        final var buf = this.buffer;
+        final var pos = this.position;
+        this.position += Short.BYTES;
+        return ((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF);
+    }
+
+    /**
+     * Reads an unsigned 24-bit integer in network byte order.
+     *
+     * @return the integer
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public int readUnsignedMedium() throws IOException {
+        this.require(3);
+
+        final var buf = this.buffer;
+        final var pos = this.position;
+        this.position += 3;
+        return ((buf[pos] & 0xFF) << 16) | ((buf[pos + 1] & 0xFF) << 8) | (buf[pos + 2] & 0xFF);
+    }
+
+    /**
+     * Reads a 32-bit integer in network byte order.
+     *
+     * @return the integer, which is negative if its most significant bit is set
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public int readInt() throws IOException {
+        this.require(Integer.BYTES);
+
+        final var buf = this.buffer;
+        final var pos = this.position;
+        this.position += Integer.BYTES;
+        return ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16)
+                | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+    }
+
+    /**
+     * Reads an unsigned 32-bit integer in network byte order.
+     *
+     * @return the integer
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public long readUnsignedInt() throws IOException {
+        return this.readInt() & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads a number of octets into a new array.
+     *
+     * @param length the number of octets to read
+     *
+     * @return the octets
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public byte[] readBytes(final int length) throws IOException {
+        final var bytes = new byte[length];
+        this.readFully(bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Reads a number of octets into an existing array.
+     *
+     * @param dest the array to read the octets into
+     * @param offset the position within the array to start writing at
+     * @param length the number of octets to read
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public void readFully(final byte[] dest, final int offset, final int length)
+            throws IOException {
+        final var buffered = Math.min(length, this.limit - this.position);
+        System.arraycopy(this.buffer, this.position, dest, offset, buffered);
+        this.position += buffered;
+
+        var done = buffered;
+        while (done < length) {
+            final var left = length - done;
+            if (left >= this.buffer.length) {
+                final var read = this.source.read(dest, offset + done, left);
+                if (read < 0) {
+                    throw new EOFException();
+                }
+                done += read;
+            } else {
+                this.require(left);
+                System.arraycopy(this.buffer, this.position, dest, offset + done, left);
+                this.position += left;
+                done = length;
+            }
+        }
+    }
+
+    /**
+     * Discards a number of octets.
+     *
+     * @param length the number of octets to discard
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    public void skip(final int length) throws IOException {
+        var left = length;
+        while (left > 0) {
+            final var step = Math.min(left, this.buffer.length);
+            this.require(step);
+            this.position += step;
+            left -= step;
+        }
+    }
+
+    /**
+     * Returns the number of octets that can be read without touching the connection.
+     *
+     * @return the number of buffered octets
+     */
+    public int buffered() {
+        return this.limit - this.position;
+    }
+
+    /**
+     * Makes sure the buffer holds a number of unread octets, reading from the connection if not.
+     *
+     * @param length the number of octets, at most the buffer's capacity
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the stream ends first
+     */
+    private void require(final int length) throws IOException {
+        if (this.limit - this.position >= length) {
+            return;
+        }
+
+        if (this.buffer.length - this.position < length) {
+            final var unread = this.limit - this.position;
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, unread);
+            this.position = 0;
+            this.limit = unread;
+        }
+
+        while (this.limit - this.position < length) {
+            final var free = this.buffer.length - this.limit;
+            final var read = this.source.read(this.buffer, this.limit, free);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            this.limit += read;
+        }
+    }
+}
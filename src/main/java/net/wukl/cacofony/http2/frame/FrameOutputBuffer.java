@@ -0,0 +1,226 @@
+package net.wukl.cacofony.http2.frame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Collects encoded frames in a reusable buffer before handing them to the connection.
+ * <p>
+ * Frames written in a batch end up in as few writes to the underlying stream as possible, each
+ * filling the buffer completely, so a TLS connection sends full records rather than one record
+ * per frame header and payload. Payloads larger than the buffer bypass it once the buffered octets
+ * have been passed on.
+ * <p>
+ * The buffer is not thread-safe; it should only be used by the thread writing frames.
+ */
+public class FrameOutputBuffer extends OutputStream {
+    /**
+     * The default capacity, which is the largest plaintext a single TLS record carries.
+     */
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    /**
+     * The number of octets in a frame header.
+     */
+    public static final int HEADER_LENGTH = 9;
+
+    /**
+     * The stream receiving the buffered octets.
+     */
+    private final OutputStream target;
+
+    /**
+     * The buffer.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The number of octets in the buffer.
+     */
+    private int count = 0;
+
+    /**
+     * Creates a new frame output buffer with the default capacity.
+     *
+     * @param target the stream receiving the buffered octets
+     */
+    public FrameOutputBuffer(final OutputStream target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new frame output buffer.
+     *
+     * @param target the stream receiving the buffered octets
+     * @param capacity the size of the buffer, which must fit at least a frame header
+     */
+    public FrameOutputBuffer(final OutputStream target, final int capacity) {
+        if (capacity < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Buffer capacity " + capacity + " is too small");
+        }
+
+        this.target = target;
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Writes a single octet.
+     *
+     * @param b the octet
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        this.reserve(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    /**
+     * Writes a range of octets.
+     *
+     * @param bytes the array containing the octets
+     * @param offset the position of the octets within the array
+     * @param length the number of octets to write
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        var from = offset;
+        var left = length;
+        while (left > 0) {
+            if (this.count == 0 && left >= this.buffer.length) {
+                this.target.write(bytes, from, left);
+                return;
+            }
+
+            final var step = Math.min(left, this.buffer.length - this.count);
+            System.arraycopy(bytes, from, this.buffer, this.count, step);
+            this.count += step;
+            from += step;
+            left -= step;
+
+            if (this.count == this.buffer.length) {
+                this.drain();
+            }
+        }
+    }
+
+    /**
+     * Writes an unsigned 16-bit integer in network byte order.
+     *
+     * @param value the integer
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeShort(final int value) throws IOException {
+        this.reserve(Short.BYTES);
+        this.buffer[this.count] = (byte) (value >>> 8);
+        this.buffer[this.count + 1] = (byte) value;
+        this.count += Short.BYTES;
+    }
+
+    /**
+     * Writes an unsigned 32-bit integer in network byte order.
+     *
+     * @param value the integer
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeInt(final long value) throws IOException {
+        this.reserve(Integer.BYTES);
+        this.buffer[this.count] = (byte) (value >>> 24);
+        this.buffer[this.count + 1] = (byte) (value >>> 16);
+        this.buffer[this.count + 2] = (byte) (value >>> 8);
+        this.buffer[this.count + 3] = (byte) value;
+        this.count += Integer.BYTES;
+    }
+
+    /**
+     * Writes a frame header.
+     *
+     * @param length the length of the frame's payload, including padding
+     * @param type the value of the frame's type
+     * @param flags the bit string of the frame's flags
+     * @param streamId the identifier of the stream the frame belongs to
+     *
+     * @throws IOException if an I/O error occurs
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-4.1">RFC 7540 Section 4.1</a>
+     */
+    public void writeHeader(final int length, final byte type, final byte flags, final int streamId)
+            throws IOException {
+        this.reserve(HEADER_LENGTH);
+
+        final var buf = this.buffer;
+        final var pos = this.count;
+        buf[pos] = (byte) (length >>> 16);
+        buf[pos + 1] = (byte) (length >>> 8);
+        buf[pos + 2] = (byte) length;
+        buf[pos + 3] = type;
+        buf[pos + 4] = flags;
+        buf[pos + 5] = (byte) (streamId >>> 24);
+        buf[pos + 6] = (byte) (streamId >>> 16);
+        buf[pos + 7] = (byte) (streamId >>> 8);
+        buf[pos + 8] = (byte) streamId;
+        this.count += HEADER_LENGTH;
+    }
+
+    /**
+     * Returns the number of octets waiting in the buffer.
+     *
+     * @return the number of octets
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Passes the buffered octets on and flushes the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        this.drain();
+        this.target.flush();
+    }
+
+    /**
+     * Flushes the buffer.
+     *
+     * The underlying stream is left open, as it belongs to the connection.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        this.flush();
+    }
+
+    /**
+     * Makes sure the buffer has room for a number of octets, draining it if it has not.
+     *
+     * @param length the number of octets, at most the buffer's capacity
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void reserve(final int length) throws IOException {
+        if (this.buffer.length - this.count < length) {
+            this.drain();
+        }
+    }
+
+    /**
+     * Passes the buffered octets on to the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void drain() throws IOException {
+        if (this.count > 0) {
+            this.target.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
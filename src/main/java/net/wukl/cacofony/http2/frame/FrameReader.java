@@ -2,6 +2,7 @@ package net.wukl.cacofony.http2.frame;
 
 import net.wukl.cacofony.http2.ErrorCode;
 import net.wukl.cacofony.http2.Http2ProtocolError;
+import net.wukl.cacofony.http2.buffer.BufferPool;
 import net.wukl.cacofony.http2.hpack.Hpack;
 import net.wukl.cacofony.http2.settings.Setting;
 import net.wukl.cacofony.http2.settings.SettingIdentifier;
@@ -10,13 +11,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Set;
 
 /**
- * Reads HTTP/2 frames from an input stream.
+ * Reads HTTP/2 frames from a connection's input buffer.
  */
 public class FrameReader {
     private static final Logger logger = LoggerFactory.getLogger(FrameReader.class);
@@ -26,6 +27,13 @@ public class FrameReader {
      */
     private static final int PRIORITY_PAYLOAD_LENGTH = 5;
 
+    /**
+     * The maximum frame size every endpoint accepts before settings have been exchanged.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5.2">RFC 7540 Section 6.5.2</a>
+     */
+    private static final int MIN_MAX_FRAME_SIZE = 16384;
+
     /**
      * Specialized frame readers for each of the possible frame types.
      */
@@ -36,13 +44,20 @@ public class FrameReader {
      */
     private final Hpack hpack;
 
+    /**
+     * The pool providing the buffers DATA payloads are read into.
+     */
+    private final BufferPool bufferPool;
+
     /**
      * Creates a new frame reader.
      *
      * @param hpack the HPACK decompressor
+     * @param bufferPool the pool providing the buffers DATA payloads are read into
      */
-    public FrameReader(final Hpack hpack) {
+    public FrameReader(final Hpack hpack, final BufferPool bufferPool) {
         this.hpack = hpack;
+        this.bufferPool = bufferPool;
 
         for (int i = 0; i < (1 << Byte.SIZE); ++i) {
             final var index = i;
@@ -51,7 +66,7 @@ public class FrameReader {
                         "Unrecognized frame type {} ({}), discarding {} bytes",
                         p.getType(), index, p.getPayloadLength()
                 );
-                in.readNBytes(p.getPayloadLength());
+                in.skip(p.getPayloadLength());
                 return p;
             };
         }
@@ -66,6 +81,7 @@ public class FrameReader {
         this.addReader(FrameType.RST_STREAM, this::readRstStream);
         this.addReader(FrameType.PING, this::readPing);
         this.addReader(FrameType.PUSH_PROMISE, this::readPushPromise);
+        this.addReader(FrameType.PRIORITY_UPDATE, this::readPriorityUpdate);
     }
 
     /**
@@ -79,28 +95,46 @@ public class FrameReader {
     }
 
     /**
-     * Reads a frame from an input stream.
+     * Reads a frame no larger than the initial maximum frame size from a connection's input
+     * buffer.
      *
-     * @param in the input stream
+     * @param in the input buffer
      *
      * @return the frame that has been read
      *
      * @throws IOException if an I/O error occurs
+     * @throws EOFException if the connection ends before the frame does
      * @throws net.wukl.cacofony.http2.Http2ConnectionError if the frame is invalid
      */
-    public Frame read(final InputStream in) throws IOException {
-        final var header = in.readNBytes(9);
+    public Frame read(final FrameInputBuffer in) throws IOException {
+        return this.read(in, MIN_MAX_FRAME_SIZE);
+    }
 
-        if (header.length != 9) {
-            throw new EOFException();
+    /**
+     * Reads a frame from a connection's input buffer.
+     *
+     * @param in the input buffer
+     * @param maxFrameSize the largest payload the server has advertised it accepts
+     *
+     * @return the frame that has been read
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if the connection ends before the frame does
+     * @throws Http2FrameSizeError if the frame exceeds the maximum frame size
+     * @throws net.wukl.cacofony.http2.Http2ConnectionError if the frame is invalid
+     */
+    public Frame read(final FrameInputBuffer in, final int maxFrameSize) throws IOException {
+        final var length = in.readUnsignedMedium();
+        final var rawType = in.readUnsignedByte();
+        final var flagsByte = in.readUnsignedByte();
+        final var streamId = in.readInt() & 0x7FFFFFFF;
+
+        if (length > maxFrameSize) {
+            throw new Http2FrameSizeError(
+                    "Frame of " + length + " octets exceeds the maximum of " + maxFrameSize
+            );
         }
 
-        final var length = (header[0] & 0xFF << 16) | (header[1] & 0xFF << 8) | header[2] & 0xFF;
-        final var rawType = header[3] & 0xFF;
-        final var flagsByte = header[4];
-        final var streamId = (header[5] & 0xFF << 24) | (header[6] & 0xFF << 16)
-                | (header[7] & 0xFF << 8) | header[8] & 0xFF;
-
         final var type = FrameType.valueOf(rawType);
         final Set<FrameFlag> flags;
         if (type != null) {
@@ -112,7 +146,10 @@ public class FrameReader {
         int i = 0;
         final int padLength;
         if (flags.contains(FrameFlag.PADDED)) {
-            padLength = in.read();
+            if (length < 1) {
+                throw new Http2FrameSizeError("Padded frame lacks a pad length");
+            }
+            padLength = in.readUnsignedByte();
             logger.debug("{} frame padded with extra {} bytes", type, padLength);
             i += 1;
         } else {
@@ -123,19 +160,20 @@ public class FrameReader {
             throw new Http2ProtocolError("Padding exceeds payload length");
         }
 
-        final var protoFrame = new EmptyFrame(length - i - padLength, type, flags, streamId);
+        final var protoFrame =
+                new EmptyFrame(length - i - padLength, type, flags, streamId, i + padLength);
         final var frame = this.frameReaders[rawType].read(protoFrame, in);
 
-        in.readNBytes(padLength);
+        in.skip(padLength);
 
         return frame;
     }
 
     /**
-     * Reads a SETTINGS frame from the input stream.
+     * Reads a SETTINGS frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the SETTINGS frame
      *
@@ -143,7 +181,8 @@ public class FrameReader {
      *
      * @see <a href="https://tools.ietf.org/html/rfc7540#section-6.5">RFC 7540 Section 6.5</a>
      */
-    private Frame readSettingsFrame(final Frame proto, final InputStream in) throws IOException {
+    private Frame readSettingsFrame(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
         if (proto.getPayloadLength() % SettingsFrame.BYTES_PER_SETTING != 0) {
             throw new Http2FrameSizeError("The payload size is not a multiple of 6 bytes");
         }
@@ -162,19 +201,13 @@ public class FrameReader {
         }
 
         final var settings = new ArrayList<Setting>();
-        for (int i = 0; i < proto.getPayloadLength();) {
-            final var rawSetting = in.readNBytes(6);
-            i += 6;
-
-            final var rawId = (rawSetting[0] << 8) | rawSetting[1];
-            final var id = SettingIdentifier.valueOf(rawId);
+        for (int i = 0; i < proto.getPayloadLength(); i += SettingsFrame.BYTES_PER_SETTING) {
+            final var id = SettingIdentifier.valueOf(in.readUnsignedShort());
+            final var value = in.readUnsignedInt();
             if (id == null) {
                 continue;
             }
 
-            final var value = (long) (rawSetting[2] << 24) | (rawSetting[3] << 16)
-                    | (rawSetting[4] << 8) | (rawSetting[5]);
-
             settings.add(new Setting(id, value));
         }
 
@@ -182,36 +215,37 @@ public class FrameReader {
     }
 
     /**
-     * Reads a WINDOW_UPDATE frame from the input stream.
+     * Reads a WINDOW_UPDATE frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readWindowUpdateFrame(final Frame proto, final InputStream in)
+    private Frame readWindowUpdateFrame(final EmptyFrame proto, final FrameInputBuffer in)
             throws IOException {
         if (proto.getPayloadLength() != 4) {
             throw new Http2FrameSizeError("The payload size is not exactly 4 for a WINDOW_UPDATE");
         }
 
-        final var value = this.readUnsignedInt(in);
+        final var value = in.readInt() & 0x7FFFFFFF;
         return new WindowUpdateFrame(proto.getStreamId(), value);
     }
 
     /**
-     * Reads a PRIORITY frame from the input stream.
+     * Reads a PRIORITY frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readPriorityFrame(final Frame proto, final InputStream in) throws IOException {
+    private Frame readPriorityFrame(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
         if (proto.getPayloadLength() != PRIORITY_PAYLOAD_LENGTH) {
             throw new Http2FrameSizeError("The payload size is not exactly 5 for a PRIORITY");
         }
@@ -223,37 +257,36 @@ public class FrameReader {
      * Reads the raw payload of a PRIORITY frame.
      *
      * @param streamId the identifier of the stream the frame belongs to
-     * @param in the input stream to read the payload from
+     * @param in the input buffer to read the payload from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
     private PriorityFrame readRawPriorityFrame(
-            final int streamId, final InputStream in
+            final int streamId, final FrameInputBuffer in
     ) throws IOException {
-        final var depBytes = in.readNBytes(4);
-        final var weigh = in.read();
-
-        final boolean exclusive = (depBytes[0] & 0x80) != 0;
+        final var dependency = in.readInt();
+        final var weight = in.readUnsignedByte();
 
-        final long dependencyId = ((depBytes[0] & 0x7F) << 24) | ((depBytes[1] & 0xFF) << 16)
-                | ((depBytes[2] & 0xFF) << 8) | (depBytes[3] & 0xFF);
+        final boolean exclusive = dependency < 0;
+        final var dependencyId = dependency & 0x7FFFFFFF;
 
-        return new PriorityFrame(streamId, exclusive, (int) dependencyId, weigh);
+        return new PriorityFrame(streamId, exclusive, dependencyId, weight);
     }
 
     /**
-     * Reads a HEADERS frame from the input stream.
+     * Reads a HEADERS frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readHeaders(final Frame proto, final InputStream in) throws IOException {
+    private Frame readHeaders(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
         int i = 0;
 
         final PriorityFrame priority;
@@ -264,149 +297,197 @@ public class FrameReader {
             priority = null;
         }
 
-        final var block = in.readNBytes(proto.getPayloadLength() - i);
+        if (proto.getPayloadLength() < i) {
+            throw new Http2FrameSizeError("HEADERS frame too short for its priority fields");
+        }
+
+        final var block = in.readBytes(proto.getPayloadLength() - i);
 
         return new HeadersFrame(proto.getFlags(), proto.getStreamId(), block, priority);
     }
 
     /**
-     * Reads a DATA frame from the input stream.
+     * Reads a DATA frame from the input buffer.
+     *
+     * The payload outlives the input buffer, so it is copied into a pooled buffer, which the
+     * frame holds until it is released.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readData(final Frame proto, final InputStream in) throws IOException {
-        final var bytes = in.readNBytes(proto.getPayloadLength());
+    private Frame readData(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        final var length = proto.getPayloadLength();
+        final var buffer = this.bufferPool.acquire(length);
+
+        try {
+            in.readFully(buffer.array(), 0, length);
+        } catch (final IOException ex) {
+            buffer.release();
+            throw ex;
+        }
 
-        return new DataFrame(proto.getStreamId(), proto.getFlags(), bytes);
+        return new DataFrame(
+                proto.getStreamId(), proto.getFlags(), buffer, 0, length, proto.getPaddingLength()
+        );
     }
 
     /**
-     * Reads a CONTINUATION frame from the input stream.
+     * Reads a CONTINUATION frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readContinuation(final Frame proto, final InputStream in) throws IOException {
-        final var bytes = in.readNBytes(proto.getPayloadLength());
+    private Frame readContinuation(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        final var bytes = in.readBytes(proto.getPayloadLength());
         return new ContinuationFrame(
                 proto.getStreamId(), proto.getFlags().contains(FrameFlag.END_HEADERS), bytes
         );
     }
 
     /**
-     * Reads a GOAWAY frame from the input stream.
+     * Reads a GOAWAY frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readGoAway(final Frame proto, final InputStream in) throws IOException {
-        final var lastStreamId = this.readUnsignedInt(in);
-        final var errorCodeId = this.readUnsignedInt(in);
-        final var errorCode = ErrorCode.getForCode(errorCodeId);
-        final var debugData = in.readNBytes(proto.getPayloadLength() - 2 * Integer.BYTES);
+    private Frame readGoAway(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        if (proto.getPayloadLength() < 2 * Integer.BYTES) {
+            throw new Http2FrameSizeError("GOAWAY frame too short");
+        }
 
-        return new GoAwayFrame((int) lastStreamId, errorCode, debugData);
+        final var lastStreamId = in.readInt() & 0x7FFFFFFF;
+        final var errorCode = ErrorCode.getForCode(in.readUnsignedInt());
+        final var debugData = in.readBytes(proto.getPayloadLength() - 2 * Integer.BYTES);
+
+        return new GoAwayFrame(lastStreamId, errorCode, debugData);
     }
 
     /**
-     * Reads an RST_STREAM frame from the input stream.
+     * Reads an RST_STREAM frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readRstStream(final Frame proto, final InputStream in) throws IOException {
-        final var errorCodeId = this.readUnsignedInt(in);
-        final var errorCode = ErrorCode.getForCode(errorCodeId);
+    private Frame readRstStream(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        if (proto.getPayloadLength() != Integer.BYTES) {
+            throw new Http2FrameSizeError("The payload size is not exactly 4 for an RST_STREAM");
+        }
+
+        final var errorCode = ErrorCode.getForCode(in.readUnsignedInt());
 
         return new RstStreamFrame(proto.getStreamId(), errorCode);
     }
 
     /**
-     * Reads a PING frame from the input stream.
+     * Reads a PING frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readPing(final Frame proto, final InputStream in) throws IOException {
+    private Frame readPing(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
         if (proto.getPayloadLength() != PingFrame.PAYLOAD_SIZE) {
             throw new Http2FrameSizeError("Ping does not contain exactly 8 bytes");
         }
 
-        final var bytes = in.readNBytes(PingFrame.PAYLOAD_SIZE);
+        final var bytes = in.readBytes(PingFrame.PAYLOAD_SIZE);
         return new PingFrame(proto.getFlags().contains(FrameFlag.ACK), bytes);
     }
 
     /**
-     * Reads a PUSH_PROMISE frame from the input stream.
+     * Reads a PUSH_PROMISE frame from the input buffer.
      *
      * @param proto the prototype containing the frame header
-     * @param in the input stream to read the frame from
+     * @param in the input buffer to read the frame from
      *
      * @return the frame
      *
      * @throws IOException if an I/O error occurs
      */
-    private Frame readPushPromise(final Frame proto, final InputStream in) throws IOException {
-        final var promisedId = this.readUnsignedInt(in);
-        final var fragment = in.readNBytes(proto.getPayloadLength() - Integer.BYTES);
+    private Frame readPushPromise(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        if (proto.getPayloadLength() < Integer.BYTES) {
+            throw new Http2FrameSizeError("PUSH_PROMISE lacks a promised stream identifier");
+        }
+
+        final var promisedId = in.readInt() & 0x7FFFFFFF;
+        final var fragment = in.readBytes(proto.getPayloadLength() - Integer.BYTES);
 
         return new PushPromiseFrame(
             proto.getStreamId(), proto.getFlags().contains(FrameFlag.END_HEADERS),
-            (int) promisedId, fragment
+            promisedId, fragment
         );
     }
 
     /**
-     * Reads an unsigned integer from the input stream.
+     * Reads a PRIORITY_UPDATE frame from the input buffer.
      *
-     * @param in the input stream to read the integer from
+     * @param proto the prototype containing the frame header
+     * @param in the input buffer to read the frame from
      *
-     * @return the unsigned integer
+     * @return the frame
      *
      * @throws IOException if an I/O error occurs
+     *
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-7.1">RFC 9218 Section 7.1</a>
      */
-    private long readUnsignedInt(final InputStream in) throws IOException {
-        final var bytes = in.readNBytes(4);
-        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16)
-                | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    private Frame readPriorityUpdate(final EmptyFrame proto, final FrameInputBuffer in)
+            throws IOException {
+        if (proto.getPayloadLength() < Integer.BYTES) {
+            throw new Http2FrameSizeError("PRIORITY_UPDATE lacks a prioritized stream identifier");
+        }
+
+        if (proto.getStreamId() != 0) {
+            throw new Http2ProtocolError("PRIORITY_UPDATE frames cannot be applied to streams");
+        }
+
+        final var prioritizedId = in.readInt() & 0x7FFFFFFF;
+        final var fieldValue = in.readBytes(proto.getPayloadLength() - Integer.BYTES);
+
+        return new PriorityUpdateFrame(
+                prioritizedId, new String(fieldValue, StandardCharsets.US_ASCII)
+        );
     }
 
     /**
-     * A function reading a frame of a specific type from the input stream.
+     * A function reading a frame of a specific type from the input buffer.
      */
     @FunctionalInterface
     private interface SpecFrameReader {
         /**
-         * Reads a frame from the input stream.
+         * Reads a frame from the input buffer.
          *
          * @param proto the frame prototype containing header information
-         * @param in the input stream to read the frame from
+         * @param in the input buffer to read the frame from
          *
          * @return the read frame
          *
          * @throws IOException if an I/O error occurs
          */
-        Frame read(Frame proto, InputStream in) throws IOException;
+        Frame read(EmptyFrame proto, FrameInputBuffer in) throws IOException;
     }
 }
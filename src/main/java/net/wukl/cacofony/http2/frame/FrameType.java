@@ -74,7 +74,14 @@ public enum FrameType {
      */
     CONTINUATION((byte) 0x9, Map.of(
             FrameFlag.END_HEADERS, 2
-    ));
+    )),
+
+    /**
+     * A frame changing the extensible priority of a stream.
+     *
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-7.1">RFC 9218 Section 7.1</a>
+     */
+    PRIORITY_UPDATE((byte) 0x10, Map.of());
 
     /**
      * The mapping between byte values and types.
@@ -108,6 +115,13 @@ public enum FrameType {
      */
     private final Map<Integer, FrameFlag> flagByPosition;
 
+    /**
+     * The bit each flag sets in the flags field, indexed by the flag's ordinal.
+     *
+     * Flags the type does not accept set no bit.
+     */
+    private final byte[] flagBits;
+
     /**
      * Creates a new frame type.
      *
@@ -122,6 +136,11 @@ public enum FrameType {
         for (final var entry : this.flagPositions.entrySet()) {
             this.flagByPosition.put(entry.getValue(), entry.getKey());
         }
+
+        this.flagBits = new byte[FrameFlag.values().length];
+        for (final var entry : this.flagPositions.entrySet()) {
+            this.flagBits[entry.getKey().ordinal()] = (byte) (1 << entry.getValue());
+        }
     }
 
     /**
@@ -155,6 +174,38 @@ public enum FrameType {
         return this.flagPositions.get(flag);
     }
 
+    /**
+     * Returns the bit a flag sets in the flags field.
+     *
+     * @param flag the flag
+     *
+     * @return the bit, or {@code 0} if the flag is not valid for the type
+     */
+    public byte getFlagBit(final FrameFlag flag) {
+        return this.flagBits[flag.ordinal()];
+    }
+
+    /**
+     * Serializes a set of flags into the flags field.
+     *
+     * Flags the type does not accept are left out.
+     *
+     * @param flags the flags
+     *
+     * @return the bit string representing the flags
+     */
+    public byte getBitString(final Set<FrameFlag> flags) {
+        if (flags.isEmpty()) {
+            return 0;
+        }
+
+        byte acc = 0;
+        for (final var flag : flags) {
+            acc |= this.flagBits[flag.ordinal()];
+        }
+        return acc;
+    }
+
     /**
      * Generates the set of flags based on a serialized byte.
      *
@@ -1,13 +1,12 @@
 package net.wukl.cacofony.http2.frame;
 
+import net.wukl.cacodi.Manual;
+import net.wukl.cacofony.server.ServerSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.security.SecureRandom;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Writes HTTP/2 frames onto a Java output stream.
@@ -20,11 +19,12 @@ public class FrameWriter {
      */
     private static final byte[] NULL_BYTES = new byte[256];
 
-    static {
-        for (int i = 0; i < NULL_BYTES.length; ++i) {
-            NULL_BYTES[i] = 0;
-        }
-    }
+    /**
+     * The largest payload any peer accepts, used when the peer's maximum is unknown.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-4.2">RFC 7540 Section 4.2</a>
+     */
+    private static final int MIN_MAX_FRAME_SIZE = 16384;
 
     /**
      * Specialized frame writers.
@@ -32,17 +32,27 @@ public class FrameWriter {
     private final SpecFrameWriter[] frameWriters = new SpecFrameWriter[256];
 
     /**
-     * The random number generator used to generate padding.
+     * The policy deciding how much padding to add to frames.
+     */
+    private final PaddingPolicy padding;
+
+    /**
+     * Creates a new frame writer padding frames as configured in the server settings.
+     *
+     * @param settings the server settings
      */
-    private final SecureRandom random;
+    public FrameWriter(final ServerSettings settings) {
+        this(settings.getPaddingPolicy());
+    }
 
     /**
      * Creates a new frame writer.
      *
-     * @param random the random number generator used to generate padding
+     * @param padding the policy deciding how much padding to add to frames
      */
-    public FrameWriter(final SecureRandom random) {
-        this.random = random;
+    @Manual
+    public FrameWriter(final PaddingPolicy padding) {
+        this.padding = padding;
 
         for (int i = 0; i < 256; ++i) {
             final var index = i;
@@ -61,6 +71,7 @@ public class FrameWriter {
         this.addWriter(FrameType.RST_STREAM, this::writeRstStream);
         this.addWriter(FrameType.PING, this::writePing);
         this.addWriter(FrameType.PUSH_PROMISE, this::writePushPromise);
+        this.addWriter(FrameType.PRIORITY_UPDATE, this::writePriorityUpdate);
     }
 
     /**
@@ -76,6 +87,9 @@ public class FrameWriter {
     /**
      * Writes the frame out onto the output stream.
      *
+     * The frame is written through a temporary buffer that is flushed before returning. Writers
+     * sending many frames should use {@link #write(Frame, FrameOutputBuffer)} instead.
+     *
      * @param frame the frame to write
      * @param out the output stream to write the frame to
      *
@@ -84,43 +98,85 @@ public class FrameWriter {
      * @throws IOException if an I/O error occurs
      */
     public int write(final Frame frame, final OutputStream out) throws IOException {
-        final var flags = new HashSet<>(frame.getFlags());
+        final var size = FrameOutputBuffer.HEADER_LENGTH + frame.getPayloadLength()
+                + PaddingPolicy.MAX_PADDING;
+        final var buffer = new FrameOutputBuffer(
+                out, Math.min(size, FrameOutputBuffer.DEFAULT_CAPACITY)
+        );
+        final var length = this.write(frame, buffer);
+        buffer.flush();
+
+        return length;
+    }
+
+    /**
+     * Writes the frame into an output buffer.
+     *
+     * The buffer is not flushed, so the frame may not have been passed on to the connection yet.
+     * Padding never grows the frame beyond the smallest maximum frame size any peer accepts.
+     *
+     * @param frame the frame to write
+     * @param out the buffer to write the frame to
+     *
+     * @return the number of bytes the writer wrote to the buffer, excluding the header
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public int write(final Frame frame, final FrameOutputBuffer out) throws IOException {
+        return this.write(frame, out, MIN_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Writes the frame into an output buffer.
+     *
+     * The buffer is not flushed, so the frame may not have been passed on to the connection yet.
+     * DATA frames are written with the padding they carry rather than padding decided by the
+     * policy, since padding counts against flow control and has to be paid for when the frame is
+     * cut.
+     *
+     * @param frame the frame to write
+     * @param out the buffer to write the frame to
+     * @param maxFrameSize the largest payload the peer accepts, which padding may not exceed
+     *
+     * @return the number of bytes the writer wrote to the buffer, excluding the header
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public int write(final Frame frame, final FrameOutputBuffer out, final int maxFrameSize)
+            throws IOException {
+        final var type = frame.getType();
+        final var paddedBit = type.getFlagBit(FrameFlag.PADDED);
+        final var payloadLength = frame.getPayloadLength();
 
-        final var padded = frame.getType().getFlagPositions().containsKey(FrameFlag.PADDED)
-                                   && frame.getPayloadLength() > 0;
         final int numPadBytes;
-        if (padded) {
-            flags.add(FrameFlag.PADDED);
-            numPadBytes = this.random.nextInt(255) + 1;
+        if (frame instanceof DataFrame) {
+            numPadBytes = ((DataFrame) frame).getPaddingLength();
+        } else if (paddedBit != 0 && payloadLength > 0) {
+            final var limit = Math.min(PaddingPolicy.MAX_PADDING, maxFrameSize - payloadLength);
+            numPadBytes = this.padding.getPadding(payloadLength, limit);
         } else {
             numPadBytes = 0;
         }
 
-        final var length = frame.getPayloadLength() + numPadBytes;
-        final var id = frame.getStreamId();
-
-        final var typeValue = frame.getType().getValue();
+        final var padded = numPadBytes > 0;
+        final byte flags;
+        if (padded) {
+            flags = (byte) (type.getBitString(frame.getFlags()) | paddedBit);
+        } else {
+            flags = type.getBitString(frame.getFlags());
+        }
 
-        final var buf = new byte[] {
-                (byte) ((length >>> 16) & 0xFF),
-                (byte) ((length >>>  8) & 0xFF),
-                (byte) (length & 0xFF),
-                typeValue,
-                this.flagsToByte(frame.getType(), flags),
-                (byte) ((id >>> 24) & 0xFF),
-                (byte) ((id >>> 16) & 0xFF),
-                (byte) ((id >>>  8) & 0xFF),
-                (byte) (id & 0xFF)
-        };
+        final var length = payloadLength + numPadBytes;
+        final var typeValue = type.getValue();
 
-        out.write(buf);
+        out.writeHeader(length, typeValue, flags, frame.getStreamId());
 
         if (padded) {
-            out.write((numPadBytes - 1) & 0xFF);
+            out.write(numPadBytes - 1);
         }
 
-        if (!(frame instanceof EmptyFrame) && length > 0) {
-            this.frameWriters[typeValue].write(frame, out);
+        if (!(frame instanceof EmptyFrame) && payloadLength > 0) {
+            this.frameWriters[typeValue & 0xFF].write(frame, out);
         }
 
         if (padded) {
@@ -130,22 +186,6 @@ public class FrameWriter {
         return length;
     }
 
-    /**
-     * Translates the set of flags into a bit-string.
-     *
-     * @param type the type of the frame the flags belong to
-     * @param flags the flags of the frame
-     *
-     * @return the bit string representing the flags for that frame
-     */
-    private byte flagsToByte(final FrameType type, final Set<FrameFlag> flags) {
-        byte acc = 0;
-        for (final var flag : flags) {
-            acc |= 1 << flag.getPosition(type);
-        }
-        return acc;
-    }
-
     /**
      * Writes a settings frame to the output stream.
      *
@@ -154,11 +194,12 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeSettings(final Frame frame, final OutputStream out) throws IOException {
+    private void writeSettings(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof SettingsFrame : "Non-settings frame passed to writeSettings";
 
         for (final var setting : ((SettingsFrame) frame).getSettings()) {
-            out.write(setting.toBytes());
+            out.writeShort(setting.getIdentifier().getValue());
+            out.writeInt(setting.getValue());
         }
     }
 
@@ -170,12 +211,12 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeWindowUpdate(final Frame frame, final OutputStream out) throws IOException {
+    private void writeWindowUpdate(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof WindowUpdateFrame
                 : "Non-WINDOW_UPDATE frame passed to writeWindowUpdate";
 
         final var increment = ((WindowUpdateFrame) frame).getIncrement();
-        this.writeUnsignedInt(increment, out);
+        out.writeInt(increment);
     }
 
     /**
@@ -186,7 +227,7 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writePriority(final Frame frame, final OutputStream out) throws IOException {
+    private void writePriority(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof PriorityFrame : "Non-PRIORITY frame passed to writePriority";
 
         final var priorityFrame = (PriorityFrame) frame;
@@ -200,7 +241,7 @@ public class FrameWriter {
         final var dependencyId = priorityFrame.getDependencyId();
         final var weight = priorityFrame.getWeight();
 
-        this.writeUnsignedInt(dependencyId | exclusiveMask, out);
+        out.writeInt(dependencyId | exclusiveMask);
         out.write(weight & 0xFF);
     }
 
@@ -212,7 +253,7 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeHeaders(final Frame frame, final OutputStream out) throws IOException {
+    private void writeHeaders(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof HeadersFrame : "Non-HEADERS frame passed to writeHeaders";
 
         final var headersFrame = (HeadersFrame) frame;
@@ -232,9 +273,10 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeData(final Frame frame, final OutputStream out) throws IOException {
+    private void writeData(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof DataFrame : "Non-DATA frame passed to writeData";
-        out.write(((DataFrame) frame).getBytes());
+        final var data = (DataFrame) frame;
+        out.write(data.getArray(), data.getOffset(), data.getPayloadLength());
     }
 
     /**
@@ -245,7 +287,7 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeContinuation(final Frame frame, final OutputStream out) throws IOException {
+    private void writeContinuation(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof ContinuationFrame
                 : "Non-CONTINUATION frame passed to writeContinuation";
         out.write(((ContinuationFrame) frame).getBytes());
@@ -259,12 +301,12 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeGoAway(final Frame frame, final OutputStream out) throws IOException {
+    private void writeGoAway(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof GoAwayFrame : "Non-GOAWAY frame passed to writeGoAway";
         final var goAway = (GoAwayFrame) frame;
 
-        this.writeUnsignedInt(goAway.getLastStreamId(), out);
-        this.writeUnsignedInt(goAway.getErrorCode().getCode(), out);
+        out.writeInt(goAway.getLastStreamId());
+        out.writeInt(goAway.getErrorCode().getCode());
         out.write(goAway.getDebugData());
     }
 
@@ -276,10 +318,10 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeRstStream(final Frame frame, final OutputStream out) throws IOException {
+    private void writeRstStream(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof RstStreamFrame : "Non-RST_STREAM frame passed to writeRstStream";
 
-        this.writeUnsignedInt(((RstStreamFrame) frame).getErrorCode().getCode(), out);
+        out.writeInt(((RstStreamFrame) frame).getErrorCode().getCode());
     }
 
     /**
@@ -290,7 +332,7 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writePing(final Frame frame, final OutputStream out) throws IOException {
+    private void writePing(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof PingFrame : "Non-PING frame passed to writePing";
 
         out.write(((PingFrame) frame).getPayload());
@@ -304,29 +346,33 @@ public class FrameWriter {
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writePushPromise(final Frame frame, final OutputStream out) throws IOException {
+    private void writePushPromise(final Frame frame, final FrameOutputBuffer out) throws IOException {
         assert frame instanceof PushPromiseFrame
             : "Non-PUSH_PROMISE frame passed to writePushPromise";
 
         final var pushPromise = (PushPromiseFrame) frame;
 
-        this.writeUnsignedInt(pushPromise.getPromisedStreamId(), out);
+        out.writeInt(pushPromise.getPromisedStreamId());
         out.write(pushPromise.getFragment());
     }
 
     /**
-     * Writes an unsigned 32-bit integer to the output stream.
+     * Writes a PRIORITY_UPDATE frame to the output stream.
      *
-     * @param value the integer to write
-     * @param out the stream to write the number to
+     * @param frame the PRIORITY_UPDATE frame
+     * @param out the output stream
      *
      * @throws IOException if an I/O error occurs
      */
-    private void writeUnsignedInt(final long value, final OutputStream out) throws IOException {
-        out.write((int) (value >>> 24) & 0xFF);
-        out.write((int) (value >>> 16) & 0xFF);
-        out.write((int) (value >>> 8) & 0xFF);
-        out.write((int) value & 0xFF);
+    private void writePriorityUpdate(final Frame frame, final FrameOutputBuffer out)
+            throws IOException {
+        assert frame instanceof PriorityUpdateFrame
+                : "Non-PRIORITY_UPDATE frame passed to writePriorityUpdate";
+
+        final var update = (PriorityUpdateFrame) frame;
+
+        out.writeInt(update.getPrioritizedStreamId());
+        out.write(update.getFieldValueBytes());
     }
 
     /**
@@ -342,6 +388,6 @@ public class FrameWriter {
          *
          * @throws IOException if an I/O error occurs
          */
-        void write(Frame frame, OutputStream out) throws IOException;
+        void write(Frame frame, FrameOutputBuffer out) throws IOException;
     }
 }
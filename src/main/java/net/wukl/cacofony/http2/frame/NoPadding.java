@@ -0,0 +1,29 @@
+package net.wukl.cacofony.http2.frame;
+
+/**
+ * A padding policy never padding any frame.
+ */
+public class NoPadding implements PaddingPolicy {
+    /**
+     * Decides how many octets to pad a frame with.
+     *
+     * @param payloadLength the length of the frame's payload without padding
+     * @param limit the largest amount of padding the frame can take
+     *
+     * @return always {@code 0}
+     */
+    @Override
+    public int getPadding(final int payloadLength, final int limit) {
+        return 0;
+    }
+
+    /**
+     * Returns a description of the policy.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "none";
+    }
+}
@@ -0,0 +1,30 @@
+package net.wukl.cacofony.http2.frame;
+
+/**
+ * Decides how much padding to add to frames that may carry it.
+ * <p>
+ * Padding hides the exact size of DATA, HEADERS and PUSH_PROMISE payloads from anyone observing
+ * the encrypted traffic, at the cost of bandwidth.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7540#section-10.7">
+ *     RFC 7540 Section 10.7 (Use of Padding)</a>
+ */
+public interface PaddingPolicy {
+    /**
+     * The largest number of octets a frame may be padded with, including the pad length octet.
+     */
+    int MAX_PADDING = 256;
+
+    /**
+     * Decides how many octets to pad a frame with.
+     *
+     * The returned amount includes the octet carrying the pad length, so any non-zero amount adds
+     * at least that octet to the frame.
+     *
+     * @param payloadLength the length of the frame's payload without padding
+     * @param limit the largest amount of padding the frame can take, at most {@link #MAX_PADDING}
+     *
+     * @return the number of padding octets within [0, limit]
+     */
+    int getPadding(int payloadLength, int limit);
+}
@@ -0,0 +1,103 @@
+package net.wukl.cacofony.http2.frame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A PRIORITY_UPDATE frame.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-7.1">
+ *     RFC 9218 Section 7.1 (The PRIORITY_UPDATE Frame)</a>
+ */
+public class PriorityUpdateFrame implements Frame {
+    /**
+     * The identifier of the stream the priority is for.
+     */
+    private final int prioritizedStreamId;
+
+    /**
+     * The priority field value.
+     */
+    private final String fieldValue;
+
+    /**
+     * Creates a new PRIORITY_UPDATE frame.
+     *
+     * @param prioritizedStreamId the identifier of the stream the priority is for
+     * @param fieldValue the priority field value
+     */
+    public PriorityUpdateFrame(final int prioritizedStreamId, final String fieldValue) {
+        this.prioritizedStreamId = prioritizedStreamId;
+        this.fieldValue = fieldValue;
+    }
+
+    /**
+     * Returns the number of bytes in the frame's payload.
+     *
+     * @return the length of the payload
+     */
+    @Override
+    public int getPayloadLength() {
+        return Integer.BYTES + this.fieldValue.length();
+    }
+
+    /**
+     * Returns the type of the frame.
+     *
+     * @return the frame type
+     */
+    @Override
+    public FrameType getType() {
+        return FrameType.PRIORITY_UPDATE;
+    }
+
+    /**
+     * Returns the flags applied to the frame.
+     *
+     * @return the flags
+     */
+    @Override
+    public Set<FrameFlag> getFlags() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Returns the identifier of the stream the frame belongs to.
+     *
+     * PRIORITY_UPDATE frames always apply to the connection as a whole.
+     *
+     * @return the stream identifier
+     */
+    @Override
+    public int getStreamId() {
+        return 0;
+    }
+
+    /**
+     * Returns the identifier of the stream the priority is for.
+     *
+     * @return the stream identifier
+     */
+    public int getPrioritizedStreamId() {
+        return this.prioritizedStreamId;
+    }
+
+    /**
+     * Returns the priority field value.
+     *
+     * @return the field value
+     */
+    public String getFieldValue() {
+        return this.fieldValue;
+    }
+
+    /**
+     * Returns the priority field value as octets.
+     *
+     * @return the octets of the field value
+     */
+    public byte[] getFieldValueBytes() {
+        return this.fieldValue.getBytes(StandardCharsets.US_ASCII);
+    }
+}
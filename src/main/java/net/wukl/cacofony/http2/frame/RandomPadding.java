@@ -0,0 +1,72 @@
+package net.wukl.cacofony.http2.frame;
+
+import java.security.SecureRandom;
+
+/**
+ * A padding policy padding every frame with a random number of octets.
+ * <p>
+ * The amounts are drawn from a secure random number generator, so an observer of the traffic
+ * cannot predict the padding and subtract it from the frame sizes.
+ */
+public class RandomPadding implements PaddingPolicy {
+    /**
+     * The random number generator used to generate padding.
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * The largest number of octets to pad a frame with, including the pad length octet.
+     */
+    private final int max;
+
+    /**
+     * Creates a new random padding policy padding frames with up to 256 octets.
+     */
+    public RandomPadding() {
+        this(MAX_PADDING);
+    }
+
+    /**
+     * Creates a new random padding policy.
+     *
+     * @param max the largest number of octets to pad a frame with, within [1, 256]
+     *
+     * @throws IllegalArgumentException if the maximum is out of range
+     */
+    public RandomPadding(final int max) {
+        if (max < 1 || max > MAX_PADDING) {
+            throw new IllegalArgumentException("Maximum padding " + max + " is not in [1, 256]");
+        }
+
+        this.max = max;
+    }
+
+    /**
+     * Decides how many octets to pad a frame with.
+     *
+     * @param payloadLength the length of the frame's payload without padding
+     * @param limit the largest amount of padding the frame can take
+     *
+     * @return a random number of padding octets within [1, min(max, limit)], or 0 if the frame
+     *         cannot take any padding
+     */
+    @Override
+    public int getPadding(final int payloadLength, final int limit) {
+        final var bound = Math.min(this.max, limit);
+        if (bound <= 0) {
+            return 0;
+        }
+
+        return this.random.nextInt(bound) + 1;
+    }
+
+    /**
+     * Returns a description of the policy.
+     *
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return "random (up to " + this.max + " octets)";
+    }
+}
@@ -39,7 +39,7 @@ public class RstStreamFrame implements Frame {
      */
     @Override
     public int getPayloadLength() {
-        return Integer.SIZE;
+        return Integer.BYTES;
     }
 
     /**
@@ -0,0 +1,248 @@
+package net.wukl.cacofony.http2.hpack;
+
+import java.util.Arrays;
+
+/**
+ * A header block made up of the fragments carried by a HEADERS frame and its CONTINUATION frames.
+ * <p>
+ * The fragments are referenced rather than copied, so the block should only be created from
+ * arrays that are not modified afterwards. The block keeps a read position, which the decoder
+ * advances while reading. As long as a string does not cross a fragment boundary, it is decoded
+ * directly from the fragment it is in.
+ */
+public class HeaderBlock {
+    /**
+     * The initial number of fragment slots.
+     */
+    private static final int INITIAL_FRAGMENTS = 4;
+
+    /**
+     * The arrays containing the fragments.
+     */
+    private byte[][] arrays = new byte[INITIAL_FRAGMENTS][];
+
+    /**
+     * The positions of the fragments within their arrays.
+     */
+    private int[] offsets = new int[INITIAL_FRAGMENTS];
+
+    /**
+     * The positions after the fragments within their arrays.
+     */
+    private int[] ends = new int[INITIAL_FRAGMENTS];
+
+    /**
+     * The number of fragments in the block.
+     */
+    private int fragments = 0;
+
+    /**
+     * The number of octets in the block not read yet.
+     */
+    private int remaining = 0;
+
+    /**
+     * The fragment the read position is in.
+     */
+    private int current = 0;
+
+    /**
+     * The read position within the current fragment's array.
+     */
+    private int position = 0;
+
+    /**
+     * Creates a new, empty header block.
+     */
+    public HeaderBlock() {
+    }
+
+    /**
+     * Creates a new header block consisting of a single fragment.
+     *
+     * @param bytes the fragment
+     */
+    public HeaderBlock(final byte[] bytes) {
+        this.add(bytes);
+    }
+
+    /**
+     * Appends a fragment to the block.
+     *
+     * @param bytes the fragment
+     */
+    public void add(final byte[] bytes) {
+        this.add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends a fragment to the block.
+     *
+     * @param bytes the array containing the fragment
+     * @param offset the position of the fragment within the array
+     * @param length the length of the fragment
+     */
+    public void add(final byte[] bytes, final int offset, final int length) {
+        if (length == 0) {
+            return;
+        }
+
+        if (this.fragments == this.arrays.length) {
+            this.arrays = Arrays.copyOf(this.arrays, this.fragments * 2);
+            this.offsets = Arrays.copyOf(this.offsets, this.fragments * 2);
+            this.ends = Arrays.copyOf(this.ends, this.fragments * 2);
+        }
+
+        this.arrays[this.fragments] = bytes;
+        this.offsets[this.fragments] = offset;
+        this.ends[this.fragments] = offset + length;
+        if (this.remaining == 0) {
+            this.current = this.fragments;
+            this.position = offset;
+        }
+
+        ++this.fragments;
+        this.remaining += length;
+    }
+
+    /**
+     * Returns the number of octets not read yet.
+     *
+     * @return the number of octets
+     */
+    public int remaining() {
+        return this.remaining;
+    }
+
+    /**
+     * Checks whether any octets have not been read yet.
+     *
+     * @return {@code true} if there are octets left, {@code false} otherwise
+     */
+    public boolean hasRemaining() {
+        return this.remaining > 0;
+    }
+
+    /**
+     * Returns the next octet without advancing the read position.
+     *
+     * @return the octet as an unsigned value
+     *
+     * @throws HpackDecodingException if the block has been read completely
+     */
+    int peek() {
+        this.requireRemaining(1);
+
+        return this.arrays[this.current][this.position] & 0xFF;
+    }
+
+    /**
+     * Reads the next octet.
+     *
+     * @return the octet as an unsigned value
+     *
+     * @throws HpackDecodingException if the block has been read completely
+     */
+    int read() {
+        final var octet = this.peek();
+        this.skip(1);
+
+        return octet;
+    }
+
+    /**
+     * Returns the number of octets that can be read from the current fragment.
+     *
+     * @return the number of octets
+     */
+    int contiguous() {
+        if (this.remaining == 0) {
+            return 0;
+        }
+
+        return this.ends[this.current] - this.position;
+    }
+
+    /**
+     * Returns the array of the current fragment.
+     *
+     * @return the array
+     */
+    byte[] array() {
+        return this.arrays[this.current];
+    }
+
+    /**
+     * Returns the read position within the array of the current fragment.
+     *
+     * @return the read position
+     */
+    int position() {
+        return this.position;
+    }
+
+    /**
+     * Advances the read position.
+     *
+     * @param count the number of octets to skip
+     *
+     * @throws HpackDecodingException if fewer octets are left
+     */
+    void skip(final int count) {
+        this.requireRemaining(count);
+
+        var left = count;
+        while (left > 0) {
+            final var step = Math.min(left, this.ends[this.current] - this.position);
+            this.position += step;
+            left -= step;
+            this.remaining -= step;
+            this.advanceFragment();
+        }
+    }
+
+    /**
+     * Reads octets into an array, crossing fragment boundaries as needed.
+     *
+     * @param out the array to copy the octets to
+     * @param count the number of octets to read
+     *
+     * @throws HpackDecodingException if fewer octets are left
+     */
+    void read(final byte[] out, final int count) {
+        this.requireRemaining(count);
+
+        var copied = 0;
+        while (copied < count) {
+            final var step = Math.min(count - copied, this.ends[this.current] - this.position);
+            System.arraycopy(this.arrays[this.current], this.position, out, copied, step);
+            this.position += step;
+            copied += step;
+            this.remaining -= step;
+            this.advanceFragment();
+        }
+    }
+
+    /**
+     * Moves the read position to the next fragment if the current one has been read completely.
+     */
+    private void advanceFragment() {
+        if (this.position == this.ends[this.current] && this.current + 1 < this.fragments) {
+            ++this.current;
+            this.position = this.offsets[this.current];
+        }
+    }
+
+    /**
+     * Makes sure enough octets are left.
+     *
+     * @param count the number of octets required
+     *
+     * @throws HpackDecodingException if fewer octets are left
+     */
+    private void requireRemaining(final int count) {
+        if (count > this.remaining) {
+            throw new HpackDecodingException("Header block truncated");
+        }
+    }
+}
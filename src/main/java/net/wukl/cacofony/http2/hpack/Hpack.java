@@ -1,22 +1,23 @@
 package net.wukl.cacofony.http2.hpack;
 
 import net.wukl.cacofony.http.request.Header;
+import net.wukl.cacofony.http2.hpack.HpackEncodingPolicy.Indexing;
 import net.wukl.cacofony.http2.hpack.huffman.Huffman;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Stack;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * An HPACK (RFC 7541) encoder and decoder.
@@ -34,6 +35,16 @@ public class Hpack {
      */
     private static final Map<TableEntry, Integer> INV_STATIC_TABLE = new HashMap<>();
 
+    /**
+     * The inverse static table mapping header names to their first position in the static table.
+     */
+    private static final Map<String, Integer> INV_STATIC_NAMES = new HashMap<>();
+
+    /**
+     * The number of octets of overhead counted for every entry in a dynamic table.
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
     /**
      * The number of entries in the static table, excluding the invalid null entry.
      */
@@ -49,6 +60,54 @@ public class Hpack {
      */
     private static final int EXTENSION_CONTINUATION_MASK = 0b1000_0000;
 
+    /**
+     * The maximum number of octets an encoded integer may take.
+     */
+    private static final int MAX_INTEGER_OCTETS = 6;
+
+    /**
+     * The initial size of the encoding buffers.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * The largest encoding buffer kept around for reuse.
+     */
+    private static final int MAX_RETAINED_BUFFER = 16384;
+
+    /**
+     * The largest shift of the final octet of an integer that still fits in an int.
+     */
+    private static final int MAX_INTEGER_SHIFT = EXTENDED_INTEGER_BITS * 4;
+
+    /**
+     * Common header names that are not in the static table, but are decoded to shared strings.
+     */
+    private static final List<String> COMMON_NAMES = List.of(
+            "dnt",
+            "origin",
+            "pragma",
+            "priority",
+            "purpose",
+            "sec-ch-ua",
+            "sec-ch-ua-mobile",
+            "sec-ch-ua-platform",
+            "sec-fetch-dest",
+            "sec-fetch-mode",
+            "sec-fetch-site",
+            "sec-fetch-user",
+            "te",
+            "upgrade-insecure-requests",
+            "x-forwarded-for",
+            "x-forwarded-proto",
+            "x-requested-with"
+    );
+
+    /**
+     * The well-known header names, which are decoded to shared strings.
+     */
+    private static final NameTable KNOWN_NAMES;
+
     /**
      * The pattern used to parse a row in the static table source file.
      */
@@ -85,29 +144,74 @@ public class Hpack {
                     final var index = Integer.parseInt(indexStr);
                     final var entry = new TableEntry(key, value, 0);
                     STATIC_TABLE[index] = entry;
-                    INV_STATIC_TABLE.put(entry, index);
+                    INV_STATIC_TABLE.putIfAbsent(entry, index);
+                    INV_STATIC_NAMES.putIfAbsent(key, index);
                 }
             }
         } catch (final IOException ex) {
             throw new RuntimeException(ex);
         }
+
+        final var names = new ArrayList<>(INV_STATIC_NAMES.keySet());
+        names.addAll(COMMON_NAMES);
+        KNOWN_NAMES = new NameTable(names);
     }
 
     /**
      * The dynamic table generated while decompressing headers.
      */
-    private final DynamicTable decompressionTable = new DynamicTable();
+    private final DynamicTable decompressionTable = new DynamicTable(false);
 
     /**
      * The dynamic table generated while compressing headers.
      */
-    private final DynamicTable compressionTable = new DynamicTable();
+    private final DynamicTable compressionTable = new DynamicTable(true);
 
     /**
      * The Huffman codec to use.
      */
     private final Huffman huffman;
 
+    /**
+     * The policy deciding how header fields are encoded.
+     */
+    private final HpackEncodingPolicy policy;
+
+    /**
+     * The metrics to record the work of the encoder in.
+     */
+    private final HpackEncoderMetrics metrics;
+
+    /**
+     * The buffer header blocks are encoded into.
+     */
+    private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * The number of octets written to the output buffer.
+     */
+    private int outputLength = 0;
+
+    /**
+     * The buffer strings are encoded into before being written.
+     */
+    private byte[] octets = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * The buffer strings crossing fragment boundaries are decoded from.
+     */
+    private byte[] stringBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * The buffer Huffman-encoded strings are decoded into.
+     */
+    private byte[] huffmanBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * The number of octets the string read last took once decoded.
+     */
+    private int stringLength = 0;
+
     /**
      * The maximum size of the dynamic table connection-wide.
      */
@@ -119,12 +223,34 @@ public class Hpack {
     private int maxDynEncodingSize = 4096;
 
     /**
-     * Creates a new HPACK codec.
+     * Whether the encoder has to announce a change of its dynamic table size.
+     */
+    private boolean encodingSizeChanged = false;
+
+    /**
+     * Creates a new HPACK codec using the default encoding policy.
      *
      * @param huffman the Huffman codec to use for reading and writing compressed strings
      */
     public Hpack(final Huffman huffman) {
+        this(huffman, new HpackEncodingPolicy(), new HpackEncoderMetrics());
+    }
+
+    /**
+     * Creates a new HPACK codec.
+     *
+     * @param huffman the Huffman codec to use for reading and writing compressed strings
+     * @param policy the policy deciding how header fields are encoded
+     * @param metrics the metrics to record the work of the encoder in
+     */
+    public Hpack(
+            final Huffman huffman,
+            final HpackEncodingPolicy policy,
+            final HpackEncoderMetrics metrics
+    ) {
         this.huffman = huffman;
+        this.policy = policy;
+        this.metrics = metrics;
 
         this.decompressionTable.resize(this.maxDynDecodingSize);
         this.compressionTable.resize(this.maxDynEncodingSize);
@@ -141,35 +267,79 @@ public class Hpack {
      * @return the set of headers
      */
     public List<Header> decompress(final byte[] data) {
-        final var headers = new HeaderSet();
+        return this.decompress(new HeaderBlock(data));
+    }
 
-        for (int i = 0; i < data.length;) {
-            final var lead = data[i];
+    /**
+     * Reads a list of headers from a header block.
+     *
+     * This function reads until the block has been consumed, and can therefore not be called
+     * on partial blocks.
+     *
+     * @param block the header block
+     *
+     * @return the set of headers
+     *
+     * @throws MalformedHeaderException if a header name contains uppercase characters
+     */
+    public List<Header> decompress(final HeaderBlock block) {
+        return this.decompress(block, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads a list of headers from a header block, giving up on the list once it grows too large.
+     *
+     * The size of the list is counted as for SETTINGS_MAX_HEADER_LIST_SIZE. As soon as it exceeds
+     * the limit, the fields read so far are dropped and no further fields are collected. The rest
+     * of the block is still read, so the dynamic table stays in sync with the peer's encoder.
+     *
+     * @param block the header block
+     * @param maxListSize the largest header list size to collect
+     *
+     * @return the set of headers, or {@code null} if the list exceeds the maximum size
+     *
+     * @throws MalformedHeaderException if a header name contains uppercase characters
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-10.5.1">
+     *     RFC 7540 Section 10.5.1</a>
+     */
+    public List<Header> decompress(final HeaderBlock block, final long maxListSize) {
+        final var headers = new HeaderSet(maxListSize);
+
+        while (block.hasRemaining()) {
+            final var lead = block.peek();
             if (this.isIndexedHeaderField(lead)) {
-                i = this.readIndexedHeaderField(data, i, headers);
+                this.readIndexedHeaderField(block, headers);
             } else if (this.isLiteralHeaderFieldWithIncrementalIndexing(lead)) {
-                i = this.readLiteralHeader(data, i, 6, headers, true);
+                this.readLiteralHeader(block, 6, headers, true);
             } else if (this.isLiteralHeaderFieldWithoutIndexing(lead)) {
-                i = this.readLiteralHeader(data, i, 4, headers, false);
+                this.readLiteralHeader(block, 4, headers, false);
             } else if (this.isLiteralHeaderFieldNeverIndexed(lead)) {
-                i = this.readLiteralHeader(data, i, 4, headers, false);
+                this.readLiteralHeader(block, 4, headers, false);
             } else if (this.isDynamicTableSizeUpdate(lead)) {
-                final var parsedSize = this.readInteger(data, i, 3);
-                i = parsedSize.index;
-                final var size = parsedSize.value.intValue();
-
-                if (size >= this.maxDynDecodingSize) {
-                    throw new HpackDecodingException(
-                            "New dynamic table size exceeds connection limit"
-                    );
-                }
-
-                this.decompressionTable.resize(parsedSize.value.intValue());
+                this.readDynamicTableSizeUpdate(block);
             } else {
                 throw new HpackDecodingException("Unrecognized header field encoding");
             }
         }
 
+        if (this.stringBuffer.length > MAX_RETAINED_BUFFER) {
+            this.stringBuffer = new byte[MAX_RETAINED_BUFFER];
+        }
+        if (this.huffmanBuffer.length > MAX_RETAINED_BUFFER) {
+            this.huffmanBuffer = new byte[MAX_RETAINED_BUFFER];
+        }
+
+        if (headers.getMalformedName() != null) {
+            throw new MalformedHeaderException(
+                    "Header name " + headers.getMalformedName() + " contains uppercase characters"
+            );
+        }
+
+        if (headers.isOversized()) {
+            return null;
+        }
+
         return headers.toList();
     }
 
@@ -181,49 +351,121 @@ public class Hpack {
      * @return the bytes consisting of the compressed headers
      */
     public byte[] compress(final List<Header> headers) {
-        try (var bytes = new ByteArrayOutputStream()) {
-
-            final var entries = headers.stream()
-                    .flatMap(h -> h.getValues().stream().map(v ->
-                            new TableEntry(h.getKey(), v, h.isSensitive())
-                    ))
-                    .collect(Collectors.toList());
-
-            for (final var entry : entries) {
-                final var index = this.getIndexInTable(entry);
-                if (index != 0) {
-                    bytes.write(this.writeInt(0b1000_0000, 7, index));
-                    continue;
-                }
+        final var start = System.nanoTime();
 
-                final int prefix;
-                final int prefixLength;
-                if (entry.isSensitive) {
-                    prefix = 0b0001_0000;
-                    prefixLength = 4;
-                } else {
-                    prefix = 0b0100_0000;
-                    prefixLength = 6;
-                }
+        this.outputLength = 0;
+        if (this.encodingSizeChanged) {
+            // The decoder learns about the new size at the start of the next header block.
+            this.writeInt(0b0010_0000, 5, this.maxDynEncodingSize);
+            this.encodingSizeChanged = false;
+        }
 
-                final var partialIndex = this.getIndexInTable(entry.getKeyEntry());
-                bytes.write(this.writeInt(prefix, prefixLength, partialIndex));
-                if (partialIndex == 0) {
-                    this.writeString(entry.key, bytes);
-                }
+        int fieldCount = 0;
+        long headerSize = 0;
+        for (final var header : headers) {
+            final var name = header.getKey().toLowerCase(Locale.ROOT);
+            for (final var value : header.getValues()) {
+                this.writeField(new TableEntry(name, value, header.isSensitive()));
+                ++fieldCount;
+                headerSize += name.length() + value.length();
+            }
+        }
 
-                this.writeString(entry.value, bytes);
+        final var block = Arrays.copyOf(this.output, this.outputLength);
 
-                if (!entry.isSensitive) {
-                    this.compressionTable.insert(entry);
-                }
-            }
+        if (this.output.length > MAX_RETAINED_BUFFER) {
+            this.output = new byte[MAX_RETAINED_BUFFER];
+        }
+        if (this.octets.length > MAX_RETAINED_BUFFER) {
+            this.octets = new byte[MAX_RETAINED_BUFFER];
+        }
 
-            return bytes.toByteArray();
-        } catch (final IOException ex) {
-            // Never happens. Still, wrap the exception and rethrow just to be sure.
-            throw new RuntimeException(ex);
+        this.metrics.record(fieldCount, headerSize, block.length, System.nanoTime() - start);
+
+        return block;
+    }
+
+    /**
+     * Returns the metrics the encoder records its work in.
+     *
+     * @return the metrics
+     */
+    public HpackEncoderMetrics getEncoderMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Writes a single header field to the output buffer.
+     *
+     * @param entry the header field
+     */
+    private void writeField(final TableEntry entry) {
+        final var index = this.getIndexInTable(entry);
+        if (index != 0) {
+            this.writeInt(0b1000_0000, 7, index);
+            return;
+        }
+
+        final var indexing = this.policy.getIndexing(entry.key, entry.isSensitive);
+        if (indexing != Indexing.NEVER && this.policy.isConstant(entry.key)) {
+            this.writeConstantField(entry, indexing);
+        } else {
+            this.writeLiteralField(entry, indexing, this.getNameIndexInTable(entry.key));
+        }
+
+        if (indexing == Indexing.INCREMENTAL) {
+            this.compressionTable.insert(entry);
+        }
+    }
+
+    /**
+     * Writes a constant header field to the output buffer, pre-encoding it if needed.
+     *
+     * The pre-encoded form refers to the static table only, so it stays valid no matter what the
+     * dynamic table contains.
+     *
+     * @param entry the header field
+     * @param indexing the way the header field is indexed
+     */
+    private void writeConstantField(final TableEntry entry, final Indexing indexing) {
+        final var cached = this.policy.getPreEncoded(entry.key, entry.value);
+        if (cached != null) {
+            this.writeBytes(cached, cached.length);
+            return;
         }
+
+        final var start = this.outputLength;
+        this.writeLiteralField(entry, indexing, INV_STATIC_NAMES.getOrDefault(entry.key, 0));
+        this.policy.putPreEncoded(
+                entry.key, entry.value, Arrays.copyOfRange(this.output, start, this.outputLength)
+        );
+    }
+
+    /**
+     * Writes a header field as a literal to the output buffer.
+     *
+     * @param entry the header field
+     * @param indexing the way the header field is indexed
+     * @param nameIndex the index of the header field's name, or 0 to write the name as a literal
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7541#section-6.2">RFC 7541 Section 6.2</a>
+     */
+    private void writeLiteralField(
+            final TableEntry entry, final Indexing indexing, final int nameIndex
+    ) {
+        if (indexing == Indexing.INCREMENTAL) {
+            this.writeInt(0b0100_0000, 6, nameIndex);
+        } else if (indexing == Indexing.NEVER) {
+            this.writeInt(0b0001_0000, 4, nameIndex);
+        } else {
+            this.writeInt(0b0000_0000, 4, nameIndex);
+        }
+
+        if (nameIndex == 0) {
+            this.writeString(entry.key);
+        }
+
+        this.writeString(entry.value);
     }
 
     /**
@@ -245,66 +487,130 @@ public class Hpack {
     }
 
     /**
-     * Writes an integer into the byte string.
+     * Returns the index of any table entry with a given name.
+     *
+     * If no entry with the name is present in any table, 0 is returned instead.
+     *
+     * @param name the name to look for
+     *
+     * @return the index, or 0 if no entry has the name
+     */
+    private int getNameIndexInTable(final String name) {
+        final var staticIndex = INV_STATIC_NAMES.get(name);
+        if (staticIndex != null) {
+            return staticIndex;
+        }
+
+        return this.compressionTable.indexOfName(name);
+    }
+
+    /**
+     * Writes an integer to the output buffer.
      *
      * @param lead the leading bits that are not part of the integer
      * @param prefixLength the number of bits the integer prefix
      * @param value the actual value to store
      *
-     * @return the bytes representing the integer
+     * @see <a href="https://tools.ietf.org/html/rfc7541#section-5.1">RFC 7541 Section 5.1</a>
      */
-    private byte[] writeInt(final int lead, final int prefixLength, final int value) {
-        final var initialMax = (1 << prefixLength) - 1;
+    private void writeInt(final int lead, final int prefixLength, final int value) {
+        this.ensureCapacity(MAX_INTEGER_OCTETS);
 
+        final var initialMax = (1 << prefixLength) - 1;
         if (value < initialMax) {
-            return new byte[] {(byte) ((lead | value) & 0xFF)};
+            this.output[this.outputLength++] = (byte) (lead | value);
+            return;
         }
 
-        if (value < initialMax + (1 << EXTENDED_INTEGER_BITS)) {
-            return new byte[] {
-                    (byte) ((lead | initialMax) & 0xFF),
-                    (byte) ((value - initialMax) & 0xFF)
-            };
-        }
+        this.output[this.outputLength++] = (byte) (lead | initialMax);
 
         final var extensionMask = (1 << EXTENDED_INTEGER_BITS) - 1;
-
-        if (value < initialMax + (1 << (EXTENDED_INTEGER_BITS * 2))) {
-            return new byte[] {
-                    (byte) ((lead | initialMax) & 0xFF),
-                    (byte) (((value - initialMax) & extensionMask) | EXTENSION_CONTINUATION_MASK),
-                    (byte) (((value - initialMax) >> EXTENDED_INTEGER_BITS) & extensionMask)
-            };
+        var remainder = value - initialMax;
+        while (remainder > extensionMask) {
+            this.output[this.outputLength++] =
+                    (byte) ((remainder & extensionMask) | EXTENSION_CONTINUATION_MASK);
+            remainder >>>= EXTENDED_INTEGER_BITS;
         }
 
-        if (value < initialMax + (1 << (EXTENDED_INTEGER_BITS * 3))) {
-            return new byte[] {
-                    (byte) ((lead | initialMax) & 0xFF),
-                    (byte) ((value - initialMax) & extensionMask),
-                    (byte) ((((value - initialMax) >> EXTENDED_INTEGER_BITS) & extensionMask)
-                            | EXTENSION_CONTINUATION_MASK),
-                    (byte) (((value - initialMax) >> (2 * EXTENDED_INTEGER_BITS)) & extensionMask)
-            };
+        this.output[this.outputLength++] = (byte) remainder;
+    }
+
+    /**
+     * Writes a string with length to the output buffer.
+     *
+     * The string is encoded using UTF-8 and Huffman-encoded if the policy says so.
+     *
+     * @param str the string to write
+     */
+    private void writeString(final String str) {
+        final var length = this.toOctets(str);
+        final var huffmanLength = this.huffman.encodedLength(this.octets, 0, length);
+
+        if (!this.policy.useHuffman(length, huffmanLength)) {
+            this.writeInt(0b0000_0000, 7, length);
+            this.writeBytes(this.octets, length);
+            return;
         }
 
-        throw new HpackEncodingException("Integer is too large: " + value);
+        this.writeInt(0b1000_0000, 7, huffmanLength);
+        this.ensureCapacity(huffmanLength);
+        this.outputLength =
+                this.huffman.encode(this.octets, 0, length, this.output, this.outputLength);
     }
 
     /**
-     * Writes a Huffman-encoded string with length to the byte stream.
+     * Encodes a string into the octet buffer using UTF-8.
      *
-     * The string is encoded using UTF-8.
+     * @param str the string to encode
      *
-     * @param str the string to write
-     * @param out the byte array output stream to write the bytes to
+     * @return the number of octets
+     */
+    private int toOctets(final String str) {
+        final var length = str.length();
+        if (this.octets.length < length) {
+            this.octets = new byte[length];
+        }
+
+        for (int i = 0; i < length; ++i) {
+            final var c = str.charAt(i);
+            if (c >= 0x80) {
+                final var encoded = str.getBytes(StandardCharsets.UTF_8);
+                if (this.octets.length < encoded.length) {
+                    this.octets = new byte[encoded.length];
+                }
+
+                System.arraycopy(encoded, 0, this.octets, 0, encoded.length);
+                return encoded.length;
+            }
+
+            this.octets[i] = (byte) c;
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes octets to the output buffer.
      *
-     * @throws IOException probably never
+     * @param bytes the array containing the octets
+     * @param length the number of octets to write
      */
-    private void writeString(final String str, final ByteArrayOutputStream out) throws IOException {
-        final var bytes = this.huffman.encode(str);
+    private void writeBytes(final byte[] bytes, final int length) {
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, 0, this.output, this.outputLength, length);
+        this.outputLength += length;
+    }
 
-        out.write(this.writeInt(0b1000_0000, 7, bytes.length));
-        out.write(bytes);
+    /**
+     * Makes sure the output buffer can hold a number of additional octets.
+     *
+     * @param additional the number of additional octets
+     */
+    private void ensureCapacity(final int additional) {
+        final var required = this.outputLength + additional;
+        if (required > this.output.length) {
+            this.output = Arrays.copyOf(this.output, Math.max(required, this.output.length * 2));
+        }
     }
 
     /**
@@ -325,11 +631,17 @@ public class Hpack {
     /**
      * Adjusts the maximum dynamic table size for encoding.
      *
+     * A forced change is announced to the decoder at the start of the next header block.
+     *
      * @param newMaxSize the new maximum size
      * @param force if {@code true}, the maximum size is directly applied to the dynamic table,
      *              otherwise the value is set for future comparison
      */
     public void updateMaximumEncodingSize(final int newMaxSize, final boolean force) {
+        if (force && newMaxSize != this.maxDynEncodingSize) {
+            this.encodingSizeChanged = true;
+        }
+
         this.maxDynEncodingSize = newMaxSize;
 
         if (force) {
@@ -393,77 +705,79 @@ public class Hpack {
     }
 
     /**
-     * Reads a fully indexed header field from the byte stream.
+     * Reads a fully indexed header field from the header block.
      *
-     * @param data the bytes
-     * @param ii the initial index to start reading bytes at
+     * @param block the header block
      * @param headers the set of headers to append the newly read header to
-     *
-     * @return the index past the read header field
      */
-    private int readIndexedHeaderField(final byte[] data, final int ii, final HeaderSet headers) {
-        var i = ii;
-        final var parsedIndex = this.readInteger(data, i, 7);
-        i = parsedIndex.index;
-
-        final var header = this.getIndexedHeader(parsedIndex.value.intValue());
+    private void readIndexedHeaderField(final HeaderBlock block, final HeaderSet headers) {
+        final var header = this.getIndexedHeader(this.readInteger(block, 7));
 
         if (header == null) {
             throw new HpackDecodingException("Index exceeds dynamic table");
         }
 
         headers.insert(header);
-
-        return i;
     }
 
     /**
-     * Reads a partially or fully literal header field from the byte stream.
+     * Reads a partially or fully literal header field from the header block.
      *
-     * @param data the bytes
-     * @param ii the initial index to start reading at
+     * @param block the header block
      * @param prefix the prefix length of the value index
      * @param headers the header set to append the newly read header to
      * @param addToTable if {@code true}, the new header is appended to the dynmic table,
      *                   if {@code false}, the header is not indexed
-     *
-     * @return the index past the read header field
      */
-    private int readLiteralHeader(
-            final byte[] data, final int ii, final int prefix,
+    private void readLiteralHeader(
+            final HeaderBlock block, final int prefix,
             final HeaderSet headers, final boolean addToTable
     ) {
-        var i = ii;
-
-        final var parsedKeyIndex = this.readInteger(data, i, prefix);
-        i = parsedKeyIndex.index;
+        final var keyIndex = this.readInteger(block, prefix);
 
         final String key;
         final int keyLength;
-        if (parsedKeyIndex.value != 0) {
-            final var entry = this.getIndexedHeader(parsedKeyIndex.value.intValue());
-            key = entry.key;
-            keyLength = entry.length;
+        if (keyIndex != 0) {
+            final var indexed = this.getIndexedHeader(keyIndex);
+            if (indexed == null) {
+                throw new HpackDecodingException("Index exceeds dynamic table");
+            }
+
+            key = indexed.key;
+            keyLength = indexed.keyLength;
         } else {
-            final var parsedKey = this.readString(data, i);
-            i = parsedKey.index;
-            key = parsedKey.value;
-            keyLength = parsedKey.length;
+            key = this.readString(block, true);
+            keyLength = this.stringLength;
         }
 
-        final var parsedValue = this.readString(data, i);
-        i = parsedValue.index;
-        final var value = parsedValue.value;
+        final var value = this.readString(block, false);
 
         headers.insert(key, value);
 
         if (addToTable) {
             this.decompressionTable.insert(
-                    new TableEntry(key, value, keyLength + parsedValue.length + 32)
+                    new TableEntry(key, value, keyLength, this.stringLength)
             );
         }
+    }
+
+    /**
+     * Reads a dynamic table size update from the header block and applies it.
+     *
+     * @param block the header block
+     *
+     * @throws HpackDecodingException if the new size exceeds the connection limit
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7541#section-6.3">RFC 7541 Section 6.3</a>
+     */
+    private void readDynamicTableSizeUpdate(final HeaderBlock block) {
+        final var size = this.readInteger(block, 5);
+
+        if (size > this.maxDynDecodingSize) {
+            throw new HpackDecodingException("New dynamic table size exceeds connection limit");
+        }
 
-        return i;
+        this.decompressionTable.resize(size);
     }
 
     /**
@@ -489,115 +803,159 @@ public class Hpack {
     }
 
     /**
-     * Reads a string from the byte stream.
+     * Reads a string from the header block.
+     *
+     * The string is decoded straight from the frame payload it is in, unless it crosses a
+     * fragment boundary. Header names are looked up in the table of well-known names first. The
+     * number of octets the string took once decoded is left in {@link #stringLength}.
      *
-     * @param data the bytes
-     * @param ii the initial index to start reading bytes at
+     * @param block the header block
+     * @param isName whether the string is a header name
      *
-     * @return the string and the next index to continue reading at
+     * @return the string
      */
-    private ParsedValue<String> readString(final byte[] data, final int ii) {
-        var start = data[ii];
+    private String readString(final HeaderBlock block, final boolean isName) {
+        final var isHuffmanCoded = (block.peek() & 0b1000_0000) != 0;
+        final var length = this.readInteger(block, 7);
 
-        final var parsedLength = this.readInteger(data, ii, 7);
-        var i = parsedLength.index;
-        final var length = parsedLength.value.intValue();
-
-        if (i + length > data.length) {
+        if (length > block.remaining()) {
             throw new HpackDecodingException("String is beyond buffer");
         }
 
-        var bytes = new byte[length];
-        System.arraycopy(data, i, bytes, 0, length);
+        final byte[] data;
+        final int offset;
+        if (block.contiguous() >= length) {
+            data = block.array();
+            offset = block.position();
+            block.skip(length);
+        } else {
+            if (this.stringBuffer.length < length) {
+                this.stringBuffer = new byte[length];
+            }
 
-        i += length;
+            block.read(this.stringBuffer, length);
+            data = this.stringBuffer;
+            offset = 0;
+        }
 
-        if ((start & 0b1000_0000) != 0) {
-            return new ParsedValue<>(this.huffman.decode(bytes), i, length);
+        if (isHuffmanCoded) {
+            return this.decodeHuffmanString(data, offset, length, isName);
         }
 
-        return new ParsedValue<>(new String(bytes, StandardCharsets.UTF_8), i, length);
+        this.stringLength = length;
+        if (isName) {
+            final var known = KNOWN_NAMES.lookup(data, offset, length);
+            if (known != null) {
+                return known;
+            }
+        }
+
+        return new String(data, offset, length, StandardCharsets.UTF_8);
     }
 
     /**
-     * Parses an integer from a stream of bytes.
+     * Decodes a Huffman-encoded string.
+     *
+     * @param data the array containing the string
+     * @param offset the position of the string within the array
+     * @param length the length of the string
+     * @param isName whether the string is a header name
      *
-     * @param data the stream of bytes to parse
-     * @param ii the initial index to start reading bytes at
+     * @return the string
+     */
+    private String decodeHuffmanString(
+            final byte[] data, final int offset, final int length, final boolean isName
+    ) {
+        final var maxLength = Huffman.maxDecodedLength(length);
+        if (this.huffmanBuffer.length < maxLength) {
+            this.huffmanBuffer = new byte[maxLength];
+        }
+
+        final var count = this.huffman.decode(data, offset, length, this.huffmanBuffer, 0);
+        this.stringLength = count;
+
+        if (isName) {
+            final var known = KNOWN_NAMES.lookup(this.huffmanBuffer, 0, count);
+            if (known != null) {
+                return known;
+            }
+        }
+
+        return new String(this.huffmanBuffer, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses an integer from the header block.
+     *
+     * @param block the header block
      * @param prefixLength the number of bits prefixing the number
      *
-     * @return the parsed integer, containing the value and how many bytes were consumed
+     * @return the parsed integer
+     *
+     * @throws HpackDecodingException if the integer is truncated or does not fit in an int
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7541#section-5.1">RFC 7541 Section 5.1</a>
      */
-    private ParsedValue<Long> readInteger(final byte[] data, final int ii, final int prefixLength) {
-        var i = ii;
+    private int readInteger(final HeaderBlock block, final int prefixLength) {
         final var mask = (1 << prefixLength) - 1;
-        final var prefix = data[i] & mask;
+        final var prefix = block.read() & mask;
 
         if (prefix < mask) {
-            return new ParsedValue<>((long) prefix, i + 1, 1);
+            return prefix;
         }
 
-        ++i;
+        long value = prefix;
+        int shift = 0;
+        int octet;
+        do {
+            if (shift > MAX_INTEGER_SHIFT) {
+                throw new HpackDecodingException("Integer is too large");
+            }
 
-        long value = 0;
-        for (; i < data.length && (data[i] & EXTENSION_CONTINUATION_MASK) != 0; ++i) {
-            value |= (data[i] & ~EXTENSION_CONTINUATION_MASK)
-                             << ((i - ii - 1) * EXTENDED_INTEGER_BITS);
-        }
+            octet = block.read();
+            value += (long) (octet & ~EXTENSION_CONTINUATION_MASK) << shift;
+            shift += EXTENDED_INTEGER_BITS;
+        } while ((octet & EXTENSION_CONTINUATION_MASK) != 0);
 
-        if (i >= data.length) {
-            throw new HpackDecodingException("Continued integer truncated");
+        if (value > Integer.MAX_VALUE) {
+            throw new HpackDecodingException("Integer is too large");
         }
 
-        value |= data[i] << ((i - ii - 1) * EXTENDED_INTEGER_BITS);
-        ++i;
-
-        return new ParsedValue<>(value + prefix, i, i - ii);
+        return (int) value;
     }
 
     /**
-     * A value read from the byte stream.
-     *
-     * @param <T> the type of value this class contains
+     * The set of headers to return.
      */
-    private static final class ParsedValue<T> {
+    private static final class HeaderSet {
         /**
-         * The actual value.
+         * The actual map of header keys and header values.
          */
-        private final T value;
+        private final Map<String, Header> headers = new HashMap<>();
 
         /**
-         * The next index into the byte stream.
+         * The largest header list size the set collects.
          */
-        private final int index;
+        private final long maxSize;
 
         /**
-         * The number of bytes consumed to read the value.
+         * The size of the header list read so far.
          */
-        private final int length;
+        private long size = 0;
 
         /**
-         * Creates a new parsed value.
-         *
-         * @param value the value
-         * @param index the next index into the byte stream
-         * @param length the number of bytes composing the read value
+         * The first header name found to contain uppercase characters, if any.
          */
-        private ParsedValue(final T value, final int index, final int length) {
-            this.value = value;
-            this.index = index;
-            this.length = length;
-        }
-    }
+        private String malformedName = null;
 
-    /**
-     * The set of headers to return.
-     */
-    private static final class HeaderSet {
         /**
-         * The actual map of header keys and header values.
+         * Creates a new header set.
+         *
+         * @param maxSize the largest header list size to collect
          */
-        private final Map<String, Header> headers = new HashMap<>();
+        private HeaderSet(final long maxSize) {
+            this.maxSize = maxSize;
+        }
 
         /**
          * Inserts a key and any number of values into the set.
@@ -635,9 +993,67 @@ public class Hpack {
                 throw new HpackDecodingException("Cannot insert a header without a value");
             }
 
+            if (this.malformedName != null || this.isOversized()) {
+                return;
+            }
+
+            if (hasUppercase(key)) {
+                this.malformedName = key;
+                this.headers.clear();
+                return;
+            }
+
+            this.size += key.length() + value.length() + ENTRY_OVERHEAD;
+            if (this.isOversized()) {
+                this.headers.clear();
+                return;
+            }
+
             this.insert(key, List.of(value));
         }
 
+        /**
+         * Returns the first header name found to contain uppercase characters.
+         *
+         * Header names in HTTP/2 must be lowercase, so such a name makes the list malformed.
+         *
+         * @return the name, or {@code null} if all names are valid
+         *
+         * @see <a href="https://tools.ietf.org/html/rfc7540#section-8.1.2">
+         *     RFC 7540 Section 8.1.2</a>
+         */
+        private String getMalformedName() {
+            return this.malformedName;
+        }
+
+        /**
+         * Checks whether a header name contains uppercase characters.
+         *
+         * @param key the header name
+         *
+         * @return {@code true} if the name contains an uppercase character, {@code false}
+         *         otherwise
+         */
+        private static boolean hasUppercase(final String key) {
+            for (int i = 0; i < key.length(); ++i) {
+                final var c = key.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Checks whether the header list has grown beyond the maximum size.
+         *
+         * @return {@code true} if the list is too large, {@code false} otherwise
+         */
+        private boolean isOversized() {
+            return this.size > this.maxSize;
+        }
+
         /**
          * Returns the set as a list of headers.
          *
@@ -669,6 +1085,11 @@ public class Hpack {
          */
         private final int length;
 
+        /**
+         * The length of the name in octets.
+         */
+        private final int keyLength;
+
         /**
          * Whether the entry originated from a security-sensitive header.
          */
@@ -685,6 +1106,29 @@ public class Hpack {
             this.key = key;
             this.value = value;
             this.length = length;
+            this.keyLength = key.length();
+            this.isSensitive = false;
+        }
+
+        /**
+         * Creates a new table entry for a header field read from a header block.
+         *
+         * The size of the entry is based on the lengths of the key and value as they were
+         * received, plus 32 octets of overhead as per RFC 7541 Section 4.1. The strings may not
+         * encode back to the same number of octets if the peer sent invalid UTF-8.
+         *
+         * @param key the key
+         * @param value the value
+         * @param keyLength the number of octets the key took once decoded
+         * @param valueLength the number of octets the value took once decoded
+         */
+        private TableEntry(
+                final String key, final String value, final int keyLength, final int valueLength
+        ) {
+            this.key = key;
+            this.value = value;
+            this.length = keyLength + valueLength + ENTRY_OVERHEAD;
+            this.keyLength = keyLength;
             this.isSensitive = false;
         }
 
@@ -695,26 +1139,43 @@ public class Hpack {
          * take together when encoded with UTF-8 plus 32 bytes of overhead as per
          * RFC 7541 Section 4.1.
          *
-         * @param key the key
+         * @param key the key, which must be lowercase
          * @param value the value
          * @param isSensitive whether the entry originated from a security-sensitive header
          */
         private TableEntry(final String key, final String value, final boolean isSensitive) {
             this.key = key;
             this.value = value;
-            this.length = this.key.getBytes(StandardCharsets.UTF_8).length
-                    + this.value.getBytes(StandardCharsets.UTF_8).length
-                    + 32;
+            this.keyLength = utf8Length(key);
+            this.length = this.keyLength + utf8Length(value) + ENTRY_OVERHEAD;
             this.isSensitive = isSensitive;
         }
 
         /**
-         * Returns an entry without any value, for searching for indexed-key literals.
+         * Counts the number of octets a string takes when encoded with UTF-8.
          *
-         * @return the entry with the same key and the value set to {@code null}
+         * @param str the string
+         *
+         * @return the number of octets
          */
-        private TableEntry getKeyEntry() {
-            return new TableEntry(this.key, null, 0);
+        private static int utf8Length(final String str) {
+            int length = 0;
+            for (int i = 0; i < str.length(); ++i) {
+                final var c = str.charAt(i);
+                if (c < 0x80) {
+                    ++length;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    // A surrogate pair encodes a supplementary character in four octets.
+                    length += 4;
+                    ++i;
+                } else {
+                    length += 3;
+                }
+            }
+
+            return length;
         }
 
         @Override
@@ -724,25 +1185,58 @@ public class Hpack {
             }
 
             final var other = (TableEntry) obj;
-            return this.key.equalsIgnoreCase(other.key) && Objects.equals(this.value, other.value);
+            return this.key.equals(other.key) && Objects.equals(this.value, other.value);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(this.key.toLowerCase(), this.value);
+            return this.key.hashCode() * 31 + Objects.hashCode(this.value);
         }
     }
 
     /**
      * The dynamic table kept by the codec.
+     * <p>
+     * Entries are kept in a ring buffer in insertion order, so both inserting the newest entry
+     * and evicting the oldest one take constant time. Every entry is numbered by the total number
+     * of insertions before it, which makes it possible to index entries without renumbering them
+     * whenever the table changes.
      */
     private static final class DynamicTable {
         /**
-         * The actual collection of entries.
-         *
-         * Modeled as a stack since the algorithm behaves as a LIFO collection.
+         * The initial number of slots in the ring buffer. Must be a power of two.
+         */
+        private static final int INITIAL_SLOTS = 16;
+
+        /**
+         * The ring buffer of entries.
+         */
+        private TableEntry[] entries = new TableEntry[INITIAL_SLOTS];
+
+        /**
+         * The position of the oldest entry in the ring buffer.
+         */
+        private int head = 0;
+
+        /**
+         * The number of entries in the table.
+         */
+        private int count = 0;
+
+        /**
+         * The total number of entries ever inserted into the table.
          */
-        private final Stack<TableEntry> table = new Stack<>();
+        private long insertions = 0;
+
+        /**
+         * The numbers of the newest entries by name and value, or {@code null} if not indexed.
+         */
+        private final Map<TableEntry, Long> fieldIndex;
+
+        /**
+         * The numbers of the newest entries by name, or {@code null} if not indexed.
+         */
+        private final Map<String, Long> nameIndex;
 
         /**
          * The current sum of all entry sizes in the table.
@@ -757,6 +1251,22 @@ public class Hpack {
          */
         private int capacity = 0;
 
+        /**
+         * Creates a new dynamic table.
+         *
+         * @param indexed whether to index entries for lookups by name and value, which is only
+         *                needed when encoding
+         */
+        private DynamicTable(final boolean indexed) {
+            if (indexed) {
+                this.fieldIndex = new HashMap<>();
+                this.nameIndex = new HashMap<>();
+            } else {
+                this.fieldIndex = null;
+                this.nameIndex = null;
+            }
+        }
+
         /**
          * Looks up an entry in the table.
          *
@@ -764,17 +1274,20 @@ public class Hpack {
          *
          * @param index the index of the entry
          *
-         * @return the entry or {@code null} if the entry does not exist
+         * @return the entry
+         *
+         * @throws HpackDecodingException if the entry does not exist
          */
         private TableEntry get(final int index) {
-            if (index > this.table.size() + STATIC_TABLE_LENGTH) {
+            final var age = index - STATIC_TABLE_LENGTH;
+            if (age < 0 || age >= this.count) {
                 throw new HpackDecodingException(
                         "Table index (" + index + ") outside of table space ("
-                                + this.table.size() + " + " + STATIC_TABLE_LENGTH + ")"
+                                + this.count + " + " + STATIC_TABLE_LENGTH + ")"
                 );
             }
 
-            return this.table.get(this.table.size() - (index - STATIC_TABLE_LENGTH) - 1);
+            return this.entries[(this.head + this.count - 1 - age) & (this.entries.length - 1)];
         }
 
         /**
@@ -789,19 +1302,44 @@ public class Hpack {
          * @return the index
          */
         private int indexOf(final TableEntry entry) {
-            final var index = this.table.indexOf(entry);
-            if (index != -1) {
-                return (this.table.size() - index - 1) + STATIC_TABLE_LENGTH;
+            return this.toIndex(this.fieldIndex.get(entry));
+        }
+
+        /**
+         * Looks up the index of the newest entry with a given name.
+         *
+         * The index includes the static table offset.
+         *
+         * If no entry is found, 0 is returned instead.
+         *
+         * @param name the name to look for
+         *
+         * @return the index
+         */
+        private int indexOfName(final String name) {
+            return this.toIndex(this.nameIndex.get(name));
+        }
+
+        /**
+         * Translates the number of an entry into its index.
+         *
+         * @param number the number of the entry, or {@code null}
+         *
+         * @return the index including the static table offset, or 0 if the number is {@code null}
+         */
+        private int toIndex(final Long number) {
+            if (number == null) {
+                return 0;
             }
 
-            return 0;
+            return (int) (this.insertions - 1 - number) + STATIC_TABLE_LENGTH;
         }
 
         /**
          * Inserts an entry into the table.
          *
-         * If the table is full, then the most recent entries are discarded
-         * until the new entry fits. Then, if the entire table is too small the entry itself
+         * If the table is full, then the oldest entries are evicted until the new entry fits.
+         * If the entry is larger than the entire table, the table is emptied and the entry itself
          * is discarded as well.
          *
          * @param entry the entry to insert
@@ -809,41 +1347,78 @@ public class Hpack {
          * @see <a href="https://tools.ietf.org/html/rfc7541#section-4.4">RFC 7541 Section 4.4</a>
          */
         private void insert(final TableEntry entry) {
-            while (this.size + entry.length > this.capacity) {
-                this.pop();
+            while (this.count > 0 && this.size + entry.length > this.capacity) {
+                this.evict();
             }
 
-            if (this.size + entry.length <= this.capacity) {
-                this.table.push(entry);
+            if (entry.length > this.capacity) {
+                return;
+            }
+
+            if (this.count == this.entries.length) {
+                this.grow();
+            }
+
+            this.entries[(this.head + this.count) & (this.entries.length - 1)] = entry;
+            ++this.count;
+            this.size += entry.length;
+
+            final long number = this.insertions++;
+            if (this.fieldIndex != null) {
+                this.fieldIndex.put(entry, number);
+                this.nameIndex.put(entry.key, number);
             }
         }
 
         /**
          * Resizes the table to the new size.
          *
-         * This will evict entries from the table until the total sum of iets entry's sizes is less
+         * This will evict entries from the table until the total sum of its entries' sizes is less
          * than or equal to the new size.
          *
          * This function does not check for conformance with the connection-specified maximum.
          *
          * @param newSize the new size of the dynamic table
          *
-         * @see <a href="https://tools.ietf.org/html/rfc7540#section-4.3">RFC 7541 Section 4.3</a>
+         * @see <a href="https://tools.ietf.org/html/rfc7541#section-4.3">RFC 7541 Section 4.3</a>
          */
         private void resize(final int newSize) {
             this.capacity = newSize;
-            while (this.size >= newSize) {
-                this.pop();
+            while (this.size > newSize) {
+                this.evict();
             }
         }
 
         /**
-         * Removes the most recent entry from the table.
+         * Removes the oldest entry from the table.
          */
-        private void pop() {
-            final var entry = this.table.pop();
+        private void evict() {
+            final var entry = this.entries[this.head];
+            final long number = this.insertions - this.count;
+
+            this.entries[this.head] = null;
+            this.head = (this.head + 1) & (this.entries.length - 1);
+            --this.count;
             this.size -= entry.length;
+
+            // Only drop the index entries if no newer entry has taken them over.
+            if (this.fieldIndex != null) {
+                this.fieldIndex.remove(entry, number);
+                this.nameIndex.remove(entry.key, number);
+            }
         }
 
+        /**
+         * Doubles the number of slots in the ring buffer.
+         */
+        private void grow() {
+            final var grown = new TableEntry[this.entries.length * 2];
+            for (int i = 0; i < this.count; ++i) {
+                grown[i] = this.entries[(this.head + i) & (this.entries.length - 1)];
+            }
+
+            this.entries = grown;
+            this.head = 0;
+        }
     }
 }
@@ -0,0 +1,129 @@
+package net.wukl.cacofony.http2.hpack;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the work done by HPACK encoders.
+ * <p>
+ * A single instance may be shared by the encoders of all connections to describe the server as a
+ * whole.
+ */
+public class HpackEncoderMetrics {
+    /**
+     * The number of header blocks encoded.
+     */
+    private final LongAdder blocks = new LongAdder();
+
+    /**
+     * The number of header fields encoded.
+     */
+    private final LongAdder fields = new LongAdder();
+
+    /**
+     * The size of the names and values of all encoded header fields.
+     */
+    private final LongAdder headerOctets = new LongAdder();
+
+    /**
+     * The size of all encoded header blocks.
+     */
+    private final LongAdder encodedOctets = new LongAdder();
+
+    /**
+     * The time spent encoding header blocks in nanoseconds.
+     */
+    private final LongAdder encodingNanos = new LongAdder();
+
+    /**
+     * Records an encoded header block.
+     *
+     * @param fieldCount the number of header fields in the block
+     * @param headerSize the size of the names and values of the header fields
+     * @param encodedSize the size of the encoded block
+     * @param nanos the time spent encoding the block in nanoseconds
+     */
+    public void record(
+            final int fieldCount, final long headerSize, final int encodedSize, final long nanos
+    ) {
+        this.blocks.increment();
+        this.fields.add(fieldCount);
+        this.headerOctets.add(headerSize);
+        this.encodedOctets.add(encodedSize);
+        this.encodingNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of header blocks encoded.
+     *
+     * @return the number of blocks
+     */
+    public long getBlocks() {
+        return this.blocks.sum();
+    }
+
+    /**
+     * Returns the number of header fields encoded.
+     *
+     * @return the number of fields
+     */
+    public long getFields() {
+        return this.fields.sum();
+    }
+
+    /**
+     * Returns the size of the names and values of all encoded header fields.
+     *
+     * Every character is counted as a single octet.
+     *
+     * @return the size in octets
+     */
+    public long getHeaderOctets() {
+        return this.headerOctets.sum();
+    }
+
+    /**
+     * Returns the size of all encoded header blocks.
+     *
+     * @return the size in octets
+     */
+    public long getEncodedOctets() {
+        return this.encodedOctets.sum();
+    }
+
+    /**
+     * Returns the time spent encoding header blocks.
+     *
+     * @return the time in nanoseconds
+     */
+    public long getEncodingNanos() {
+        return this.encodingNanos.sum();
+    }
+
+    /**
+     * Returns the size of the encoded header blocks relative to the size of their fields.
+     *
+     * @return the compression ratio, or 1 if nothing has been encoded yet
+     */
+    public double getCompressionRatio() {
+        final var header = this.getHeaderOctets();
+        if (header == 0) {
+            return 1;
+        }
+
+        return (double) this.getEncodedOctets() / header;
+    }
+
+    /**
+     * Returns the average time spent encoding a single header block.
+     *
+     * @return the time in nanoseconds, or 0 if nothing has been encoded yet
+     */
+    public double getAverageNanosPerBlock() {
+        final var count = this.getBlocks();
+        if (count == 0) {
+            return 0;
+        }
+
+        return (double) this.getEncodingNanos() / count;
+    }
+}
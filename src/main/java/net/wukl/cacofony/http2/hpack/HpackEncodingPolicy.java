@@ -0,0 +1,241 @@
+package net.wukl.cacofony.http2.hpack;
+
+import net.wukl.cacodi.Manual;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A policy deciding how the HPACK encoder represents header fields.
+ * <p>
+ * The policy decides which header fields are worth adding to the dynamic table, when strings are
+ * Huffman-encoded and which header fields are constant enough to keep their encoded form around.
+ * A single policy is meant to be shared by all connections, so that pre-encoded header fields are
+ * encoded only once per server.
+ */
+public class HpackEncodingPolicy {
+    /**
+     * The names of the header fields that change too often to be worth indexing by default.
+     */
+    public static final Set<String> DEFAULT_UNINDEXED_NAMES = Set.of(
+            "age",
+            "content-length",
+            "content-range",
+            "date",
+            "etag",
+            "expires",
+            "last-modified",
+            "location",
+            "set-cookie"
+    );
+
+    /**
+     * The names of the header fields that usually have one of a few constant values by default.
+     */
+    public static final Set<String> DEFAULT_CONSTANT_NAMES = Set.of(
+            "accept-ranges",
+            "cache-control",
+            "content-encoding",
+            "content-type",
+            "server",
+            "strict-transport-security",
+            "vary",
+            "x-content-type-options",
+            "x-frame-options"
+    );
+
+    /**
+     * The maximum number of pre-encoded values kept per header field name.
+     */
+    private static final int MAX_CACHED_VALUES = 32;
+
+    /**
+     * The ways a header field may be represented.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7541#section-6.2">RFC 7541 Section 6.2</a>
+     */
+    public enum Indexing {
+        /**
+         * The field is added to the dynamic table.
+         */
+        INCREMENTAL,
+
+        /**
+         * The field is not added to the dynamic table, but intermediaries may do so.
+         */
+        NONE,
+
+        /**
+         * The field is never added to any dynamic table, not even by intermediaries.
+         */
+        NEVER
+    }
+
+    /**
+     * The ways strings may be encoded.
+     */
+    public enum HuffmanStrategy {
+        /**
+         * Strings are always Huffman-encoded.
+         */
+        ALWAYS,
+
+        /**
+         * Strings are never Huffman-encoded.
+         */
+        NEVER,
+
+        /**
+         * Strings are Huffman-encoded only if that makes them shorter.
+         */
+        SHORTEST
+    }
+
+    /**
+     * The names of the header fields that are never indexed.
+     */
+    private final Set<String> unindexedNames;
+
+    /**
+     * The names of the header fields whose encoded forms are cached.
+     */
+    private final Set<String> constantNames;
+
+    /**
+     * The way strings are encoded.
+     */
+    private final HuffmanStrategy huffmanStrategy;
+
+    /**
+     * The pre-encoded header fields by name and value.
+     */
+    private final Map<String, Map<String, byte[]>> preEncoded = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new encoding policy using the default settings.
+     */
+    public HpackEncodingPolicy() {
+        this(DEFAULT_UNINDEXED_NAMES, DEFAULT_CONSTANT_NAMES, HuffmanStrategy.SHORTEST);
+    }
+
+    /**
+     * Creates a new encoding policy.
+     *
+     * @param unindexedNames the names of the header fields that are never indexed
+     * @param constantNames the names of the header fields whose encoded forms are cached
+     * @param huffmanStrategy the way strings are encoded
+     */
+    @Manual
+    public HpackEncodingPolicy(
+            final Set<String> unindexedNames,
+            final Set<String> constantNames,
+            final HuffmanStrategy huffmanStrategy
+    ) {
+        this.unindexedNames = lowercase(unindexedNames);
+        this.constantNames = lowercase(constantNames);
+        this.huffmanStrategy = huffmanStrategy;
+    }
+
+    /**
+     * Lowercases a set of header field names.
+     *
+     * @param names the names
+     *
+     * @return the lowercased names
+     */
+    private static Set<String> lowercase(final Set<String> names) {
+        return names.stream()
+                .map(n -> n.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Decides how to represent a header field that is not present in any table.
+     *
+     * @param name the lowercase name of the header field
+     * @param sensitive whether the header field is security-sensitive
+     *
+     * @return the representation of the header field
+     */
+    public Indexing getIndexing(final String name, final boolean sensitive) {
+        if (sensitive) {
+            return Indexing.NEVER;
+        }
+
+        if (this.unindexedNames.contains(name)) {
+            return Indexing.NONE;
+        }
+
+        return Indexing.INCREMENTAL;
+    }
+
+    /**
+     * Decides whether to Huffman-encode a string.
+     *
+     * @param rawLength the number of octets of the string
+     * @param huffmanLength the number of octets of the string when Huffman-encoded
+     *
+     * @return {@code true} if the string should be Huffman-encoded, {@code false} otherwise
+     */
+    public boolean useHuffman(final int rawLength, final int huffmanLength) {
+        switch (this.huffmanStrategy) {
+            case ALWAYS:
+                return true;
+            case NEVER:
+                return false;
+            default:
+                return huffmanLength < rawLength;
+        }
+    }
+
+    /**
+     * Checks whether the encoded forms of a header field may be cached.
+     *
+     * @param name the lowercase name of the header field
+     *
+     * @return {@code true} if the header field is constant, {@code false} otherwise
+     */
+    public boolean isConstant(final String name) {
+        return this.constantNames.contains(name);
+    }
+
+    /**
+     * Returns the cached encoded form of a constant header field.
+     *
+     * @param name the lowercase name of the header field
+     * @param value the value of the header field
+     *
+     * @return the encoded header field or {@code null} if it has not been cached
+     */
+    public byte[] getPreEncoded(final String name, final String value) {
+        final var values = this.preEncoded.get(name);
+        if (values == null) {
+            return null;
+        }
+
+        return values.get(value);
+    }
+
+    /**
+     * Caches the encoded form of a constant header field.
+     *
+     * The encoded form must not refer to the dynamic table. Once the maximum number of values has
+     * been cached for a name, further values are ignored.
+     *
+     * @param name the lowercase name of the header field
+     * @param value the value of the header field
+     * @param encoded the encoded header field
+     */
+    public void putPreEncoded(final String name, final String value, final byte[] encoded) {
+        final var values = this.preEncoded.computeIfAbsent(
+                name, k -> new ConcurrentHashMap<>()
+        );
+
+        if (values.size() < MAX_CACHED_VALUES) {
+            values.putIfAbsent(value, encoded);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package net.wukl.cacofony.http2.hpack;
+
+/**
+ * An exception indicating that a decoded header list is malformed.
+ *
+ * Unlike other decoding errors, this is only thrown once the whole header block has been read,
+ * so the decoder is still in sync with the peer's encoder. Only the message carrying the header
+ * list has to be rejected.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7540#section-8.1.2.6">
+ *     RFC 7540 Section 8.1.2.6</a>
+ */
+public class MalformedHeaderException extends HpackDecodingException {
+    /**
+     * Creates a new malformed header exception.
+     *
+     * @param message the detail message explaining what caused the exception
+     */
+    public MalformedHeaderException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,101 @@
+package net.wukl.cacofony.http2.hpack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * A table of well-known header names.
+ * <p>
+ * Literal header names are looked up in the table before a string is created for them, so
+ * well-known names decode to shared constant strings without any allocation.
+ */
+final class NameTable {
+    /**
+     * The names by the number of octets they take.
+     */
+    private final byte[][][] encoded;
+
+    /**
+     * The shared strings of the names, in the same order as {@link #encoded}.
+     */
+    private final String[][] names;
+
+    /**
+     * Creates a new name table.
+     *
+     * @param names the names in the table, which must all be ASCII
+     */
+    NameTable(final Collection<String> names) {
+        final var unique = new LinkedHashSet<>(names);
+
+        var longest = 0;
+        for (final var name : unique) {
+            longest = Math.max(longest, name.length());
+        }
+
+        final List<List<String>> byLength = new ArrayList<>();
+        for (int i = 0; i <= longest; ++i) {
+            byLength.add(new ArrayList<>());
+        }
+        for (final var name : unique) {
+            byLength.get(name.length()).add(name);
+        }
+
+        this.encoded = new byte[longest + 1][][];
+        this.names = new String[longest + 1][];
+        for (int i = 0; i <= longest; ++i) {
+            final var group = byLength.get(i);
+            this.names[i] = group.toArray(new String[0]);
+            this.encoded[i] = new byte[group.size()][];
+            for (int j = 0; j < group.size(); ++j) {
+                this.encoded[i][j] = group.get(j).getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    /**
+     * Looks up a name in the table.
+     *
+     * @param data the array containing the name's octets
+     * @param offset the position of the name within the array
+     * @param length the number of octets of the name
+     *
+     * @return the shared string of the name or {@code null} if the name is not in the table
+     */
+    String lookup(final byte[] data, final int offset, final int length) {
+        if (length >= this.encoded.length) {
+            return null;
+        }
+
+        final var candidates = this.encoded[length];
+        for (int i = 0; i < candidates.length; ++i) {
+            if (matches(candidates[i], data, offset)) {
+                return this.names[length][i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether a name's octets match a range of an array.
+     *
+     * @param name the name's octets
+     * @param data the array
+     * @param offset the start of the range, which is as long as the name
+     *
+     * @return {@code true} if the octets match, {@code false} otherwise
+     */
+    private static boolean matches(final byte[] name, final byte[] data, final int offset) {
+        for (int i = name.length - 1; i >= 0; --i) {
+            if (name[i] != data[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -5,13 +5,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
 import java.util.regex.Pattern;
 
 /**
  * A class implementing Huffman encoding and decoding according to RFC 7541.
+ * <p>
+ * Strings are decoded by a state machine that consumes four bits at a time. Its states are the
+ * internal nodes of the Huffman tree and its transitions are precomputed for every state and
+ * every possible nibble. Decoding reuses a buffer owned by the instance, so a single instance
+ * must not decode on multiple threads at once.
  */
 public class Huffman {
     /**
@@ -33,9 +35,38 @@ public class Huffman {
     private static final BitSpan[] ENCODING_TABLE = new BitSpan[257];
 
     /**
-     * The decoding table.
+     * The number of bits consumed per decoding step.
      */
-    private static final Map<BitSpan, Integer> DECODING_TABLE = new HashMap<>();
+    private static final int STEP_BITS = 4;
+
+    /**
+     * The number of internal nodes in the Huffman tree, which are the decoder's states.
+     */
+    private static final int STATES = 256;
+
+    /**
+     * The flag in a transition marking that the step completes a symbol.
+     */
+    private static final int EMIT = 1 << 17;
+
+    /**
+     * The flag in a transition marking that the step decodes the EOS symbol.
+     */
+    private static final int FAIL = 1 << 18;
+
+    /**
+     * The decoding transitions by state and nibble.
+     * <p>
+     * Each transition holds the next state in its lowest eight bits, the completed symbol in the
+     * next nine bits and the {@link #EMIT} and {@link #FAIL} flags.
+     */
+    private static final int[] TRANSITIONS = new int[STATES << STEP_BITS];
+
+    /**
+     * Whether the input may end in each state, meaning the bits consumed since the last symbol
+     * are valid padding.
+     */
+    private static final boolean[] ACCEPTING = new boolean[STATES];
 
     /**
      * A special value in the tree indicating the encoded string ends.
@@ -63,14 +94,9 @@ public class Huffman {
     private static final int MIN_CODE_LENGTH = 5;
 
     /**
-     * The maximum number of bits a single encoded character may span.
+     * The buffer strings are decoded into.
      */
-    private static final int MAX_CODE_LENGTH = 31;
-
-    /**
-     * The expected number of bits used per character.
-     */
-    private static final int EXPECTED_BITS_PER_CHAR = 6;
+    private byte[] buffer = new byte[0];
 
     static {
         // Preprocess the Huffman table
@@ -97,7 +123,6 @@ public class Huffman {
                 final var span = new BitSpan(Integer.parseInt(lenStr), Long.parseLong(seqStr, 16));
 
                 ENCODING_TABLE[value] = span;
-                DECODING_TABLE.put(span, value);
             }
         } catch (final IOException e) {
             throw new HuffmanInitializationException("Unable to locate the Huffman table", e);
@@ -105,104 +130,199 @@ public class Huffman {
 
         EOS_CODE = ENCODING_TABLE[EOS];
         EOS_BYTE = (byte) (EOS_CODE.bits >>> (EOS_CODE.length - Byte.SIZE));
+
+        buildDecoder();
     }
 
     /**
-     * Decodes a series of bytes using the Huffman decoding algorithm from RFC 7541 appendix B.
+     * Builds the decoding state machine from the encoding table.
      *
-     * @param data the set of bytes to decode
-     * @param charset the character set to use for constructing the string
-     *
-     * @return the string, without any end-of-string characters
-     *
-     * @throws HuffmanDecodingException if the bits do not correctly encode a string
+     * @throws HuffmanInitializationException if the table does not describe a complete code
      */
-    public String decode(final byte[] data, final Charset charset) {
-        var string = new byte[data.length * Byte.SIZE / EXPECTED_BITS_PER_CHAR];
-        int c = 0;
-
-        boolean decoding = true;
-        int b = 0;
-        final var seq = new BitSpan(0, 0);
+    private static void buildDecoder() {
+        // Build the tree. Internal nodes are numbered from zero, the root being zero.
+        // Children are stored as node numbers, or as -(symbol + 1) for leaves.
+        final var children = new int[STATES * 2];
+        final var depths = new int[STATES];
+        final var allOnes = new boolean[STATES];
+        allOnes[0] = true;
+        int nodes = 1;
+
+        for (int symbol = 0; symbol < ENCODING_TABLE.length; ++symbol) {
+            final var code = ENCODING_TABLE[symbol];
+            if (code == null) {
+                throw new HuffmanInitializationException("Missing code for symbol " + symbol);
+            }
 
-        while (decoding && b < data.length * Byte.SIZE) {
-            final var remainder = Byte.SIZE - (b % Byte.SIZE);
+            int node = 0;
+            for (int bit = code.length - 1; bit >= 0; --bit) {
+                final var branch = (int) (code.bits >>> bit) & 1;
+                final var slot = node * 2 + branch;
 
-            // If the bit string ends before a full minimum code can be read, check for EOS.
-            if (b + MIN_CODE_LENGTH > data.length * Byte.SIZE) {
-                seq.bits = data[b / Byte.SIZE] & ((1 << remainder) - 1);
-                if (seq.bits == EOS_CODE.bits >>> (EOS_CODE.length - remainder)) {
+                if (bit == 0) {
+                    if (children[slot] != 0) {
+                        throw new HuffmanInitializationException("Ambiguous code " + symbol);
+                    }
+                    children[slot] = -(symbol + 1);
                     break;
                 }
 
-                throw new HuffmanDecodingException("Data truncated");
-            }
+                if (children[slot] == 0) {
+                    if (nodes >= STATES) {
+                        throw new HuffmanInitializationException("Too many internal nodes");
+                    }
+                    children[slot] = nodes;
+                    depths[nodes] = depths[node] + 1;
+                    allOnes[nodes] = allOnes[node] && branch == 1;
+                    ++nodes;
+                } else if (children[slot] < 0) {
+                    throw new HuffmanInitializationException("Ambiguous code " + symbol);
+                }
 
-            // Check if the minimum code fits in the current byte
-            if (remainder >= MIN_CODE_LENGTH) {
-                seq.bits = (data[b / Byte.SIZE] & 0xFF)
-                        >>> ((Byte.SIZE - MIN_CODE_LENGTH) - (Byte.SIZE - remainder));
-                b += MIN_CODE_LENGTH;
-            } else {
-                // Otherwise read the remaining part out of the next byte
-                seq.bits = ((data[b / Byte.SIZE] & 0xFF) << (MIN_CODE_LENGTH - remainder)) & 0xFF;
-                b += remainder;
-                seq.bits |= (data[b / Byte.SIZE] & 0xFF)
-                        >>> ((Byte.SIZE - MIN_CODE_LENGTH) + remainder);
-                b += MIN_CODE_LENGTH - remainder;
+                node = children[slot];
             }
+        }
 
-            // Normalize the code to the minimum length
-            seq.bits &= (1 << MIN_CODE_LENGTH) - 1;
-            seq.length = MIN_CODE_LENGTH;
+        if (nodes != STATES) {
+            throw new HuffmanInitializationException("The Huffman code is incomplete");
+        }
 
-            for (int len = MIN_CODE_LENGTH; len <= MAX_CODE_LENGTH; ++len) {
-                final var ch = DECODING_TABLE.get(seq);
-                if (ch != null) {
-                    if (ch.equals(EOS)) {
-                        throw new HuffmanDecodingException("Stray EOS character");
-                    }
+        // Padding is the most significant bits of EOS, and strictly shorter than an octet.
+        for (int state = 0; state < STATES; ++state) {
+            ACCEPTING[state] = allOnes[state] && depths[state] <= MAX_PADDING;
+        }
 
-                    if (c >= string.length) {
-                        final var newString = new byte[
-                                string.length
-                                + (data.length * Byte.SIZE - b) / EXPECTED_BITS_PER_CHAR
-                                + 1
-                        ];
-                        System.arraycopy(string, 0, newString, 0, string.length);
-                        string = newString;
+        // Precompute the outcome of feeding every nibble to every state.
+        for (int state = 0; state < STATES; ++state) {
+            for (int nibble = 0; nibble < 1 << STEP_BITS; ++nibble) {
+                int node = state;
+                int transition = 0;
+
+                for (int bit = STEP_BITS - 1; bit >= 0; --bit) {
+                    final var child = children[node * 2 + ((nibble >>> bit) & 1)];
+                    if (child >= 0) {
+                        node = child;
+                        continue;
                     }
 
-                    string[c] = ch.byteValue();
-                    ++c;
-                    break;
-                }
-
-                // The code was not found, check if the bit string ends next
-                // or if the code is invalid
-                if (b >= data.length * Byte.SIZE) {
-                    if (seq.bits == EOS_CODE.bits >>> (EOS_CODE.length - seq.length)) {
-                        decoding = false;
+                    final var symbol = -child - 1;
+                    if (symbol == EOS) {
+                        transition |= FAIL;
                         break;
                     }
 
-                    throw new HuffmanDecodingException("Data truncated");
+                    // Codes are at least five bits long, so a nibble completes one at most.
+                    transition |= EMIT | (symbol << Byte.SIZE);
+                    node = 0;
                 }
 
-                if (len >= MAX_CODE_LENGTH) {
-                    throw new HuffmanDecodingException("Invalid bit sequence");
+                TRANSITIONS[(state << STEP_BITS) | nibble] = transition | node;
+            }
+        }
+    }
+
+    /**
+     * Decodes a series of bytes using the Huffman decoding algorithm from RFC 7541 appendix B.
+     *
+     * @param data the set of bytes to decode
+     * @param charset the character set to use for constructing the string
+     *
+     * @return the string, without any end-of-string characters
+     *
+     * @throws HuffmanDecodingException if the bits do not correctly encode a string
+     */
+    public String decode(final byte[] data, final Charset charset) {
+        return this.decode(data, 0, data.length, charset);
+    }
+
+    /**
+     * Decodes a range of bytes using the Huffman decoding algorithm from RFC 7541 appendix B.
+     *
+     * @param data    the bytes containing the range to decode
+     * @param offset  the index of the first byte to decode
+     * @param length  the number of bytes to decode
+     * @param charset the character set to use for constructing the string
+     *
+     * @return the string, without any end-of-string characters
+     *
+     * @throws HuffmanDecodingException if the bits do not correctly encode a string
+     */
+    public String decode(final byte[] data,
+                         final int offset,
+                         final int length,
+                         final Charset charset) {
+        final var maxSymbols = maxDecodedLength(length);
+        if (this.buffer.length < maxSymbols) {
+            this.buffer = new byte[maxSymbols];
+        }
+
+        final var count = this.decode(data, offset, length, this.buffer, 0);
+
+        return new String(this.buffer, 0, count, charset);
+    }
+
+    /**
+     * Decodes a range of bytes into an array of octets.
+     *
+     * The output array must have room for at least as many octets as
+     * {@link #maxDecodedLength(int)} returns for the length of the range.
+     *
+     * @param data      the bytes containing the range to decode
+     * @param offset    the index of the first byte to decode
+     * @param length    the number of bytes to decode
+     * @param out       the array to write the decoded octets to
+     * @param outOffset the position in the output array to write the first decoded octet to
+     *
+     * @return the number of decoded octets
+     *
+     * @throws HuffmanDecodingException if the bits do not correctly encode a string
+     */
+    public int decode(final byte[] data,
+                      final int offset,
+                      final int length,
+                      final byte[] out,
+                      final int outOffset) {
+        int c = outOffset;
+        int state = 0;
+
+        for (int i = offset; i < offset + length; ++i) {
+            final var octet = data[i] & 0xFF;
+
+            var transition = TRANSITIONS[(state << STEP_BITS) | (octet >>> STEP_BITS)];
+            if ((transition & (EMIT | FAIL)) != 0) {
+                if ((transition & FAIL) != 0) {
+                    throw new HuffmanDecodingException("Stray EOS character");
                 }
+                out[c++] = (byte) (transition >>> Byte.SIZE);
+            }
 
-                // Grab the next bit and increase the code size
-                seq.bits <<= 1;
-                seq.bits |= ((data[b / Byte.SIZE] & 0xFF)
-                        >>> (Byte.SIZE - (b % Byte.SIZE)) - 1) & 1;
-                ++seq.length;
-                ++b;
+            transition = TRANSITIONS[((transition & 0xFF) << STEP_BITS) | (octet & 0x0F)];
+            if ((transition & (EMIT | FAIL)) != 0) {
+                if ((transition & FAIL) != 0) {
+                    throw new HuffmanDecodingException("Stray EOS character");
+                }
+                out[c++] = (byte) (transition >>> Byte.SIZE);
             }
+
+            state = transition & 0xFF;
+        }
+
+        if (!ACCEPTING[state]) {
+            throw new HuffmanDecodingException("Data truncated");
         }
 
-        return new String(string, 0, c, charset);
+        return c - outOffset;
+    }
+
+    /**
+     * Returns the maximum number of octets a range of Huffman-encoded bytes may decode to.
+     *
+     * @param length the number of encoded bytes
+     *
+     * @return the maximum number of decoded octets
+     */
+    public static int maxDecodedLength(final int length) {
+        return length * Byte.SIZE / MIN_CODE_LENGTH;
     }
 
     /**
@@ -229,66 +349,74 @@ public class Huffman {
      * @return the bit string encoding the string
      */
     public byte[] encode(final String str, final Charset charset) {
-        var bytes = new byte[str.length() * EXPECTED_BITS_PER_CHAR / Byte.SIZE];
-
-        final var chars = str.getBytes(charset);
-        int b = 0;
-        for (int i = 0; i < chars.length; ++i) {
-            final var ch = chars[i] & 0xFF;
-            final var sequence = ENCODING_TABLE[ch];
-            if (b + sequence.length > bytes.length * Byte.SIZE) {
-                final var newBytes = new byte[
-                    bytes.length
-                    + (sequence.length + (chars.length - i)
-                            * EXPECTED_BITS_PER_CHAR + Byte.SIZE - 1)
-                            / Byte.SIZE
-                    + 1
-                ];
-                System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
-                bytes = newBytes;
-            }
+        final var octets = str.getBytes(charset);
+        final var bytes = new byte[this.encodedLength(octets, 0, octets.length)];
 
-            final var end = b + sequence.length;
-            final var excessBits = b % Byte.SIZE;
-            if (excessBits != 0) {
-                final var remainder = Byte.SIZE - excessBits;
-                final var distance = sequence.length - remainder;
-                if (remainder < sequence.length) {
-                    bytes[b / Byte.SIZE] |= sequence.bits >>> distance;
-                    b += remainder;
-                } else {
-                    bytes[b / Byte.SIZE] |= sequence.bits << -distance;
-                    b += sequence.length;
-                    continue;
-                }
-            }
+        this.encode(octets, 0, octets.length, bytes, 0);
 
-            while (b + Byte.SIZE < end) {
-                bytes[b / Byte.SIZE] = (byte) (sequence.bits >>> (end - b - Byte.SIZE));
-                b += Byte.SIZE;
-            }
+        return bytes;
+    }
 
-            final var remainder = end - b;
-            if (remainder > 0) {
-                bytes[b / Byte.SIZE] = (byte) (sequence.bits << (Byte.SIZE - remainder));
-                b += remainder;
-            }
+    /**
+     * Counts the number of octets a sequence of octets takes when Huffman-encoded.
+     *
+     * @param octets the array containing the octets
+     * @param offset the position of the first octet
+     * @param length the number of octets
+     *
+     * @return the number of octets of the encoded sequence, including padding
+     */
+    public int encodedLength(final byte[] octets, final int offset, final int length) {
+        long bits = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            bits += ENCODING_TABLE[octets[i] & 0xFF].length;
         }
 
-        final var remainder = b % Byte.SIZE;
-        if (remainder > 0) {
-            bytes[b / 8] |= (EOS_BYTE & 0xFF) >>> remainder;
-            b += Byte.SIZE - remainder;
-        }
+        return (int) ((bits + Byte.SIZE - 1) / Byte.SIZE);
+    }
 
-        if (b == bytes.length * Byte.SIZE) {
-            return bytes;
+    /**
+     * Huffman-encodes a sequence of octets into an array.
+     *
+     * The output array must have room for at least as many octets as
+     * {@link #encodedLength(byte[], int, int)} returns for the sequence.
+     *
+     * @param octets the array containing the octets
+     * @param offset the position of the first octet
+     * @param length the number of octets
+     * @param out the array to write the encoded octets to
+     * @param outOffset the position in the output array to write the first encoded octet to
+     *
+     * @return the position in the output array after the last encoded octet
+     */
+    public int encode(final byte[] octets,
+                      final int offset,
+                      final int length,
+                      final byte[] out,
+                      final int outOffset) {
+        // Codes are at most 30 bits long, so fewer than 38 bits are ever pending.
+        long pending = 0;
+        int pendingBits = 0;
+        int o = outOffset;
+
+        for (int i = offset; i < offset + length; ++i) {
+            final var code = ENCODING_TABLE[octets[i] & 0xFF];
+            pending = (pending << code.length) | code.bits;
+            pendingBits += code.length;
+
+            while (pendingBits >= Byte.SIZE) {
+                pendingBits -= Byte.SIZE;
+                out[o++] = (byte) (pending >>> pendingBits);
+            }
         }
 
-        final var finalBytes = new byte[b / Byte.SIZE];
-        System.arraycopy(bytes, 0, finalBytes, 0, b / Byte.SIZE);
+        if (pendingBits > 0) {
+            // Pad with the most significant bits of the EOS code.
+            out[o++] = (byte) ((pending << (Byte.SIZE - pendingBits))
+                    | ((EOS_BYTE & 0xFF) >>> pendingBits));
+        }
 
-        return finalBytes;
+        return o;
     }
 
     /**
@@ -311,12 +439,12 @@ public class Huffman {
         /**
          * The number of bits in this span.
          */
-        private int length;
+        private final int length;
 
         /**
          * The bits themselves.
          */
-        private long bits;
+        private final long bits;
 
         /**
          * Creates a new bit span.
@@ -328,33 +456,5 @@ public class Huffman {
             this.length = length;
             this.bits = bits;
         }
-
-        /**
-         * Checks whether this span is equal to another.
-         *
-         * @param obj the other object
-         *
-         * @return {@code true} if the objects are equal, {@code false} otherwise
-         */
-        @Override
-        public boolean equals(final Object obj) {
-            if (!(obj instanceof BitSpan)) {
-                return false;
-            }
-
-            final var other = (BitSpan) obj;
-
-            return other.length == this.length && other.bits == this.bits;
-        }
-
-        /**
-         * Calculates the span's hash code.
-         *
-         * @return the hash code
-         */
-        @Override
-        public int hashCode() {
-            return Objects.hash(this.length, this.bits);
-        }
     }
 }
@@ -37,7 +37,14 @@ public enum SettingIdentifier {
     /**
      * An advisory indicating the maximum size of the header list the sender is prepared to accept.
      */
-    MAX_HEADER_LIST_SIZE(0x6);
+    MAX_HEADER_LIST_SIZE(0x6),
+
+    /**
+     * Whether the sender ignores the priority signals of RFC 7540.
+     *
+     * @see <a href="https://www.rfc-editor.org/rfc/rfc9218#section-2.1">RFC 9218 Section 2.1</a>
+     */
+    NO_RFC7540_PRIORITIES(0x9);
 
     /**
      * The 16-bit value corresponding the identifier.
@@ -0,0 +1,15 @@
+package net.wukl.cacofony.http2.stream;
+
+/**
+ * A listener notified when the application consumes data received on a stream.
+ */
+@FunctionalInterface
+public interface ConsumptionListener {
+    /**
+     * Handles the consumption of received data.
+     *
+     * @param stream the stream the data was received on
+     * @param bytes the number of octets consumed
+     */
+    void consumed(Stream stream, int bytes);
+}
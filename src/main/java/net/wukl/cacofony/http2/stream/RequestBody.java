@@ -0,0 +1,324 @@
+package net.wukl.cacofony.http2.stream;
+
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
+import net.wukl.cacofony.http2.frame.DataFrame;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.IntConsumer;
+
+/**
+ * The payload of a request as it arrives in DATA frames.
+ * <p>
+ * The connection's reader thread queues the payloads of received frames without copying them and
+ * never blocks doing so: the receive window advertised to the peer bounds how much can pile up.
+ * The application reads the queued payloads as a regular input stream. Every octet it consumes is
+ * reported to a listener, so the window can be opened up again as the application makes
+ * progress rather than as soon as data arrives.
+ * <p>
+ * Data that will never be read, because the application closed the stream or the peer reset it,
+ * is reported as consumed as well, so it does not keep the connection's window closed.
+ */
+public class RequestBody extends InputStream {
+    /**
+     * The received payloads not read yet.
+     */
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+
+    /**
+     * The listener receiving the number of octets consumed.
+     */
+    private final IntConsumer consumptionListener;
+
+    /**
+     * The number of octets queued.
+     */
+    private int queued = 0;
+
+    /**
+     * Whether the peer has sent all data.
+     */
+    private boolean complete = false;
+
+    /**
+     * Whether the application has closed the stream.
+     */
+    private boolean closed = false;
+
+    /**
+     * The reason the body was aborted, or {@code null} if it was not.
+     */
+    private IOException failure = null;
+
+    /**
+     * Creates a new request body.
+     *
+     * @param consumptionListener the listener receiving the number of octets consumed
+     */
+    public RequestBody(final IntConsumer consumptionListener) {
+        this.consumptionListener = consumptionListener;
+    }
+
+    /**
+     * Queues the payload of a received DATA frame.
+     *
+     * The body keeps its own reference to the frame's buffer, so the frame may be released
+     * afterwards as usual. If nobody is going to read the payload anymore, it is reported as
+     * consumed straight away.
+     *
+     * @param frame the frame
+     */
+    public void offer(final DataFrame frame) {
+        final var length = frame.getPayloadLength();
+        if (length == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!this.closed && !this.complete && this.failure == null) {
+                this.chunks.add(new Chunk(frame, length));
+                this.queued += length;
+                this.notifyAll();
+                return;
+            }
+        }
+
+        this.consumptionListener.accept(length);
+    }
+
+    /**
+     * Marks the body as complete after the peer has sent all data.
+     */
+    public synchronized void finish() {
+        this.complete = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Aborts the body, for example because the peer reset the stream.
+     *
+     * Any read waiting for data or made afterwards fails with the given exception.
+     *
+     * @param cause the reason the body was aborted
+     */
+    public void abort(final IOException cause) {
+        final int discarded;
+        synchronized (this) {
+            if (this.failure == null) {
+                this.failure = cause;
+            }
+
+            discarded = this.discard();
+            this.notifyAll();
+        }
+
+        if (discarded > 0) {
+            this.consumptionListener.accept(discarded);
+        }
+    }
+
+    /**
+     * Checks whether the peer may still send data for the body.
+     *
+     * @return {@code true} if the body has neither been completed nor aborted
+     */
+    public synchronized boolean isRemoteOpen() {
+        return !this.complete && this.failure == null;
+    }
+
+    /**
+     * Reads a single octet, waiting until one has arrived.
+     *
+     * @return the octet, or {@code -1} if the end of the body has been reached
+     *
+     * @throws IOException if the body has been closed or aborted, or the thread was interrupted
+     */
+    @Override
+    public int read() throws IOException {
+        final int value;
+        synchronized (this) {
+            if (!this.awaitData()) {
+                return -1;
+            }
+
+            final var chunk = this.chunks.peek();
+            value = chunk.array[chunk.position] & 0xFF;
+            this.consume(chunk, 1);
+        }
+
+        this.consumptionListener.accept(1);
+        return value;
+    }
+
+    /**
+     * Reads octets into an array, waiting until at least one has arrived.
+     *
+     * @param b the array to read the octets into
+     * @param off the position within the array to start writing at
+     * @param len the maximum number of octets to read
+     *
+     * @return the number of octets read, or {@code -1} if the end of the body has been reached
+     *
+     * @throws IOException if the body has been closed or aborted, or the thread was interrupted
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        var count = 0;
+        synchronized (this) {
+            if (!this.awaitData()) {
+                return -1;
+            }
+
+            while (count < len && !this.chunks.isEmpty()) {
+                final var chunk = this.chunks.peek();
+                final var step = Math.min(len - count, chunk.end - chunk.position);
+                System.arraycopy(chunk.array, chunk.position, b, off + count, step);
+                this.consume(chunk, step);
+                count += step;
+            }
+        }
+
+        this.consumptionListener.accept(count);
+        return count;
+    }
+
+    /**
+     * Returns the number of octets that can be read without waiting.
+     *
+     * @return the number of octets queued
+     */
+    @Override
+    public synchronized int available() {
+        return this.queued;
+    }
+
+    /**
+     * Closes the body, discarding any data not read yet.
+     */
+    @Override
+    public void close() {
+        final int discarded;
+        synchronized (this) {
+            this.closed = true;
+            discarded = this.discard();
+            this.notifyAll();
+        }
+
+        if (discarded > 0) {
+            this.consumptionListener.accept(discarded);
+        }
+    }
+
+    /**
+     * Waits until there is data to read or the body has ended.
+     *
+     * @return {@code true} if there is data, {@code false} if the end of the body has been reached
+     *
+     * @throws IOException if the body has been closed or aborted, or the thread was interrupted
+     */
+    private boolean awaitData() throws IOException {
+        while (this.chunks.isEmpty() && !this.complete && !this.closed && this.failure == null) {
+            try {
+                this.wait();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for request data");
+            }
+        }
+
+        if (this.failure != null) {
+            throw new IOException(this.failure.getMessage(), this.failure);
+        }
+        if (this.closed) {
+            throw new IOException("Request body has been closed");
+        }
+
+        return !this.chunks.isEmpty();
+    }
+
+    /**
+     * Marks octets of the first chunk as read, dropping the chunk once it has been read entirely.
+     *
+     * @param chunk the first chunk
+     * @param count the number of octets read
+     */
+    private void consume(final Chunk chunk, final int count) {
+        chunk.position += count;
+        this.queued -= count;
+
+        if (chunk.position == chunk.end) {
+            this.chunks.poll();
+            chunk.release();
+        }
+    }
+
+    /**
+     * Drops all queued data.
+     *
+     * @return the number of octets dropped
+     */
+    private int discard() {
+        final var discarded = this.queued;
+        for (final var chunk : this.chunks) {
+            chunk.release();
+        }
+        this.chunks.clear();
+        this.queued = 0;
+
+        return discarded;
+    }
+
+    /**
+     * The payload of a single DATA frame.
+     */
+    private static final class Chunk {
+        /**
+         * The array containing the payload.
+         */
+        private final byte[] array;
+
+        /**
+         * The position after the payload within the array.
+         */
+        private final int end;
+
+        /**
+         * The buffer the array belongs to, or {@code null} if it is not pooled.
+         */
+        private final PooledBuffer buffer;
+
+        /**
+         * The read position within the array.
+         */
+        private int position;
+
+        /**
+         * Creates a new chunk referencing the payload of a frame.
+         *
+         * @param frame the frame
+         * @param length the length of the frame's payload
+         */
+        private Chunk(final DataFrame frame, final int length) {
+            this.array = frame.getArray();
+            this.position = frame.getOffset();
+            this.end = this.position + length;
+            this.buffer = frame.retainBuffer();
+        }
+
+        /**
+         * Gives back the reference to the buffer.
+         */
+        private void release() {
+            if (this.buffer != null) {
+                this.buffer.release();
+            }
+        }
+    }
+}
@@ -2,8 +2,8 @@ package net.wukl.cacofony.http2.stream;
 
 import net.wukl.cacofony.http.request.Header;
 import net.wukl.cacofony.http2.Window;
+import net.wukl.cacofony.http2.hpack.HeaderBlock;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,14 +19,14 @@ public class Stream implements AutoCloseable {
     private final int id;
 
     /**
-     * The buffer containing the full header block.
+     * The fragments making up the full header block.
      */
-    private ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    private HeaderBlock headerBlock = new HeaderBlock();
 
     /**
-     * The pipe carrying the request payload.
+     * The request payload received on the stream.
      */
-    private final StreamPipe requestPipe = new StreamPipe();
+    private final RequestBody requestBody;
 
     /**
      * The headers the stream was opened with.
@@ -43,6 +43,16 @@ public class Stream implements AutoCloseable {
      */
     private final List<Future<?>> associatedFutures = new ArrayList<>();
 
+    /**
+     * Whether the stream has been reset.
+     */
+    private boolean reset = false;
+
+    /**
+     * The state of the stream.
+     */
+    private StreamState state = StreamState.OPEN;
+
     /**
      * The length of the content the client is willing to send on this stream.
      */
@@ -59,10 +69,13 @@ public class Stream implements AutoCloseable {
      * @param id the identifier of the stream this instance represents
      * @param initLocalWindow the initial flow-control window for incoming frames
      * @param initRemoteWindow the initial flow-control window for outgoing frames
+     * @param consumptionListener the listener notified when the application consumes request data
      */
-    public Stream(final int id, final int initLocalWindow, final int initRemoteWindow) {
+    public Stream(final int id, final int initLocalWindow, final int initRemoteWindow,
+                  final ConsumptionListener consumptionListener) {
         this.id = id;
         this.window = new Window(initLocalWindow, initRemoteWindow);
+        this.requestBody = new RequestBody(bytes -> consumptionListener.consumed(this, bytes));
     }
 
     /**
@@ -75,45 +88,46 @@ public class Stream implements AutoCloseable {
     }
 
     /**
-     * Adds header bytes to the stream's header byte buffer.
+     * Adds a fragment to the stream's header block.
      *
-     * This function is only valid as long as the full byte buffer has not been extracted yet using
-     * {@link #getHeaderBytes()}.
+     * The fragment is not copied, so it must not be modified afterwards. This function is only
+     * valid as long as the header block has not been extracted yet using
+     * {@link #getHeaderBlock()}.
      *
-     * @param bytes the bytes to add
+     * @param bytes the fragment to add
      *
-     * @throws AssertionError if the function was called after {@link #getHeaderBytes()}
+     * @throws AssertionError if the function was called after {@link #getHeaderBlock()}
      */
     public void addHeaderBytes(final byte[] bytes) {
-        assert this.headerBytes != null;
+        assert this.headerBlock != null;
 
-        this.headerBytes.writeBytes(bytes);
+        this.headerBlock.add(bytes);
     }
 
     /**
-     * Returns the byte array contained in the header byte buffer.
+     * Returns the header block made up of the fragments added so far.
      *
-     * The byte buffer is cleared after the bytes have been extracted, so this function is
+     * The stream releases the block once it has been extracted, so this function is
      * <em>not</em> idempotent.
      *
-     * @return the header bytes
+     * @return the header block
      *
      * @throws AssertionError if the function was called for the second time on the same stream
      */
-    public byte[] getHeaderBytes() {
-        assert this.headerBytes != null;
-        final var bytes = this.headerBytes.toByteArray();
-        this.headerBytes = null;
-        return bytes;
+    public HeaderBlock getHeaderBlock() {
+        assert this.headerBlock != null;
+        final var block = this.headerBlock;
+        this.headerBlock = null;
+        return block;
     }
 
     /**
-     * Returns the pipe carrying the request payload.
+     * Returns the request payload received on the stream.
      *
-     * @return the request payload pipe
+     * @return the request body
      */
-    public StreamPipe getRequestPipe() {
-        return this.requestPipe;
+    public RequestBody getRequestBody() {
+        return this.requestBody;
     }
 
     /**
@@ -153,12 +167,91 @@ public class Stream implements AutoCloseable {
     /**
      * Associates a future with the stream.
      *
-     * Associated futures will be cancelled if the client cancels the stream.
+     * Associated futures will be cancelled if the client cancels the stream. A future associated
+     * after the client has done so is cancelled right away.
      *
      * @param future the future to associate
      */
     public void associateFuture(final Future<?> future) {
-        this.associatedFutures.add(future);
+        synchronized (this.associatedFutures) {
+            if (!this.reset) {
+                this.associatedFutures.add(future);
+                return;
+            }
+        }
+
+        future.cancel(true);
+    }
+
+    /**
+     * Returns the state of the stream.
+     *
+     * @return the state
+     */
+    public synchronized StreamState getState() {
+        return this.state;
+    }
+
+    /**
+     * Checks whether the client may still send data on the stream.
+     *
+     * @return {@code true} if the client's side of the stream is open, {@code false} otherwise
+     */
+    public synchronized boolean isRemoteOpen() {
+        return this.state == StreamState.OPEN || this.state == StreamState.HALF_CLOSED_LOCAL;
+    }
+
+    /**
+     * Marks the stream as reserved by a push promise.
+     *
+     * The client's side of a pushed stream is closed from the start, and the server's side opens
+     * once the response headers are sent.
+     */
+    public synchronized void reserve() {
+        assert this.state == StreamState.OPEN : "Only new streams can be reserved";
+
+        this.state = StreamState.RESERVED_LOCAL;
+    }
+
+    /**
+     * Marks the response headers of a pushed stream as sent.
+     *
+     * Streams that were not reserved are left as they are.
+     */
+    public synchronized void activate() {
+        if (this.state == StreamState.RESERVED_LOCAL) {
+            this.state = StreamState.HALF_CLOSED_REMOTE;
+        }
+    }
+
+    /**
+     * Ends the client's side of the stream.
+     *
+     * @return {@code true} if the stream is now fully closed, {@code false} otherwise
+     */
+    public synchronized boolean closeRemote() {
+        if (this.state == StreamState.OPEN) {
+            this.state = StreamState.HALF_CLOSED_REMOTE;
+        } else if (this.state == StreamState.HALF_CLOSED_LOCAL) {
+            this.state = StreamState.CLOSED;
+        }
+
+        return this.state == StreamState.CLOSED;
+    }
+
+    /**
+     * Ends the server's side of the stream.
+     *
+     * @return {@code true} if the stream is now fully closed, {@code false} otherwise
+     */
+    public synchronized boolean closeLocal() {
+        if (this.state == StreamState.OPEN) {
+            this.state = StreamState.HALF_CLOSED_LOCAL;
+        } else {
+            this.state = StreamState.CLOSED;
+        }
+
+        return this.state == StreamState.CLOSED;
     }
 
     /**
@@ -215,16 +308,23 @@ public class Stream implements AutoCloseable {
     }
 
     /**
-     * Closes the stream.
+     * Closes the stream after it has been reset.
      *
-     * @throws IOException if an I/O error occurs
+     * Reading the request body fails from then on.
      */
     @Override
-    public void close() throws IOException {
-        this.requestPipe.close();
+    public void close() {
+        synchronized (this) {
+            this.state = StreamState.CLOSED;
+        }
+
+        this.requestBody.abort(new IOException("Stream " + this.id + " was reset"));
 
-        for (final var future : this.associatedFutures) {
-            future.cancel(true);
+        synchronized (this.associatedFutures) {
+            this.reset = true;
+            for (final var future : this.associatedFutures) {
+                future.cancel(true);
+            }
         }
     }
 }
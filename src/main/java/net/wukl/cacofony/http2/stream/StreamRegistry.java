@@ -0,0 +1,359 @@
+package net.wukl.cacofony.http2.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The streams of a connection that are not closed yet, by identifier.
+ * <p>
+ * The streams are kept in an open-addressing table keyed by their plain identifiers, so looking
+ * up the stream of an incoming frame does not allocate. The registry also remembers the highest
+ * identifier used by either side: identifiers are never reused, so any identifier up to that one
+ * that is no longer registered belongs to a closed stream, and any identifier above it to an idle
+ * one.
+ * <p>
+ * The registry is shared between the thread reading frames and the threads generating responses,
+ * so all of its functions are synchronized.
+ */
+public class StreamRegistry {
+    /**
+     * The initial number of slots in the table.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The multiplier spreading sequential identifiers over the table.
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * The slots of the table.
+     */
+    private Stream[] table = new Stream[INITIAL_CAPACITY];
+
+    /**
+     * The number of bits to shift a hash by to turn it into a slot index.
+     */
+    private int shift = Integer.SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+
+    /**
+     * The number of registered streams the client opened.
+     */
+    private int clientStreams = 0;
+
+    /**
+     * The number of registered streams the server pushed.
+     */
+    private int pushedStreams = 0;
+
+    /**
+     * The highest identifier of a stream the client opened.
+     */
+    private int highestClientId = 0;
+
+    /**
+     * The highest identifier of a stream the server pushed.
+     */
+    private int highestPushedId = 0;
+
+    /**
+     * Whether streams the client opens are refused regardless of the limit.
+     */
+    private boolean refusingClientStreams = false;
+
+    /**
+     * Looks up a registered stream.
+     *
+     * @param id the identifier of the stream
+     *
+     * @return the stream or {@code null} if no stream with that identifier is registered
+     */
+    public synchronized Stream get(final int id) {
+        final var slot = this.find(id);
+        if (slot < 0) {
+            return null;
+        }
+
+        return this.table[slot];
+    }
+
+    /**
+     * Determines the state of a stream.
+     *
+     * @param id the identifier of the stream
+     *
+     * @return the state of the registered stream, or whether the identifier is idle or closed
+     */
+    public synchronized StreamState getState(final int id) {
+        final var slot = this.find(id);
+        if (slot >= 0) {
+            return this.table[slot].getState();
+        }
+
+        if (id <= this.getHighestId(id)) {
+            return StreamState.CLOSED;
+        }
+
+        return StreamState.IDLE;
+    }
+
+    /**
+     * Registers a new stream, unless too many streams initiated by the same side are active.
+     *
+     * The stream's identifier counts as used even if the stream is refused.
+     *
+     * @param stream the stream
+     * @param limit the maximum number of active streams initiated by the same side
+     *
+     * @return {@code true} if the stream was registered, {@code false} if it was refused
+     */
+    public synchronized boolean add(final Stream stream, final long limit) {
+        final var id = stream.getId();
+        final var pushed = isPushed(id);
+        if (pushed) {
+            this.highestPushedId = Math.max(this.highestPushedId, id);
+        } else {
+            this.highestClientId = Math.max(this.highestClientId, id);
+        }
+
+        if (this.getCount(pushed) >= limit || (!pushed && this.refusingClientStreams)) {
+            return false;
+        }
+
+        if (2 * (this.clientStreams + this.pushedStreams + 1) > this.table.length) {
+            this.grow();
+        }
+
+        this.insert(stream);
+        this.adjustCount(pushed, 1);
+        return true;
+    }
+
+    /**
+     * Unregisters a stream.
+     *
+     * @param id the identifier of the stream
+     *
+     * @return the stream or {@code null} if no stream with that identifier was registered
+     */
+    public synchronized Stream remove(final int id) {
+        final var slot = this.find(id);
+        if (slot < 0) {
+            return null;
+        }
+
+        final var stream = this.table[slot];
+        this.table[slot] = null;
+        this.adjustCount(isPushed(id), -1);
+        this.closeGap(slot);
+        return stream;
+    }
+
+    /**
+     * Unregisters all streams.
+     *
+     * @return the streams that were registered
+     */
+    public synchronized List<Stream> removeAll() {
+        final var streams = new ArrayList<Stream>(this.clientStreams + this.pushedStreams);
+        for (int i = 0; i < this.table.length; ++i) {
+            if (this.table[i] != null) {
+                streams.add(this.table[i]);
+                this.table[i] = null;
+            }
+        }
+
+        this.clientStreams = 0;
+        this.pushedStreams = 0;
+        return streams;
+    }
+
+    /**
+     * Refuses all streams the client opens from now on.
+     *
+     * Pushed streams are still accepted.
+     *
+     * @return the highest identifier of a client stream that was registered or refused before
+     */
+    public synchronized int refuseClientStreams() {
+        this.refusingClientStreams = true;
+        return this.highestClientId;
+    }
+
+    /**
+     * Checks whether no streams are registered.
+     *
+     * @return {@code true} if the registry is empty, {@code false} otherwise
+     */
+    public synchronized boolean isEmpty() {
+        return this.clientStreams + this.pushedStreams == 0;
+    }
+
+    /**
+     * Performs an action for every registered stream.
+     *
+     * The action runs while the registry is locked, so it must not use the registry itself.
+     *
+     * @param action the action
+     */
+    public synchronized void forEach(final Consumer<Stream> action) {
+        for (final var stream : this.table) {
+            if (stream != null) {
+                action.accept(stream);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of registered streams the client opened.
+     *
+     * @return the number of streams
+     */
+    public synchronized int getClientStreamCount() {
+        return this.clientStreams;
+    }
+
+    /**
+     * Returns the number of registered streams the server pushed.
+     *
+     * @return the number of streams
+     */
+    public synchronized int getPushedStreamCount() {
+        return this.pushedStreams;
+    }
+
+    /**
+     * Checks whether a stream identifier belongs to a stream the server pushed.
+     *
+     * @param id the identifier
+     *
+     * @return {@code true} if the identifier is even, {@code false} otherwise
+     */
+    private static boolean isPushed(final int id) {
+        return id % 2 == 0;
+    }
+
+    /**
+     * Returns the highest identifier used by the side that would initiate a stream.
+     *
+     * @param id the identifier of the stream
+     *
+     * @return the highest identifier
+     */
+    private int getHighestId(final int id) {
+        if (isPushed(id)) {
+            return this.highestPushedId;
+        }
+
+        return this.highestClientId;
+    }
+
+    /**
+     * Returns the number of registered streams initiated by one side.
+     *
+     * @param pushed whether to count the streams the server pushed rather than the client's
+     *
+     * @return the number of streams
+     */
+    private int getCount(final boolean pushed) {
+        if (pushed) {
+            return this.pushedStreams;
+        }
+
+        return this.clientStreams;
+    }
+
+    /**
+     * Changes the number of registered streams initiated by one side.
+     *
+     * @param pushed whether to change the count of streams the server pushed
+     * @param delta the change
+     */
+    private void adjustCount(final boolean pushed, final int delta) {
+        if (pushed) {
+            this.pushedStreams += delta;
+        } else {
+            this.clientStreams += delta;
+        }
+    }
+
+    /**
+     * Computes the slot a stream identifier preferably goes into.
+     *
+     * @param id the identifier
+     *
+     * @return the slot index
+     */
+    private int home(final int id) {
+        return (id * HASH_MULTIPLIER) >>> this.shift;
+    }
+
+    /**
+     * Finds the slot holding a stream.
+     *
+     * @param id the identifier of the stream
+     *
+     * @return the slot index or {@code -1} if the stream is not in the table
+     */
+    private int find(final int id) {
+        final var mask = this.table.length - 1;
+        for (int slot = this.home(id); this.table[slot] != null; slot = (slot + 1) & mask) {
+            if (this.table[slot].getId() == id) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Puts a stream into the first free slot from its preferred one.
+     *
+     * @param stream the stream
+     */
+    private void insert(final Stream stream) {
+        final var mask = this.table.length - 1;
+        var slot = this.home(stream.getId());
+        while (this.table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        this.table[slot] = stream;
+    }
+
+    /**
+     * Doubles the size of the table.
+     */
+    private void grow() {
+        final var old = this.table;
+        this.table = new Stream[old.length * 2];
+        this.shift -= 1;
+
+        for (final var stream : old) {
+            if (stream != null) {
+                this.insert(stream);
+            }
+        }
+    }
+
+    /**
+     * Moves streams back into a slot that was emptied, so no stream becomes unreachable.
+     *
+     * @param emptied the index of the emptied slot
+     */
+    private void closeGap(final int emptied) {
+        final var mask = this.table.length - 1;
+        var gap = emptied;
+        for (int slot = (gap + 1) & mask; this.table[slot] != null; slot = (slot + 1) & mask) {
+            final var home = this.home(this.table[slot].getId());
+
+            // A stream can only fill the gap if its preferred slot does not lie after the gap.
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                this.table[gap] = this.table[slot];
+                this.table[slot] = null;
+                gap = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.wukl.cacofony.http2.stream;
+
+/**
+ * A state in the lifecycle of an HTTP/2 stream, as seen by the server.
+ *
+ * Only the states a server can observe are listed; a server never reserves a stream on behalf of
+ * the client.
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc7540#section-5.1">RFC 7540 Section 5.1</a>
+ */
+public enum StreamState {
+    /**
+     * The stream identifier has not been used yet.
+     */
+    IDLE,
+
+    /**
+     * The server has promised the stream in a PUSH_PROMISE, but not sent its headers yet.
+     */
+    RESERVED_LOCAL,
+
+    /**
+     * Both the client and the server may send frames on the stream.
+     */
+    OPEN,
+
+    /**
+     * The server has ended its side of the stream, but the client may still send data.
+     */
+    HALF_CLOSED_LOCAL,
+
+    /**
+     * The client has ended its side of the stream, but the server may still send data.
+     */
+    HALF_CLOSED_REMOTE,
+
+    /**
+     * Neither side may send anything but a few control frames on the stream.
+     */
+    CLOSED
+}
@@ -0,0 +1,92 @@
+package net.wukl.cacofony.route;
+
+import net.wukl.cacofony.http.request.MutableRequest;
+import net.wukl.cacofony.http.response.Response;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A routing entry's action with its arguments resolved as far as possible ahead of time.
+ * <p>
+ * Per request, only the request-dependent arguments are filled in before the action is called.
+ *
+ * @author Luc Everse
+ */
+final class ActionBinding {
+    /**
+     * The routing entry the action belongs to.
+     */
+    private final RoutingEntry entry;
+
+    /**
+     * The binders producing each of the action's arguments.
+     */
+    private final ArgumentBinder[] binders;
+
+    /**
+     * The handle calling the action with an array of arguments.
+     * If {@code null}, the action is invoked through reflection instead.
+     */
+    private final MethodHandle handle;
+
+    /**
+     * Creates a new action binding.
+     *
+     * @param entry   the routing entry the action belongs to
+     * @param binders the binders producing each of the action's arguments
+     * @param handle  the handle calling the action with an array of arguments, or {@code null} to
+     *                fall back to reflection
+     */
+    ActionBinding(final RoutingEntry entry,
+                  final ArgumentBinder[] binders,
+                  final MethodHandle handle) {
+        this.entry = entry;
+        this.binders = binders;
+        this.handle = handle;
+    }
+
+    /**
+     * Invokes the action for a request.
+     *
+     * @param request the request to invoke the action with
+     *
+     * @return the action's response
+     *
+     * @throws Exception any exception thrown by the action
+     */
+    Response invoke(final MutableRequest request) throws Exception {
+        final Object[] arguments = new Object[this.binders.length];
+        for (int i = 0; i < arguments.length; ++i) {
+            arguments[i] = this.binders[i].bind(request);
+        }
+
+        if (this.handle == null) {
+            return (Response) this.entry.invoke(arguments);
+        }
+
+        try {
+            return (Response) (Object) this.handle.invokeExact(arguments);
+        } catch (final Exception | Error ex) {
+            throw ex;
+        } catch (final Throwable t) {
+            // Mirror the reflective path for anything that is neither an exception nor an error.
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * A function producing a single argument for an action.
+     */
+    @FunctionalInterface
+    interface ArgumentBinder {
+        /**
+         * Produces the argument for a request.
+         *
+         * @param request the request the action is invoked for
+         *
+         * @return the argument
+         */
+        Object bind(MutableRequest request);
+    }
+}
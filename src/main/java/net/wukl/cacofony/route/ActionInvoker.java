@@ -7,9 +7,14 @@ import net.wukl.cacodi.DependencyResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -51,6 +56,9 @@ public class ActionInvoker {
 
     /**
      * Invokes the action that corresponds to a request under the given conditions.
+     * <p>
+     * If the entry has not been bound yet, it is bound first. If the request's push channel
+     * pushes automatically, the resources the entry declares are pushed before the action runs.
      *
      * @param entry   the routing entry to invoke
      * @param request the request to invoke the entry with
@@ -61,54 +69,126 @@ public class ActionInvoker {
      */
     public Response invoke(final RoutingEntry entry, final MutableRequest request)
             throws Exception {
+        ActionBinding binding = entry.getBinding();
+        if (binding == null) {
+            binding = this.createBinding(entry);
+            entry.setBinding(binding);
+        }
+
+        // Start pushing the resources the response will need while the action generates it.
+        if (!entry.getPushPaths().isEmpty() && request.getServerPush().isAutomatic()) {
+            for (final String pushPath : entry.getPushPaths()) {
+                request.push(pushPath);
+            }
+        }
+
+        return binding.invoke(request);
+    }
+
+    /**
+     * Resolves everything needed to invoke a routing entry that does not depend on the request.
+     * <p>
+     * This resolves services through the dependency resolver, picks the parsers for the path
+     * parameters and prepares a method handle for the action. The binding is stored in the entry.
+     *
+     * @param entry the routing entry to bind
+     */
+    public void bind(final RoutingEntry entry) {
+        entry.setBinding(this.createBinding(entry));
+    }
+
+    /**
+     * Creates the binding for a routing entry.
+     *
+     * @param entry the routing entry to bind
+     *
+     * @return the binding
+     */
+    private ActionBinding createBinding(final RoutingEntry entry) {
         final Method method = entry.getMethod();
-        final Object[] arguments = new Object[method.getParameterCount()];
+        final Parameter[] parameters = method.getParameters();
+        final List<String> pathParameters = entry.getPath().getParameters();
+
+        final ActionBinding.ArgumentBinder[] binders =
+                new ActionBinding.ArgumentBinder[parameters.length];
 
         int pathParameterIndex = 0;
-        for (int i = 0; i < arguments.length; ++i) {
-            final Parameter param = method.getParameters()[i];
+        for (int i = 0; i < binders.length; ++i) {
+            final Parameter param = parameters[i];
 
             if (this.isRequestParameter(param)) {
-                arguments[i] = this.getRequestParameter(entry, param, request, pathParameterIndex);
+                binders[i] = this.bindRequestParameter(param, pathParameters, pathParameterIndex);
                 ++pathParameterIndex;
                 continue;
             }
 
             final Class<?> type = param.getType();
             if (type == Request.class) {
-                arguments[i] = request;
+                binders[i] = request -> request;
             } else if (type == RoutingEntry.class) {
-                arguments[i] = entry;
+                binders[i] = request -> entry;
             } else {
-                arguments[i] = this.di.get(type);
+                final Object service = this.di.get(type);
+                binders[i] = request -> service;
             }
         }
 
-        return (Response) entry.invoke(arguments);
+        return new ActionBinding(entry, binders, this.buildHandle(entry));
     }
 
     /**
-     * Extracts a request parameter from the request based on the name and type.
+     * Builds a binder extracting a path parameter from the request.
      *
-     * @param entry the routing entry the request is for
-     * @param parameter the action parameter
-     * @param request the request to examine
-     * @param index the current index of the next path parameter to extract
+     * @param parameter      the action parameter
+     * @param pathParameters the names of the parameters in the route's path
+     * @param index          the index of the path parameter to extract
      *
-     * @return the value for that parameter
+     * @return the binder
      */
-    private Object getRequestParameter(final RoutingEntry entry,
-                                       final Parameter parameter,
-                                       final Request request,
-                                       final int index) {
-        if (entry.getPath().getParameters().size() <= index) {
-            return null;
+    private ActionBinding.ArgumentBinder bindRequestParameter(final Parameter parameter,
+                                                             final List<String> pathParameters,
+                                                             final int index) {
+        if (pathParameters.size() <= index) {
+            return request -> null;
         }
 
-        final String name = entry.getPath().getParameters().get(index);
-        final String value = request.getPathParameter(name);
+        final String name = pathParameters.get(index);
+        final Function<String, Object> parser = this.getParser(parameter);
 
-        return this.parseToParameter(parameter, value);
+        return request -> {
+            final String value = request.getPathParameter(name);
+            if (value == null) {
+                return null;
+            }
+
+            return parser.apply(value);
+        };
+    }
+
+    /**
+     * Builds a method handle that calls the entry's action with an array of arguments.
+     *
+     * @param entry the routing entry
+     *
+     * @return the handle or {@code null} if the action is not accessible through a method handle
+     */
+    private MethodHandle buildHandle(final RoutingEntry entry) {
+        final Method method = entry.getMethod();
+
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                handle = handle.bindTo(entry.getController());
+            }
+
+            return handle
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (final IllegalAccessException ex) {
+            logger.debug("Falling back to reflection for route {}: {}",
+                    entry.getName(), ex.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -124,24 +204,21 @@ public class ActionInvoker {
     }
 
     /**
-     * Parses a value from a string so that it can be applied to the given parameter.
+     * Returns the function parsing a string so that it can be applied to the given parameter.
      *
      * @param parameter the parameter that should be filled
-     * @param string the value to fill it with
      *
-     * @return the casted and/or parsed value
+     * @return the parser
      */
-    private Object parseToParameter(final Parameter parameter, final String string) {
-        if (string == null) {
-            return null;
-        }
-
-        final Class type = parameter.getType();
+    private Function<String, Object> getParser(final Parameter parameter) {
+        final Function<String, Object> parser = this.primitiveCastMap.get(parameter.getType());
 
-        if (!this.primitiveCastMap.containsKey(type)) {
-            throw new ClassCastException();
+        if (parser == null) {
+            return s -> {
+                throw new ClassCastException();
+            };
         }
 
-        return this.primitiveCastMap.get(type).apply(string);
+        return parser;
     }
 }
@@ -1,7 +1,7 @@
 package net.wukl.cacofony.route;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import net.wukl.cacofony.util.PercentDecoder;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +30,11 @@ public class CompiledPath {
      */
     private final List<String> parameters;
 
+    /**
+     * Whether the pattern matches the path literally, optionally with a trailing slash.
+     */
+    private final boolean isStatic;
+
     /**
      * A compiled routing path.
      *
@@ -40,9 +45,26 @@ public class CompiledPath {
     public CompiledPath(final String path,
                         final Pattern pattern,
                         final List<String> parameters) {
+        this(path, pattern, parameters, false);
+    }
+
+    /**
+     * A compiled routing path.
+     *
+     * @param path       the source path
+     * @param pattern    the path compiled as a regex
+     * @param parameters the names of the  parameters contained in the path
+     * @param isStatic   whether the pattern matches the path literally, optionally with a
+     *                   trailing slash
+     */
+    public CompiledPath(final String path,
+                        final Pattern pattern,
+                        final List<String> parameters,
+                        final boolean isStatic) {
         this.path = path;
         this.pattern = pattern;
         this.parameters = parameters;
+        this.isStatic = isStatic;
     }
 
     /**
@@ -66,6 +88,18 @@ public class CompiledPath {
         return this.parameters;
     }
 
+    /**
+     * Checks whether the path is static.
+     * <p>
+     * A static path has no parameters or regex constructs, so a target matches it if and only if
+     * the target's path equals the source path with or without a trailing slash.
+     *
+     * @return {@code true} if the path is static, {@code false} otherwise
+     */
+    public boolean isStatic() {
+        return this.isStatic;
+    }
+
     /**
      * Parses a matching pattern into a set of parameters.
      *
@@ -78,7 +112,7 @@ public class CompiledPath {
 
         for (final String key : this.parameters) {
             final String rawVal = matcher.group(key);
-            final String val = this.decodeUriComponent(rawVal);
+            final String val = PercentDecoder.decode(rawVal, PercentDecoder.Mode.PATH);
 
             params.put(key, val);
         }
@@ -86,22 +120,6 @@ public class CompiledPath {
         return params;
     }
 
-    /**
-     * Decodes a URI part from the RFC encoding.
-     *
-     * @param str the string to decode
-     *
-     * @return a decoded string
-     */
-    private String decodeUriComponent(final String str) {
-        try {
-            return URLDecoder.decode(str, "UTF-8");
-        } catch (final UnsupportedEncodingException ex) {
-            // Not gonna happen.
-            throw new RuntimeException(ex);
-        }
-    }
-
     /**
      * Check whether this object is equal to another.
      *
@@ -119,7 +137,8 @@ public class CompiledPath {
 
         return Objects.equals(this.path, otherPath.path)
             && Objects.equals(this.pattern, otherPath.pattern)
-            && Objects.equals(this.parameters, otherPath.parameters);
+            && Objects.equals(this.parameters, otherPath.parameters)
+            && this.isStatic == otherPath.isStatic;
     }
 
     /**
@@ -129,6 +148,6 @@ public class CompiledPath {
      */
     @Override
     public final int hashCode() {
-        return Objects.hash(this.path, this.pattern, this.parameters);
+        return Objects.hash(this.path, this.pattern, this.parameters, this.isStatic);
     }
 }
@@ -26,6 +26,12 @@ public class PathCompiler {
      */
     public static final String PARAMETER_VALUE_PATTERN = "[^/?#]+";
 
+    /**
+     * The characters that keep a path without parameters from matching only itself.
+     * A dot is not included: it matches any character, but that includes itself.
+     */
+    private static final String REGEX_CONSTRUCTS = "\\[](){}*+?^$|";
+
     /**
      * Compile the path into a regex pattern with named matches.
      *
@@ -105,6 +111,28 @@ public class PathCompiler {
 
         final Pattern pattern = Pattern.compile(regex);
 
-        return new CompiledPath(path, pattern, parameters);
+        return new CompiledPath(path, pattern, parameters, this.isStatic(path, parameters));
+    }
+
+    /**
+     * Checks whether a path is static, meaning its pattern only matches the path itself.
+     *
+     * @param path       the path
+     * @param parameters the parameters in the path
+     *
+     * @return {@code true} if the path is static, {@code false} otherwise
+     */
+    private boolean isStatic(final String path, final List<String> parameters) {
+        if (!parameters.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < path.length(); ++i) {
+            if (REGEX_CONSTRUCTS.indexOf(path.charAt(i)) != -1) {
+                return false;
+            }
+        }
+
+        return true;
     }
 }
@@ -39,4 +39,9 @@ public @interface Route {
      * @return a human-readable name for the route
      */
     String name() default "";
+
+    /**
+     * @return the absolute paths of resources to push to HTTP/2 clients along with the response
+     */
+    String[] push() default {};
 }
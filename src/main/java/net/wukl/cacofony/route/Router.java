@@ -18,6 +18,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -51,16 +52,37 @@ public class Router {
      */
     private final Map<Method, Map<MimeType, List<RoutingEntry>>> routes;
 
+    /**
+     * A mapping towards routing entries with a static path.
+     * The first level filters by method, the second level by accept encoding and the third level
+     * by the exact path, both with and without a trailing slash.
+     * These routes are looked up before any pattern is matched.
+     */
+    private final Map<Method, Map<MimeType, Map<String, RoutingEntry>>> staticRoutes;
+
     /**
      * The set of all known routes.
      */
     private final Set<RoutingEntry> allRoutes;
 
+    /**
+     * A cache of negotiated route candidates.
+     * The first level filters by method, the second level by the raw Accept header values.
+     * The cache is cleared whenever the routing table changes.
+     */
+    private final Map<Method, Map<List<String>, List<Candidate>>> negotiations;
+
     /**
      * The regex used to split header values.
      */
     private static final Pattern HEADER_COMMA_PATTERN = Pattern.compile(",\\s?");
 
+    /**
+     * The maximum number of distinct Accept header combinations to remember per method.
+     * Browsers only send a handful, so a full cache most likely means garbage is coming in.
+     */
+    private static final int MAX_CACHED_NEGOTIATIONS = 256;
+
     /**
      * Creates a new request handler.
      *
@@ -77,11 +99,18 @@ public class Router {
 
         // Build the routing table.
         this.routes = new HashMap<>();
+        this.staticRoutes = new HashMap<>();
         for (final Method method : Method.values()) {
             this.routes.put(method, new HashMap<>());
+            this.staticRoutes.put(method, new HashMap<>());
         }
 
         this.allRoutes = new HashSet<>();
+
+        this.negotiations = new HashMap<>();
+        for (final Method method : Method.values()) {
+            this.negotiations.put(method, new ConcurrentHashMap<>());
+        }
     }
 
     /**
@@ -92,6 +121,9 @@ public class Router {
     public void addRoute(final RoutingEntry entry) {
         this.allRoutes.add(entry);
 
+        // Resolve everything that does not depend on the request up front.
+        this.invoker.bind(entry);
+
         for (final Method method : entry.getMethods()) {
             final Map<MimeType, List<RoutingEntry>> methodMap = this.routes.get(method);
 
@@ -103,6 +135,48 @@ public class Router {
             }
 
             methodMap.computeIfAbsent(MimeType.any(), k -> new ArrayList<>()).add(entry);
+
+            if (entry.getPath().isStatic()) {
+                this.addStaticRoute(method, entry);
+            }
+        }
+
+        // Any negotiated candidate list may now be incomplete.
+        for (final Map<List<String>, List<Candidate>> cache : this.negotiations.values()) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Adds a routing entry with a static path to the static routing table.
+     * <p>
+     * If multiple entries serve the same path, the first one added wins, as it would when
+     * matching patterns.
+     *
+     * @param method the method the entry serves
+     * @param entry  the entry
+     */
+    private void addStaticRoute(final Method method, final RoutingEntry entry) {
+        final String path = entry.getPath().getPath();
+
+        // The compiled pattern makes the trailing slash optional, so register both forms.
+        final String alternative;
+        if (path.endsWith("/")) {
+            alternative = path.substring(0, path.length() - 1);
+        } else {
+            alternative = path + "/";
+        }
+
+        final Map<MimeType, Map<String, RoutingEntry>> methodMap = this.staticRoutes.get(method);
+        final List<MimeType> contentTypes = new ArrayList<>(entry.getContentTypes());
+        contentTypes.add(MimeType.any());
+
+        for (final MimeType accept : contentTypes) {
+            final Map<String, RoutingEntry> paths =
+                    methodMap.computeIfAbsent(accept, k -> new HashMap<>());
+
+            paths.putIfAbsent(path, entry);
+            paths.putIfAbsent(alternative, entry);
         }
     }
 
@@ -119,12 +193,9 @@ public class Router {
      * @throws Exception any exception thrown by the route
      */
     public Response handle(final MutableRequest request) throws Exception {
-        final List<MimeType> acceptTypes = this.parseAccepts(request);
-        Collections.sort(acceptTypes);
-
         // Look up the mapping of routes for that method.
         final Method method = request.getRealMethod();
-        final Response response = this.tryMethod(request, method, acceptTypes);
+        final Response response = this.tryMethod(request, method);
 
         if (response != null) {
             return response;
@@ -133,7 +204,7 @@ public class Router {
         if (method == Method.HEAD) {
             // If there is no HEAD route, try the same route for GET.
             request.setMethod(Method.GET);
-            final Response headResponse = this.tryMethod(request, Method.GET, acceptTypes);
+            final Response headResponse = this.tryMethod(request, Method.GET);
             request.setMethod(Method.HEAD);
 
             if (headResponse != null) {
@@ -151,14 +222,12 @@ public class Router {
     /**
      * Translates the request's Accept headers into a priority queue of acceptable MIME types.
      *
-     * @param request the request to process
+     * @param acceptHeaders the values of the request's Accept headers
      *
      * @return an ordered list of acceptable MIME types
      */
-    private List<MimeType> parseAccepts(final Request request) {
-        final List<String> acceptHeaders = request.getHeaders("Accept");
-
-        if (acceptHeaders == null || acceptHeaders.isEmpty()) {
+    private List<MimeType> parseAccepts(final List<String> acceptHeaders) {
+        if (acceptHeaders.isEmpty()) {
             return Collections.singletonList(MimeType.any());
         }
 
@@ -171,35 +240,74 @@ public class Router {
             }
         }
 
+        Collections.sort(acceptTypes);
+
         return acceptTypes;
     }
 
+    /**
+     * Returns the routes that may serve a request, grouped by the content type they would serve.
+     * <p>
+     * The result only depends on the method and the Accept headers, so it is cached.
+     *
+     * @param request the request to negotiate for
+     * @param method  the method the routes must serve
+     *
+     * @return the candidates in order of preference
+     */
+    private List<Candidate> negotiate(final Request request, final Method method) {
+        List<String> acceptHeaders = request.getHeaders("Accept");
+        if (acceptHeaders == null) {
+            acceptHeaders = Collections.emptyList();
+        }
+
+        final Map<List<String>, List<Candidate>> cache = this.negotiations.get(method);
+        final List<Candidate> cached = cache.get(acceptHeaders);
+        if (cached != null) {
+            return cached;
+        }
+
+        final Map<MimeType, List<RoutingEntry>> byAccept = this.routes.get(method);
+        final Map<MimeType, Map<String, RoutingEntry>> staticByAccept =
+                this.staticRoutes.get(method);
+
+        final List<Candidate> candidates = new ArrayList<>();
+        for (final MimeType contentType : this.parseAccepts(acceptHeaders)) {
+            final List<RoutingEntry> possibleRoutes = byAccept.get(contentType);
+
+            // Skip this type if there are no handlers for it.
+            if (possibleRoutes != null) {
+                final Map<String, RoutingEntry> staticPaths =
+                        staticByAccept.getOrDefault(contentType, Collections.emptyMap());
+                candidates.add(new Candidate(contentType, possibleRoutes, staticPaths));
+            }
+        }
+
+        if (cache.size() >= MAX_CACHED_NEGOTIATIONS) {
+            cache.clear();
+        }
+
+        // The header list belongs to the request, so store a copy as the key.
+        cache.put(List.copyOf(acceptHeaders), candidates);
+
+        return candidates;
+    }
+
     /**
      * Try to find a route for a given request, target and method.
      *
      * @param request     the original request
      * @param method      the method the route must serve
-     * @param acceptTypes the MIME types the client is willing to accept
      *
      * @return a response or {@code null} if no matching route could be found
      *
      * @throws Exception any exception thrown by the route
      */
     private Response tryMethod(final MutableRequest request,
-                               final Method method,
-                               final List<MimeType> acceptTypes) throws Exception {
-        final Map<MimeType, List<RoutingEntry>> byAccept = this.routes.get(method);
-
+                               final Method method) throws Exception {
         // For each content type, try to find the route matching the given path.
-        for (final MimeType contentType : acceptTypes) {
-            final List<RoutingEntry> possibleRoutes = byAccept.get(contentType);
-
-            // Skip this type if there are no handlers for it.
-            if (possibleRoutes == null) {
-                continue;
-            }
-
-            final Response response = this.tryAccept(request, possibleRoutes, contentType);
+        for (final Candidate candidate : this.negotiate(request, method)) {
+            final Response response = this.tryAccept(request, candidate);
             if (response != null) {
                 return response;
             }
@@ -210,21 +318,42 @@ public class Router {
 
     /**
      * Try to find a route for a given request, target and content type from a list of choices.
+     * <p>
+     * Routes with a static path are tried first, through a single lookup. Only if none of them
+     * serves the path, the patterns of the other routes are matched.
      *
-     * @param request        the original request
-     * @param possibleRoutes a list of routes to try
-     * @param contentType    the content type the route must serve
+     * @param request   the original request
+     * @param candidate the routes to try and the content type they must serve
      *
      * @return a response or {@code null} if no matching route could be found
      *
      * @throws Exception any exception thrown by the route
      */
     private Response tryAccept(final MutableRequest request,
-                               final List<RoutingEntry> possibleRoutes,
-                               final MimeType contentType) throws Exception {
+                               final Candidate candidate) throws Exception {
         final String target = request.getRawPath();
+        final MimeType contentType = candidate.contentType;
+
+        if (!candidate.staticPaths.isEmpty() && target.indexOf('#') == -1) {
+            final int queryStart = target.indexOf('?');
+
+            String path = target;
+            String queryString = "";
+            if (queryStart != -1) {
+                path = target.substring(0, queryStart);
+                queryString = target.substring(queryStart);
+            }
+
+            final RoutingEntry entry = candidate.staticPaths.get(path);
+            if (entry != null) {
+                this.requestPreparer.prepare(request, path, queryString);
+                request.setContentType(contentType);
 
-        for (final RoutingEntry entry : possibleRoutes) {
+                return this.invoker.invoke(entry, request);
+            }
+        }
+
+        for (final RoutingEntry entry : candidate.routes) {
             final Matcher targetMatcher = entry.getPath().getPattern().matcher(target);
 
             // The route matches! Serve the request through this route.
@@ -238,4 +367,39 @@ public class Router {
 
         return null;
     }
+
+    /**
+     * A set of routes that can serve a request with a specific content type.
+     */
+    private static final class Candidate {
+        /**
+         * The content type the routes would serve.
+         */
+        private final MimeType contentType;
+
+        /**
+         * The routes to try, in order.
+         */
+        private final List<RoutingEntry> routes;
+
+        /**
+         * The routes with a static path by exact path.
+         */
+        private final Map<String, RoutingEntry> staticPaths;
+
+        /**
+         * Creates a new negotiation candidate.
+         *
+         * @param contentType the content type the routes would serve
+         * @param routes      the routes to try
+         * @param staticPaths the routes with a static path by exact path
+         */
+        private Candidate(final MimeType contentType,
+                          final List<RoutingEntry> routes,
+                          final Map<String, RoutingEntry> staticPaths) {
+            this.contentType = contentType;
+            this.routes = routes;
+            this.staticPaths = staticPaths;
+        }
+    }
 }
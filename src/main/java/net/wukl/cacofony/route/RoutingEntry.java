@@ -44,6 +44,17 @@ public class RoutingEntry implements Comparable<RoutingEntry> {
      */
     private final List<MimeType> contentTypes;
 
+    /**
+     * The paths of the resources to push along with the route's responses.
+     */
+    private final List<String> pushPaths;
+
+    /**
+     * The action with its request-independent arguments resolved, if bound already.
+     * This is derived state and does not take part in equality.
+     */
+    private transient volatile ActionBinding binding;
+
     /**
      * Create a new routing entry.
      *
@@ -60,12 +71,34 @@ public class RoutingEntry implements Comparable<RoutingEntry> {
                         final java.lang.reflect.Method method,
                         final List<Method> methods,
                         final List<MimeType> contentTypes) {
+        this(name, path, controller, method, methods, contentTypes, List.of());
+    }
+
+    /**
+     * Create a new routing entry that pushes resources along with its responses.
+     *
+     * @param name         the entry's programmer-friendly name
+     * @param path         the route path
+     * @param controller   the controller to invoke the method upon
+     * @param method       the function to call when the route matches
+     * @param methods      the HTTP methods this route serves
+     * @param contentTypes the MIME types the route can serve
+     * @param pushPaths    the paths of the resources to push along with the responses
+     */
+    public RoutingEntry(final String name,
+                        final CompiledPath path,
+                        final Controller controller,
+                        final java.lang.reflect.Method method,
+                        final List<Method> methods,
+                        final List<MimeType> contentTypes,
+                        final List<String> pushPaths) {
         this.name = name;
         this.path = path;
         this.controller = controller;
         this.method = method;
         this.methods = methods;
         this.contentTypes = contentTypes;
+        this.pushPaths = pushPaths;
     }
 
     /**
@@ -112,6 +145,31 @@ public class RoutingEntry implements Comparable<RoutingEntry> {
         return this.contentTypes;
     }
 
+    /**
+     * @return the paths of the resources to push along with the route's responses
+     */
+    public List<String> getPushPaths() {
+        return this.pushPaths;
+    }
+
+    /**
+     * Returns the entry's action binding.
+     *
+     * @return the binding or {@code null} if the entry has not been bound yet
+     */
+    ActionBinding getBinding() {
+        return this.binding;
+    }
+
+    /**
+     * Stores the entry's action binding.
+     *
+     * @param binding the binding
+     */
+    void setBinding(final ActionBinding binding) {
+        this.binding = binding;
+    }
+
     /**
      * Invokes the routing entry with the given arguments.
      *
@@ -157,7 +215,8 @@ public class RoutingEntry implements Comparable<RoutingEntry> {
             && Objects.equals(this.controller, otherEntry.controller)
             && Objects.equals(this.method, otherEntry.method)
             && Objects.equals(this.methods, otherEntry.methods)
-            && Objects.equals(this.contentTypes, otherEntry.contentTypes);
+            && Objects.equals(this.contentTypes, otherEntry.contentTypes)
+            && Objects.equals(this.pushPaths, otherEntry.pushPaths);
     }
 
     /**
@@ -168,7 +227,8 @@ public class RoutingEntry implements Comparable<RoutingEntry> {
     @Override
     public final int hashCode() {
         return Objects.hash(
-                this.path, this.name, this.controller, this.method, this.methods, this.contentTypes
+                this.path, this.name, this.controller, this.method, this.methods, this.contentTypes,
+                this.pushPaths
         );
     }
 
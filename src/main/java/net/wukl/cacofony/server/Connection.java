@@ -3,6 +3,8 @@ package net.wukl.cacofony.server;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
 
 /**
  * A connection with a client.
@@ -38,6 +40,11 @@ public class Connection {
      */
     private final String scheme;
 
+    /**
+     * The socket the connection runs over, or {@code null} if it is not backed by one.
+     */
+    private final Socket socket;
+
     /**
      * Creates a new connection.
      *
@@ -51,12 +58,31 @@ public class Connection {
             final InetAddress address, final int port,
             final InputStream in, final OutputStream out,
             final String scheme
+    ) {
+        this(address, port, in, out, scheme, null);
+    }
+
+    /**
+     * Creates a new connection backed by a socket.
+     *
+     * @param address the address of the client
+     * @param port the port the connection is on
+     * @param in the stream into the server
+     * @param out the stream out of the server
+     * @param scheme the URI scheme of the request
+     * @param socket the socket the connection runs over, may be {@code null}
+     */
+    public Connection(
+            final InetAddress address, final int port,
+            final InputStream in, final OutputStream out,
+            final String scheme, final Socket socket
     ) {
         this.address = address;
         this.port = port;
         this.in = in;
         this.out = out;
         this.scheme = scheme;
+        this.socket = socket;
     }
 
     /**
@@ -103,4 +129,36 @@ public class Connection {
     public String getScheme() {
         return this.scheme;
     }
+
+    /**
+     * Creates a copy of the connection reading from another stream.
+     *
+     * This is used when a protocol hands the connection over to another protocol while it still
+     * holds buffered input from the client.
+     *
+     * @param newIn the stream into the server
+     *
+     * @return the copy
+     */
+    public Connection withIn(final InputStream newIn) {
+        return new Connection(this.address, this.port, newIn, this.out, this.scheme, this.socket);
+    }
+
+    /**
+     * Prepares the underlying socket for a long-lived, multiplexed protocol.
+     *
+     * Such a connection may be idle between requests without being dead, so the read timeout is
+     * lifted, and its small control frames should not wait for more data to be written.
+     * Connections that are not backed by a socket are left as they are.
+     *
+     * @throws SocketException if the socket could not be configured
+     */
+    public void configureForMultiplexing() throws SocketException {
+        if (this.socket == null) {
+            return;
+        }
+
+        this.socket.setSoTimeout(0);
+        this.socket.setTcpNoDelay(true);
+    }
 }
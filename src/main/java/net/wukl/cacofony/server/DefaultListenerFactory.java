@@ -97,7 +97,9 @@ public class DefaultListenerFactory implements ListenerFactory {
     private Listener bootInsecure(final Port port) throws IOException {
         final ServerSocket socket = new ServerSocket(port.getPort());
         return new InsecureListener(
-                socket, this.executor, this.handler, "http", this.httpProtocolFactory
+                socket, this.executor, this.handler, "http",
+                this.httpProtocolFactory, this.http2ProtocolFactory,
+                this.settings, port
         );
     }
 
@@ -1,6 +1,8 @@
 package net.wukl.cacofony.server;
 
 import net.wukl.cacofony.http.encoding.TransferEncoding;
+import net.wukl.cacofony.http2.frame.NoPadding;
+import net.wukl.cacofony.http2.frame.PaddingPolicy;
 import net.wukl.cacofony.util.Ob;
 
 import java.util.HashSet;
@@ -70,4 +72,124 @@ public class DefaultSettings implements ServerSettings {
     public boolean isHttp2Enabled() {
         return false;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PaddingPolicy getPaddingPolicy() {
+        return new NoPadding();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInitialWindowSize() {
+        return 65535;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getConnectionWindowSize() {
+        return 1 << 20;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxFrameSize() {
+        return 16384;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getHeaderTableSize() {
+        return 4096;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxHeaderListSize() {
+        return 1 << 16;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxConcurrentPushes() {
+        return 8;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAutoPushEnabled() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxInFlightRequests() {
+        return 16;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxWindowSize() {
+        return 1 << 24;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPingInterval() {
+        return 30000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPingTimeout() {
+        return 10000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxConnectionAge() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxConnectionRequests() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDrainTimeout() {
+        return 30000;
+    }
 }
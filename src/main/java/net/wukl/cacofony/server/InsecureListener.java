@@ -1,12 +1,16 @@
 package net.wukl.cacofony.server;
 
+import net.wukl.cacofony.http2.Http2Protocol;
+import net.wukl.cacofony.http2.Http2ProtocolFactory;
 import net.wukl.cacofony.server.protocol.HttpProtocolFactory;
+import net.wukl.cacofony.server.protocol.Protocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -43,26 +47,51 @@ public class InsecureListener implements Listener {
      */
     private final HttpProtocolFactory httpProtocolFactory;
 
+    /**
+     * The factory for HTTP/2 protocol instances.
+     */
+    private final Http2ProtocolFactory http2ProtocolFactory;
+
+    /**
+     * Whether clients may start HTTP/2 by sending the connection preface right away.
+     */
+    private final boolean h2cPriorKnowledge;
+
+    /**
+     * Whether clients may switch to HTTP/2 using {@code Upgrade: h2c}.
+     */
+    private final boolean h2cUpgrade;
+
     /**
      * Creates a new listener.
-     *  @param socket   the socket to listen on
+     *
+     * @param socket   the socket to listen on
      * @param executor the thread pool for incoming requests
      * @param handler  the connection handler to use
      * @param scheme   the connection scheme this listener handles
      * @param httpProtocolFactory the HTTP protocol factory to create HTTP protocol instances with
+     * @param http2ProtocolFactory the factory for HTTP/2 protocol instances
+     * @param settings the global server settings
+     * @param port the port the listener serves, which decides whether cleartext HTTP/2 is used
      */
     public InsecureListener(
             final ServerSocket socket,
             final ExecutorService executor,
             final ConnectionHandler handler,
             final String scheme,
-            final HttpProtocolFactory httpProtocolFactory
+            final HttpProtocolFactory httpProtocolFactory,
+            final Http2ProtocolFactory http2ProtocolFactory,
+            final ServerSettings settings,
+            final Port port
     ) {
         this.socket = socket;
         this.executor = executor;
         this.handler = handler;
         this.scheme = scheme;
         this.httpProtocolFactory = httpProtocolFactory;
+        this.http2ProtocolFactory = http2ProtocolFactory;
+        this.h2cPriorKnowledge = settings.isHttp2Enabled() && port.isH2cPriorKnowledgeEnabled();
+        this.h2cUpgrade = settings.isHttp2Enabled() && port.isH2cUpgradeEnabled();
     }
 
     /**
@@ -71,7 +100,7 @@ public class InsecureListener implements Listener {
     @Override
     public void run() {
         logger.info("Now listening on port {}.", this.socket.getLocalPort());
-        for (;;) {
+        while (!this.socket.isClosed()) {
             try {
                 final Socket client = this.socket.accept();
                 client.setSoTimeout(4444);
@@ -80,10 +109,12 @@ public class InsecureListener implements Listener {
                 final int port = client.getPort();
 
                 this.executor.submit(() -> {
-                    try (InputStream in = client.getInputStream();
+                    try (InputStream in = this.wrapInput(client.getInputStream());
                          OutputStream out = client.getOutputStream()) {
-                        final var connection = new Connection(address, port, in, out, this.scheme);
-                        this.handler.handle(connection, this.httpProtocolFactory.build(connection));
+                        final var connection = new Connection(
+                                address, port, in, out, this.scheme, client
+                        );
+                        this.handler.handle(connection, this.selectProtocol(connection));
                     } catch (final IOException ex) {
                         logger.error("I/O exception while accepting a client: ", ex);
                     } finally {
@@ -95,8 +126,59 @@ public class InsecureListener implements Listener {
                     }
                 });
             } catch (final IOException e) {
-                logger.error("I/O exception while accepting a client: ", e);
+                // Accepting fails once the listener has been closed on purpose.
+                if (!this.socket.isClosed()) {
+                    logger.error("I/O exception while accepting a client: ", e);
+                }
             }
         }
     }
+
+    /**
+     * Stops listening for new connections.
+     *
+     * @throws IOException if an I/O error occurs while closing the socket
+     */
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    /**
+     * Wraps the stream from a client so the connection preface can be looked for.
+     *
+     * @param in the stream from the client
+     *
+     * @return the stream to read the connection from
+     */
+    private InputStream wrapInput(final InputStream in) {
+        if (!this.h2cPriorKnowledge) {
+            return in;
+        }
+
+        return new PushbackInputStream(in, Http2Protocol.CLIENT_PREFACE_LENGTH);
+    }
+
+    /**
+     * Selects the protocol to serve a new connection with.
+     *
+     * Clients with prior knowledge of HTTP/2 support open the connection with the HTTP/2
+     * preface, which no HTTP/1 request line resembles. Everyone else gets HTTP/1, which may be
+     * upgraded later on.
+     *
+     * @param connection the new connection
+     *
+     * @return the protocol
+     *
+     * @throws IOException if an I/O error occurs while looking for the preface
+     */
+    private Protocol selectProtocol(final Connection connection) throws IOException {
+        if (this.h2cPriorKnowledge
+                && Http2Protocol.startsWithPreface((PushbackInputStream) connection.getIn())) {
+            connection.configureForMultiplexing();
+            return this.http2ProtocolFactory.build(connection);
+        }
+
+        return this.httpProtocolFactory.build(connection, this.h2cUpgrade);
+    }
 }
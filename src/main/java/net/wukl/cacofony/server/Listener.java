@@ -1,7 +1,17 @@
 package net.wukl.cacofony.server;
 
+import java.io.IOException;
+
 /**
  * A runnable that listens for incoming connection on the server's socket.
  */
 public interface Listener extends Runnable {
+    /**
+     * Stops listening for new connections.
+     *
+     * Connections that have been accepted already are left alone.
+     *
+     * @throws IOException if an I/O error occurs while closing the socket
+     */
+    void close() throws IOException;
 }
@@ -2,6 +2,7 @@ package net.wukl.cacofony.server;
 
 import net.wukl.cacodi.Manual;
 import net.wukl.cacofony.http.encoding.TransferEncoding;
+import net.wukl.cacofony.http2.frame.PaddingPolicy;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -47,6 +48,81 @@ public class MutableServerSettings implements ServerSettings {
      */
     private boolean http2Enabled;
 
+    /**
+     * The policy deciding how much padding the HTTP/2 server adds to frames.
+     */
+    private PaddingPolicy paddingPolicy;
+
+    /**
+     * The size of the receive window the HTTP/2 server advertises for each stream.
+     */
+    private int initialWindowSize;
+
+    /**
+     * The size of the receive window the HTTP/2 server advertises for a connection.
+     */
+    private int connectionWindowSize;
+
+    /**
+     * The largest frame payload the HTTP/2 server accepts.
+     */
+    private int maxFrameSize;
+
+    /**
+     * The largest HPACK dynamic table the HTTP/2 server keeps per direction.
+     */
+    private int headerTableSize;
+
+    /**
+     * The largest uncompressed header list the HTTP/2 server accepts in a request.
+     */
+    private int maxHeaderListSize;
+
+    /**
+     * The maximum number of streams the HTTP/2 server pushes at once on a connection.
+     */
+    private int maxConcurrentPushes;
+
+    /**
+     * Whether the HTTP/2 server pushes resources without being asked by the action.
+     */
+    private boolean autoPushEnabled;
+
+    /**
+     * How many requests of a single HTTP/2 connection are handled at once.
+     */
+    private int maxInFlightRequests;
+
+    /**
+     * The size up to which the HTTP/2 server grows its receive windows.
+     */
+    private int maxWindowSize;
+
+    /**
+     * The interval at which the HTTP/2 server sends PING frames to check on a connection.
+     */
+    private int pingInterval;
+
+    /**
+     * How long the HTTP/2 server waits for a PING to be acknowledged.
+     */
+    private int pingTimeout;
+
+    /**
+     * How long an HTTP/2 connection may stay open before the server drains it.
+     */
+    private int maxConnectionAge;
+
+    /**
+     * How many requests an HTTP/2 connection may carry before the server drains it.
+     */
+    private int maxConnectionRequests;
+
+    /**
+     * How long the streams of a draining HTTP/2 connection may take to finish.
+     */
+    private int drainTimeout;
+
     /**
      * Creates a new set of server settings by copying the other settings object.
      *
@@ -60,6 +136,21 @@ public class MutableServerSettings implements ServerSettings {
         this.ports.addAll(defaults.getPorts());
         this.maxConcurrentStreams = defaults.getMaxConcurrentStreams();
         this.http2Enabled = defaults.isHttp2Enabled();
+        this.paddingPolicy = defaults.getPaddingPolicy();
+        this.initialWindowSize = defaults.getInitialWindowSize();
+        this.connectionWindowSize = defaults.getConnectionWindowSize();
+        this.maxFrameSize = defaults.getMaxFrameSize();
+        this.headerTableSize = defaults.getHeaderTableSize();
+        this.maxHeaderListSize = defaults.getMaxHeaderListSize();
+        this.maxConcurrentPushes = defaults.getMaxConcurrentPushes();
+        this.autoPushEnabled = defaults.isAutoPushEnabled();
+        this.maxInFlightRequests = defaults.getMaxInFlightRequests();
+        this.maxWindowSize = defaults.getMaxWindowSize();
+        this.pingInterval = defaults.getPingInterval();
+        this.pingTimeout = defaults.getPingTimeout();
+        this.maxConnectionAge = defaults.getMaxConnectionAge();
+        this.maxConnectionRequests = defaults.getMaxConnectionRequests();
+        this.drainTimeout = defaults.getDrainTimeout();
     }
 
     /**
@@ -221,4 +312,289 @@ public class MutableServerSettings implements ServerSettings {
     public void setHttp2Enabled(final boolean enabled) {
         this.http2Enabled = enabled;
     }
+
+    /**
+     * Returns the policy deciding how much padding the HTTP/2 server adds to frames.
+     *
+     * @return the padding policy
+     */
+    @Override
+    public PaddingPolicy getPaddingPolicy() {
+        return this.paddingPolicy;
+    }
+
+    /**
+     * Sets the policy deciding how much padding the HTTP/2 server adds to frames.
+     *
+     * @param policy the padding policy
+     */
+    public void setPaddingPolicy(final PaddingPolicy policy) {
+        this.paddingPolicy = policy;
+    }
+
+    /**
+     * Returns the size of the receive window the HTTP/2 server advertises for each stream.
+     *
+     * @return the stream receive window size in octets
+     */
+    @Override
+    public int getInitialWindowSize() {
+        return this.initialWindowSize;
+    }
+
+    /**
+     * Sets the size of the receive window the HTTP/2 server advertises for each stream.
+     *
+     * @param size the stream receive window size in octets
+     */
+    public void setInitialWindowSize(final int size) {
+        this.initialWindowSize = size;
+    }
+
+    /**
+     * Returns the size of the receive window the HTTP/2 server advertises for a connection.
+     *
+     * @return the connection receive window size in octets
+     */
+    @Override
+    public int getConnectionWindowSize() {
+        return this.connectionWindowSize;
+    }
+
+    /**
+     * Sets the size of the receive window the HTTP/2 server advertises for a connection.
+     *
+     * @param size the connection receive window size in octets
+     */
+    public void setConnectionWindowSize(final int size) {
+        this.connectionWindowSize = size;
+    }
+
+    /**
+     * Returns the largest frame payload the HTTP/2 server accepts.
+     *
+     * @return the maximum frame size in octets
+     */
+    @Override
+    public int getMaxFrameSize() {
+        return this.maxFrameSize;
+    }
+
+    /**
+     * Sets the largest frame payload the HTTP/2 server accepts.
+     *
+     * @param size the maximum frame size in octets, within [16384, 16777215]
+     */
+    public void setMaxFrameSize(final int size) {
+        this.maxFrameSize = size;
+    }
+
+    /**
+     * Returns the largest HPACK dynamic table the HTTP/2 server keeps per direction.
+     *
+     * @return the header table size in octets
+     */
+    @Override
+    public int getHeaderTableSize() {
+        return this.headerTableSize;
+    }
+
+    /**
+     * Sets the largest HPACK dynamic table the HTTP/2 server keeps per direction.
+     *
+     * @param size the header table size in octets
+     */
+    public void setHeaderTableSize(final int size) {
+        this.headerTableSize = size;
+    }
+
+    /**
+     * Returns the largest uncompressed header list the HTTP/2 server accepts in a request.
+     *
+     * @return the maximum header list size in octets
+     */
+    @Override
+    public int getMaxHeaderListSize() {
+        return this.maxHeaderListSize;
+    }
+
+    /**
+     * Sets the largest uncompressed header list the HTTP/2 server accepts in a request.
+     *
+     * @param size the maximum header list size in octets
+     */
+    public void setMaxHeaderListSize(final int size) {
+        this.maxHeaderListSize = size;
+    }
+
+    /**
+     * Returns the maximum number of streams the HTTP/2 server pushes at once on a connection.
+     *
+     * @return the maximum number of concurrent pushed streams
+     */
+    @Override
+    public int getMaxConcurrentPushes() {
+        return this.maxConcurrentPushes;
+    }
+
+    /**
+     * Sets the maximum number of streams the HTTP/2 server pushes at once on a connection.
+     *
+     * @param max the maximum number of concurrent pushed streams
+     */
+    public void setMaxConcurrentPushes(final int max) {
+        this.maxConcurrentPushes = max;
+    }
+
+    /**
+     * Returns whether the HTTP/2 server pushes resources without being asked by the action.
+     *
+     * @return {@code true} if declared and preloaded resources are pushed, {@code false} otherwise
+     */
+    @Override
+    public boolean isAutoPushEnabled() {
+        return this.autoPushEnabled;
+    }
+
+    /**
+     * Sets whether the HTTP/2 server pushes resources without being asked by the action.
+     *
+     * @param enabled whether to push declared and preloaded resources
+     */
+    public void setAutoPushEnabled(final boolean enabled) {
+        this.autoPushEnabled = enabled;
+    }
+
+    /**
+     * Returns how many requests of a single HTTP/2 connection are handled at once.
+     *
+     * @return the maximum number of in-flight requests per connection
+     */
+    @Override
+    public int getMaxInFlightRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    /**
+     * Sets how many requests of a single HTTP/2 connection are handled at once.
+     *
+     * @param max the maximum number of in-flight requests per connection
+     */
+    public void setMaxInFlightRequests(final int max) {
+        this.maxInFlightRequests = max;
+    }
+
+    /**
+     * Returns the size up to which the HTTP/2 server grows its receive windows.
+     *
+     * @return the maximum receive window size in octets
+     */
+    @Override
+    public int getMaxWindowSize() {
+        return this.maxWindowSize;
+    }
+
+    /**
+     * Sets the size up to which the HTTP/2 server grows its receive windows.
+     *
+     * @param size the maximum receive window size in octets
+     */
+    public void setMaxWindowSize(final int size) {
+        this.maxWindowSize = size;
+    }
+
+    /**
+     * Returns the interval at which the HTTP/2 server sends PING frames to check on a connection.
+     *
+     * @return the interval in milliseconds
+     */
+    @Override
+    public int getPingInterval() {
+        return this.pingInterval;
+    }
+
+    /**
+     * Sets the interval at which the HTTP/2 server sends PING frames to check on a connection.
+     *
+     * @param interval the interval in milliseconds
+     */
+    public void setPingInterval(final int interval) {
+        this.pingInterval = interval;
+    }
+
+    /**
+     * Returns how long the HTTP/2 server waits for a PING to be acknowledged.
+     *
+     * @return the timeout in milliseconds
+     */
+    @Override
+    public int getPingTimeout() {
+        return this.pingTimeout;
+    }
+
+    /**
+     * Sets how long the HTTP/2 server waits for a PING to be acknowledged.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setPingTimeout(final int timeout) {
+        this.pingTimeout = timeout;
+    }
+
+    /**
+     * Returns how long an HTTP/2 connection may stay open before the server drains it.
+     *
+     * @return the maximum connection age in milliseconds
+     */
+    @Override
+    public int getMaxConnectionAge() {
+        return this.maxConnectionAge;
+    }
+
+    /**
+     * Sets how long an HTTP/2 connection may stay open before the server drains it.
+     *
+     * @param age the maximum connection age in milliseconds
+     */
+    public void setMaxConnectionAge(final int age) {
+        this.maxConnectionAge = age;
+    }
+
+    /**
+     * Returns how many requests an HTTP/2 connection may carry before the server drains it.
+     *
+     * @return the maximum number of requests per connection
+     */
+    @Override
+    public int getMaxConnectionRequests() {
+        return this.maxConnectionRequests;
+    }
+
+    /**
+     * Sets how many requests an HTTP/2 connection may carry before the server drains it.
+     *
+     * @param max the maximum number of requests per connection
+     */
+    public void setMaxConnectionRequests(final int max) {
+        this.maxConnectionRequests = max;
+    }
+
+    /**
+     * Returns how long the streams of a draining HTTP/2 connection may take to finish.
+     *
+     * @return the timeout in milliseconds
+     */
+    @Override
+    public int getDrainTimeout() {
+        return this.drainTimeout;
+    }
+
+    /**
+     * Sets how long the streams of a draining HTTP/2 connection may take to finish.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void setDrainTimeout(final int timeout) {
+        this.drainTimeout = timeout;
+    }
 }
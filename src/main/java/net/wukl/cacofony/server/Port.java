@@ -16,6 +16,16 @@ public final class Port {
      */
     private final boolean secure;
 
+    /**
+     * Whether cleartext clients may start HTTP/2 directly with the connection preface.
+     */
+    private final boolean h2cPriorKnowledge;
+
+    /**
+     * Whether cleartext clients may switch to HTTP/2 using {@code Upgrade: h2c}.
+     */
+    private final boolean h2cUpgrade;
+
     /**
      * Creates a new port.
      *
@@ -23,8 +33,28 @@ public final class Port {
      * @param secure whether to enable HTTPS
      */
     public Port(final int port, final boolean secure) {
+        this(port, secure, false, false);
+    }
+
+    /**
+     * Creates a new port.
+     * <p>
+     * The cleartext HTTP/2 options only apply to ports that do not use TLS, as secure ports
+     * negotiate HTTP/2 through ALPN instead.
+     *
+     * @param port              the numeric value
+     * @param secure            whether to enable HTTPS
+     * @param h2cPriorKnowledge whether to accept HTTP/2 from clients sending the preface
+     * @param h2cUpgrade        whether to accept {@code Upgrade: h2c} requests
+     */
+    public Port(
+            final int port, final boolean secure,
+            final boolean h2cPriorKnowledge, final boolean h2cUpgrade
+    ) {
         this.port = port;
         this.secure = secure;
+        this.h2cPriorKnowledge = h2cPriorKnowledge;
+        this.h2cUpgrade = h2cUpgrade;
     }
 
     /**
@@ -45,6 +75,25 @@ public final class Port {
         return this.secure;
     }
 
+    /**
+     * Returns whether cleartext clients may start HTTP/2 by sending the connection preface
+     * right away.
+     *
+     * @return {@code true} if HTTP/2 with prior knowledge is accepted, otherwise {@code false}
+     */
+    public boolean isH2cPriorKnowledgeEnabled() {
+        return this.h2cPriorKnowledge;
+    }
+
+    /**
+     * Returns whether cleartext clients may switch to HTTP/2 using {@code Upgrade: h2c}.
+     *
+     * @return {@code true} if the upgrade is accepted, otherwise {@code false}
+     */
+    public boolean isH2cUpgradeEnabled() {
+        return this.h2cUpgrade;
+    }
+
     /**
      * Checks whether this object is equal to another.
      *
@@ -104,7 +104,7 @@ public class SecureListener implements Listener {
     @Override
     public void run() {
         logger.info("Now listening on port {}.", this.socket.getLocalPort());
-        for (;;) {
+        while (!this.socket.isClosed()) {
             try {
                 final var client = (SSLSocket) this.socket.accept();
                 client.setSoTimeout(4444);
@@ -125,11 +125,24 @@ public class SecureListener implements Listener {
 
                 this.executor.submit(this.generateThread(client, address, port, protocolName));
             } catch (final IOException e) {
-                logger.error("I/O exception while accepting a client: ", e);
+                // Accepting fails once the listener has been closed on purpose.
+                if (!this.socket.isClosed()) {
+                    logger.error("I/O exception while accepting a client: ", e);
+                }
             }
         }
     }
 
+    /**
+     * Stops listening for new connections.
+     *
+     * @throws IOException if an I/O error occurs while closing the socket
+     */
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
     /**
      * Sleeps until the connection has finished its handshake.
      *
@@ -4,6 +4,8 @@ import net.wukl.cacofony.server.host.DefaultHostBuilder;
 import net.wukl.cacofony.server.host.Host;
 import net.wukl.cacofony.server.host.HostBuilder;
 import net.wukl.cacodi.DependencyResolver;
+import net.wukl.cacofony.http2.Http2ConnectionRegistry;
+import net.wukl.cacofony.http2.Http2TaskScheduler;
 import net.wukl.cacofony.server.host.HostMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,11 @@ import java.util.List;
 public class Server {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
+    /**
+     * The number of milliseconds to wait for drained connections beyond their own timeouts.
+     */
+    private static final long DRAIN_MARGIN = 1000;
+
     /**
      * The server's settings.
      */
@@ -40,6 +47,11 @@ public class Server {
      */
     private HostBuilder defaultHostBuilder;
 
+    /**
+     * The listeners started when the server started running.
+     */
+    private final List<Listener> listeners = new ArrayList<>();
+
     /**
      * Whether the server is idle or running.
      */
@@ -138,6 +150,7 @@ public class Server {
         final ListenerFactory factory = this.resolver.get(ListenerFactory.class);
         for (final Port port : this.settings.getPorts()) {
             final Listener listener = factory.build(port);
+            this.listeners.add(listener);
             new Thread(listener).start();
         }
 
@@ -145,6 +158,61 @@ public class Server {
         logger.debug("Bootstrap finished, slumbering.");
     }
 
+    /**
+     * Drains the server's HTTP/2 connections and waits for them to close.
+     * <p>
+     * Each connection is sent a GOAWAY frame, after which the client opens new streams on a new
+     * connection. The streams already opened may finish until the drain timeout passes. Clients
+     * are first given the ping timeout to see the GOAWAY frame, so this waits for at most the sum
+     * of both timeouts, plus a little for the connections to close. The server keeps accepting
+     * connections, so this may be used to rebalance clients over several servers.
+     *
+     * @return {@code true} if all connections have closed, {@code false} if some are still open
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean drain() throws InterruptedException {
+        logger.debug("Draining HTTP/2 connections.");
+        final long timeout = (long) this.settings.getPingTimeout()
+                + this.settings.getDrainTimeout() + DRAIN_MARGIN;
+        return this.resolver.get(Http2ConnectionRegistry.class).drain(timeout);
+    }
+
+    /**
+     * Stops the server.
+     * <p>
+     * The server stops accepting connections and drains its HTTP/2 connections as
+     * {@link #drain()} does, closing those that are still open once the time is up. Requests on
+     * other connections are left to finish. A stopped server cannot be run again.
+     *
+     * @throws IOException if an I/O exception occurs while closing a listener
+     */
+    public void stop() throws IOException {
+        if (this.idle) {
+            return;
+        }
+
+        logger.debug("Stopping server.");
+        for (final Listener listener : this.listeners) {
+            if (listener != null) {
+                listener.close();
+            }
+        }
+        this.listeners.clear();
+
+        try {
+            if (!this.drain()) {
+                logger.warn("Closing HTTP/2 connections that did not finish draining.");
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.resolver.get(Http2ConnectionRegistry.class).trap();
+        }
+
+        this.resolver.get(Http2TaskScheduler.class).close();
+    }
+
     /**
      * Makes sure that the server is not running.
      */
@@ -1,6 +1,7 @@
 package net.wukl.cacofony.server;
 
 import net.wukl.cacofony.http.encoding.TransferEncoding;
+import net.wukl.cacofony.http2.frame.PaddingPolicy;
 
 import java.util.Set;
 
@@ -54,4 +55,141 @@ public interface ServerSettings {
      * @return {@code true} if the server is may process HTTP/2 requests, {@code false} otherwise
      */
     boolean isHttp2Enabled();
+
+    /**
+     * Returns the policy deciding how much padding the HTTP/2 server adds to frames.
+     *
+     * @return the padding policy
+     */
+    PaddingPolicy getPaddingPolicy();
+
+    /**
+     * Returns the size of the receive window the HTTP/2 server advertises for each stream.
+     *
+     * @return the stream receive window size in octets
+     */
+    int getInitialWindowSize();
+
+    /**
+     * Returns the size of the receive window the HTTP/2 server advertises for a connection.
+     *
+     * This is shared by all streams on the connection, so it is usually larger than the stream
+     * receive window to allow several uploads to proceed at once.
+     *
+     * @return the connection receive window size in octets
+     */
+    int getConnectionWindowSize();
+
+    /**
+     * Returns the largest frame payload the HTTP/2 server accepts.
+     *
+     * @return the maximum frame size in octets, within [16384, 16777215]
+     */
+    int getMaxFrameSize();
+
+    /**
+     * Returns the largest HPACK dynamic table the HTTP/2 server keeps per direction.
+     *
+     * The value is advertised to clients for the headers they send, and also caps the table
+     * used to compress response headers, whatever size the client allows.
+     *
+     * @return the header table size in octets
+     */
+    int getHeaderTableSize();
+
+    /**
+     * Returns the largest uncompressed header list the HTTP/2 server accepts in a request.
+     *
+     * The size is computed as in RFC 7540 Section 6.5.2: the sum of the lengths of each field's
+     * name and value plus 32 octets of overhead per field.
+     *
+     * @return the maximum header list size in octets
+     */
+    int getMaxHeaderListSize();
+
+    /**
+     * Returns the maximum number of streams the HTTP/2 server pushes at once on a connection.
+     *
+     * The client's own limit on concurrent streams applies as well. A value of {@code 0} disables
+     * server push.
+     *
+     * @return the maximum number of concurrent pushed streams
+     */
+    int getMaxConcurrentPushes();
+
+    /**
+     * Returns whether the HTTP/2 server pushes resources without being asked by the action.
+     *
+     * These are the resources declared in a route's {@code push} list and the same-origin targets
+     * of {@code Link: rel=preload} response headers.
+     *
+     * @return {@code true} if declared and preloaded resources are pushed, {@code false} otherwise
+     */
+    boolean isAutoPushEnabled();
+
+    /**
+     * Returns how many requests of a single HTTP/2 connection are handled at once.
+     *
+     * Further requests on the connection wait in a queue of their own until one of these finishes,
+     * so a single connection cannot occupy the entire thread pool.
+     *
+     * @return the maximum number of in-flight requests per connection
+     */
+    int getMaxInFlightRequests();
+
+    /**
+     * Returns the size up to which the HTTP/2 server grows its receive windows.
+     *
+     * The windows start at their configured sizes and grow as the estimated bandwidth-delay product
+     * of a connection requires. A size no larger than the configured ones disables the tuning.
+     *
+     * @return the maximum receive window size in octets
+     */
+    int getMaxWindowSize();
+
+    /**
+     * Returns the interval at which the HTTP/2 server sends PING frames to check on a connection.
+     *
+     * A value of {@code 0} disables the checks.
+     *
+     * @return the interval in milliseconds
+     */
+    int getPingInterval();
+
+    /**
+     * Returns how long the HTTP/2 server waits for a PING to be acknowledged.
+     *
+     * A connection that does not acknowledge a PING in time is considered dead and closed.
+     *
+     * @return the timeout in milliseconds
+     */
+    int getPingTimeout();
+
+    /**
+     * Returns how long an HTTP/2 connection may stay open before the server drains it.
+     *
+     * Draining makes the client open a new connection for further requests, which spreads
+     * long-lived clients over the available servers. A value of {@code 0} lets connections live on.
+     *
+     * @return the maximum connection age in milliseconds
+     */
+    int getMaxConnectionAge();
+
+    /**
+     * Returns how many requests an HTTP/2 connection may carry before the server drains it.
+     *
+     * A value of {@code 0} puts no limit on the number of requests.
+     *
+     * @return the maximum number of requests per connection
+     */
+    int getMaxConnectionRequests();
+
+    /**
+     * Returns how long the streams of a draining HTTP/2 connection may take to finish.
+     *
+     * The connection is closed once its last stream has finished or the time is up.
+     *
+     * @return the timeout in milliseconds
+     */
+    int getDrainTimeout();
 }
@@ -1,10 +1,13 @@
 package net.wukl.cacofony.server.protocol;
 
 import net.wukl.cacofony.http.exception.SilentException;
+import net.wukl.cacofony.http.request.Header;
 import net.wukl.cacofony.http.request.MutableRequest;
 import net.wukl.cacofony.http.request.Request;
 import net.wukl.cacofony.http.request.RequestParser;
 import net.wukl.cacofony.http.response.Response;
+import net.wukl.cacofony.http2.Http2ConnectionError;
+import net.wukl.cacofony.http2.Http2ProtocolFactory;
 import net.wukl.cacofony.io.HttpInputStream;
 import net.wukl.cacofony.io.ProtectedOutputStream;
 import net.wukl.cacofony.server.Connection;
@@ -13,7 +16,12 @@ import net.wukl.cacofony.server.host.HostMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A protocol supporting HTTP/1.0 and HTTP/1.1.
@@ -21,6 +29,26 @@ import java.io.OutputStream;
 public class HttpProtocol implements Protocol {
     private static final Logger logger = LoggerFactory.getLogger(HttpProtocol.class);
 
+    /**
+     * The response confirming a switch to cleartext HTTP/2.
+     */
+    private static final byte[] SWITCHING_TO_H2C = (
+            "HTTP/1.1 101 Switching Protocols\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Upgrade: h2c\r\n"
+            + "\r\n"
+    ).getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The connection-specific request headers that have no place in an HTTP/2 request.
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-8.1.2.2">RFC 7540 Section 8.1.2.2</a>
+     */
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+            "connection", "upgrade", "http2-settings", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "host"
+    );
+
     /**
      * The hosts the protocol is serving.
      */
@@ -46,6 +74,12 @@ public class HttpProtocol implements Protocol {
      */
     private final HttpInputStream in;
 
+    /**
+     * The factory for the HTTP/2 protocol clients may upgrade to, or {@code null} if upgrading
+     * is not allowed.
+     */
+    private final Http2ProtocolFactory h2cFactory;
+
     /**
      * Creates a new HTTP protocol instance.
      *
@@ -54,9 +88,26 @@ public class HttpProtocol implements Protocol {
      * @param parser the HTTP request parser to use
      */
     public HttpProtocol(final Connection conn, final HostMap hosts, final RequestParser parser) {
+        this(conn, hosts, parser, null);
+    }
+
+    /**
+     * Creates a new HTTP protocol instance.
+     *
+     * @param conn the connection the protocol will talk over
+     * @param hosts the hosts the protocol can serve
+     * @param parser the HTTP request parser to use
+     * @param h2cFactory the factory for the HTTP/2 protocol clients may upgrade to with
+     *                   {@code Upgrade: h2c}, or {@code null} to ignore such requests
+     */
+    public HttpProtocol(
+            final Connection conn, final HostMap hosts, final RequestParser parser,
+            final Http2ProtocolFactory h2cFactory
+    ) {
         this.conn = conn;
         this.hosts = hosts;
         this.parser = parser;
+        this.h2cFactory = h2cFactory;
 
         this.out = new ProtectedOutputStream(conn.getOut());
         this.in = new HttpInputStream(conn.getIn());
@@ -88,6 +139,11 @@ public class HttpProtocol implements Protocol {
             request.setScheme(this.conn.getScheme());
             request.setRemote(this.conn.getAddress());
 
+            final var upgraded = this.upgrade(request);
+            if (upgraded != null) {
+                return upgraded;
+            }
+
             final String hostname = request.getHost();
             host = this.hosts.get(hostname);
             response = host.handle(request);
@@ -140,4 +196,108 @@ public class HttpProtocol implements Protocol {
         return (major == 1 && minor == 0 && !connection.equalsIgnoreCase("keep-alive"))
                 || (major == 1 && minor == 1 && connection.equalsIgnoreCase("close"));
     }
+
+    /**
+     * Switches the connection to HTTP/2 if the client asked for it with {@code Upgrade: h2c}.
+     *
+     * Only requests without a body are upgraded, as a body would have to be read in full before
+     * switching. Any other request is served over HTTP/1.1 as if the upgrade was never offered.
+     *
+     * @param request the request that may carry the upgrade
+     *
+     * @return the HTTP/2 protocol answering the request, or {@code null} if the connection stays
+     *         on HTTP/1.1
+     *
+     * @throws IOException if an I/O error occurs
+     *
+     * @see <a href="https://tools.ietf.org/html/rfc7540#section-3.2">RFC 7540 Section 3.2</a>
+     */
+    private Protocol upgrade(final Request request) throws IOException {
+        if (this.h2cFactory == null || !isH2cUpgrade(request)) {
+            return null;
+        }
+
+        final var http2 = this.h2cFactory.build(this.conn.withIn(this.in));
+        try {
+            http2.acceptUpgrade(request.getHeader("HTTP2-Settings"), toHttp2Headers(request));
+        } catch (final Http2ConnectionError ex) {
+            logger.debug("Not upgrading to h2c: {}", ex.getMessage());
+            return null;
+        }
+
+        this.out.write(SWITCHING_TO_H2C);
+        this.out.flush();
+        this.conn.configureForMultiplexing();
+        return http2;
+    }
+
+    /**
+     * Checks whether a request asks to switch to cleartext HTTP/2 in a way that can be honoured.
+     *
+     * @param request the request to examine
+     *
+     * @return {@code true} if the connection may be upgraded, otherwise {@code false}
+     */
+    private static boolean isH2cUpgrade(final Request request) {
+        final var settings = request.getHeaders("HTTP2-Settings");
+
+        return request.getMajorVersion() == 1 && request.getMinorVersion() == 1
+                && hasToken(request, "Upgrade", "h2c")
+                && hasToken(request, "Connection", "Upgrade")
+                && settings != null && settings.size() == 1
+                && request.getContentLength() == 0;
+    }
+
+    /**
+     * Checks whether a comma-separated header contains a token.
+     *
+     * @param request the request carrying the header
+     * @param key the name of the header
+     * @param token the token, which is compared case-insensitively
+     *
+     * @return {@code true} if any of the header's values lists the token, otherwise {@code false}
+     */
+    private static boolean hasToken(final Request request, final String key, final String token) {
+        final var values = request.getHeaders(key);
+        if (values == null) {
+            return false;
+        }
+
+        for (final var value : values) {
+            for (final var element : value.split(",")) {
+                if (element.trim().equalsIgnoreCase(token)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Translates an HTTP/1.1 request into an HTTP/2 header list.
+     *
+     * @param request the request
+     *
+     * @return the header list, starting with the pseudo-header fields
+     */
+    private List<Header> toHttp2Headers(final Request request) {
+        final var headers = new ArrayList<Header>();
+        headers.add(new Header(":method", request.getRealMethod().name()));
+        headers.add(new Header(":scheme", this.conn.getScheme()));
+        headers.add(new Header(":path", request.getRawPath()));
+
+        final var host = request.getHeaders("Host");
+        if (host != null) {
+            headers.add(new Header(":authority", host));
+        }
+
+        for (final var entry : request.getHeaders().entrySet()) {
+            if (!CONNECTION_HEADERS.contains(entry.getKey())) {
+                headers.add(new Header(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        return headers;
+    }
 }
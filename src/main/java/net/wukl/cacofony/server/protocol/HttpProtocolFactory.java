@@ -1,6 +1,7 @@
 package net.wukl.cacofony.server.protocol;
 
 import net.wukl.cacofony.http.request.RequestParser;
+import net.wukl.cacofony.http2.Http2ProtocolFactory;
 import net.wukl.cacofony.server.Connection;
 import net.wukl.cacofony.server.host.HostMap;
 
@@ -18,15 +19,26 @@ public class HttpProtocolFactory implements ProtocolFactory<HttpProtocol> {
      */
     private final RequestParser requestParser;
 
+    /**
+     * The factory for the HTTP/2 protocol connections may be upgraded to.
+     */
+    private final Http2ProtocolFactory http2ProtocolFactory;
+
     /**
      * Creates a new HTTP protocol factory.
      *
      * @param hosts the hosts registered in the server
      * @param requestParser the HTTP request parser
+     * @param http2ProtocolFactory the factory for the HTTP/2 protocol connections may be
+     *                             upgraded to
      */
-    public HttpProtocolFactory(final HostMap hosts, final RequestParser requestParser) {
+    public HttpProtocolFactory(
+            final HostMap hosts, final RequestParser requestParser,
+            final Http2ProtocolFactory http2ProtocolFactory
+    ) {
         this.hosts = hosts;
         this.requestParser = requestParser;
+        this.http2ProtocolFactory = http2ProtocolFactory;
     }
 
     /**
@@ -38,4 +50,20 @@ public class HttpProtocolFactory implements ProtocolFactory<HttpProtocol> {
     public HttpProtocol build(final Connection conn) {
         return new HttpProtocol(conn, this.hosts, this.requestParser);
     }
+
+    /**
+     * Builds an instance of the protocol that may switch to cleartext HTTP/2.
+     *
+     * @param conn the connection to build the protocol for
+     * @param allowH2cUpgrade whether to honour {@code Upgrade: h2c} requests
+     *
+     * @return the protocol instance
+     */
+    public HttpProtocol build(final Connection conn, final boolean allowH2cUpgrade) {
+        if (!allowH2cUpgrade) {
+            return this.build(conn);
+        }
+
+        return new HttpProtocol(conn, this.hosts, this.requestParser, this.http2ProtocolFactory);
+    }
 }
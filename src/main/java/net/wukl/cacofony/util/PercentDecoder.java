@@ -0,0 +1,330 @@
+package net.wukl.cacofony.util;
+
+import net.wukl.cacofony.http.exception.BadRequestException;
+
+/**
+ * A decoder for percent-encoded strings.
+ * <p>
+ * Strings without any escapes are returned as they are, without copying. Other strings are
+ * decoded in a single pass into a per-thread buffer, interpreting escaped octets as UTF-8.
+ * Malformed UTF-8 sequences are replaced by U+FFFD, like {@link java.net.URLDecoder} does.
+ *
+ * @author Luc Everse
+ */
+public final class PercentDecoder {
+    /**
+     * The character replacing malformed UTF-8 sequences.
+     */
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * The largest buffer kept around for reuse by a thread.
+     */
+    private static final int MAX_RETAINED_BUFFER = 8192;
+
+    /**
+     * The builders decoded strings are assembled in, one per thread.
+     */
+    private static final ThreadLocal<Utf8Builder> BUILDERS =
+            ThreadLocal.withInitial(Utf8Builder::new);
+
+    /**
+     * Do not instantiate.
+     */
+    private PercentDecoder() {
+        throw new AssertionError("Do not instantiate.");
+    }
+
+    /**
+     * The ways a percent-encoded string may be decoded.
+     */
+    public enum Mode {
+        /**
+         * A URI path or path segment, in which a plus sign is just a plus sign.
+         */
+        PATH,
+
+        /**
+         * An {@code application/x-www-form-urlencoded} string, in which a plus sign encodes a
+         * space.
+         */
+        FORM
+    }
+
+    /**
+     * Decodes a percent-encoded string.
+     *
+     * @param str  the string to decode
+     * @param mode the way to decode the string
+     *
+     * @return the decoded string, which is {@code str} itself if there was nothing to decode
+     *
+     * @throws BadRequestException if the string contains a malformed escape sequence
+     */
+    public static String decode(final String str, final Mode mode) {
+        return decode(str, 0, str.length(), mode);
+    }
+
+    /**
+     * Decodes a percent-encoded substring.
+     *
+     * @param str   the string containing the substring to decode
+     * @param start the start of the substring, inclusive
+     * @param end   the end of the substring, exclusive
+     * @param mode  the way to decode the substring
+     *
+     * @return the decoded substring
+     *
+     * @throws BadRequestException if the substring contains a malformed escape sequence
+     */
+    public static String decode(final String str,
+                                final int start,
+                                final int end,
+                                final Mode mode) {
+        final boolean decodePlus = mode == Mode.FORM;
+
+        final int first = indexOfEscape(str, start, end, decodePlus);
+        if (first == end) {
+            return str.substring(start, end);
+        }
+
+        final Utf8Builder builder = BUILDERS.get();
+        builder.reset(str, start, first, end - start);
+
+        int i = first;
+        while (i < end) {
+            final char c = str.charAt(i);
+            if (c == '%') {
+                builder.appendOctet(parseEscape(str, i, end));
+                i += 3;
+            } else {
+                if (decodePlus && c == '+') {
+                    builder.append(' ');
+                } else {
+                    builder.append(c);
+                }
+                ++i;
+            }
+        }
+
+        return builder.finish();
+    }
+
+    /**
+     * Finds the first character in a substring that has to be decoded.
+     *
+     * @param str        the string containing the substring
+     * @param start      the start of the substring, inclusive
+     * @param end        the end of the substring, exclusive
+     * @param decodePlus whether plus signs have to be decoded
+     *
+     * @return the index of the character or {@code end} if there is nothing to decode
+     */
+    private static int indexOfEscape(final String str,
+                                     final int start,
+                                     final int end,
+                                     final boolean decodePlus) {
+        for (int i = start; i < end; ++i) {
+            final char c = str.charAt(i);
+            if (c == '%' || (decodePlus && c == '+')) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Parses a single escape sequence.
+     *
+     * @param str   the string containing the escape sequence
+     * @param index the index of the percent sign
+     * @param end   the end of the part of the string being decoded
+     *
+     * @return the escaped octet
+     *
+     * @throws BadRequestException if the escape sequence is malformed
+     */
+    private static int parseEscape(final String str, final int index, final int end) {
+        if (index + 3 > end) {
+            throw new BadRequestException("Incomplete escape sequence in " + str);
+        }
+
+        final int high = hexValue(str.charAt(index + 1));
+        final int low = hexValue(str.charAt(index + 2));
+        if (high < 0 || low < 0) {
+            throw new BadRequestException(
+                    "Illegal hex tuple: " + str.substring(index + 1, index + 3)
+            );
+        }
+
+        return (high << 4) | low;
+    }
+
+    /**
+     * Returns the value of a hexadecimal digit.
+     *
+     * @param c the digit
+     *
+     * @return the digit's value or {@code -1} if the character is not a hexadecimal digit
+     */
+    private static int hexValue(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        return -1;
+    }
+
+    /**
+     * A reusable buffer that assembles a string from characters and UTF-8 octets.
+     */
+    private static final class Utf8Builder {
+        /**
+         * The characters decoded so far.
+         */
+        private char[] buffer = new char[256];
+
+        /**
+         * The number of characters in the buffer.
+         */
+        private int length;
+
+        /**
+         * The code point being decoded from a multi-octet sequence.
+         */
+        private int codePoint;
+
+        /**
+         * The number of continuation octets still expected in the current sequence.
+         */
+        private int remaining;
+
+        /**
+         * The smallest code point the current sequence may encode without being overlong.
+         */
+        private int minimum;
+
+        /**
+         * Prepares the builder for a new string, starting with a prefix that needs no decoding.
+         *
+         * @param str      the string containing the prefix
+         * @param start    the start of the prefix, inclusive
+         * @param end      the end of the prefix, exclusive
+         * @param capacity the length of the encoded string, which the decoded one never exceeds
+         */
+        private void reset(final String str, final int start, final int end, final int capacity) {
+            if (this.buffer.length < capacity) {
+                this.buffer = new char[capacity];
+            }
+
+            str.getChars(start, end, this.buffer, 0);
+            this.length = end - start;
+            this.remaining = 0;
+        }
+
+        /**
+         * Appends a character.
+         *
+         * @param c the character
+         */
+        private void append(final char c) {
+            this.abandonSequence();
+            this.buffer[this.length++] = c;
+        }
+
+        /**
+         * Appends an octet of UTF-8.
+         *
+         * @param octet the octet
+         */
+        private void appendOctet(final int octet) {
+            if (this.remaining > 0 && (octet & 0xC0) == 0x80) {
+                this.codePoint = (this.codePoint << 6) | (octet & 0x3F);
+                --this.remaining;
+                if (this.remaining == 0) {
+                    this.appendCodePoint();
+                }
+                return;
+            }
+
+            // A sequence that is cut short is replaced, after which the octet starts over.
+            this.abandonSequence();
+
+            if (octet < 0x80) {
+                this.buffer[this.length++] = (char) octet;
+            } else if ((octet & 0xE0) == 0xC0) {
+                this.startSequence(octet & 0x1F, 1, 0x80);
+            } else if ((octet & 0xF0) == 0xE0) {
+                this.startSequence(octet & 0x0F, 2, 0x800);
+            } else if ((octet & 0xF8) == 0xF0) {
+                this.startSequence(octet & 0x07, 3, 0x10000);
+            } else {
+                this.buffer[this.length++] = REPLACEMENT;
+            }
+        }
+
+        /**
+         * Starts a multi-octet sequence.
+         *
+         * @param bits      the code point bits carried by the leading octet
+         * @param remaining the number of continuation octets expected
+         * @param minimum   the smallest code point the sequence may encode
+         */
+        private void startSequence(final int bits, final int remaining, final int minimum) {
+            this.codePoint = bits;
+            this.remaining = remaining;
+            this.minimum = minimum;
+        }
+
+        /**
+         * Appends the code point of a completed sequence, or a replacement if it is invalid.
+         */
+        private void appendCodePoint() {
+            if (this.codePoint < this.minimum
+                    || this.codePoint > Character.MAX_CODE_POINT
+                    || (this.codePoint >= Character.MIN_SURROGATE
+                        && this.codePoint <= Character.MAX_SURROGATE)) {
+                this.buffer[this.length++] = REPLACEMENT;
+                return;
+            }
+
+            this.length += Character.toChars(this.codePoint, this.buffer, this.length);
+        }
+
+        /**
+         * Replaces an unfinished sequence, if any.
+         */
+        private void abandonSequence() {
+            if (this.remaining > 0) {
+                this.buffer[this.length++] = REPLACEMENT;
+                this.remaining = 0;
+            }
+        }
+
+        /**
+         * Finishes the string.
+         *
+         * @return the decoded string
+         */
+        private String finish() {
+            this.abandonSequence();
+
+            final String result = new String(this.buffer, 0, this.length);
+
+            if (this.buffer.length > MAX_RETAINED_BUFFER) {
+                this.buffer = new char[MAX_RETAINED_BUFFER];
+            }
+
+            return result;
+        }
+    }
+}
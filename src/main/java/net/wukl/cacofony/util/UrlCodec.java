@@ -2,9 +2,7 @@ package net.wukl.cacofony.util;
 
 import net.wukl.cacofony.http.exception.BadRequestException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 
@@ -44,14 +42,7 @@ public class UrlCodec {
      * @throws BadRequestException if a %xx sequence can't be decoded to a valid number
      */
     public String decodeUriComponent(final String str) {
-        try {
-            return URLDecoder.decode(str, "UTF-8");
-        } catch (final UnsupportedEncodingException ex) {
-            // Not gonna happen. Hopefully.
-            throw new RuntimeException(ex);
-        } catch (final IllegalArgumentException ex) {
-            throw new BadRequestException(ex);
-        }
+        return PercentDecoder.decode(str, PercentDecoder.Mode.FORM);
     }
 
     /**
@@ -104,35 +95,6 @@ public class UrlCodec {
      * @throws BadRequestException if a %xx sequence can't be decoded to a valid number
      */
     public String decodeCookieComponent(final String component) {
-        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-        final byte[] asUtf8 = component.getBytes(StandardCharsets.UTF_8);
-
-        for (int i = 0; i < asUtf8.length; ++i) {
-            // Handle an escaped sequence.
-            if (asUtf8[i] == '%') {
-                // Extract the two hex digits.
-                final String hex = new String(asUtf8, i, 2, StandardCharsets.UTF_8);
-                int cp;
-                try {
-                    // Decode them as a hexadecimal number and append it to the buffer.
-                    cp = Integer.parseInt(hex, 16);
-                    buffer.write(cp);
-                    i += 2;
-                } catch (final NumberFormatException ex) {
-                    // Error if the format is not okay.
-                    throw new BadRequestException("Illegal hex tuple: " + hex);
-                }
-            } else {
-                buffer.write(asUtf8[i]);
-            }
-        }
-
-        try {
-            return buffer.toString("UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            // Not going to happen.
-            throw new RuntimeException(e);
-        }
+        return PercentDecoder.decode(component, PercentDecoder.Mode.PATH);
     }
 }
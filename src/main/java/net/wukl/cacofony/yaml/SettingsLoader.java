@@ -1,6 +1,10 @@
 package net.wukl.cacofony.yaml;
 
 import net.wukl.cacofony.http.encoding.TransferEncoding;
+import net.wukl.cacofony.http2.frame.BucketPadding;
+import net.wukl.cacofony.http2.frame.NoPadding;
+import net.wukl.cacofony.http2.frame.PaddingPolicy;
+import net.wukl.cacofony.http2.frame.RandomPadding;
 import net.wukl.cacofony.server.MutableServerSettings;
 import net.wukl.cacofony.server.Port;
 
@@ -42,6 +46,13 @@ public class SettingsLoader {
 
         this.setPorts(settings, spec);
         this.setCompressionAlgorithms(settings, spec);
+        this.setPaddingPolicy(settings, spec);
+        this.setWindowSizes(settings, spec);
+        this.setFramingLimits(settings, spec);
+        this.setServerPush(settings, spec);
+        this.setRequestQuota(settings, spec);
+        this.setPings(settings, spec);
+        this.setDraining(settings, spec);
 
         return settings;
     }
@@ -70,13 +81,16 @@ public class SettingsLoader {
 
                 port = new Port(portNum, portNum == 80 || portNum == 8080);
             } else if (portSpec instanceof Map) {
-                // Parse the object into an integer and an optional boolean.
+                // Parse the object into an integer and optional booleans.
                 final Map<String, Object> subSpec = (Map<String, Object>) portSpec;
 
                 final int portNum = (int) subSpec.get("port");
                 final boolean secure = (boolean) subSpec.getOrDefault("secure", true);
+                final boolean h2cPriorKnowledge =
+                        (boolean) subSpec.getOrDefault("h2c prior knowledge", false);
+                final boolean h2cUpgrade = (boolean) subSpec.getOrDefault("h2c upgrade", false);
 
-                port = new Port(portNum, secure);
+                port = new Port(portNum, secure, h2cPriorKnowledge, h2cUpgrade);
             } else {
                 // Don't know what to do: error.
                 throw new InvalidYamlException("Unknown port specification format.");
@@ -115,6 +129,234 @@ public class SettingsLoader {
         settings.setCompressionAlgorithms(algorithms);
     }
 
+    /**
+     * Sets the policy deciding how much padding the HTTP/2 server adds to frames.
+     * <p>
+     * The policy is either just a name ({@code none} or {@code random}) or a map containing the
+     * name under {@code policy} along with its parameters: {@code max} for random padding and
+     * {@code size} for bucket padding.
+     *
+     * @param settings the settings to store the policy in
+     * @param spec     the yaml spec
+     */
+    private void setPaddingPolicy(final MutableServerSettings settings,
+                                  final Map<String, Object> spec) {
+        final Object policySpec = spec.get("http/2 padding");
+        if (policySpec == null) {
+            // Don't override the defaults if the value is missing.
+            return;
+        }
+
+        final Map<String, Object> subSpec;
+        if (policySpec instanceof String) {
+            subSpec = Map.of("policy", policySpec);
+        } else if (policySpec instanceof Map) {
+            subSpec = (Map<String, Object>) policySpec;
+        } else {
+            throw new InvalidYamlException("Unknown padding specification format.");
+        }
+
+        settings.setPaddingPolicy(this.parsePaddingPolicy(subSpec));
+    }
+
+    /**
+     * Parses a padding policy.
+     *
+     * @param spec the policy's yaml spec
+     *
+     * @return the policy
+     */
+    private PaddingPolicy parsePaddingPolicy(final Map<String, Object> spec) {
+        final Object name = spec.get("policy");
+
+        try {
+            if ("none".equals(name)) {
+                return new NoPadding();
+            } else if ("random".equals(name)) {
+                return new RandomPadding(
+                        (int) spec.getOrDefault("max", PaddingPolicy.MAX_PADDING)
+                );
+            } else if ("bucket".equals(name)) {
+                final Object size = spec.get("size");
+                if (size == null) {
+                    throw new InvalidYamlException("Bucket padding requires a size.");
+                }
+
+                return new BucketPadding((int) size);
+            }
+        } catch (final ClassCastException | IllegalArgumentException ex) {
+            throw new InvalidYamlException("Invalid padding parameters: " + ex.getMessage(), ex);
+        }
+
+        throw new InvalidYamlException("Unknown padding policy \"" + name + "\".");
+    }
+
+    /**
+     * Sets the sizes of the receive windows the HTTP/2 server advertises.
+     *
+     * Neither window can be smaller than the initial window of 65535 octets every connection and
+     * stream starts with, as the client may fill that before it learns of the configured sizes.
+     * The windows only grow up to the maximum window size if that is
+     * larger than the configured ones.
+     *
+     * @param settings the settings to store the sizes in
+     * @param spec     the yaml spec
+     */
+    private void setWindowSizes(final MutableServerSettings settings,
+                                final Map<String, Object> spec) {
+        final int streamWindow =
+                this.get(spec, "http/2 stream window", settings.getInitialWindowSize());
+        final int connectionWindow =
+                this.get(spec, "http/2 connection window", settings.getConnectionWindowSize());
+        final int maxWindow =
+                this.get(spec, "http/2 max window size", settings.getMaxWindowSize());
+
+        if (streamWindow < 65535) {
+            throw new InvalidYamlException(
+                    "The HTTP/2 stream window must be at least 65535 octets."
+            );
+        }
+        if (connectionWindow < 65535) {
+            throw new InvalidYamlException(
+                    "The HTTP/2 connection window must be at least 65535 octets."
+            );
+        }
+
+        if (maxWindow < 1) {
+            throw new InvalidYamlException("The HTTP/2 max window size must be positive.");
+        }
+
+        settings.setInitialWindowSize(streamWindow);
+        settings.setConnectionWindowSize(connectionWindow);
+        settings.setMaxWindowSize(maxWindow);
+    }
+
+    /**
+     * Sets how often the HTTP/2 server checks on its connections with PING frames.
+     *
+     * @param settings the settings to store the intervals in
+     * @param spec     the yaml spec
+     */
+    private void setPings(final MutableServerSettings settings,
+                          final Map<String, Object> spec) {
+        final int interval = this.get(spec, "http/2 ping interval", settings.getPingInterval());
+        final int timeout = this.get(spec, "http/2 ping timeout", settings.getPingTimeout());
+
+        if (interval < 0) {
+            throw new InvalidYamlException("The HTTP/2 ping interval may not be negative.");
+        }
+        if (timeout < 1) {
+            throw new InvalidYamlException("The HTTP/2 ping timeout must be positive.");
+        }
+
+        settings.setPingInterval(interval);
+        settings.setPingTimeout(timeout);
+    }
+
+    /**
+     * Sets the HTTP/2 frame size, header table size and header list size limits.
+     *
+     * @param settings the settings to store the limits in
+     * @param spec     the yaml spec
+     */
+    private void setFramingLimits(final MutableServerSettings settings,
+                                  final Map<String, Object> spec) {
+        final int maxFrameSize =
+                this.get(spec, "http/2 max frame size", settings.getMaxFrameSize());
+        final int headerTableSize =
+                this.get(spec, "http/2 header table size", settings.getHeaderTableSize());
+        final int maxHeaderListSize =
+                this.get(spec, "http/2 max header list size", settings.getMaxHeaderListSize());
+
+        if (maxFrameSize < 16384 || maxFrameSize > 16777215) {
+            throw new InvalidYamlException(
+                    "The HTTP/2 max frame size must be within [16384, 16777215]."
+            );
+        }
+        if (headerTableSize < 0) {
+            throw new InvalidYamlException("The HTTP/2 header table size may not be negative.");
+        }
+        if (maxHeaderListSize < 1) {
+            throw new InvalidYamlException("The HTTP/2 max header list size must be positive.");
+        }
+
+        settings.setMaxFrameSize(maxFrameSize);
+        settings.setHeaderTableSize(headerTableSize);
+        settings.setMaxHeaderListSize(maxHeaderListSize);
+    }
+
+    /**
+     * Sets how the HTTP/2 server pushes resources.
+     *
+     * @param settings the settings to store the push options in
+     * @param spec     the yaml spec
+     */
+    private void setServerPush(final MutableServerSettings settings,
+                               final Map<String, Object> spec) {
+        final int maxPushes =
+                this.get(spec, "http/2 max pushes", settings.getMaxConcurrentPushes());
+        final boolean autoPush = this.get(spec, "http/2 auto push", settings.isAutoPushEnabled());
+
+        if (maxPushes < 0) {
+            throw new InvalidYamlException("The HTTP/2 max pushes may not be negative.");
+        }
+
+        settings.setMaxConcurrentPushes(maxPushes);
+        settings.setAutoPushEnabled(autoPush);
+    }
+
+    /**
+     * Sets how many requests of a single HTTP/2 connection are handled at once.
+     *
+     * @param settings the settings to store the quota in
+     * @param spec     the yaml spec
+     */
+    private void setRequestQuota(final MutableServerSettings settings,
+                                 final Map<String, Object> spec) {
+        final int maxInFlight = this.get(
+                spec, "http/2 max in-flight requests", settings.getMaxInFlightRequests()
+        );
+
+        if (maxInFlight < 1) {
+            throw new InvalidYamlException("The HTTP/2 max in-flight requests must be positive.");
+        }
+
+        settings.setMaxInFlightRequests(maxInFlight);
+    }
+
+    /**
+     * Sets when and how the HTTP/2 server drains its connections.
+     *
+     * @param settings the settings to store the limits in
+     * @param spec     the yaml spec
+     */
+    private void setDraining(final MutableServerSettings settings,
+                             final Map<String, Object> spec) {
+        final int maxAge =
+                this.get(spec, "http/2 max connection age", settings.getMaxConnectionAge());
+        final int maxRequests = this.get(
+                spec, "http/2 max connection requests", settings.getMaxConnectionRequests()
+        );
+        final int drainTimeout =
+                this.get(spec, "http/2 drain timeout", settings.getDrainTimeout());
+
+        if (maxAge < 0) {
+            throw new InvalidYamlException("The HTTP/2 max connection age may not be negative.");
+        }
+        if (maxRequests < 0) {
+            throw new InvalidYamlException(
+                    "The HTTP/2 max connection requests may not be negative."
+            );
+        }
+        if (drainTimeout < 0) {
+            throw new InvalidYamlException("The HTTP/2 drain timeout may not be negative.");
+        }
+
+        settings.setMaxConnectionAge(maxAge);
+        settings.setMaxConnectionRequests(maxRequests);
+        settings.setDrainTimeout(drainTimeout);
+    }
+
     /**
      * Reads a boolean from the spec.
      *
@@ -135,4 +377,25 @@ public class SettingsLoader {
             );
         }
     }
+
+    /**
+     * Reads an integer from the spec.
+     *
+     * @param spec the spec
+     * @param key  the key inside the spec
+     * @param def  the default value if the key is missing
+     *
+     * @return the parsed value or {@code def} if the key is missing
+     */
+    private int get(final Map<String, Object> spec, final String key, final int def) {
+        try {
+            return (int) spec.getOrDefault(key, def);
+        } catch (final ClassCastException ex) {
+            throw new InvalidYamlException(
+                    "Can't cast the value of setting \"" + key + "\" (\"" + spec.get(key)
+                            + "\") as an integer.",
+                    ex
+            );
+        }
+    }
 }
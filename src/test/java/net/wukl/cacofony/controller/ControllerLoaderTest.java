@@ -1,7 +1,134 @@
 package net.wukl.cacofony.controller;
 
+import net.wukl.cacofony.http.response.EmptyResponse;
+import net.wukl.cacofony.http.response.Response;
+import net.wukl.cacofony.mime.FastMimeParser;
+import net.wukl.cacofony.route.PathCompiler;
+import net.wukl.cacofony.route.Route;
+import net.wukl.cacofony.route.Router;
+import net.wukl.cacofony.route.RoutingEntry;
+import net.wukl.cacodi.DependencyResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 /**
  * @author Luc Everse
  */
 public class ControllerLoaderTest {
+    private static final String PACKAGE = "net.wukl.cacofony.controller";
+
+    private ClassLoader originalLoader;
+    private Path indexFile;
+    private List<RoutingEntry> entries;
+    private ControllerLoader loader;
+
+    @BeforeEach
+    public void before() throws IOException {
+        this.originalLoader = Thread.currentThread().getContextClassLoader();
+        this.indexFile = Files.createTempFile("routes", ".idx");
+        this.entries = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        Thread.currentThread().setContextClassLoader(this.originalLoader);
+        Files.deleteIfExists(this.indexFile);
+    }
+
+    @Test
+    public void testLoadFromIndex() throws IOException {
+        this.prepare(
+                IndexedController.class.getName() + " second\n"
+                + IndexedController.class.getName() + " first\n"
+        );
+
+        this.loader.loadAll("/prefix", PACKAGE);
+
+        assertThat(this.entries).extracting(e -> e.getPath().getPath())
+                .containsExactly("/prefix/second", "/prefix/first");
+    }
+
+    @Test
+    public void testIncompleteIndexFallsBackToScanning() throws IOException {
+        this.prepare(IndexedController.class.getName() + " first\n");
+
+        this.loader.loadAll("/prefix", PACKAGE);
+
+        assertThat(this.entries).extracting(e -> e.getPath().getPath())
+                .containsExactlyInAnyOrder("/prefix/first", "/prefix/second");
+    }
+
+    @Test
+    public void testStaleIndexFallsBackToScanning() throws IOException {
+        this.prepare(IndexedController.class.getName() + " removed\n");
+
+        this.loader.loadAll("/prefix", PACKAGE);
+
+        assertThat(this.entries).extracting(e -> e.getPath().getPath())
+                .containsExactlyInAnyOrder("/prefix/first", "/prefix/second");
+    }
+
+    @Test
+    public void testUnindexedPackageIsScanned() throws IOException {
+        this.prepare("com.example.Elsewhere index\n");
+
+        this.loader.loadAll("/prefix", PACKAGE);
+
+        assertThat(this.entries).extracting(e -> e.getPath().getPath())
+                .containsExactlyInAnyOrder("/prefix/first", "/prefix/second");
+    }
+
+    private void prepare(final String index) throws IOException {
+        Files.writeString(this.indexFile, index, StandardCharsets.UTF_8);
+        final URL url = this.indexFile.toUri().toURL();
+
+        Thread.currentThread().setContextClassLoader(new ClassLoader(this.originalLoader) {
+            @Override
+            public Enumeration<URL> getResources(final String name) throws IOException {
+                if (RouteIndex.RESOURCE.equals(name)) {
+                    return Collections.enumeration(List.of(url));
+                }
+
+                return super.getResources(name);
+            }
+        });
+
+        final DependencyResolver di = Mockito.mock(DependencyResolver.class);
+        Mockito.when(di.get(IndexedController.class)).thenReturn(new IndexedController());
+
+        final Router router = new Router(null, null, null) {
+            @Override
+            public void addRoute(final RoutingEntry entry) {
+                ControllerLoaderTest.this.entries.add(entry);
+            }
+        };
+
+        this.loader = new ControllerLoader(di, router, new FastMimeParser(), new PathCompiler());
+    }
+
+    public static class IndexedController extends Controller {
+        @Route(path = "/first")
+        public Response first() {
+            return new EmptyResponse();
+        }
+
+        @Route(path = "/second")
+        public Response second() {
+            return new EmptyResponse();
+        }
+    }
 }
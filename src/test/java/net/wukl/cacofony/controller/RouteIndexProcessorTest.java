@@ -0,0 +1,130 @@
+package net.wukl.cacofony.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Luc Everse
+ */
+public class RouteIndexProcessorTest {
+    private Path directory;
+
+    @BeforeEach
+    public void before() throws IOException {
+        this.directory = Files.createTempDirectory("route-index");
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        final Path index = this.compile(
+                "Base",
+                "package com.example;\n"
+                + "import net.wukl.cacofony.controller.Controller;\n"
+                + "import net.wukl.cacofony.http.response.Response;\n"
+                + "import net.wukl.cacofony.route.Route;\n"
+                + "public abstract class Base extends Controller {\n"
+                + "    @Route(path = \"/base\")\n"
+                + "    public Response base() { return null; }\n"
+                + "    public static class Home extends Base {\n"
+                + "        @Route(path = \"/\")\n"
+                + "        @Route(path = \"/index\")\n"
+                + "        public Response index() { return null; }\n"
+                + "        @Route(path = \"/{id}\")\n"
+                + "        public <T extends Number> Response show(int id, T[] ts) { return null; }\n"
+                + "        public Response unrouted() { return null; }\n"
+                + "        @Route(path = \"/hidden\")\n"
+                + "        Response hidden() { return null; }\n"
+                + "    }\n"
+                + "}\n"
+        );
+
+        assertThat(Files.readAllLines(index)).filteredOn(l -> !l.startsWith("#")).containsExactly(
+                "com.example.Base$Home base",
+                "com.example.Base$Home index",
+                "com.example.Base$Home show int java.lang.Number[]"
+        );
+    }
+
+    @Test
+    public void testNoControllers() throws IOException {
+        final Path index = this.compile(
+                "Plain",
+                "package com.example;\n"
+                + "public class Plain {}\n"
+        );
+
+        assertThat(index).doesNotExist();
+    }
+
+    @Test
+    public void testIncrementalCompilationMergesIndex() throws IOException {
+        this.compile("First", this.controller("First", "first"));
+        this.compile("Second", this.controller("Second", "second"));
+        final Path index = this.compile("First", this.controller("First", "renamed"));
+
+        assertThat(Files.readAllLines(index)).filteredOn(l -> !l.startsWith("#")).containsExactly(
+                "com.example.First renamed",
+                "com.example.Second second"
+        );
+    }
+
+    @Test
+    public void testRemovedControllerIsDropped() throws IOException {
+        this.compile("First", this.controller("First", "first"));
+        final Path index = this.compile(
+                "First",
+                "package com.example;\n"
+                + "public class First {}\n"
+        );
+
+        assertThat(Files.readAllLines(index)).filteredOn(l -> !l.startsWith("#")).isEmpty();
+    }
+
+    private String controller(final String name, final String action) {
+        return "package com.example;\n"
+                + "import net.wukl.cacofony.controller.Controller;\n"
+                + "import net.wukl.cacofony.http.response.Response;\n"
+                + "import net.wukl.cacofony.route.Route;\n"
+                + "public class " + name + " extends Controller {\n"
+                + "    @Route(path = \"/" + action + "\")\n"
+                + "    public Response " + action + "() { return null; }\n"
+                + "}\n";
+    }
+
+    private Path compile(final String name, final String source) throws IOException {
+        final Path file = this.directory.resolve(name + ".java");
+        Files.writeString(file, source, StandardCharsets.UTF_8);
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final int result = compiler.run(
+                null, null, null,
+                "-proc:only",
+                "-processor", RouteIndexProcessor.class.getName(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", this.directory.toString(),
+                file.toString()
+        );
+        assertThat(result).isZero();
+
+        return this.directory.resolve(RouteIndex.RESOURCE);
+    }
+}
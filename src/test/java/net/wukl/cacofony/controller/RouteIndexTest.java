@@ -0,0 +1,78 @@
+package net.wukl.cacofony.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Luc Everse
+ */
+public class RouteIndexTest {
+    private RouteIndex index;
+
+    @BeforeEach
+    public void before() throws IOException {
+        this.index = new RouteIndex();
+        this.index.read(new StringReader(
+                "# A comment\n"
+                + "\n"
+                + "com.example.web.Home index\n"
+                + "com.example.web.Home show int java.lang.String[]\n"
+                + "com.example.web.admin.Panel index\n"
+                + "com.example.webshop.Cart index\n"
+                + "com.example.web.Home index\n"
+        ));
+    }
+
+    @Test
+    public void testControllersInPackage() {
+        assertThat(this.index.getControllers("com.example.web"))
+                .containsExactly("com.example.web.Home", "com.example.web.admin.Panel");
+    }
+
+    @Test
+    public void testControllersInDefaultPackage() {
+        assertThat(this.index.getControllers("")).hasSize(3);
+    }
+
+    @Test
+    public void testActions() {
+        assertThat(this.index.getActions("com.example.web.Home")).containsExactly(
+                new RouteIndex.Action("index", List.of()),
+                new RouteIndex.Action("show", List.of("int", "java.lang.String[]"))
+        );
+    }
+
+    @Test
+    public void testMalformedLine() {
+        assertThatThrownBy(() -> this.index.read(new StringReader("com.example.web.Home\n")))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testResolve() throws ReflectiveOperationException {
+        final var action = new RouteIndex.Action(
+                "getOrDefault", List.of("java.lang.Object", "java.lang.Object")
+        );
+
+        assertThat(action.resolve(Map.class, this.getClass().getClassLoader()))
+                .isEqualTo(Map.class.getMethod("getOrDefault", Object.class, Object.class));
+    }
+
+    @Test
+    public void testResolveTypes() throws ClassNotFoundException {
+        final ClassLoader loader = this.getClass().getClassLoader();
+
+        assertThat(RouteIndex.resolveType("long", loader)).isEqualTo(long.class);
+        assertThat(RouteIndex.resolveType("int[][]", loader)).isEqualTo(int[][].class);
+        assertThat(RouteIndex.resolveType("java.util.Map$Entry[]", loader))
+                .isEqualTo(Map.Entry[].class);
+    }
+}
@@ -0,0 +1,131 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DispatchQueueTest {
+    private Deque<Runnable> pool;
+    private List<Integer> ran;
+    private DispatchQueue queue;
+
+    @BeforeEach
+    public void before() {
+        this.pool = new ArrayDeque<>();
+        this.ran = new ArrayList<>();
+        this.queue = new DispatchQueue(this.pool::add, 2);
+    }
+
+    private Runnable task(final int id) {
+        return () -> this.ran.add(id);
+    }
+
+    private void runPool() {
+        while (!this.pool.isEmpty()) {
+            this.pool.poll().run();
+        }
+    }
+
+    @Test
+    public void testTasksBeyondQuotaWait() {
+        this.queue.submit(this.task(1));
+        this.queue.submit(this.task(2));
+        this.queue.submit(this.task(3));
+
+        assertThat(this.pool).hasSize(2);
+        assertThat(this.queue.getRunningCount()).isEqualTo(2);
+        assertThat(this.queue.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFinishedTaskStartsNextInOrder() {
+        for (int i = 1; i <= 5; ++i) {
+            this.queue.submit(this.task(i));
+        }
+
+        this.pool.poll().run();
+        assertThat(this.pool).hasSize(2);
+
+        this.runPool();
+        assertThat(this.ran).containsExactly(1, 2, 3, 4, 5);
+        assertThat(this.queue.getRunningCount()).isZero();
+    }
+
+    @Test
+    public void testCancelledTasksAreSkipped() {
+        this.queue.submit(this.task(1));
+        this.queue.submit(this.task(2));
+        final var cancelled = this.queue.submit(this.task(3));
+        this.queue.submit(this.task(4));
+
+        cancelled.cancel(true);
+        this.runPool();
+
+        assertThat(this.ran).containsExactly(1, 2, 4);
+        assertThat(this.queue.getRunningCount()).isZero();
+    }
+
+    @Test
+    public void testFailingTaskReleasesItsSlot() {
+        this.queue.submit(() -> {
+            throw new IllegalStateException("Fails");
+        });
+        this.queue.submit(this.task(2));
+        this.queue.submit(this.task(3));
+
+        this.runPool();
+
+        assertThat(this.ran).containsExactly(2, 3);
+    }
+
+    @Test
+    public void testRejectedHandOffCancelsQueuedTasks() {
+        final var refusing = new DispatchQueue(task -> {
+            if (!this.pool.isEmpty()) {
+                throw new RejectedExecutionException("Shut down");
+            }
+            this.pool.add(task);
+        }, 1);
+        refusing.submit(this.task(1));
+        final var second = refusing.submit(this.task(2));
+        final var third = refusing.submit(this.task(3));
+
+        // The pool rejects the hand-offs while the first task finishes.
+        this.pool.peek().run();
+
+        assertThat(this.ran).containsExactly(1);
+        assertThat(second.isCancelled()).isTrue();
+        assertThat(third.isCancelled()).isTrue();
+        assertThat(refusing.getRunningCount()).isZero();
+        assertThat(refusing.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void testCloseCancelsQueuedTasks() {
+        this.queue.submit(this.task(1));
+        this.queue.submit(this.task(2));
+        final var queued = this.queue.submit(this.task(3));
+
+        this.queue.close();
+        final var late = this.queue.submit(this.task(4));
+        this.runPool();
+
+        assertThat(this.ran).containsExactly(1, 2);
+        assertThat(queued.isCancelled()).isTrue();
+        assertThat(late.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testQuotaMustBePositive() {
+        assertThatThrownBy(() -> new DispatchQueue(this.pool::add, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
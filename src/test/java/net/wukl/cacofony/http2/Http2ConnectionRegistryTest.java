@@ -0,0 +1,87 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class Http2ConnectionRegistryTest {
+    private Http2ConnectionRegistry registry;
+
+    @BeforeEach
+    public void before() {
+        this.registry = new Http2ConnectionRegistry();
+    }
+
+    @Test
+    public void testDrainWaitsForConnectionsToClose() throws Exception {
+        final var protocol = mock(Http2Protocol.class);
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> this.registry.remove(protocol));
+            return null;
+        }).when(protocol).drain();
+        this.registry.add(protocol);
+
+        assertThat(this.registry.drain(5000)).isTrue();
+        assertThat(this.registry.getConnectionCount()).isZero();
+    }
+
+    @Test
+    public void testDrainTimesOut() throws Exception {
+        final var protocol = mock(Http2Protocol.class);
+        this.registry.add(protocol);
+
+        final var start = System.nanoTime();
+        assertThat(this.registry.drain(100)).isFalse();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(
+                TimeUnit.MILLISECONDS.toNanos(100)
+        );
+        verify(protocol).drain();
+        assertThat(this.registry.getConnectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConnectionAddedWhileDrainingIsDrained() throws Exception {
+        final var first = mock(Http2Protocol.class);
+        final var late = mock(Http2Protocol.class);
+        doAnswer(invocation -> {
+            this.registry.add(late);
+            this.registry.remove(first);
+            return null;
+        }).when(first).drain();
+        this.registry.add(first);
+
+        assertThat(this.registry.drain(100)).isFalse();
+        verify(late).drain();
+    }
+
+    @Test
+    public void testConnectionAddedAfterDrainingIsLeftAlone() throws Exception {
+        this.registry.drain(0);
+
+        final var protocol = mock(Http2Protocol.class);
+        this.registry.add(protocol);
+
+        verify(protocol, never()).drain();
+    }
+
+    @Test
+    public void testTrapClosesAllConnections() {
+        final var first = mock(Http2Protocol.class);
+        final var second = mock(Http2Protocol.class);
+        this.registry.add(first);
+        this.registry.add(second);
+
+        this.registry.trap();
+
+        verify(first).trap();
+        verify(second).trap();
+    }
+}
@@ -0,0 +1,330 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http.request.Header;
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.frame.FrameOutputBuffer;
+import net.wukl.cacofony.http2.frame.FrameReader;
+import net.wukl.cacofony.http2.frame.FrameType;
+import net.wukl.cacofony.http2.frame.FrameWriter;
+import net.wukl.cacofony.http2.hpack.Hpack;
+import net.wukl.cacofony.http2.hpack.huffman.Huffman;
+import net.wukl.cacofony.http2.stream.Stream;
+import net.wukl.cacofony.server.Connection;
+import net.wukl.cacofony.server.MutableServerSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class Http2ProtocolTest {
+    private static final String PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n";
+
+    private MutableServerSettings settings;
+    private Http2RequestHandler requestHandler;
+    private Http2Protocol protocol;
+
+    @BeforeEach
+    public void before() {
+        final var settings = new MutableServerSettings();
+        this.settings = settings;
+        this.requestHandler = mock(Http2RequestHandler.class);
+        final var hpack = new Hpack(new Huffman());
+        this.protocol = new Http2Protocol(
+                new FrameReader(hpack, new BufferPool(64, 4)),
+                new FrameWriter(settings),
+                mock(Http2RequestHandler.class),
+                mock(ExecutorService.class),
+                mock(Http2TaskScheduler.class),
+                new Http2ConnectionRegistry(),
+                settings,
+                hpack,
+                new Connection(
+                        null, 0,
+                        new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                        "http"
+                )
+        );
+    }
+
+    private static PushbackInputStream stream(final String content) {
+        return new PushbackInputStream(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)),
+                Http2Protocol.CLIENT_PREFACE_LENGTH
+        );
+    }
+
+    private static String remainder(final PushbackInputStream in) throws Exception {
+        return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testPrefaceIsDetected() throws Exception {
+        final var in = stream(PREFACE + "frames");
+
+        assertThat(Http2Protocol.startsWithPreface(in)).isTrue();
+        assertThat(remainder(in)).isEqualTo(PREFACE + "frames");
+    }
+
+    @Test
+    public void testHttp1RequestIsNotMistakenForPreface() throws Exception {
+        final var request = "GET / HTTP/1.1\r\nHost: example.com\r\n\r\n";
+        final var in = stream(request);
+
+        assertThat(Http2Protocol.startsWithPreface(in)).isFalse();
+        assertThat(remainder(in)).isEqualTo(request);
+    }
+
+    @Test
+    public void testTruncatedPrefaceIsNotAccepted() throws Exception {
+        final var in = stream("PRI * HTTP/2.0\r\n");
+
+        assertThat(Http2Protocol.startsWithPreface(in)).isFalse();
+        assertThat(remainder(in)).isEqualTo("PRI * HTTP/2.0\r\n");
+    }
+
+    @Test
+    public void testUpgradeSettingsAreAccepted() {
+        // SETTINGS_MAX_CONCURRENT_STREAMS = 100, SETTINGS_INITIAL_WINDOW_SIZE = 65535
+        final var headers = List.of(new Header(":method", "GET"), new Header(":path", "/"));
+
+        assertThatCode(() -> this.protocol.acceptUpgrade("AAMAAABkAAQAAP__", headers))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    public void testEmptyUpgradeSettingsAreAccepted() {
+        assertThatCode(() -> this.protocol.acceptUpgrade("", List.of()))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    public void testUpgradeSettingsMustBeBase64Url() {
+        assertThatThrownBy(() -> this.protocol.acceptUpgrade("AAMAAABk+AQAAP//", List.of()))
+                .isInstanceOf(Http2ProtocolError.class);
+    }
+
+    @Test
+    public void testUpgradeSettingsMustBeWhole() {
+        assertThatThrownBy(() -> this.protocol.acceptUpgrade("AAMAAA", List.of()))
+                .isInstanceOf(Http2ConnectionError.class);
+    }
+
+    @Test
+    public void testUpgradeSettingsAreValidated() {
+        // SETTINGS_INITIAL_WINDOW_SIZE = 2^31
+        assertThatThrownBy(() -> this.protocol.acceptUpgrade("AASAAAAA", List.of()))
+                .isInstanceOf(Http2FlowControlError.class);
+    }
+
+    private static void frame(final ByteArrayOutputStream out, final FrameType type,
+                              final int flags, final int streamId, final byte[] payload)
+            throws Exception {
+        final var buffer = new FrameOutputBuffer(out);
+        buffer.writeHeader(payload.length, type.getValue(), (byte) flags, streamId);
+        buffer.write(payload);
+        buffer.flush();
+    }
+
+    private byte[] exchange(final ByteArrayInputStream in) throws Throwable {
+        final var executor = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+        final var scheduler = new Http2TaskScheduler(
+                executor, Executors.newSingleThreadScheduledExecutor()
+        );
+
+        final var hpack = new Hpack(new Huffman());
+        final var out = new ByteArrayOutputStream();
+        final var protocol = new Http2Protocol(
+                new FrameReader(hpack, new BufferPool(64, 4)),
+                new FrameWriter(this.settings),
+                this.requestHandler,
+                executor,
+                scheduler,
+                new Http2ConnectionRegistry(),
+                this.settings,
+                hpack,
+                new Connection(null, 0, in, out, "http")
+        );
+
+        try {
+            protocol.handle();
+        } finally {
+            scheduler.close();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static ByteArrayOutputStream handshake() throws Exception {
+        final var client = new ByteArrayOutputStream();
+        client.write(PREFACE.getBytes(StandardCharsets.US_ASCII));
+        frame(client, FrameType.SETTINGS, 0, 0, new byte[0]);
+        frame(client, FrameType.SETTINGS, 1, 0, new byte[0]);
+
+        return client;
+    }
+
+    @Test
+    public void testClientSettingsAreAcknowledged() throws Throwable {
+        final var client = handshake();
+
+        final var server = this.exchange(new ByteArrayInputStream(client.toByteArray()));
+
+        // The client's settings are acknowledged with an empty SETTINGS frame with the ACK flag.
+        assertThat(server).containsSequence(new byte[] {
+                0x00, 0x00, 0x00,
+                FrameType.SETTINGS.getValue(),
+                0x01,
+                0x00, 0x00, 0x00, 0x00
+        });
+    }
+
+    private void sendContinued(final int continuations) throws Throwable {
+        this.settings.setMaxHeaderListSize(100);
+        final var client = handshake();
+        frame(client, FrameType.HEADERS, 0, 1, new byte[] {(byte) 0x82});
+        for (int i = 0; i < continuations; ++i) {
+            frame(client, FrameType.CONTINUATION, 0, 1, new byte[0]);
+        }
+        frame(client, FrameType.CONTINUATION, 0b0000_0100, 1, new byte[0]);
+
+        this.exchange(new ByteArrayInputStream(client.toByteArray()));
+    }
+
+    @Test
+    public void testContinuedHeaderBlockIsHandled() throws Throwable {
+        this.sendContinued(5);
+
+        verify(this.requestHandler).handleRequest(any(), any(), any());
+    }
+
+    @Test
+    public void testContinuationFloodIsRejected() throws Throwable {
+        this.sendContinued(20);
+
+        verify(this.requestHandler, never()).handleRequest(any(), any(), any());
+    }
+
+    @Test
+    public void testStreamWindowIsAtLeastTheInitialWindow() throws Throwable {
+        this.settings.setInitialWindowSize(1024);
+        final var client = handshake();
+        frame(client, FrameType.HEADERS, 0b0000_0100, 1, new byte[] {(byte) 0x82});
+        frame(client, FrameType.DATA, 0b0000_0001, 1, new byte[4096]);
+
+        final var server = this.exchange(new ByteArrayInputStream(client.toByteArray()));
+
+        // The server advertises the initial window, and the data sent within it is accepted.
+        assertThat(server).containsSequence(new byte[] {
+                0x00, 0x04, 0x00, 0x00, (byte) 0xFF, (byte) 0xFF
+        });
+        assertThat(new String(server, StandardCharsets.ISO_8859_1)).doesNotContain(
+                new String(new byte[] {0x00, 0x00, 0x08, FrameType.GOAWAY.getValue()},
+                        StandardCharsets.ISO_8859_1
+                )
+        );
+    }
+
+    @Test
+    public void testUppercaseHeaderNameResetsStream() throws Throwable {
+        final var client = handshake();
+        frame(client, FrameType.HEADERS, 0b0000_0101, 1, new byte[] {
+                (byte) 0x82, 0x00, 0x03, 'K', 'e', 'y', 0x01, 'v'
+        });
+
+        final var server = this.exchange(new ByteArrayInputStream(client.toByteArray()));
+
+        verify(this.requestHandler, never()).handleRequest(any(), any(), any());
+        assertThat(server).containsSequence(new byte[] {
+                0x00, 0x00, 0x04,
+                FrameType.RST_STREAM.getValue(),
+                0x00,
+                0x00, 0x00, 0x00, 0x01,
+                0x00, 0x00, 0x00, (byte) ErrorCode.PROTOCOL_ERROR.getCode()
+        });
+    }
+
+    private static List<Header> promise(final String path) {
+        return List.of(
+                new Header(":method", "GET"),
+                new Header(":scheme", "https"),
+                new Header(":authority", "example.com"),
+                new Header(":path", path)
+        );
+    }
+
+    private static Stream stream(final int id) {
+        return new Stream(id, 65535, 65535, (stream, bytes) -> { });
+    }
+
+    @Test
+    public void testPushIsPromisedOnClientStream() {
+        assertThat(this.protocol.push(stream(1), promise("/style.css"), null)).isTrue();
+    }
+
+    @Test
+    public void testResourceIsPushedOnce() {
+        final var associated = stream(1);
+
+        assertThat(this.protocol.push(associated, promise("/style.css"), null)).isTrue();
+        assertThat(this.protocol.push(stream(3), promise("/style.css"), null)).isFalse();
+    }
+
+    @Test
+    public void testPushedStreamCannotPush() {
+        assertThat(this.protocol.push(stream(2), promise("/style.css"), null)).isFalse();
+    }
+
+    @Test
+    public void testPushesAreLimited() {
+        this.settings.setMaxConcurrentPushes(1);
+        final var associated = stream(1);
+
+        assertThat(this.protocol.push(associated, promise("/style.css"), null)).isTrue();
+        assertThat(this.protocol.push(associated, promise("/script.js"), null)).isFalse();
+    }
+
+    @Test
+    public void testEndedPushMakesRoom() {
+        this.settings.setMaxConcurrentPushes(1);
+        final var associated = stream(1);
+        this.protocol.push(associated, promise("/style.css"), null);
+
+        this.protocol.sendHeaders(2, List.of(new Header(":status", "204")), true);
+
+        assertThat(this.protocol.push(associated, promise("/script.js"), null)).isTrue();
+    }
+
+    @Test
+    public void testClientCanDisablePush() throws Exception {
+        // SETTINGS_ENABLE_PUSH = 0
+        this.protocol.acceptUpgrade("AAIAAAAA", List.of());
+
+        assertThat(this.protocol.push(stream(1), promise("/style.css"), null)).isFalse();
+    }
+
+    @Test
+    public void testInvalidEnablePushIsRejected() {
+        // SETTINGS_ENABLE_PUSH = 2
+        assertThatThrownBy(() -> this.protocol.acceptUpgrade("AAIAAAAC", List.of()))
+                .isInstanceOf(Http2ProtocolError.class);
+    }
+}
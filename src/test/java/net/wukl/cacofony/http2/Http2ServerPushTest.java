@@ -0,0 +1,85 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http.request.Header;
+import net.wukl.cacofony.http2.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class Http2ServerPushTest {
+    private Http2Protocol protocol;
+    private Stream stream;
+    private Http2ServerPush push;
+
+    @BeforeEach
+    public void before() {
+        this.protocol = mock(Http2Protocol.class);
+        this.stream = new Stream(1, 65535, 65535, (stream, bytes) -> { });
+        this.stream.setHeaders(List.of(
+                new Header(":method", "GET"),
+                new Header(":scheme", "https"),
+                new Header(":authority", "example.com"),
+                new Header(":path", "/index.html"),
+                new Header("accept-encoding", "gzip"),
+                new Header("cookie", "session=secret")
+        ));
+        this.push = new Http2ServerPush(this.protocol, this.stream, true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPromiseCopiesRequestContext() {
+        when(this.protocol.push(any(), anyList(), any())).thenReturn(true);
+        final ArgumentCaptor<List<Header>> captor = ArgumentCaptor.forClass(List.class);
+
+        assertThat(this.push.push("/style.css", null)).isTrue();
+
+        verify(this.protocol).push(eq(this.stream), captor.capture(), eq(null));
+        assertThat(captor.getValue()).extracting(Header::getKey, Header::getFirstValue)
+                .containsExactly(
+                        tuple(":method", "GET"),
+                        tuple(":scheme", "https"),
+                        tuple(":authority", "example.com"),
+                        tuple("accept-encoding", "gzip"),
+                        tuple(":path", "/style.css")
+                );
+    }
+
+    @Test
+    public void testOtherOriginsAreNotPushed() {
+        assertThat(this.push.push("//cdn.example.com/style.css", null)).isFalse();
+        assertThat(this.push.push("https://cdn.example.com/style.css", null)).isFalse();
+
+        verify(this.protocol, never()).push(any(), anyList(), any());
+    }
+
+    @Test
+    public void testPreloadTargets() {
+        final var targets = Http2ServerPush.getPreloadTargets(List.of(
+                "</style.css>; rel=preload; as=style, </next.html>; rel=prefetch",
+                "</app.js>; rel=\"modulepreload preload\"; as=script",
+                "</font.woff2>; rel=preload; as=font; nopush"
+        ));
+
+        assertThat(targets).containsExactly("/style.css", "/app.js");
+    }
+
+    @Test
+    public void testPreloadRelIsCaseInsensitive() {
+        final var targets = Http2ServerPush.getPreloadTargets(List.of("</a.css>; REL=Preload"));
+
+        assertThat(targets).containsExactly("/a.css");
+    }
+}
@@ -0,0 +1,142 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Http2TaskSchedulerTest {
+    private ExecutorService executor;
+    private Http2TaskScheduler scheduler;
+
+    @BeforeEach
+    public void before() {
+        this.executor = Executors.newCachedThreadPool();
+        this.scheduler = new Http2TaskScheduler(
+                this.executor, Executors.newSingleThreadScheduledExecutor()
+        );
+    }
+
+    @AfterEach
+    public void after() {
+        this.scheduler.close();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testTaskRunsOnlyWhenWoken() throws Exception {
+        final var ran = new CountDownLatch(1);
+        final var registration = this.scheduler.register(ran::countDown, 1000, () -> { });
+
+        assertThat(ran.await(50, TimeUnit.MILLISECONDS)).isFalse();
+
+        registration.wake();
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testWakeUpsDuringRunAreNotLost() throws Exception {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var second = new CountDownLatch(1);
+        final var runs = new AtomicInteger(0);
+        final var registration = this.scheduler.register(() -> {
+            if (runs.incrementAndGet() == 1) {
+                started.countDown();
+                awaitQuietly(release);
+            } else {
+                second.countDown();
+            }
+        }, 1000, () -> { });
+
+        registration.wake();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        registration.wake();
+        registration.wake();
+        release.countDown();
+
+        assertThat(second.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    public void testDelayedWakeUp() throws Exception {
+        final var ran = new CountDownLatch(1);
+        final var registration = this.scheduler.register(ran::countDown, 1000, () -> { });
+
+        registration.wakeAfter(20);
+
+        assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testLaterDelayReplacesEarlierOne() throws Exception {
+        final var ran = new CountDownLatch(1);
+        final var registration = this.scheduler.register(ran::countDown, 1000, () -> { });
+
+        registration.wakeAfter(20);
+        registration.wakeAfter(60000);
+
+        assertThat(ran.await(200, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun() throws Exception {
+        final var ran = new CountDownLatch(1);
+        final var registration = this.scheduler.register(ran::countDown, 1000, () -> { });
+        assertThat(this.scheduler.getRegistrationCount()).isEqualTo(1);
+
+        registration.cancel();
+        registration.wake();
+        registration.wakeAfter(1);
+
+        assertThat(ran.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(this.scheduler.getRegistrationCount()).isZero();
+    }
+
+    @Test
+    public void testClosedSchedulerWakesNothing() throws Exception {
+        final var ran = new CountDownLatch(1);
+        final var registration = this.scheduler.register(ran::countDown, 1000, () -> { });
+
+        this.scheduler.close();
+        registration.wake();
+
+        assertThat(ran.await(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(this.scheduler.getRegistrationCount()).isZero();
+    }
+
+    @Test
+    public void testStalledTaskIsReportedOnce() throws Exception {
+        final var release = new CountDownLatch(1);
+        final var stalls = new AtomicInteger(0);
+        final var stalled = new CountDownLatch(1);
+        final var registration = this.scheduler.register(() -> awaitQuietly(release), 10, () -> {
+            stalls.incrementAndGet();
+            stalled.countDown();
+        });
+
+        registration.wake();
+
+        assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(1500);
+        release.countDown();
+        assertThat(stalls).hasValue(1);
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.frame.DataFrame;
+import net.wukl.cacofony.http2.frame.Frame;
+import net.wukl.cacofony.http2.frame.FrameFlag;
+import net.wukl.cacofony.http2.frame.PingFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OutboundSchedulerTest {
+    private Window connectionWindow;
+    private OutboundScheduler scheduler;
+
+    @BeforeEach
+    public void before() {
+        this.connectionWindow = new Window(0, 65535);
+        this.scheduler = new OutboundScheduler(this.connectionWindow, 16);
+    }
+
+    @Test
+    public void testDataIsSplitByFrameSize() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+
+        this.scheduler.submit(1, new byte[40], 0, 40, true);
+
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(16);
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(16);
+
+        final var last = this.nextData();
+        assertThat(last.getPayloadLength()).isEqualTo(8);
+        assertThat(last.getFlags()).containsExactly(FrameFlag.END_STREAM);
+        assertThat(this.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testStreamParksUntilWindowUpdate() throws Exception {
+        final var window = new Window(0, 10);
+        this.scheduler.open(1, window);
+
+        this.scheduler.submit(1, new byte[15], 0, 15, true);
+
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(10);
+        assertThat(this.hasNext()).isFalse();
+
+        this.scheduler.windowUpdate(1, 100);
+
+        final var last = this.nextData();
+        assertThat(last.getPayloadLength()).isEqualTo(5);
+        assertThat(last.getFlags()).contains(FrameFlag.END_STREAM);
+        assertThat(window.getRemote()).isEqualTo(95);
+    }
+
+    @Test
+    public void testConnectionWindowLimitsAllStreams() throws Exception {
+        this.connectionWindow.acquireRemote(65535 - 12);
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.open(3, new Window(0, 100));
+
+        this.scheduler.submit(1, new byte[10], 0, 10, false);
+        this.scheduler.submit(3, new byte[10], 0, 10, false);
+
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(10);
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(2);
+        assertThat(this.hasNext()).isFalse();
+
+        this.scheduler.windowUpdate(0, 100);
+
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(8);
+    }
+
+    @Test
+    public void testIncrementalStreamsTakeTurns() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.open(3, new Window(0, 100));
+        this.scheduler.prioritize(1, new Priority(3, true));
+        this.scheduler.prioritize(3, new Priority(3, true));
+
+        this.scheduler.submit(1, new byte[32], 0, 32, false);
+        this.scheduler.submit(3, new byte[32], 0, 32, false);
+
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+    }
+
+    @Test
+    public void testNonIncrementalStreamsGoInOrder() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.open(3, new Window(0, 100));
+
+        this.scheduler.submit(3, new byte[32], 0, 32, true);
+        this.scheduler.submit(1, new byte[32], 0, 32, true);
+
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+    }
+
+    @Test
+    public void testUrgentStreamsGoFirst() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.open(3, new Window(0, 100));
+        this.scheduler.open(5, new Window(0, 100));
+        this.scheduler.prioritize(3, new Priority(0, false));
+        this.scheduler.prioritize(5, new Priority(1, true));
+
+        this.scheduler.submit(1, new byte[16], 0, 16, true);
+        this.scheduler.submit(5, new byte[16], 0, 16, true);
+        this.scheduler.submit(3, new byte[16], 0, 16, true);
+
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.nextData().getStreamId()).isEqualTo(5);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReprioritizeQueuedStream() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.open(3, new Window(0, 100));
+
+        this.scheduler.submit(1, new byte[32], 0, 32, true);
+        this.scheduler.submit(3, new byte[32], 0, 32, true);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+
+        this.scheduler.prioritize(1, new Priority(7, false));
+
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+    }
+
+    @Test
+    public void testBlockedStreamDoesNotHoldUpOthers() throws Exception {
+        this.scheduler.open(1, new Window(0, 0));
+        this.scheduler.open(3, new Window(0, 100));
+        this.scheduler.prioritize(1, new Priority(0, false));
+
+        this.scheduler.submit(1, new byte[8], 0, 8, true);
+        this.scheduler.submit(3, new byte[8], 0, 8, true);
+
+        assertThat(this.nextData().getStreamId()).isEqualTo(3);
+        assertThat(this.hasNext()).isFalse();
+
+        this.scheduler.windowUpdate(1, 8);
+        assertThat(this.nextData().getStreamId()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFramesReferencePooledBuffers() throws Exception {
+        final var pool = new BufferPool(64, 4);
+        final var buffer = pool.acquire();
+        buffer.write(new byte[40], 0, 40);
+
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.submit(1, buffer, true);
+
+        final var first = this.nextData();
+        final var second = this.nextData();
+        final var last = this.nextData();
+        assertThat(first.getArray()).isSameAs(buffer.array());
+        assertThat(last.getArray()).isSameAs(buffer.array());
+        assertThat(last.getOffset()).isEqualTo(32);
+
+        first.release();
+        second.release();
+        assertThat(pool.getIdleCount()).isZero();
+
+        last.release();
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancelReleasesBuffers() throws Exception {
+        final var pool = new BufferPool(64, 4);
+        final var buffer = pool.acquire();
+        buffer.write(new byte[40], 0, 40);
+
+        this.scheduler.open(1, new Window(0, 0));
+        this.scheduler.submit(1, buffer, false);
+        this.scheduler.cancel(1);
+
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThatThrownBy(() -> this.scheduler.submit(1, pool.acquire(), false))
+                .isInstanceOf(IOException.class);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testControlFramesGoFirst() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.submit(1, new byte[4], 0, 4, false);
+
+        final var ping = new PingFrame(false, new byte[8]);
+        this.scheduler.enqueue(ping);
+
+        assertThat(this.scheduler.next()).isSameAs(ping);
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(4);
+    }
+
+    @Test
+    public void testShrunkInitialWindow() throws Exception {
+        final var window = new Window(0, 10);
+        this.scheduler.open(1, window);
+
+        this.scheduler.adjustInitialWindow(-15);
+        this.scheduler.submit(1, new byte[4], 0, 4, false);
+        assertThat(this.hasNext()).isFalse();
+
+        this.scheduler.windowUpdate(1, 7);
+        assertThat(this.nextData().getPayloadLength()).isEqualTo(2);
+    }
+
+    @Test
+    public void testWindowOverflow() {
+        this.scheduler.open(1, new Window(0, 100));
+
+        assertThatThrownBy(() -> this.scheduler.windowUpdate(1, Window.MAX_SIZE))
+                .isInstanceOf(Http2FlowControlError.class);
+    }
+
+    @Test
+    public void testCancelWakesProducer() throws Exception {
+        this.scheduler.open(1, new Window(0, 0));
+
+        final var producer = CompletableFuture.runAsync(() -> {
+            try {
+                this.scheduler.submit(1, new byte[70000], 0, 70000, false);
+                this.scheduler.submit(1, new byte[10], 0, 10, false);
+            } catch (final IOException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        Thread.sleep(50);
+        assertThat(producer).isNotDone();
+
+        this.scheduler.cancel(1);
+
+        assertThatThrownBy(() -> producer.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testSubmitAfterEndFails() throws Exception {
+        this.scheduler.open(1, new Window(0, 100));
+        this.scheduler.submit(1, new byte[0], 0, 0, true);
+
+        assertThatThrownBy(() -> this.scheduler.submit(1, new byte[1], 0, 1, false))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testParkedDataKeepsSchedulerBusy() throws Exception {
+        assertThat(this.scheduler.isIdle()).isTrue();
+
+        this.scheduler.open(1, new Window(0, 10));
+        assertThat(this.scheduler.isIdle()).isTrue();
+
+        this.scheduler.submit(1, new byte[15], 0, 15, true);
+        this.nextData();
+        assertThat(this.scheduler.isIdle()).isFalse();
+
+        this.scheduler.windowUpdate(1, 100);
+        this.nextData();
+        assertThat(this.scheduler.isIdle()).isTrue();
+    }
+
+    @Test
+    public void testListenerIsToldAboutNewFrames() throws Exception {
+        final var calls = new AtomicInteger(0);
+        final var scheduler = new OutboundScheduler(
+                this.connectionWindow, 16, calls::incrementAndGet
+        );
+        scheduler.open(1, new Window(0, 0));
+
+        scheduler.enqueue(new PingFrame(false, new byte[8]));
+        assertThat(calls).hasValue(1);
+
+        scheduler.submit(1, new byte[4], 0, 4, true);
+        assertThat(calls).hasValue(2);
+
+        scheduler.windowUpdate(1, 100);
+        assertThat(calls).hasValue(3);
+        assertThat(scheduler.poll()).isInstanceOf(PingFrame.class);
+        assertThat(scheduler.poll()).isInstanceOf(DataFrame.class);
+    }
+
+    @Test
+    public void testPaddingCountsAgainstWindows() throws Exception {
+        final var scheduler = new OutboundScheduler(
+                this.connectionWindow, 16, () -> { }, (length, limit) -> 4
+        );
+        final var window = new Window(0, 100);
+        scheduler.open(1, window);
+
+        scheduler.submit(1, new byte[10], 0, 10, true);
+
+        final var frame = (DataFrame) scheduler.poll();
+        assertThat(frame.getPayloadLength()).isEqualTo(10);
+        assertThat(frame.getPaddingLength()).isEqualTo(4);
+        assertThat(frame.getFlowControlledLength()).isEqualTo(14);
+        assertThat(window.getRemote()).isEqualTo(86);
+        assertThat(this.connectionWindow.getRemote()).isEqualTo(65535 - 14);
+    }
+
+    @Test
+    public void testPaddingShrinksToFitWindow() throws Exception {
+        final var scheduler = new OutboundScheduler(
+                this.connectionWindow, 16, () -> { }, (length, limit) -> 4
+        );
+        final var window = new Window(0, 3);
+        scheduler.open(1, window);
+
+        scheduler.submit(1, new byte[10], 0, 10, true);
+
+        final var first = (DataFrame) scheduler.poll();
+        assertThat(first.getPayloadLength()).isEqualTo(1);
+        assertThat(first.getFlowControlledLength()).isEqualTo(3);
+        assertThat(window.getRemote()).isZero();
+
+        scheduler.windowUpdate(1, 1);
+
+        final var second = (DataFrame) scheduler.poll();
+        assertThat(second.getPayloadLength()).isEqualTo(1);
+        assertThat(second.getPaddingLength()).isZero();
+    }
+
+    @Test
+    public void testPaddingStaysWithinFrameSize() throws Exception {
+        final var scheduler = new OutboundScheduler(
+                this.connectionWindow, 16, () -> { }, (length, limit) -> limit
+        );
+        scheduler.open(1, new Window(0, 100));
+
+        scheduler.submit(1, new byte[12], 0, 12, true);
+
+        final var frame = (DataFrame) scheduler.poll();
+        assertThat(frame.getPayloadLength()).isEqualTo(12);
+        assertThat(frame.getFlowControlledLength()).isEqualTo(16);
+    }
+
+    private DataFrame nextData() throws InterruptedException {
+        final Frame frame = this.scheduler.next();
+        assertThat(frame).isInstanceOf(DataFrame.class);
+        return (DataFrame) frame;
+    }
+
+    private boolean hasNext() {
+        return this.scheduler.poll() != null;
+    }
+
+    @Test
+    public void testTimedNextGivesUpWithoutClosing() throws Exception {
+        assertThat(this.scheduler.next(10)).isNull();
+        assertThat(this.scheduler.isClosed()).isFalse();
+
+        this.scheduler.enqueue(new PingFrame(false, new byte[8]));
+        assertThat(this.scheduler.next(10)).isInstanceOf(PingFrame.class);
+
+        this.scheduler.close();
+        assertThat(this.scheduler.next(1000)).isNull();
+        assertThat(this.scheduler.isClosed()).isTrue();
+    }
+}
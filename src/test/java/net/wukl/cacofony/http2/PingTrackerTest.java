@@ -0,0 +1,90 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PingTrackerTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private PingTracker tracker;
+
+    @BeforeEach
+    public void before() {
+        this.tracker = new PingTracker();
+    }
+
+    @Test
+    public void testOnePingAtATime() {
+        final var ping = this.tracker.start(0);
+
+        assertThat(ping.getFlags()).isEmpty();
+        assertThat(ping.getPayload()).hasSize(8);
+        assertThat(this.tracker.isOutstanding()).isTrue();
+        assertThat(this.tracker.start(MS)).isNull();
+    }
+
+    @Test
+    public void testAcknowledgementMeasuresRoundTrip() {
+        final var ping = this.tracker.start(0);
+        this.tracker.received(1000);
+        this.tracker.received(500);
+
+        assertThat(this.tracker.acknowledge(ping.getPayload(), 40 * MS)).isEqualTo(1500);
+        assertThat(this.tracker.isOutstanding()).isFalse();
+        assertThat(this.tracker.getRoundTripTime()).isEqualTo(40 * MS);
+    }
+
+    @Test
+    public void testRoundTripTimeIsSmoothed() {
+        this.tracker.acknowledge(this.tracker.start(0).getPayload(), 80 * MS);
+        this.tracker.acknowledge(this.tracker.start(100 * MS).getPayload(), 116 * MS);
+
+        assertThat(this.tracker.getRoundTripTime()).isEqualTo(72 * MS);
+    }
+
+    @Test
+    public void testForeignAcknowledgementIsIgnored() {
+        final var old = this.tracker.start(0);
+        this.tracker.acknowledge(old.getPayload(), MS);
+        this.tracker.start(2 * MS);
+
+        assertThat(this.tracker.acknowledge(old.getPayload(), 3 * MS)).isEqualTo(-1);
+        assertThat(this.tracker.acknowledge(new byte[8], 3 * MS)).isEqualTo(-1);
+        assertThat(this.tracker.isOutstanding()).isTrue();
+    }
+
+    @Test
+    public void testDataIsOnlyCountedWhilePingIsUnderway() {
+        this.tracker.received(1000);
+        final var ping = this.tracker.start(0);
+
+        assertThat(this.tracker.acknowledge(ping.getPayload(), MS)).isZero();
+    }
+
+    @Test
+    public void testAcknowledgedSequence() {
+        final var sequence = this.tracker.getSentCount();
+        assertThat(this.tracker.isAcknowledged(sequence)).isFalse();
+
+        final var ping = this.tracker.start(0);
+        assertThat(this.tracker.getSentCount()).isEqualTo(sequence + 1);
+        assertThat(this.tracker.isAcknowledged(sequence)).isFalse();
+
+        this.tracker.acknowledge(ping.getPayload(), MS);
+        assertThat(this.tracker.isAcknowledged(sequence)).isTrue();
+        assertThat(this.tracker.isAcknowledged(sequence + 1)).isFalse();
+    }
+
+    @Test
+    public void testTimeSinceSent() {
+        assertThat(this.tracker.getSinceSent(0)).isEqualTo(Long.MAX_VALUE);
+
+        this.tracker.start(5 * MS);
+
+        assertThat(this.tracker.getSinceSent(12 * MS)).isEqualTo(7 * MS);
+    }
+}
@@ -0,0 +1,54 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PriorityTest {
+    @Test
+    public void testDefault() {
+        assertThat(Priority.parse(null)).isEqualTo(Priority.DEFAULT);
+        assertThat(Priority.parse("")).isEqualTo(Priority.DEFAULT);
+        assertThat(Priority.DEFAULT.getUrgency()).isEqualTo(3);
+        assertThat(Priority.DEFAULT.isIncremental()).isFalse();
+    }
+
+    @Test
+    public void testUrgencyAndIncremental() {
+        final var priority = Priority.parse("u=1, i");
+
+        assertThat(priority.getUrgency()).isEqualTo(1);
+        assertThat(priority.isIncremental()).isTrue();
+    }
+
+    @Test
+    public void testExplicitBooleans() {
+        assertThat(Priority.parse("i=?1").isIncremental()).isTrue();
+        assertThat(Priority.parse("i, i=?0").isIncremental()).isFalse();
+    }
+
+    @Test
+    public void testInvalidMembersAreIgnored() {
+        final var priority = Priority.parse("u=9, i=yes, foo=bar, u=x");
+
+        assertThat(priority).isEqualTo(Priority.DEFAULT);
+    }
+
+    @Test
+    public void testLastMemberWins() {
+        assertThat(Priority.parse("u=5,u=0").getUrgency()).isEqualTo(0);
+    }
+
+    @Test
+    public void testToString() {
+        assertThat(new Priority(0, true).toString()).isEqualTo("u=0, i");
+        assertThat(Priority.parse(new Priority(6, false).toString()).getUrgency()).isEqualTo(6);
+    }
+
+    @Test
+    public void testUrgencyOutOfRange() {
+        assertThatThrownBy(() -> new Priority(8, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,69 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReceiveWindowTest {
+    @Test
+    public void testRejectsOverrun() {
+        final var window = new ReceiveWindow(100);
+
+        assertThat(window.receive(60)).isTrue();
+        assertThat(window.receive(41)).isFalse();
+        assertThat(window.receive(40)).isTrue();
+        assertThat(window.getAvailable()).isZero();
+    }
+
+    @Test
+    public void testCoalescesConsumption() {
+        final var window = new ReceiveWindow(100);
+        window.receive(100);
+
+        assertThat(window.consume(20)).isZero();
+        assertThat(window.consume(20)).isZero();
+        assertThat(window.getAvailable()).isZero();
+
+        assertThat(window.consume(15)).isEqualTo(55);
+        assertThat(window.getAvailable()).isEqualTo(55);
+
+        assertThat(window.consume(10)).isZero();
+    }
+
+    @Test
+    public void testCustomThreshold() {
+        final var window = new ReceiveWindow(100, 10);
+        window.receive(30);
+
+        assertThat(window.consume(9)).isZero();
+        assertThat(window.consume(1)).isEqualTo(10);
+        assertThat(window.getAvailable()).isEqualTo(80);
+    }
+
+    @Test
+    public void testPeerNeverBlockedWhileApplicationKeepsUp() {
+        final var window = new ReceiveWindow(100);
+
+        var announced = 0;
+        for (var i = 0; i < 1000; ++i) {
+            assertThat(window.receive(7)).isTrue();
+            announced += window.consume(7);
+        }
+
+        assertThat(window.getAvailable()).isEqualTo(100 - 7000 + announced);
+        assertThat(window.getAvailable()).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    public void testGrowOpensDifferenceRightAway() {
+        final var window = new ReceiveWindow(100);
+        window.receive(100);
+
+        assertThat(window.grow(300)).isEqualTo(200);
+        assertThat(window.getSize()).isEqualTo(300);
+        assertThat(window.getAvailable()).isEqualTo(200);
+
+        assertThat(window.consume(100)).isZero();
+        assertThat(window.consume(50)).isEqualTo(150);
+    }
+}
@@ -0,0 +1,72 @@
+package net.wukl.cacofony.http2;
+
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.buffer.PooledBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ResponseBodyStreamTest {
+    private Http2Protocol protocol;
+    private BufferPool pool;
+    private ResponseBodyStream stream;
+
+    @BeforeEach
+    public void before() {
+        this.protocol = Mockito.mock(Http2Protocol.class);
+        Mockito.when(this.protocol.getMaxFrameSize()).thenReturn(16);
+        this.pool = new BufferPool(32, 4);
+        this.stream = new ResponseBodyStream(this.protocol, 5, this.pool);
+    }
+
+    @Test
+    public void testSmallWritesAreCollected() throws Exception {
+        for (int i = 0; i < 10; ++i) {
+            this.stream.write(i);
+        }
+        Mockito.verify(this.protocol, Mockito.never())
+                .sendData(Mockito.anyInt(), Mockito.any(), Mockito.anyBoolean());
+
+        this.stream.close();
+
+        final var captor = ArgumentCaptor.forClass(PooledBuffer.class);
+        Mockito.verify(this.protocol).sendData(Mockito.eq(5), captor.capture(), Mockito.eq(true));
+        assertThat(captor.getValue().length()).isEqualTo(10);
+    }
+
+    @Test
+    public void testBuffersAreSubmittedPerFrame() throws Exception {
+        this.stream.write(new byte[40], 0, 40);
+
+        final var captor = ArgumentCaptor.forClass(PooledBuffer.class);
+        Mockito.verify(this.protocol, Mockito.times(2))
+                .sendData(Mockito.eq(5), captor.capture(), Mockito.eq(false));
+        assertThat(captor.getAllValues()).extracting(PooledBuffer::length).containsExactly(16, 16);
+
+        this.stream.flush();
+        Mockito.verify(this.protocol, Mockito.times(3))
+                .sendData(Mockito.eq(5), captor.capture(), Mockito.eq(false));
+        assertThat(captor.getValue().length()).isEqualTo(8);
+    }
+
+    @Test
+    public void testCloseWithoutDataEndsStream() throws Exception {
+        this.stream.close();
+        this.stream.close();
+
+        Mockito.verify(this.protocol).sendData(5, null, true);
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        this.stream.close();
+
+        assertThatThrownBy(() -> this.stream.write(1)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,38 @@
+package net.wukl.cacofony.http2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WindowTest {
+    @Test
+    public void testAcquirePartially() {
+        final var window = new Window(0, 10);
+
+        assertThat(window.acquireRemote(4)).isEqualTo(4);
+        assertThat(window.acquireRemote(10)).isEqualTo(6);
+        assertThat(window.acquireRemote(1)).isEqualTo(0);
+    }
+
+    @Test
+    public void testNegativeWindow() {
+        final var window = new Window(0, 10);
+
+        window.adjustRemote(-20);
+        assertThat(window.getRemote()).isEqualTo(-10);
+        assertThat(window.acquireRemote(1)).isEqualTo(0);
+
+        window.topOffRemote(15);
+        assertThat(window.acquireRemote(10)).isEqualTo(5);
+    }
+
+    @Test
+    public void testOverflow() {
+        final var window = new Window(0, 1);
+
+        assertThatThrownBy(() -> window.topOffRemote(Window.MAX_SIZE))
+                .isInstanceOf(Http2FlowControlError.class);
+        assertThat(window.getRemote()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,81 @@
+package net.wukl.cacofony.http2.buffer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BufferPoolTest {
+    private BufferPool pool;
+
+    @BeforeEach
+    public void before() {
+        this.pool = new BufferPool(64, 2);
+    }
+
+    @Test
+    public void testReleasedArraysAreReused() {
+        final var first = this.pool.acquire();
+        final var array = first.array();
+        first.release();
+
+        assertThat(this.pool.getIdleCount()).isEqualTo(1);
+
+        final var second = this.pool.acquire();
+        assertThat(second.array()).isSameAs(array);
+        assertThat(second.length()).isZero();
+        assertThat(this.pool.getAllocations()).isEqualTo(1);
+    }
+
+    @Test
+    public void testArrayIsKeptUntilLastReference() {
+        final var buffer = this.pool.acquire();
+        buffer.retain();
+
+        buffer.release();
+        assertThat(this.pool.getIdleCount()).isZero();
+
+        buffer.release();
+        assertThat(this.pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIdleArraysAreLimited() {
+        final var a = this.pool.acquire();
+        final var b = this.pool.acquire();
+        final var c = this.pool.acquire();
+
+        a.release();
+        b.release();
+        c.release();
+
+        assertThat(this.pool.getIdleCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testOversizedBuffersAreNotPooled() {
+        final var buffer = this.pool.acquire(100);
+        assertThat(buffer.capacity()).isEqualTo(100);
+
+        buffer.release();
+        assertThat(this.pool.getIdleCount()).isZero();
+    }
+
+    @Test
+    public void testWriteStopsAtCapacity() {
+        final var buffer = this.pool.acquire();
+
+        assertThat(buffer.write(new byte[100], 0, 100)).isEqualTo(64);
+        assertThat(buffer.remaining()).isZero();
+    }
+
+    @Test
+    public void testReleasedTooOften() {
+        final var buffer = this.pool.acquire();
+        buffer.release();
+
+        assertThatThrownBy(buffer::release).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(buffer::retain).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,103 @@
+package net.wukl.cacofony.http2.frame;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FrameInputBufferTest {
+    private static byte[] sequence(final int length) {
+        final var bytes = new byte[length];
+        for (var i = 0; i < length; ++i) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testIntegers() throws Exception {
+        final var source = new RecordingInputStream(new byte[] {
+                (byte) 0xAB, (byte) 0xCA, (byte) 0xFE, 0x01, 0x02, 0x03,
+                (byte) 0xDE, (byte) 0xAD, (byte) 0xBE, (byte) 0xEF
+        });
+        final var buffer = new FrameInputBuffer(source, 16);
+
+        assertThat(buffer.readUnsignedByte()).isEqualTo(0xAB);
+        assertThat(buffer.readUnsignedShort()).isEqualTo(0xCAFE);
+        assertThat(buffer.readUnsignedMedium()).isEqualTo(0x010203);
+        assertThat(buffer.readUnsignedInt()).isEqualTo(0xDEADBEEFL);
+        assertThat(source.reads).hasSize(1);
+    }
+
+    @Test
+    public void testIntegersCrossingRefills() throws Exception {
+        final var bytes = new byte[16];
+        bytes[7] = 0x12;
+        bytes[8] = 0x34;
+        bytes[9] = 0x56;
+        bytes[10] = 0x78;
+        final var buffer = new FrameInputBuffer(new RecordingInputStream(bytes, 9), 9);
+
+        buffer.skip(7);
+        assertThat(buffer.readInt()).isEqualTo(0x12345678);
+    }
+
+    @Test
+    public void testLargeReadsBypassTheBuffer() throws Exception {
+        final var bytes = sequence(100);
+        final var source = new RecordingInputStream(bytes);
+        final var buffer = new FrameInputBuffer(source, 16);
+
+        buffer.readUnsignedByte();
+        final var dest = new byte[99];
+        buffer.readFully(dest, 0, 99);
+
+        assertThat(dest[0]).isEqualTo((byte) 1);
+        assertThat(dest[98]).isEqualTo((byte) 99);
+        assertThat(source.reads).containsExactly(16, 84);
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        final var buffer = new FrameInputBuffer(new RecordingInputStream(sequence(50)), 16);
+
+        buffer.skip(40);
+        assertThat(buffer.readUnsignedByte()).isEqualTo(40);
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        final var buffer = new FrameInputBuffer(new RecordingInputStream(new byte[3]), 16);
+
+        assertThatThrownBy(buffer::readInt).isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> buffer.readBytes(10)).isInstanceOf(EOFException.class);
+    }
+
+    private static class RecordingInputStream extends ByteArrayInputStream {
+        private final List<Integer> reads = new ArrayList<>();
+        private final int maxRead;
+
+        RecordingInputStream(final byte[] bytes) {
+            this(bytes, Integer.MAX_VALUE);
+        }
+
+        RecordingInputStream(final byte[] bytes, final int maxRead) {
+            super(bytes);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) {
+            final var read = super.read(b, off, Math.min(len, this.maxRead));
+            if (read > 0) {
+                this.reads.add(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.wukl.cacofony.http2.frame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameOutputBufferTest {
+    private RecordingOutputStream target;
+    private FrameOutputBuffer buffer;
+
+    @BeforeEach
+    public void before() {
+        this.target = new RecordingOutputStream();
+        this.buffer = new FrameOutputBuffer(this.target, 16);
+    }
+
+    @Test
+    public void testSmallWritesAreCoalesced() throws Exception {
+        this.buffer.writeHeader(3, (byte) 0x0, (byte) 0x1, 5);
+        this.buffer.write(new byte[] {1, 2, 3});
+        assertThat(this.target.writes).isEmpty();
+
+        this.buffer.flush();
+
+        assertThat(this.target.writes).hasSize(1);
+        assertThat(this.target.toByteArray()).containsExactly(
+                0x00, 0x00, 0x03, 0x00, 0x01, 0x00, 0x00, 0x00, 0x05, 1, 2, 3
+        );
+        assertThat(this.target.flushes).isEqualTo(1);
+    }
+
+    @Test
+    public void testBufferIsFilledBeforeDraining() throws Exception {
+        this.buffer.write(new byte[10]);
+        this.buffer.write(new byte[10]);
+
+        assertThat(this.target.writes).containsExactly(16);
+        assertThat(this.buffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testLargeWritesBypassTheBuffer() throws Exception {
+        this.buffer.write(new byte[40]);
+
+        assertThat(this.target.writes).containsExactly(40);
+        assertThat(this.buffer.size()).isZero();
+    }
+
+    @Test
+    public void testIntegersCrossingTheEnd() throws Exception {
+        this.buffer.write(new byte[14]);
+        this.buffer.writeInt(0xDEADBEEFL);
+        this.buffer.writeShort(0xCAFE);
+        this.buffer.flush();
+
+        assertThat(this.target.writes).containsExactly(14, 6);
+        final var bytes = this.target.toByteArray();
+        assertThat(Arrays.copyOfRange(bytes, 14, 20)).containsExactly(
+                0xDE, 0xAD, 0xBE, 0xEF, 0xCA, 0xFE
+        );
+    }
+
+    private static class RecordingOutputStream extends ByteArrayOutputStream {
+        private final List<Integer> writes = new ArrayList<>();
+        private int flushes = 0;
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            this.writes.add(len);
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            ++this.flushes;
+        }
+    }
+}
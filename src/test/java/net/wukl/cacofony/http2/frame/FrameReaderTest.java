@@ -0,0 +1,156 @@
+package net.wukl.cacofony.http2.frame;
+
+import net.wukl.cacofony.http2.ErrorCode;
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.hpack.Hpack;
+import net.wukl.cacofony.http2.settings.SettingIdentifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+public class FrameReaderTest {
+    private BufferPool pool;
+    private FrameReader reader;
+    private ByteArrayOutputStream bytes;
+    private FrameOutputBuffer out;
+
+    @BeforeEach
+    public void before() {
+        this.pool = new BufferPool(64, 4);
+        this.reader = new FrameReader(mock(Hpack.class), this.pool);
+        this.bytes = new ByteArrayOutputStream();
+        this.out = new FrameOutputBuffer(this.bytes);
+    }
+
+    private FrameInputBuffer input(final int capacity) throws IOException {
+        this.out.flush();
+        return new FrameInputBuffer(new ByteArrayInputStream(this.bytes.toByteArray()), capacity);
+    }
+
+    @Test
+    public void testMultiByteLengthAndStreamId() throws Exception {
+        final var length = 0x012345;
+        final var payload = new byte[length];
+        payload[0] = 0x11;
+        payload[length - 1] = 0x22;
+
+        this.out.writeHeader(length, FrameType.DATA.getValue(), (byte) 0, 0x7F123456);
+        this.out.write(payload);
+
+        final var frame = (DataFrame) this.reader.read(this.input(64), 0xFFFFFF);
+
+        assertThat(frame.getPayloadLength()).isEqualTo(length);
+        assertThat(frame.getStreamId()).isEqualTo(0x7F123456);
+        assertThat(frame.getBytes()).isEqualTo(payload);
+    }
+
+    @Test
+    public void testFrameLargerThanMaximumIsRejected() throws Exception {
+        this.out.writeHeader(16385, FrameType.DATA.getValue(), (byte) 0, 1);
+        this.out.write(new byte[16385]);
+
+        final var in = this.input(64);
+        assertThatThrownBy(() -> this.reader.read(in)).isInstanceOf(Http2FrameSizeError.class);
+    }
+
+    @Test
+    public void testEveryLengthOctetCounts() throws Exception {
+        this.out.writeHeader(0x000100, FrameType.DATA.getValue(), (byte) 0, 0x00010001);
+        this.out.write(new byte[0x100]);
+
+        final var frame = this.reader.read(this.input(FrameInputBuffer.DEFAULT_CAPACITY));
+
+        assertThat(frame.getPayloadLength()).isEqualTo(0x100);
+        assertThat(frame.getStreamId()).isEqualTo(0x00010001);
+    }
+
+    @Test
+    public void testReservedStreamIdBitIsIgnored() throws Exception {
+        this.out.writeHeader(4, FrameType.WINDOW_UPDATE.getValue(), (byte) 0, 0x80000003);
+        this.out.writeInt(0x80000010L);
+
+        final var frame = (WindowUpdateFrame) this.reader.read(this.input(16));
+
+        assertThat(frame.getStreamId()).isEqualTo(3);
+        assertThat(frame.getIncrement()).isEqualTo(0x10);
+    }
+
+    @Test
+    public void testSettingsWithHighBits() throws Exception {
+        this.out.writeHeader(12, FrameType.SETTINGS.getValue(), (byte) 0, 0);
+        this.out.writeShort(SettingIdentifier.INITIAL_WINDOW_SIZE.getValue());
+        this.out.writeInt(0x7FFFFFFFL);
+        this.out.writeShort(0xFF04);
+        this.out.writeInt(0xFFFFFFFFL);
+
+        final var frame = (SettingsFrame) this.reader.read(this.input(16));
+
+        assertThat(frame.getSettings()).hasSize(1);
+        final var setting = frame.getSettings().get(0);
+        assertThat(setting.getIdentifier()).isEqualTo(SettingIdentifier.INITIAL_WINDOW_SIZE);
+        assertThat(setting.getValue()).isEqualTo(0x7FFFFFFFL);
+    }
+
+    @Test
+    public void testGoAwayWithHighErrorCode() throws Exception {
+        this.out.writeHeader(10, FrameType.GOAWAY.getValue(), (byte) 0, 0);
+        this.out.writeInt(0x00ABCDEFL);
+        this.out.writeInt(ErrorCode.ENHANCE_YOUR_CALM.getCode());
+        this.out.write(new byte[] {'h', 'i'});
+
+        final var frame = (GoAwayFrame) this.reader.read(this.input(16));
+
+        assertThat(frame.getLastStreamId()).isEqualTo(0x00ABCDEF);
+        assertThat(frame.getErrorCode()).isEqualTo(ErrorCode.ENHANCE_YOUR_CALM);
+        assertThat(frame.getDebugData()).containsExactly('h', 'i');
+    }
+
+    @Test
+    public void testPaddingCountsTowardsFlowControl() throws Exception {
+        this.out.writeHeader(8, FrameType.DATA.getValue(), (byte) 0x8, 1);
+        this.out.write(4);
+        this.out.write(new byte[] {1, 2, 3});
+        this.out.write(new byte[4]);
+        this.out.writeHeader(0, FrameType.PING.getValue(), (byte) 0, 0);
+
+        final var in = this.input(64);
+        final var frame = (DataFrame) this.reader.read(in);
+
+        assertThat(frame.getBytes()).containsExactly(1, 2, 3);
+        assertThat(frame.getFlowControlledLength()).isEqualTo(8);
+        assertThat(in.readUnsignedMedium()).isZero();
+    }
+
+    @Test
+    public void testTruncatedDataReleasesBuffer() throws Exception {
+        this.out.writeHeader(10, FrameType.DATA.getValue(), (byte) 0, 1);
+        this.out.write(new byte[5]);
+
+        final var in = this.input(64);
+        assertThatThrownBy(() -> this.reader.read(in)).isInstanceOf(EOFException.class);
+        assertThat(this.pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnknownFramesAreSkipped() throws Exception {
+        this.out.writeHeader(3, (byte) 0xEE, (byte) 0, 0);
+        this.out.write(new byte[3]);
+        this.out.writeHeader(4, FrameType.RST_STREAM.getValue(), (byte) 0, 5);
+        this.out.writeInt(ErrorCode.CANCEL.getCode());
+
+        final var in = this.input(64);
+        assertThat(this.reader.read(in).getType()).isNull();
+
+        final var rst = (RstStreamFrame) this.reader.read(in);
+        assertThat(rst.getStreamId()).isEqualTo(5);
+        assertThat(rst.getErrorCode()).isEqualTo(ErrorCode.CANCEL);
+    }
+}
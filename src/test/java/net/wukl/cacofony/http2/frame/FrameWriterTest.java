@@ -0,0 +1,121 @@
+package net.wukl.cacofony.http2.frame;
+
+import net.wukl.cacofony.http2.ErrorCode;
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.server.DefaultSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameWriterTest {
+    private PaddingPolicy padding;
+    private FrameWriter writer;
+
+    @BeforeEach
+    public void before() {
+        this.padding = Mockito.mock(PaddingPolicy.class);
+        this.writer = new FrameWriter(this.padding);
+    }
+
+    @Test
+    public void testFlagsAndStreamId() throws Exception {
+        final var frame = new HeadersFrame(
+                Set.of(FrameFlag.END_STREAM, FrameFlag.END_HEADERS), 0x01020304, new byte[0], null
+        );
+        final var bytes = new ByteArrayOutputStream();
+        this.writer.write(frame, bytes);
+
+        assertThat(bytes.toByteArray()).containsExactly(
+                0x00, 0x00, 0x00,
+                FrameType.HEADERS.getValue(),
+                0b0000_0101,
+                0x01, 0x02, 0x03, 0x04
+        );
+    }
+
+    @Test
+    public void testPaddedData() throws Exception {
+        final var buffer = new BufferPool(16, 1).acquire();
+        buffer.write(new byte[] {7, 8}, 0, 2);
+
+        final var frame = new DataFrame(
+                1, Collections.singleton(FrameFlag.END_STREAM), buffer, 0, 2, 3
+        );
+        final var bytes = new ByteArrayOutputStream();
+        final var length = this.writer.write(frame, bytes);
+
+        assertThat(length).isEqualTo(5);
+        assertThat(bytes.toByteArray()).containsExactly(
+                0x00, 0x00, 0x05,
+                FrameType.DATA.getValue(),
+                0b0000_1001,
+                0x00, 0x00, 0x00, 0x01,
+                0x02, 7, 8, 0x00, 0x00
+        );
+        Mockito.verifyZeroInteractions(this.padding);
+    }
+
+    @Test
+    public void testPaddedHeaders() throws Exception {
+        Mockito.when(this.padding.getPadding(2, 256)).thenReturn(3);
+
+        final var frame = new HeadersFrame(
+                Set.of(FrameFlag.END_HEADERS), 1, new byte[] {7, 8}, null
+        );
+        final var bytes = new ByteArrayOutputStream();
+
+        assertThat(this.writer.write(frame, bytes)).isEqualTo(5);
+        assertThat(bytes.toByteArray()).containsExactly(
+                0x00, 0x00, 0x05,
+                FrameType.HEADERS.getValue(),
+                0b0000_1100,
+                0x00, 0x00, 0x00, 0x01,
+                0x02, 7, 8, 0x00, 0x00
+        );
+    }
+
+    @Test
+    public void testNoPaddingByDefault() throws Exception {
+        final var writer = new FrameWriter(new DefaultSettings());
+        final var frame = new DataFrame(1, Collections.emptySet(), new byte[] {7, 8});
+        final var bytes = new ByteArrayOutputStream();
+
+        assertThat(writer.write(frame, bytes)).isEqualTo(2);
+        assertThat(bytes.toByteArray()).containsExactly(
+                0x00, 0x00, 0x02,
+                FrameType.DATA.getValue(),
+                0b0000_0000,
+                0x00, 0x00, 0x00, 0x01,
+                7, 8
+        );
+    }
+
+    @Test
+    public void testPaddingStaysWithinMaxFrameSize() throws Exception {
+        final var frame = new HeadersFrame(Set.of(FrameFlag.END_HEADERS), 1, new byte[100], null);
+        final var buffer = new FrameOutputBuffer(new ByteArrayOutputStream());
+
+        this.writer.write(frame, buffer, 110);
+
+        Mockito.verify(this.padding).getPadding(100, 10);
+    }
+
+    @Test
+    public void testBatchIsWrittenOnFlush() throws Exception {
+        final var bytes = new ByteArrayOutputStream();
+        final var buffer = new FrameOutputBuffer(bytes);
+
+        this.writer.write(new WindowUpdateFrame(0, 1000), buffer);
+        this.writer.write(new RstStreamFrame(3, ErrorCode.CANCEL), buffer);
+        assertThat(bytes.size()).isZero();
+
+        buffer.flush();
+        assertThat(bytes.size()).isEqualTo(2 * 9 + 4 + 4);
+    }
+}
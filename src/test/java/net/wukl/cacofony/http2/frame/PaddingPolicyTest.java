@@ -0,0 +1,49 @@
+package net.wukl.cacofony.http2.frame;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PaddingPolicyTest {
+    @Test
+    public void testNoPadding() {
+        assertThat(new NoPadding().getPadding(100, 256)).isZero();
+    }
+
+    @Test
+    public void testRandomPaddingStaysInRange() {
+        final var policy = new RandomPadding(16);
+
+        for (int i = 0; i < 1000; ++i) {
+            assertThat(policy.getPadding(100, 256)).isBetween(1, 16);
+            assertThat(policy.getPadding(100, 4)).isBetween(1, 4);
+        }
+
+        assertThat(policy.getPadding(100, 0)).isZero();
+    }
+
+    @Test
+    public void testBucketPaddingRoundsUp() {
+        final var policy = new BucketPadding(64);
+
+        assertThat(policy.getPadding(10, 256)).isEqualTo(54);
+        assertThat(policy.getPadding(63, 256)).isEqualTo(1);
+        assertThat(policy.getPadding(64, 256)).isEqualTo(64);
+        assertThat(policy.getPadding(100, 256)).isEqualTo(28);
+    }
+
+    @Test
+    public void testBucketPaddingRespectsLimit() {
+        assertThat(new BucketPadding(64).getPadding(10, 20)).isEqualTo(20);
+        assertThat(new BucketPadding(64).getPadding(10, 0)).isZero();
+    }
+
+    @Test
+    public void testInvalidParameters() {
+        assertThatThrownBy(() -> new BucketPadding(0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RandomPadding(257))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
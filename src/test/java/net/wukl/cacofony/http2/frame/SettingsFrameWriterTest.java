@@ -9,7 +9,6 @@ import org.mockito.Mockito;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.List;
 
@@ -19,18 +18,18 @@ import static org.assertj.core.api.Assertions.assertThat;
  * @author Luc Everse
  */
 public class SettingsFrameWriterTest {
-    private SecureRandom random;
+    private PaddingPolicy padding;
     private FrameWriter writer;
 
     @BeforeEach
     public void before() {
-        this.random = Mockito.mock(SecureRandom.class);
-        this.writer = new FrameWriter(this.random);
+        this.padding = Mockito.mock(PaddingPolicy.class);
+        this.writer = new FrameWriter(this.padding);
     }
 
     @AfterEach
     public void after() {
-        Mockito.verify(this.random, Mockito.never()).nextInt(Mockito.anyInt());
+        Mockito.verify(this.padding, Mockito.never()).getPadding(Mockito.anyInt(), Mockito.anyInt());
     }
 
     @Test
@@ -0,0 +1,59 @@
+package net.wukl.cacofony.http2.hpack;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HeaderBlockTest {
+    @Test
+    public void testReadAcrossFragments() {
+        final var block = new HeaderBlock();
+        block.add(new byte[] {0, 1, 2, 3}, 1, 2);
+        block.add(new byte[0]);
+        block.add(new byte[] {3, 4});
+
+        assertThat(block.remaining()).isEqualTo(4);
+        assertThat(block.read()).isEqualTo(1);
+        assertThat(block.contiguous()).isEqualTo(1);
+        assertThat(block.read()).isEqualTo(2);
+        assertThat(block.contiguous()).isEqualTo(2);
+        assertThat(block.peek()).isEqualTo(3);
+        assertThat(block.read()).isEqualTo(3);
+        assertThat(block.read()).isEqualTo(4);
+        assertThat(block.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void testCopyAcrossFragments() {
+        final var block = new HeaderBlock(new byte[] {1, 2});
+        block.add(new byte[] {3});
+        block.add(new byte[] {4, 5});
+
+        block.skip(1);
+        final var out = new byte[3];
+        block.read(out, 3);
+
+        assertThat(out).containsExactly(2, 3, 4);
+        assertThat(block.array()[block.position()]).isEqualTo((byte) 5);
+    }
+
+    @Test
+    public void testAddAfterExhaustion() {
+        final var block = new HeaderBlock(new byte[] {(byte) 0xff});
+        assertThat(block.read()).isEqualTo(0xff);
+
+        block.add(new byte[] {9, 8}, 1, 1);
+
+        assertThat(block.read()).isEqualTo(8);
+    }
+
+    @Test
+    public void testTruncated() {
+        final var block = new HeaderBlock(new byte[] {1});
+
+        assertThatThrownBy(() -> block.skip(2)).isInstanceOf(HpackDecodingException.class);
+        block.skip(1);
+        assertThatThrownBy(block::read).isInstanceOf(HpackDecodingException.class);
+    }
+}
@@ -6,9 +6,12 @@ import org.assertj.core.presentation.HexadecimalRepresentation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class HpackTest {
     private static final byte[] EXAMPLE_2_1_PAYLOAD = new byte[] {
@@ -136,6 +139,69 @@ public class HpackTest {
             new Header("custom-key", "custom-value")
     );
 
+    private static final byte[] EXAMPLE_5_1_PAYLOAD = new byte[] {
+            (byte) 0x48, (byte) 0x03, (byte) 0x33, (byte) 0x30, (byte) 0x32, (byte) 0x58,
+            (byte) 0x07, (byte) 0x70, (byte) 0x72, (byte) 0x69, (byte) 0x76, (byte) 0x61,
+            (byte) 0x74, (byte) 0x65, (byte) 0x61, (byte) 0x1d, (byte) 0x4d, (byte) 0x6f,
+            (byte) 0x6e, (byte) 0x2c, (byte) 0x20, (byte) 0x32, (byte) 0x31, (byte) 0x20,
+            (byte) 0x4f, (byte) 0x63, (byte) 0x74, (byte) 0x20, (byte) 0x32, (byte) 0x30,
+            (byte) 0x31, (byte) 0x33, (byte) 0x20, (byte) 0x32, (byte) 0x30, (byte) 0x3a,
+            (byte) 0x31, (byte) 0x33, (byte) 0x3a, (byte) 0x32, (byte) 0x31, (byte) 0x20,
+            (byte) 0x47, (byte) 0x4d, (byte) 0x54, (byte) 0x6e, (byte) 0x17, (byte) 0x68,
+            (byte) 0x74, (byte) 0x74, (byte) 0x70, (byte) 0x73, (byte) 0x3a, (byte) 0x2f,
+            (byte) 0x2f, (byte) 0x77, (byte) 0x77, (byte) 0x77, (byte) 0x2e, (byte) 0x65,
+            (byte) 0x78, (byte) 0x61, (byte) 0x6d, (byte) 0x70, (byte) 0x6c, (byte) 0x65,
+            (byte) 0x2e, (byte) 0x63, (byte) 0x6f, (byte) 0x6d,
+    };
+
+    private static final List<Header> EXAMPLE_5_1_HEADERS = List.of(
+            new Header(":status", "302"),
+            new Header("cache-control", "private"),
+            new Header("date", "Mon, 21 Oct 2013 20:13:21 GMT"),
+            new Header("location", "https://www.example.com")
+    );
+
+    private static final byte[] EXAMPLE_5_2_PAYLOAD = new byte[] {
+            (byte) 0x48, (byte) 0x03, (byte) 0x33, (byte) 0x30, (byte) 0x37, (byte) 0xc1,
+            (byte) 0xc0, (byte) 0xbf,
+    };
+
+    private static final List<Header> EXAMPLE_5_2_HEADERS = List.of(
+            new Header(":status", "307"),
+            new Header("cache-control", "private"),
+            new Header("date", "Mon, 21 Oct 2013 20:13:21 GMT"),
+            new Header("location", "https://www.example.com")
+    );
+
+    private static final byte[] EXAMPLE_5_3_PAYLOAD = new byte[] {
+            (byte) 0x88, (byte) 0xc1, (byte) 0x61, (byte) 0x1d, (byte) 0x4d, (byte) 0x6f,
+            (byte) 0x6e, (byte) 0x2c, (byte) 0x20, (byte) 0x32, (byte) 0x31, (byte) 0x20,
+            (byte) 0x4f, (byte) 0x63, (byte) 0x74, (byte) 0x20, (byte) 0x32, (byte) 0x30,
+            (byte) 0x31, (byte) 0x33, (byte) 0x20, (byte) 0x32, (byte) 0x30, (byte) 0x3a,
+            (byte) 0x31, (byte) 0x33, (byte) 0x3a, (byte) 0x32, (byte) 0x32, (byte) 0x20,
+            (byte) 0x47, (byte) 0x4d, (byte) 0x54, (byte) 0xc0, (byte) 0x5a, (byte) 0x04,
+            (byte) 0x67, (byte) 0x7a, (byte) 0x69, (byte) 0x70, (byte) 0x77, (byte) 0x38,
+            (byte) 0x66, (byte) 0x6f, (byte) 0x6f, (byte) 0x3d, (byte) 0x41, (byte) 0x53,
+            (byte) 0x44, (byte) 0x4a, (byte) 0x4b, (byte) 0x48, (byte) 0x51, (byte) 0x4b,
+            (byte) 0x42, (byte) 0x5a, (byte) 0x58, (byte) 0x4f, (byte) 0x51, (byte) 0x57,
+            (byte) 0x45, (byte) 0x4f, (byte) 0x50, (byte) 0x49, (byte) 0x55, (byte) 0x41,
+            (byte) 0x58, (byte) 0x51, (byte) 0x57, (byte) 0x45, (byte) 0x4f, (byte) 0x49,
+            (byte) 0x55, (byte) 0x3b, (byte) 0x20, (byte) 0x6d, (byte) 0x61, (byte) 0x78,
+            (byte) 0x2d, (byte) 0x61, (byte) 0x67, (byte) 0x65, (byte) 0x3d, (byte) 0x33,
+            (byte) 0x36, (byte) 0x30, (byte) 0x30, (byte) 0x3b, (byte) 0x20, (byte) 0x76,
+            (byte) 0x65, (byte) 0x72, (byte) 0x73, (byte) 0x69, (byte) 0x6f, (byte) 0x6e,
+            (byte) 0x3d, (byte) 0x31,
+    };
+
+    private static final List<Header> EXAMPLE_5_3_HEADERS = List.of(
+            new Header(":status", "200"),
+            new Header("cache-control", "private"),
+            new Header("date", "Mon, 21 Oct 2013 20:13:22 GMT"),
+            new Header("location", "https://www.example.com"),
+            new Header("content-encoding", "gzip"),
+            new Header("set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1")
+    );
+
     private Hpack hpack;
 
     @BeforeEach
@@ -197,6 +263,20 @@ public class HpackTest {
         assertThat(headers).containsExactlyInAnyOrderElementsOf(EXAMPLE_3_3_HEADERS);
     }
 
+    @Test
+    public void testDecodeWithinListSize() {
+        final var headers = this.hpack.decompress(new HeaderBlock(EXAMPLE_3_1_PAYLOAD), 180);
+        assertThat(headers).containsExactlyInAnyOrderElementsOf(EXAMPLE_3_1_HEADERS);
+    }
+
+    @Test
+    public void testOversizedListKeepsTableInSync() {
+        assertThat(this.hpack.decompress(new HeaderBlock(EXAMPLE_3_1_PAYLOAD), 179)).isNull();
+
+        final var headers = this.hpack.decompress(EXAMPLE_3_2_PAYLOAD);
+        assertThat(headers).containsExactlyInAnyOrderElementsOf(EXAMPLE_3_2_HEADERS);
+    }
+
     @Test
     public void testDecodeExample4_1() {
         final var headers = this.hpack.decompress(EXAMPLE_4_1_PAYLOAD);
@@ -244,4 +324,240 @@ public class HpackTest {
                 .withRepresentation(HexadecimalRepresentation.HEXA_REPRESENTATION)
                 .isEqualTo(EXAMPLE_4_3_PAYLOAD);
     }
+
+    @Test
+    public void testDecodeExample5WithEviction() {
+        this.hpack.updateMaximumDecodingSize(256, true);
+
+        assertThat(this.hpack.decompress(EXAMPLE_5_1_PAYLOAD))
+                .containsExactlyInAnyOrderElementsOf(EXAMPLE_5_1_HEADERS);
+        assertThat(this.hpack.decompress(EXAMPLE_5_2_PAYLOAD))
+                .containsExactlyInAnyOrderElementsOf(EXAMPLE_5_2_HEADERS);
+        assertThat(this.hpack.decompress(EXAMPLE_5_3_PAYLOAD))
+                .containsExactlyInAnyOrderElementsOf(EXAMPLE_5_3_HEADERS);
+    }
+
+    @Test
+    public void testRoundtripWithEviction() {
+        final var decoder = new Hpack(new Huffman());
+        this.hpack.updateMaximumEncodingSize(256, true);
+        decoder.updateMaximumDecodingSize(256, true);
+
+        for (int i = 0; i < 200; ++i) {
+            final var headers = List.of(
+                    new Header(":status", "200"),
+                    new Header("x-request", "request number " + i),
+                    new Header("x-recent", "value " + (i % 5)),
+                    new Header("server", "cacofony")
+            );
+
+            assertThat(decoder.decompress(this.hpack.compress(headers)))
+                    .as("header block %d", i)
+                    .containsExactlyInAnyOrderElementsOf(headers);
+        }
+    }
+
+    @Test
+    public void testEncodeLowercasesNames() {
+        final var decoder = new Hpack(new Huffman());
+
+        final var bytes = this.hpack.compress(List.of(new Header("X-Custom", "value")));
+
+        assertThat(decoder.decompress(bytes)).containsExactly(new Header("x-custom", "value"));
+    }
+
+    @Test
+    public void testEntryLargerThanTable() {
+        final var decoder = new Hpack(new Huffman());
+        this.hpack.updateMaximumEncodingSize(64, true);
+        decoder.updateMaximumDecodingSize(64, true);
+
+        final var small = List.of(new Header("a", "b"));
+        final var large = List.of(new Header("x-large", "a value far too large for the table"));
+
+        assertThat(decoder.decompress(this.hpack.compress(small))).isEqualTo(small);
+        assertThat(decoder.decompress(this.hpack.compress(large))).isEqualTo(large);
+        assertThat(decoder.decompress(this.hpack.compress(small))).isEqualTo(small);
+    }
+
+    @Test
+    public void testEntrySizeCountsReceivedOctets() {
+        // Two octets of invalid UTF-8 make up each value; decoded, they take six.
+        this.hpack.updateMaximumDecodingSize(2 * (1 + 2 + 32), true);
+
+        this.hpack.decompress(new byte[] {0x40, 0x01, 'a', 0x02, (byte) 0xff, (byte) 0xff});
+        this.hpack.decompress(new byte[] {0x40, 0x01, 'b', 0x02, (byte) 0xff, (byte) 0xff});
+
+        assertThat(this.hpack.decompress(new byte[] {(byte) 0xbf}))
+                .containsExactly(new Header("a", "\ufffd\ufffd"));
+    }
+
+    @Test
+    public void testUppercaseNameIsMalformed() {
+        final var block = new byte[] {0x40, 0x03, 'K', 'e', 'y', 0x01, 'v'};
+
+        assertThatThrownBy(() -> this.hpack.decompress(block))
+                .isInstanceOf(MalformedHeaderException.class);
+
+        // The field has still been indexed, so the decoder agrees with the encoder.
+        assertThatThrownBy(() -> this.hpack.decompress(new byte[] {(byte) 0xbe}))
+                .isInstanceOf(MalformedHeaderException.class);
+        assertThat(this.hpack.decompress(new byte[] {(byte) 0x82}))
+                .containsExactly(new Header(":method", "GET"));
+    }
+
+    @Test
+    public void testHighCardinalityHeadersAreNotIndexed() {
+        final var headers = List.of(new Header("date", "Sun, 18 Oct 2026 12:00:00 GMT"));
+
+        final var first = this.hpack.compress(headers);
+        final var second = this.hpack.compress(headers);
+
+        assertThat(first[0]).isEqualTo((byte) 0x0f);
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void testHuffmanOnlyWhenShorter() {
+        final var decoder = new Hpack(new Huffman());
+        final var headers = List.of(new Header("x-raw", "{}{}"));
+
+        final var bytes = this.hpack.compress(headers);
+
+        // The name is shorter when Huffman-encoded, the value is not.
+        assertThat(bytes[1]).isEqualTo((byte) 0x84);
+        assertThat(bytes[6]).isEqualTo((byte) 0x04);
+        assertThat(decoder.decompress(bytes)).isEqualTo(headers);
+    }
+
+    @Test
+    public void testHuffmanNever() {
+        final var encoder = new Hpack(
+                new Huffman(),
+                new HpackEncodingPolicy(
+                        Set.of(), Set.of(), HpackEncodingPolicy.HuffmanStrategy.NEVER
+                ),
+                new HpackEncoderMetrics()
+        );
+
+        final var bytes = encoder.compress(EXAMPLE_2_1_HEADERS);
+
+        assertThat(bytes)
+                .withRepresentation(HexadecimalRepresentation.HEXA_REPRESENTATION)
+                .isEqualTo(EXAMPLE_2_1_PAYLOAD);
+    }
+
+    @Test
+    public void testLongValue() {
+        final var decoder = new Hpack(new Huffman());
+        final var headers = List.of(new Header("x-long", "a".repeat(300_000)));
+
+        assertThat(decoder.decompress(this.hpack.compress(headers))).isEqualTo(headers);
+    }
+
+    @Test
+    public void testConstantHeadersArePreEncoded() {
+        final var policy = new HpackEncodingPolicy();
+        final var first = new Hpack(new Huffman(), policy, new HpackEncoderMetrics());
+        final var second = new Hpack(new Huffman(), policy, new HpackEncoderMetrics());
+        final var headers = List.of(new Header("server", "cacofony"));
+
+        final var bytes = first.compress(headers);
+
+        assertThat(policy.getPreEncoded("server", "cacofony")).isEqualTo(bytes);
+        assertThat(second.compress(headers)).isEqualTo(bytes);
+        assertThat(first.compress(headers)).hasSize(1);
+        assertThat(new Hpack(new Huffman()).decompress(bytes)).isEqualTo(headers);
+    }
+
+    @Test
+    public void testMetrics() {
+        final var metrics = new HpackEncoderMetrics();
+        final var encoder = new Hpack(new Huffman(), new HpackEncodingPolicy(), metrics);
+
+        encoder.compress(EXAMPLE_4_1_HEADERS);
+        encoder.compress(EXAMPLE_4_2_HEADERS);
+
+        assertThat(metrics.getBlocks()).isEqualTo(2);
+        assertThat(metrics.getFields())
+                .isEqualTo(EXAMPLE_4_1_HEADERS.size() + EXAMPLE_4_2_HEADERS.size());
+        assertThat(metrics.getEncodedOctets())
+                .isEqualTo(EXAMPLE_4_1_PAYLOAD.length + EXAMPLE_4_2_PAYLOAD.length);
+        assertThat(metrics.getCompressionRatio()).isBetween(0.0, 1.0);
+        assertThat(metrics.getAverageNanosPerBlock()).isPositive();
+    }
+
+    @Test
+    public void testDecodeAcrossFragments() {
+        for (final var payload : List.of(EXAMPLE_3_1_PAYLOAD, EXAMPLE_4_1_PAYLOAD)) {
+            final var expected = new Hpack(new Huffman()).decompress(payload);
+
+            for (int split = 0; split <= payload.length; ++split) {
+                final var padded = new byte[payload.length + 4];
+                System.arraycopy(payload, 0, padded, 2, payload.length);
+
+                final var block = new HeaderBlock();
+                block.add(padded, 2, split);
+                block.add(padded, 2 + split, payload.length - split);
+
+                assertThat(new Hpack(new Huffman()).decompress(block))
+                        .as("split at %d", split)
+                        .containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+
+    @Test
+    public void testKnownNamesAreShared() {
+        final var raw = new Hpack(
+                new Huffman(),
+                new HpackEncodingPolicy(
+                        Set.of(), Set.of(), HpackEncodingPolicy.HuffmanStrategy.NEVER
+                ),
+                new HpackEncoderMetrics()
+        );
+        final var headers = List.of(new Header("sec-fetch-mode", "navigate"));
+
+        final var fromRaw = this.hpack.decompress(raw.compress(headers));
+        final var fromHuffman = new Hpack(new Huffman()).decompress(
+                new Hpack(new Huffman()).compress(headers)
+        );
+
+        assertThat(fromRaw).isEqualTo(headers);
+        assertThat(fromHuffman).isEqualTo(headers);
+        assertThat(fromRaw.get(0).getKey()).isSameAs(fromHuffman.get(0).getKey());
+    }
+
+    @Test
+    public void testDynamicTableSizeUpdate() {
+        final var headers = this.hpack.decompress(new byte[] {
+                (byte) 0x3f, (byte) 0xe1, (byte) 0x1f, (byte) 0x82
+        });
+
+        assertThat(headers).containsExactly(new Header(":method", "GET"));
+        assertThatThrownBy(() -> new Hpack(new Huffman()).decompress(new byte[] {
+                (byte) 0x3f, (byte) 0xe2, (byte) 0x1f
+        })).isInstanceOf(HpackDecodingException.class);
+    }
+
+    @Test
+    public void testTruncatedInteger() {
+        assertThatThrownBy(() -> this.hpack.decompress(new byte[] {(byte) 0xff, (byte) 0x80}))
+                .isInstanceOf(HpackDecodingException.class);
+    }
+
+    @Test
+    public void testEncodingSizeChangeIsAnnounced() {
+        final var decoder = new Hpack(new Huffman());
+        final var headers = List.of(new Header(":status", "200"));
+        this.hpack.updateMaximumEncodingSize(256, true);
+
+        final var first = this.hpack.compress(headers);
+        final var second = this.hpack.compress(headers);
+
+        assertThat(Arrays.copyOf(first, 3)).containsExactly(0x3f, 0xe1, 0x01);
+        assertThat(second).hasSize(first.length - 3);
+        assertThat(decoder.decompress(first)).isEqualTo(headers);
+        assertThat(decoder.decompress(second)).isEqualTo(headers);
+    }
 }
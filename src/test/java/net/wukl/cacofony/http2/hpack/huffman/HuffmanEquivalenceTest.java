@@ -0,0 +1,283 @@
+package net.wukl.cacofony.http2.hpack.huffman;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the table-driven decoder against the original bit-by-bit decoder.
+ */
+public class HuffmanEquivalenceTest {
+    private Huffman huffman;
+    private LegacyDecoder legacy;
+    private Random random;
+
+    @BeforeEach
+    public void before() throws IOException {
+        this.huffman = new Huffman();
+        this.legacy = new LegacyDecoder();
+        this.random = new Random(7541);
+    }
+
+    @Test
+    public void testEverySymbol() {
+        for (int i = 0; i < 256; ++i) {
+            final var str = String.valueOf((char) i);
+            final var encoded = this.huffman.encode(str, StandardCharsets.ISO_8859_1);
+
+            assertThat(this.huffman.decode(encoded, StandardCharsets.ISO_8859_1))
+                    .as("symbol %d", i)
+                    .isEqualTo(this.legacy.decode(encoded))
+                    .isEqualTo(str);
+        }
+    }
+
+    @Test
+    public void testRandomStrings() {
+        for (int i = 0; i < 2000; ++i) {
+            final var chars = new char[this.random.nextInt(300)];
+            for (int j = 0; j < chars.length; ++j) {
+                if (this.random.nextBoolean()) {
+                    chars[j] = (char) (' ' + this.random.nextInt(95));
+                } else {
+                    chars[j] = (char) this.random.nextInt(256);
+                }
+            }
+
+            final var str = new String(chars);
+            final var encoded = this.huffman.encode(str, StandardCharsets.ISO_8859_1);
+
+            assertThat(this.huffman.decode(encoded, StandardCharsets.ISO_8859_1))
+                    .isEqualTo(this.legacy.decode(encoded))
+                    .isEqualTo(str);
+        }
+    }
+
+    @Test
+    public void testRandomBytes() {
+        for (int i = 0; i < 20000; ++i) {
+            final var bytes = new byte[this.random.nextInt(12)];
+            this.random.nextBytes(bytes);
+
+            final String decoded;
+            try {
+                decoded = this.huffman.decode(bytes, StandardCharsets.ISO_8859_1);
+            } catch (final HuffmanDecodingException ex) {
+                continue;
+            }
+
+            // Anything the new decoder accepts, the old one accepted identically.
+            assertThat(decoded).isEqualTo(this.legacy.decode(bytes));
+        }
+    }
+
+    @Test
+    public void testRange() {
+        final var encoded = this.huffman.encode("www.example.com");
+        final var padded = new byte[encoded.length + 4];
+        System.arraycopy(encoded, 0, padded, 2, encoded.length);
+
+        assertThat(this.huffman.decode(padded, 2, encoded.length, StandardCharsets.UTF_8))
+                .isEqualTo("www.example.com");
+    }
+
+    @Test
+    public void testBufferReuse() {
+        final var longer = this.huffman.encode("a considerably longer string");
+        final var shorter = this.huffman.encode("short");
+
+        assertThat(this.huffman.decode(longer)).isEqualTo("a considerably longer string");
+        assertThat(this.huffman.decode(shorter)).isEqualTo("short");
+    }
+
+    @Test
+    public void testStrayEos() {
+        // Thirty ones encode EOS, followed by two bits of padding.
+        final var bytes = new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+
+        assertThrows(HuffmanDecodingException.class, () -> this.huffman.decode(bytes));
+    }
+
+    @Test
+    public void testPaddingTooLong() {
+        // "0" is 00000, followed by eleven bits of padding.
+        final var bytes = new byte[] {0x07, (byte) 0xff};
+
+        assertThrows(HuffmanDecodingException.class, () -> this.huffman.decode(bytes));
+    }
+
+    @Test
+    public void testPaddingNotEos() {
+        // "0" is 00000, followed by three zero bits.
+        final var bytes = new byte[] {0x00};
+
+        assertThrows(HuffmanDecodingException.class, () -> this.huffman.decode(bytes));
+    }
+
+    /**
+     * The bit-by-bit decoder originally used by {@link Huffman}, kept as a reference.
+     */
+    private static final class LegacyDecoder {
+        private static final Pattern ROW_PATTERN = Pattern.compile(
+            "\\s*(... )?\\(\\s*(?<val>\\d+)\\)\\s*(\\|[10]+)+"
+            + "\\s*(?<seq>[0-9a-f]+)\\s*\\[\\s*(?<len>\\d+)\\]"
+        );
+
+        private static final int EOS = 256;
+        private static final int MIN_CODE_LENGTH = 5;
+        private static final int MAX_CODE_LENGTH = 31;
+        private static final int EXPECTED_BITS_PER_CHAR = 6;
+
+        private final Map<BitSpan, Integer> decodingTable = new HashMap<>();
+        private BitSpan eosCode;
+
+        private LegacyDecoder() throws IOException {
+            try (var in = new BufferedReader(new InputStreamReader(
+                    Huffman.class.getResourceAsStream("huffman-table.txt")
+            ))) {
+                for (;;) {
+                    final var line = in.readLine();
+                    if (line == null) {
+                        break;
+                    }
+
+                    final var matcher = ROW_PATTERN.matcher(line);
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+
+                    final var value = Integer.parseInt(matcher.group("val"));
+                    final var span = new BitSpan(
+                            Integer.parseInt(matcher.group("len")),
+                            Long.parseLong(matcher.group("seq"), 16)
+                    );
+
+                    this.decodingTable.put(span, value);
+                    if (value == EOS) {
+                        this.eosCode = span;
+                    }
+                }
+            }
+        }
+
+        private String decode(final byte[] data) {
+            var string = new byte[data.length * Byte.SIZE / EXPECTED_BITS_PER_CHAR];
+            int c = 0;
+
+            boolean decoding = true;
+            int b = 0;
+            final var seq = new BitSpan(0, 0);
+
+            while (decoding && b < data.length * Byte.SIZE) {
+                final var remainder = Byte.SIZE - (b % Byte.SIZE);
+
+                if (b + MIN_CODE_LENGTH > data.length * Byte.SIZE) {
+                    seq.bits = data[b / Byte.SIZE] & ((1 << remainder) - 1);
+                    if (seq.bits == this.eosCode.bits >>> (this.eosCode.length - remainder)) {
+                        break;
+                    }
+
+                    throw new HuffmanDecodingException("Data truncated");
+                }
+
+                if (remainder >= MIN_CODE_LENGTH) {
+                    seq.bits = (data[b / Byte.SIZE] & 0xFF)
+                            >>> ((Byte.SIZE - MIN_CODE_LENGTH) - (Byte.SIZE - remainder));
+                    b += MIN_CODE_LENGTH;
+                } else {
+                    seq.bits =
+                            ((data[b / Byte.SIZE] & 0xFF) << (MIN_CODE_LENGTH - remainder)) & 0xFF;
+                    b += remainder;
+                    seq.bits |= (data[b / Byte.SIZE] & 0xFF)
+                            >>> ((Byte.SIZE - MIN_CODE_LENGTH) + remainder);
+                    b += MIN_CODE_LENGTH - remainder;
+                }
+
+                seq.bits &= (1 << MIN_CODE_LENGTH) - 1;
+                seq.length = MIN_CODE_LENGTH;
+
+                for (int len = MIN_CODE_LENGTH; len <= MAX_CODE_LENGTH; ++len) {
+                    final var ch = this.decodingTable.get(seq);
+                    if (ch != null) {
+                        if (ch.equals(EOS)) {
+                            throw new HuffmanDecodingException("Stray EOS character");
+                        }
+
+                        if (c >= string.length) {
+                            final var newString = new byte[
+                                    string.length
+                                    + (data.length * Byte.SIZE - b) / EXPECTED_BITS_PER_CHAR
+                                    + 1
+                            ];
+                            System.arraycopy(string, 0, newString, 0, string.length);
+                            string = newString;
+                        }
+
+                        string[c] = ch.byteValue();
+                        ++c;
+                        break;
+                    }
+
+                    if (b >= data.length * Byte.SIZE) {
+                        if (seq.bits == this.eosCode.bits >>> (this.eosCode.length - seq.length)) {
+                            decoding = false;
+                            break;
+                        }
+
+                        throw new HuffmanDecodingException("Data truncated");
+                    }
+
+                    if (len >= MAX_CODE_LENGTH) {
+                        throw new HuffmanDecodingException("Invalid bit sequence");
+                    }
+
+                    seq.bits <<= 1;
+                    seq.bits |= ((data[b / Byte.SIZE] & 0xFF)
+                            >>> (Byte.SIZE - (b % Byte.SIZE)) - 1) & 1;
+                    ++seq.length;
+                    ++b;
+                }
+            }
+
+            return new String(string, 0, c, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final class BitSpan {
+        private int length;
+        private long bits;
+
+        private BitSpan(final int length, final long bits) {
+            this.length = length;
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof BitSpan)) {
+                return false;
+            }
+
+            final var other = (BitSpan) obj;
+
+            return other.length == this.length && other.bits == this.bits;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.length, this.bits);
+        }
+    }
+}
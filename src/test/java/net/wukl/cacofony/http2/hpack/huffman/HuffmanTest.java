@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -28,6 +29,22 @@ public class HuffmanTest {
         assertThat(decoded).isEqualTo(str);
     }
 
+    @Test
+    public void testEncodeIntoArray() {
+        final var octets = "xxwww.example.com".getBytes(StandardCharsets.US_ASCII);
+        final var expected = this.huffman.encode("www.example.com");
+
+        final var length = this.huffman.encodedLength(octets, 2, octets.length - 2);
+        final var out = new byte[length + 3];
+        final var end = this.huffman.encode(octets, 2, octets.length - 2, out, 3);
+
+        assertThat(length).isEqualTo(12);
+        assertThat(end).isEqualTo(out.length);
+        assertThat(Arrays.copyOfRange(out, 3, end))
+                .withRepresentation(HexadecimalRepresentation.HEXA_REPRESENTATION)
+                .isEqualTo(expected);
+    }
+
     @Test
     public void testBinaryRoundtrip() throws IOException {
         try (var in = this.getFile("kilobyte-string")) {
@@ -0,0 +1,114 @@
+package net.wukl.cacofony.http2.stream;
+
+import net.wukl.cacofony.http2.buffer.BufferPool;
+import net.wukl.cacofony.http2.frame.DataFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RequestBodyTest {
+    private List<Integer> consumed;
+    private RequestBody body;
+    private BufferPool pool;
+
+    @BeforeEach
+    public void before() {
+        this.consumed = new ArrayList<>();
+        this.body = new RequestBody(this.consumed::add);
+        this.pool = new BufferPool(64, 4);
+    }
+
+    private DataFrame frame(final String payload) {
+        final var bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        final var buffer = this.pool.acquire();
+        buffer.write(bytes, 0, bytes.length);
+        return new DataFrame(1, Set.of(), buffer, 0, bytes.length);
+    }
+
+    @Test
+    public void testReadsQueuedFramesInOrder() throws IOException {
+        this.body.offer(new DataFrame(1, Set.of(), "Hello, ".getBytes(StandardCharsets.US_ASCII)));
+        this.body.offer(new DataFrame(1, Set.of(), "world".getBytes(StandardCharsets.US_ASCII)));
+        this.body.finish();
+
+        assertThat(this.body.available()).isEqualTo(12);
+        assertThat(new String(this.body.readAllBytes(), StandardCharsets.US_ASCII))
+                .isEqualTo("Hello, world");
+        assertThat(this.body.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void testReportsConsumptionAsDataIsRead() throws IOException {
+        this.body.offer(new DataFrame(1, Set.of(), new byte[10]));
+        assertThat(this.consumed).isEmpty();
+
+        this.body.read();
+        assertThat(this.body.read(new byte[4], 0, 4)).isEqualTo(4);
+
+        assertThat(this.consumed).containsExactly(1, 4);
+        assertThat(this.body.available()).isEqualTo(5);
+    }
+
+    @Test
+    public void testHoldsPooledBufferUntilRead() throws IOException {
+        final var frame = this.frame("abc");
+        this.body.offer(frame);
+        frame.release();
+
+        assertThat(this.pool.getIdleCount()).isZero();
+
+        this.body.readNBytes(3);
+        assertThat(this.pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testReadWaitsForData() throws Exception {
+        final var result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.body.read();
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        Thread.sleep(50);
+        assertThat(result).isNotDone();
+
+        this.body.offer(new DataFrame(1, Set.of(), new byte[] {42}));
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+    }
+
+    @Test
+    public void testAbortFailsReadsAndReleasesBuffers() {
+        final var frame = this.frame("abcd");
+        this.body.offer(frame);
+        frame.release();
+        this.body.abort(new IOException("reset"));
+
+        assertThat(this.pool.getIdleCount()).isEqualTo(1);
+        assertThat(this.consumed).containsExactly(4);
+        assertThat(this.body.isRemoteOpen()).isFalse();
+        assertThatThrownBy(() -> this.body.read()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testDataAfterCloseCountsAsConsumed() {
+        this.body.offer(new DataFrame(1, Set.of(), new byte[3]));
+        this.body.close();
+        this.body.offer(new DataFrame(1, Set.of(), new byte[5]));
+
+        assertThat(this.consumed).containsExactly(3, 5);
+        assertThat(this.body.isRemoteOpen()).isTrue();
+        assertThatThrownBy(() -> this.body.read()).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,128 @@
+package net.wukl.cacofony.http2.stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamRegistryTest {
+    private StreamRegistry registry;
+
+    @BeforeEach
+    public void before() {
+        this.registry = new StreamRegistry();
+    }
+
+    private static Stream stream(final int id) {
+        return new Stream(id, 65535, 65535, (stream, bytes) -> { });
+    }
+
+    @Test
+    public void testRegisteredStreamsAreFound() {
+        final var one = stream(1);
+        final var three = stream(3);
+        this.registry.add(one, 100);
+        this.registry.add(three, 100);
+
+        assertThat(this.registry.get(1)).isSameAs(one);
+        assertThat(this.registry.get(3)).isSameAs(three);
+        assertThat(this.registry.get(5)).isNull();
+    }
+
+    @Test
+    public void testStatesOfUnregisteredIdentifiers() {
+        this.registry.add(stream(7), 100);
+        this.registry.remove(7);
+
+        assertThat(this.registry.getState(3)).isEqualTo(StreamState.CLOSED);
+        assertThat(this.registry.getState(7)).isEqualTo(StreamState.CLOSED);
+        assertThat(this.registry.getState(9)).isEqualTo(StreamState.IDLE);
+        assertThat(this.registry.getState(2)).isEqualTo(StreamState.IDLE);
+    }
+
+    @Test
+    public void testStateOfRegisteredStream() {
+        final var stream = stream(1);
+        this.registry.add(stream, 100);
+        stream.closeRemote();
+
+        assertThat(this.registry.getState(1)).isEqualTo(StreamState.HALF_CLOSED_REMOTE);
+    }
+
+    @Test
+    public void testLimitIsEnforcedPerSide() {
+        assertThat(this.registry.add(stream(1), 2)).isTrue();
+        assertThat(this.registry.add(stream(3), 2)).isTrue();
+        assertThat(this.registry.add(stream(5), 2)).isFalse();
+        assertThat(this.registry.add(stream(2), 1)).isTrue();
+
+        assertThat(this.registry.getClientStreamCount()).isEqualTo(2);
+        assertThat(this.registry.getPushedStreamCount()).isEqualTo(1);
+        assertThat(this.registry.getState(5)).isEqualTo(StreamState.CLOSED);
+    }
+
+    @Test
+    public void testRemovalMakesRoom() {
+        this.registry.add(stream(1), 1);
+        assertThat(this.registry.remove(1)).isNotNull();
+        assertThat(this.registry.remove(1)).isNull();
+
+        assertThat(this.registry.add(stream(3), 1)).isTrue();
+    }
+
+    @Test
+    public void testRefusingClientStreams() {
+        this.registry.add(stream(1), 100);
+        this.registry.add(stream(5), 1);
+
+        assertThat(this.registry.refuseClientStreams()).isEqualTo(5);
+        assertThat(this.registry.add(stream(7), 100)).isFalse();
+        assertThat(this.registry.add(stream(2), 100)).isTrue();
+        assertThat(this.registry.getClientStreamCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEmptiness() {
+        assertThat(this.registry.isEmpty()).isTrue();
+
+        this.registry.add(stream(2), 100);
+        assertThat(this.registry.isEmpty()).isFalse();
+
+        this.registry.remove(2);
+        assertThat(this.registry.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testRemoveAll() {
+        this.registry.add(stream(1), 100);
+        this.registry.add(stream(2), 100);
+
+        assertThat(this.registry.removeAll()).extracting(Stream::getId)
+                .containsExactlyInAnyOrder(1, 2);
+        assertThat(this.registry.getClientStreamCount()).isZero();
+        assertThat(this.registry.get(1)).isNull();
+    }
+
+    @Test
+    public void testManyStreamsSurviveGrowthAndRemoval() {
+        final var random = new Random(42);
+        final var live = new ArrayList<Integer>();
+        for (int id = 1; id < 4000; id += 2) {
+            this.registry.add(stream(id), Long.MAX_VALUE);
+            live.add(id);
+
+            if (random.nextBoolean()) {
+                final var victim = live.remove(random.nextInt(live.size()));
+                assertThat(this.registry.remove(victim).getId()).isEqualTo(victim);
+            }
+        }
+
+        assertThat(this.registry.getClientStreamCount()).isEqualTo(live.size());
+        for (final var id : live) {
+            assertThat(this.registry.get(id).getId()).isEqualTo(id);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.wukl.cacofony.http2.stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamTest {
+    private Stream stream;
+
+    @BeforeEach
+    public void before() {
+        this.stream = new Stream(1, 65535, 65535, (stream, bytes) -> { });
+    }
+
+    @Test
+    public void testClientEndsFirst() {
+        assertThat(this.stream.closeRemote()).isFalse();
+        assertThat(this.stream.getState()).isEqualTo(StreamState.HALF_CLOSED_REMOTE);
+        assertThat(this.stream.isRemoteOpen()).isFalse();
+
+        assertThat(this.stream.closeLocal()).isTrue();
+        assertThat(this.stream.getState()).isEqualTo(StreamState.CLOSED);
+    }
+
+    @Test
+    public void testServerEndsFirst() {
+        assertThat(this.stream.closeLocal()).isFalse();
+        assertThat(this.stream.getState()).isEqualTo(StreamState.HALF_CLOSED_LOCAL);
+        assertThat(this.stream.isRemoteOpen()).isTrue();
+
+        assertThat(this.stream.closeRemote()).isTrue();
+    }
+
+    @Test
+    public void testPushedStreamLifecycle() {
+        this.stream.reserve();
+        assertThat(this.stream.getState()).isEqualTo(StreamState.RESERVED_LOCAL);
+        assertThat(this.stream.isRemoteOpen()).isFalse();
+
+        this.stream.activate();
+        assertThat(this.stream.getState()).isEqualTo(StreamState.HALF_CLOSED_REMOTE);
+
+        assertThat(this.stream.closeLocal()).isTrue();
+    }
+
+    @Test
+    public void testResetClosesStream() {
+        this.stream.close();
+
+        assertThat(this.stream.getState()).isEqualTo(StreamState.CLOSED);
+    }
+}
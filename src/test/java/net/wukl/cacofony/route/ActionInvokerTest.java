@@ -32,6 +32,7 @@ public class ActionInvokerTest {
 
         this.di = Mockito.mock(DependencyResolver.class);
         Mockito.when(this.di.get(Mockito.eq(InvocationTarget.class))).thenReturn(this.target);
+        Mockito.when(this.di.get(Mockito.eq(Service.class))).thenReturn(new Service());
 
         this.invoker = new ActionInvoker(this.di);
         this.request = new MutableRequest(
@@ -71,11 +72,41 @@ public class ActionInvokerTest {
         assertThat(this.target.invoked).isTrue();
     }
 
+    @Test
+    public void testPathParameters() throws Exception {
+        final RoutingEntry entry = this.entries.get("/sum/{left}/{right}");
+        this.request.setPathParameters(Map.of("left", "40", "right", "2"));
+
+        this.invoker.invoke(entry, this.request);
+
+        assertThat(this.target.sum).isEqualTo(42L);
+    }
+
+    @Test
+    public void testServiceResolvedOnce() throws Exception {
+        final RoutingEntry entry = this.entries.get("/service");
+        this.invoker.bind(entry);
+
+        this.invoker.invoke(entry, this.request);
+        this.invoker.invoke(entry, this.request);
+
+        assertThat(this.target.service).isNotNull();
+        Mockito.verify(this.di, Mockito.times(1)).get(Service.class);
+    }
+
+    /**
+     * A service the actions can depend on.
+     */
+    public static class Service {
+    }
+
     /**
      * The controller class the invoker should mess with.
      */
     public class InvocationTarget extends Controller {
         private boolean invoked = false;
+        private long sum = 0;
+        private Service service = null;
 
         @Route(path = "/noparam")
         public Response noParameterAction() {
@@ -93,5 +124,19 @@ public class ActionInvokerTest {
 
             return null;
         }
+
+        @Route(path = "/sum/{left}/{right}")
+        public Response sumAction(final int left, final long right) {
+            this.sum = left + right;
+
+            return null;
+        }
+
+        @Route(path = "/service")
+        public Response serviceAction(final Service service) {
+            this.service = service;
+
+            return null;
+        }
     }
 }
@@ -102,4 +102,16 @@ public class PathCompilerTest {
                 this.compiler.compile(path, this.requirements)
         );
     }
+
+    @Test
+    public void testStaticPath() {
+        assertThat(this.compiler.compile("/about", this.requirements).isStatic())
+                .as("plain path").isTrue();
+        assertThat(this.compiler.compile("/favicon.ico", this.requirements).isStatic())
+                .as("path with a dot").isTrue();
+        assertThat(this.compiler.compile("/items/{id}", this.requirements).isStatic())
+                .as("parameterized path").isFalse();
+        assertThat(this.compiler.compile("/a+b", this.requirements).isStatic())
+                .as("path with a quantifier").isFalse();
+    }
 }
@@ -93,6 +93,92 @@ public class RouterTest {
         assertThat(textResponse.getContent()).as("content").isEqualTo("get mpeg");
     }
 
+    @Test
+    public void testRepeatedNegotiation() throws Exception {
+        this.populatePicky();
+
+        for (int i = 0; i < 3; ++i) {
+            final MutableRequest request = new MutableRequest(Method.GET, "/", 1, 1);
+            request.getHeaders().put("accept", Arrays.asList("text/html", "audio/mpeg"));
+
+            final Response response = this.router.handle(request);
+
+            assertThat(response).isNotNull().isInstanceOf(TextResponse.class);
+            assertThat(((TextResponse) response).getContent()).isEqualTo("get mpeg");
+        }
+    }
+
+    @Test
+    public void testRouteAddedAfterNegotiation() throws Exception {
+        this.populatePicky();
+
+        final MutableRequest before = new MutableRequest(Method.GET, "/", 1, 1);
+        before.getHeaders().put("accept", Collections.singletonList("text/html"));
+
+        assertThrows(NotFoundException.class, () -> this.router.handle(before));
+
+        final PathCompiler compiler = new PathCompiler();
+        this.router.addRoute(this.createEntry(
+                "test_get_html", compiler.compile("/", Ob.map()), "helloAction",
+                Collections.singletonList(Method.GET), Collections.singletonList(MimeType.html())
+        ));
+
+        final MutableRequest after = new MutableRequest(Method.GET, "/", 1, 1);
+        after.getHeaders().put("accept", Collections.singletonList("text/html"));
+
+        final Response response = this.router.handle(after);
+
+        assertThat(response).isNotNull().isInstanceOf(TextResponse.class);
+        assertThat(((TextResponse) response).getContent()).isEqualTo("hello");
+    }
+
+    @Test
+    public void testStaticRoute() throws Exception {
+        this.populateComplex();
+
+        final PathCompiler compiler = new PathCompiler();
+        this.router.addRoute(this.createEntry(
+                "test_health", compiler.compile("/health", Ob.map()), "helloAction",
+                Collections.singletonList(Method.GET), Collections.singletonList(MimeType.text())
+        ));
+
+        for (final String target : Arrays.asList("/health", "/health/", "/health/?probe=1")) {
+            final MutableRequest request = new MutableRequest(Method.GET, target, 1, 1);
+            request.getHeaders().put("accept", Collections.singletonList("text/plain"));
+
+            final Response response = this.router.handle(request);
+
+            assertThat(response).as(target).isInstanceOf(TextResponse.class);
+            assertThat(((TextResponse) response).getContent()).as(target).isEqualTo("hello");
+            assertThat(request.getRawPath()).as(target).isEqualTo(target);
+            assertThat(request.hasPathParameter("name")).as(target).isFalse();
+        }
+
+        final MutableRequest request = new MutableRequest(Method.GET, "/health?probe=1", 1, 1);
+        this.router.handle(request);
+
+        assertThat(request.getQueryParameter("probe")).isEqualTo("1");
+    }
+
+    @Test
+    public void testStaticRoutePrecedesPatterns() throws Exception {
+        final PathCompiler compiler = new PathCompiler();
+        this.router.addRoute(this.createEntry(
+                "test_name", compiler.compile("/{name}", Ob.map()), "getTextAction",
+                Collections.singletonList(Method.GET), Collections.singletonList(MimeType.text())
+        ));
+        this.router.addRoute(this.createEntry(
+                "test_health", compiler.compile("/health", Ob.map()), "helloAction",
+                Collections.singletonList(Method.GET), Collections.singletonList(MimeType.text())
+        ));
+
+        final Response health = this.router.handle(new MutableRequest(Method.GET, "/health", 1, 1));
+        final Response other = this.router.handle(new MutableRequest(Method.GET, "/other", 1, 1));
+
+        assertThat(((TextResponse) health).getContent()).isEqualTo("hello");
+        assertThat(((TextResponse) other).getContent()).isEqualTo("get text");
+    }
+
     @Test
     public void testNoMatchingRoute() throws Exception {
         this.populateComplex();
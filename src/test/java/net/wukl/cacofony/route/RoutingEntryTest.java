@@ -41,6 +41,11 @@ public class RoutingEntryTest {
                 .forClass(RoutingEntry.class)
                 .withPrefabValues(Controller.class, this.etaoin, this.shrdlu)
                 .withPrefabValues(Method.class, this.etaoinMethod, this.shrdluMethod)
+                .withPrefabValues(
+                        ActionBinding.class,
+                        new ActionBinding(null, new ActionBinding.ArgumentBinder[0], null),
+                        new ActionBinding(null, new ActionBinding.ArgumentBinder[1], null)
+                )
                 .verify();
     }
 
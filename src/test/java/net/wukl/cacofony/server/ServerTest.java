@@ -1,5 +1,12 @@
 package net.wukl.cacofony.server;
 
+import net.wukl.cacofony.http2.Http2ConnectionRegistry;
+import net.wukl.cacofony.http2.Http2Protocol;
+import net.wukl.cacofony.http2.Http2ProtocolFactory;
+import net.wukl.cacofony.http2.Http2RequestHandler;
+import net.wukl.cacofony.http2.Http2TaskScheduler;
+import net.wukl.cacofony.http2.frame.FrameType;
+import net.wukl.cacofony.http.request.Header;
 import net.wukl.cacofony.mime.FastMimeParser;
 import net.wukl.cacofony.mime.MimeParser;
 import net.wukl.cacodi.DependencyResolver;
@@ -7,12 +14,26 @@ import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 
 /**
  * Tests for the server.
@@ -81,6 +102,131 @@ public class ServerTest {
         assertThrows(RunningServerException.class, () -> server.run());
     }
 
+    @Test
+    public void testHttp2ProtocolFactoryIsResolvable() {
+        new ServerBuilder(this.resolver).build();
+
+        final var factory = this.resolver.get(Http2ProtocolFactory.class);
+
+        Assertions.assertThat(factory).isNotNull();
+        Assertions.assertThat(factory).isSameAs(this.resolver.get(Http2ProtocolFactory.class));
+    }
+
+    @Test
+    public void testStopClosesTaskScheduler() throws IOException {
+        final Server server = new ServerBuilder(this.resolver).build();
+        server.run();
+
+        final var scheduler = this.resolver.get(Http2TaskScheduler.class);
+        final var registration = scheduler.register(() -> { }, 1000, () -> { });
+        server.stop();
+
+        Assertions.assertThat(scheduler.getRegistrationCount()).isZero();
+        registration.wake();
+    }
+
+    @Test
+    public void testStopDrainsActiveConnections() throws Exception {
+        this.settings.setPingInterval(0);
+        this.settings.setPingTimeout(100);
+        this.settings.setDrainTimeout(60000);
+
+        final var handled = new CountDownLatch(1);
+        final var handler = mock(Http2RequestHandler.class);
+        final var protocol = new AtomicReference<Http2Protocol>();
+        doAnswer(invocation -> {
+            protocol.set(invocation.getArgument(0));
+            handled.countDown();
+            return new CompletableFuture<>();
+        }).when(handler).handleRequest(any(), any(), any());
+        this.resolver.add(Http2RequestHandler.class, handler);
+
+        final var builder = new ServerBuilder(this.resolver);
+        builder.setSettings(this.settings);
+        final var server = builder.build();
+        server.run();
+
+        final var client = new PipedOutputStream();
+        final var out = new ByteArrayOutputStream();
+        // Like a socket, the connection is closed as a whole once its input is closed.
+        final var in = new PipedInputStream(client, 4096) {
+            @Override
+            public void close() throws IOException {
+                client.close();
+                super.close();
+            }
+        };
+        final var conn = new Connection(null, 0, in, out, "http");
+        final var connection = new Thread(() -> {
+            try {
+                this.resolver.get(Http2ProtocolFactory.class).build(conn).handle();
+            } catch (final Throwable t) {
+                throw new RuntimeException(t);
+            }
+        });
+        connection.start();
+
+        client.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        frame(client, FrameType.SETTINGS, 0, 0, new byte[0]);
+        frame(client, FrameType.SETTINGS, 1, 0, new byte[0]);
+        frame(client, FrameType.HEADERS, 0b0000_0101, 1, new byte[] {
+                (byte) 0x82, (byte) 0x86, (byte) 0x84, 0x41, 0x01, 'a'
+        });
+        client.flush();
+        Assertions.assertThat(handled.await(5, TimeUnit.SECONDS)).isTrue();
+
+        final var stopper = new Thread(() -> {
+            try {
+                server.stop();
+            } catch (final IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        stopper.start();
+
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!frames(out).contains("GOAWAY 0") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        protocol.get().sendHeaders(1, List.of(new Header(":status", "204")), true);
+
+        stopper.join(5000);
+        connection.join(5000);
+
+        Assertions.assertThat(stopper.isAlive()).isFalse();
+        Assertions.assertThat(connection.isAlive()).isFalse();
+        Assertions.assertThat(frames(out)).containsSubsequence("GOAWAY 0", "HEADERS 1", "GOAWAY 0");
+        Assertions.assertThat(this.resolver.get(Http2ConnectionRegistry.class).getConnectionCount())
+                .isZero();
+    }
+
+    private static void frame(final PipedOutputStream out, final FrameType type,
+                              final int flags, final int streamId, final byte[] payload)
+            throws IOException {
+        final var header = ByteBuffer.allocate(9);
+        header.put((byte) (payload.length >>> 16));
+        header.putShort((short) payload.length);
+        header.put(type.getValue());
+        header.put((byte) flags);
+        header.putInt(streamId);
+        out.write(header.array());
+        out.write(payload);
+    }
+
+    private static List<String> frames(final ByteArrayOutputStream out) {
+        final var buffer = ByteBuffer.wrap(out.toByteArray());
+        final var frames = new ArrayList<String>();
+        while (buffer.remaining() >= 9) {
+            final var length = ((buffer.get() & 0xFF) << 16) | (buffer.getShort() & 0xFFFF);
+            final var type = FrameType.valueOf(buffer.get() & 0xFF);
+            buffer.get();
+            frames.add(type + " " + buffer.getInt());
+            buffer.position(Math.min(buffer.limit(), buffer.position() + length));
+        }
+
+        return frames;
+    }
+
     private class VerifyingListenerFactory implements ListenerFactory {
         final Set<Port> expectedPorts;
 
@@ -0,0 +1,104 @@
+package net.wukl.cacofony.util;
+
+import net.wukl.cacofony.http.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Luc Everse
+ */
+public class PercentDecoderTest {
+    @Test
+    public void testNothingToDecode() {
+        final String input = "/plain/path+with+plus";
+
+        assertThat(PercentDecoder.decode(input, PercentDecoder.Mode.PATH)).isSameAs(input);
+    }
+
+    @Test
+    public void testPlusInPath() {
+        assertThat(PercentDecoder.decode("/a+b%20c", PercentDecoder.Mode.PATH))
+                .isEqualTo("/a+b c");
+    }
+
+    @Test
+    public void testPlusInForm() {
+        assertThat(PercentDecoder.decode("a+b%2Bc", PercentDecoder.Mode.FORM))
+                .isEqualTo("a b+c");
+    }
+
+    @Test
+    public void testSubstring() {
+        assertThat(PercentDecoder.decode("?key=m%C3%B8%C3%B8se&x", 5, 20, PercentDecoder.Mode.FORM))
+                .isEqualTo("møøse");
+        assertThat(PercentDecoder.decode("?key=value&x", 5, 10, PercentDecoder.Mode.FORM))
+                .isEqualTo("value");
+    }
+
+    @Test
+    public void testSupplementaryCharacter() {
+        assertThat(PercentDecoder.decode("%F0%9F%8E%B6", PercentDecoder.Mode.PATH))
+                .isEqualTo("🎶");
+    }
+
+    @Test
+    public void testLongInput() {
+        final String input = "%41".repeat(10000);
+
+        assertThat(PercentDecoder.decode(input, PercentDecoder.Mode.PATH))
+                .isEqualTo("A".repeat(10000));
+        assertThat(PercentDecoder.decode("%41", PercentDecoder.Mode.PATH)).isEqualTo("A");
+    }
+
+    @Test
+    public void testMalformedUtf8() {
+        assertThat(PercentDecoder.decode("a%C3b", PercentDecoder.Mode.PATH))
+                .isEqualTo("a�b");
+        assertThat(PercentDecoder.decode("%C0%80", PercentDecoder.Mode.PATH))
+                .isEqualTo("�");
+        assertThat(PercentDecoder.decode("%ED%A0%80", PercentDecoder.Mode.PATH))
+                .isEqualTo("�");
+        assertThat(PercentDecoder.decode("%E2%82", PercentDecoder.Mode.PATH))
+                .isEqualTo("�");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"%", "%4", "abc%", "%zz", "%4g", "%٣٣"})
+    public void testMalformedEscape(final String input) {
+        assertThrows(
+                BadRequestException.class,
+                () -> PercentDecoder.decode(input, PercentDecoder.Mode.FORM)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "", "plain", "a+b", "%7e%7E", "m%C3%B8%C3%B8se", "x%26y%3Dz", "%E2%82%AC+%F0%9F%8E%B6",
+        "ünïcödé%20as+is", "a%C3b%2"
+    })
+    public void testEquivalentToUrlDecoder(final String input) {
+        String expected;
+        try {
+            expected = URLDecoder.decode(input, StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException ex) {
+            expected = null;
+        }
+
+        if (expected == null) {
+            assertThrows(
+                    BadRequestException.class,
+                    () -> PercentDecoder.decode(input, PercentDecoder.Mode.FORM)
+            );
+        } else {
+            assertThat(PercentDecoder.decode(input, PercentDecoder.Mode.FORM))
+                    .isEqualTo(expected);
+        }
+    }
+}
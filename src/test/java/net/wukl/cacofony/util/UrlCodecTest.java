@@ -39,4 +39,14 @@ public class UrlCodecTest {
 
         assertThat(output).isEqualTo("m%C3%B8%C3%B8se");
     }
+
+    @Test
+    public void testDecodeCookieComponent() {
+        final String input = "møøse; a+b";
+
+        final String output =
+                this.codec.decodeCookieComponent(this.codec.encodeCookieComponent(input));
+
+        assertThat(output).isEqualTo(input);
+    }
 }
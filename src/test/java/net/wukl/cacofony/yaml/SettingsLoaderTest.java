@@ -1,6 +1,9 @@
 package net.wukl.cacofony.yaml;
 
 import net.wukl.cacofony.http.encoding.TransferEncoding;
+import net.wukl.cacofony.http2.frame.BucketPadding;
+import net.wukl.cacofony.http2.frame.NoPadding;
+import net.wukl.cacofony.http2.frame.RandomPadding;
 import net.wukl.cacofony.server.DefaultSettings;
 import net.wukl.cacofony.server.Port;
 import net.wukl.cacofony.server.ServerSettings;
@@ -15,6 +18,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -156,6 +160,38 @@ public class SettingsLoaderTest {
         assertThat(settings.getPorts()).containsExactly(new Port(80, true), new Port(443, false));
     }
 
+    @Test
+    public void testCleartextHttp2Ports() {
+        final Map<String, Object> spec = Ob.map(
+            "ports", Arrays.asList(
+                Ob.map(
+                    "port", 8080,
+                    "secure", false,
+                    "h2c prior knowledge", true
+                ),
+                Ob.map(
+                    "port", 8081,
+                    "secure", false,
+                    "h2c upgrade", true
+                ),
+                Ob.map(
+                    "port", 8082,
+                    "secure", false
+                )
+            )
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getPorts())
+                .extracting(Port::isH2cPriorKnowledgeEnabled, Port::isH2cUpgradeEnabled)
+                .containsExactly(
+                        tuple(true, false),
+                        tuple(false, true),
+                        tuple(false, false)
+                );
+    }
+
     @Test
     public void testMixedPorts() {
         final Map<String, Object> spec = Ob.map(
@@ -234,4 +270,188 @@ public class SettingsLoaderTest {
 
         assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
     }
+
+    @Test
+    public void testDefaultPadding() {
+        final ServerSettings settings = this.loader.load(Ob.map());
+
+        assertThat(settings.getPaddingPolicy()).isInstanceOf(NoPadding.class);
+    }
+
+    @Test
+    public void testRandomPadding() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 padding", "random"
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getPaddingPolicy()).isInstanceOf(RandomPadding.class);
+    }
+
+    @Test
+    public void testBucketPadding() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 padding", Ob.map("policy", "bucket", "size", 128)
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getPaddingPolicy()).isInstanceOf(BucketPadding.class);
+        assertThat(settings.getPaddingPolicy().getPadding(100, 256)).isEqualTo(28);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sometimes", "bucket"})
+    public void testInvalidPadding(final String policy) {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 padding", policy
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testWindowSizes() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 stream window", 1 << 20,
+                "http/2 connection window", 1 << 24
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getInitialWindowSize()).isEqualTo(1 << 20);
+        assertThat(settings.getConnectionWindowSize()).isEqualTo(1 << 24);
+    }
+
+    @Test
+    public void testConnectionWindowTooSmall() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 connection window", 4096
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testStreamWindowTooSmall() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 stream window", 4096
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testFramingLimits() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max frame size", 1 << 20,
+                "http/2 header table size", 0,
+                "http/2 max header list size", 8192
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getMaxFrameSize()).isEqualTo(1 << 20);
+        assertThat(settings.getHeaderTableSize()).isZero();
+        assertThat(settings.getMaxHeaderListSize()).isEqualTo(8192);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {4096, 1 << 24})
+    public void testInvalidMaxFrameSize(final int size) {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max frame size", size
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testServerPush() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max pushes", 0,
+                "http/2 auto push", false
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getMaxConcurrentPushes()).isZero();
+        assertThat(settings.isAutoPushEnabled()).isFalse();
+    }
+
+    @Test
+    public void testNegativeMaxPushes() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max pushes", -1
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testMaxInFlightRequests() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max in-flight requests", 4
+        );
+
+        assertThat(this.loader.load(spec).getMaxInFlightRequests()).isEqualTo(4);
+    }
+
+    @Test
+    public void testMaxInFlightRequestsMustBePositive() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max in-flight requests", 0
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testPingsAndWindowTuning() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 ping interval", 0,
+                "http/2 ping timeout", 500,
+                "http/2 max window size", 1 << 20
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getPingInterval()).isZero();
+        assertThat(settings.getPingTimeout()).isEqualTo(500);
+        assertThat(settings.getMaxWindowSize()).isEqualTo(1 << 20);
+    }
+
+    @Test
+    public void testDraining() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max connection age", 600000,
+                "http/2 max connection requests", 1000,
+                "http/2 drain timeout", 5000
+        );
+
+        final ServerSettings settings = this.loader.load(spec);
+
+        assertThat(settings.getMaxConnectionAge()).isEqualTo(600000);
+        assertThat(settings.getMaxConnectionRequests()).isEqualTo(1000);
+        assertThat(settings.getDrainTimeout()).isEqualTo(5000);
+    }
+
+    @Test
+    public void testNegativeConnectionAge() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 max connection age", -1
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
+
+    @Test
+    public void testPingTimeoutMustBePositive() {
+        final Map<String, Object> spec = Ob.map(
+                "http/2 ping timeout", 0
+        );
+
+        assertThrows(InvalidYamlException.class, () -> this.loader.load(spec));
+    }
 }